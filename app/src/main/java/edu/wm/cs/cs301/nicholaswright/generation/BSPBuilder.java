@@ -22,6 +22,10 @@ public class BSPBuilder {
 	private final int expectedPartiters ; 	// comes from Constants partct array, entry chosen according to skill level
 	// only usage is in updateProgressBar to estimate progress made in the BSP tree construction
 	int partiters = 0 ; // relocated from MazeBuilder attribute partiters here. 
+	private int lastPercentage = -1 ; // last percentage sent to the order, avoids repeated updates
+	// number of candidates per node the expected partition iterations were estimated with,
+	// the builder used to grade a sample of this size
+	private static final int MAX_TRIES = 50;
 	private final Order order ; 		// current order
 	/**
 	 * Constructor
@@ -80,9 +84,10 @@ public class BSPBuilder {
 			int df2y = sendy - y; 
 			int nx = dy;
 			int ny = -dx;
-			int dot1 = df1x * nx + df1y * ny;
-			int dot2 = df2x * nx + df2y * ny;
-			if (getSign(dot1) != getSign(dot2)) {
+			// long as scaled coordinates of large mazes exceed the int range in the product
+			long dot1 = (long) df1x * nx + (long) df1y * ny;
+			long dot2 = (long) df2x * nx + (long) df2y * ny;
+			if (Long.signum(dot1) != Long.signum(dot2)) {
 				if (dot1 == 0)
 					dot1 = dot2;
 				else if (dot2 != 0) {
@@ -126,6 +131,10 @@ public class BSPBuilder {
 			return new BSPLeaf(rsl);
 		if (rsl.size() == 0)
 			return new BSPLeaf(lsl);
+		// all walls are now in lsl or rsl, release the storage of this level
+		// such that the lists along the recursion path do not add up for large mazes
+		sl.clear();
+		sl.trimToSize();
 		return new BSPBranch(x, y, dx, dy, genNodes(lsl), genNodes(rsl)); // recursion on both branches
 	}
 
@@ -146,36 +155,37 @@ public class BSPBuilder {
 
 	/**
 	 * It finds the wall which has the minimum grade value.
+	 * All walls without a partition bit are graded exactly with a PartitionGrader,
+	 * ties are resolved in favor of the first wall in the list.
 	 * @param sl vector of walls
 	 * @return wall that is best candidate according to grade partition (smallest grade)
 	 * @throws InterruptedException 
 	 */
 	private Wall findPartitionCandidate(ArrayList<Wall> sl) throws InterruptedException {
 		Wall result = null ;
-		int bestgrade = 5000; // used to compute the minimum of all observed grade values, set to some high initial value
-		final int maxtries = 50; // constant, only used to determine skip
-		// consider a subset of walls proportional to the number of tries, here 50, seems to randomize the access a bit
-		int skip = (sl.size() / maxtries);
-		if (skip == 0)
-			skip = 1;
-		assert (0 < skip) : "Increment for loop must be positive";
-		for (int i = 0; i < sl.size(); i += skip) {
+		int bestgrade = Integer.MAX_VALUE; // used to compute the minimum of all observed grade values
+		int candidates = 0;
+		final PartitionGrader grader = new PartitionGrader(sl);
+		for (int i = 0; i < sl.size(); i++) {
 			Wall element = sl.get(i);
 			// skip walls where the partition flag was set
 			if (element.isPartition())
 				continue;
-			// provide feedback for progress bar every 32 iterations
-			partiters++;
-			if ((partiters & 31) == 0) {
-				updateProgressBar(partiters); // side effect: update progress bar
-			}
+			candidates++;
 			// check grade and keep track of minimum
-			int grade = grade_partition(sl, element);
+			int grade = grader.grade(element);
 			if (grade < bestgrade) {
 				bestgrade = grade;
 				result = element; // determine wall with smallest grade
 			}
 		}
+		// provide feedback for progress bar every 32 iterations,
+		// expectedPartiters is calibrated for at most MAX_TRIES candidates per node
+		final int before = partiters;
+		partiters += Math.min(candidates, MAX_TRIES);
+		if ((before >> 5) != (partiters >> 5)) {
+			updateProgressBar(partiters); // side effect: update progress bar
+		}
 		return result;
 	}
 
@@ -186,14 +196,20 @@ public class BSPBuilder {
 	private void updateProgressBar(int partiters) throws InterruptedException {
 		// During maze generation, the most time consuming part needs to occasionally update the current screen
 		// 
-		int percentage = partiters*100/expectedPartiters ;
-		if (null != order) {
+		int percentage = (int) ((long) partiters*100/expectedPartiters) ;
+		if (null != order && percentage != lastPercentage) {
+			lastPercentage = percentage;
 			order.updateProgress(percentage) ;
 			if (percentage < 100) {
 				// give main thread a chance to process keyboard events
 				Thread.currentThread().sleep(10);
 			}
 		}
+		else if (Thread.interrupted()) {
+			// no pause for unchanged percentage, large mazes would spend most time sleeping,
+			// but still recognize a cancel request
+			throw new InterruptedException();
+		}
 	}
 
 	/**
@@ -430,63 +446,6 @@ public class BSPBuilder {
             }
         }
     }
-	/**
-	 * Method called in genNodes to determine the minimum of all such grades. 
-	 * The method is static, i.e. it does not update internal attributes and just calculates the returned value.
-	 * @param sl vector of walls
-	 * @param pe particular wall
-	 * @return undocumented
-	 */
-	private int grade_partition(ArrayList<Wall> sl, Wall pe) {
-	    // code relocated to Seg.java
-	    ///* original code
-		// copy attributes of parameter pe
-		final int x  = pe.getStartPositionX();
-		final int y  = pe.getStartPositionY();
-		final int dx = pe.getExtensionX();
-		final int dy = pe.getExtensionY();
-		final int inc = (sl.size() >= 100) ? sl.size() / 50 : 1 ; // increment for iteration below
-		// define some local counter
-		int lcount = 0, rcount = 0, splits = 0;
-		// check all walls, loop calculates lcount, rcount and splits
-		for (int i = 0; i < sl.size(); i += inc) {
-			Wall se = (Wall) sl.get(i);
-			// extract information from wall
-			int df1x = se.getStartPositionX() - x; // difference between beginning of wall and x
-			int df1y = se.getStartPositionY() - y; // difference between beginning of wall and y
-			int df2x = se.getEndPositionX() - x; // difference between end of wall and x
-			int df2y = se.getEndPositionY() - y; // difference between end of wall and y
-			int nx = dy;
-			int ny = -dx;
-			int dot1 = df1x * nx + df1y * ny;
-			int dot2 = df2x * nx + df2y * ny;
-			// update splits if necessary
-			if (getSign(dot1) != getSign(dot2)) {
-				if (dot1 == 0)
-					dot1 = dot2;
-				else if (dot2 != 0) {
-					splits++;
-					continue;
-				}
-			}
-			// update lcount, rcount values
-			if (dot1 > 0 ||
-					(dot1 == 0 && se.hasSameDirection(pe))) {
-				rcount++;
-			} else if (dot1 < 0 ||
-					(dot1 == 0 && se.hasOppositeDirection(pe))) {
-				lcount++;
-			} else {
-				dbg("grade_partition problem: dot1 = "+dot1+", dot2 = "+dot2);
-			}
-		}
-		int result_old = Math.abs(lcount-rcount) + splits * 3;
-		//*/
-	    // new code
-	    int result_new = pe.calculateGrade(sl);
-	    assert (result_old == result_new) : "BSPBuilder grade calculation fails";
-	    return result_new;
-	}
 	/**
 	 * Generate tree of BSP nodes for a given maze
 	 * @return
@@ -504,6 +463,22 @@ public class BSPBuilder {
 
 		return genNodes(seglist); // creates a data structure to quickly search for walls
 	}
+	/**
+	 * Generates an axis-aligned k-d tree of the walls instead of a tree of BSP nodes.
+	 * It is built without grading and without splitting walls, which is much faster
+	 * for large mazes, see KdTreeBuilder.
+	 * @return the compiled tree
+	 * @throws InterruptedException
+	 */
+	public CompiledBSPTree generateKdTree() throws InterruptedException {
+		ArrayList<Wall> seglist = generateWalls();
+
+		// same modification of the floorplan as in generateBSPNodes
+		Wallboard wallboard = new Wallboard(0, 0, CardinalDirection.North) ;
+		floorplan.addWallboard(wallboard, false);
+
+		return new KdTreeBuilder(seglist, Constants.MAP_UNIT).build(width, height);
+	}
 	/**
 	 * Provides the sign of a given integer number
 	 * @param num
@@ -0,0 +1,41 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+/**
+ * Storage for the integer values of the cells of a {@link Floorplan}.
+ * The Floorplan class keeps the bit encoding of wallboards, borders
+ * and flags, a storage only holds one integer per (x,y) position.
+ *
+ * This allows the floorplan of a maze to live either on the heap
+ * ({@link HeapCellStorage}) or in a memory mapped file
+ * ({@link MappedCellStorage}) to take the floorplan of very large mazes
+ * off the heap.
+ *
+ * All methods assume that given (x,y) coordinates are
+ * within the legal range {@code [0,width-1],[0,height-1]}.
+ *
+ * @author Nicholas Wright
+ */
+public interface CellStorage {
+	/**
+	 * @return the width, number of cells in x direction
+	 */
+	int getWidth();
+	/**
+	 * @return the height, number of cells in y direction
+	 */
+	int getHeight();
+	/**
+	 * Gets the value of the cell at position (x,y)
+	 * @param x coordinate of cell, {@code 0 <= x < width}
+	 * @param y coordinate of cell, {@code 0 <= y < height}
+	 * @return the value of the cell
+	 */
+	int get(int x, int y);
+	/**
+	 * Sets the value of the cell at position (x,y)
+	 * @param x coordinate of cell, {@code 0 <= x < width}
+	 * @param y coordinate of cell, {@code 0 <= y < height}
+	 * @param value the new value of the cell
+	 */
+	void set(int x, int y, int value);
+}
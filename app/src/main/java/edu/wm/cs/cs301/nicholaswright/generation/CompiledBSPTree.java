@@ -0,0 +1,411 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+
+/**
+ * Compiled form of a tree of BSPNodes that keeps all data in primitive arrays.
+ * Nodes are stored in depth first order (node, left subtree, right subtree),
+ * so the left child of a branch is always the next node and the nodes of any
+ * subtree form the index interval [node, getSubtreeEnd(node)).
+ * The fields of a node are stored next to each other in a single int array,
+ * which keeps a traversal within few cache lines instead of chasing pointers
+ * across many small objects.
+ *
+ * Walls are stored in the order of the leaves, each leaf refers to
+ * the interval of its walls. Start and end positions and the color of
+ * walls are kept in an int array as well. The Wall objects are still
+ * available to keep track of walls that have been seen.
+ *
+ * The arrays can be written to and read from a binary stream as they are.
+ *
+ * A tree from the KdTreeBuilder uses the same form, its leaves may hold
+ * parts of walls, i.e. the coordinates of a wall clipped to the leaf,
+ * that refer to the same Wall object.
+ *
+ * @author Nicholas Wright
+ */
+public class CompiledBSPTree {
+	// fields of a node, NODE_FIELDS values per node,
+	// package visible for the KdTreeBuilder that fills the arrays directly
+	static final int X = 0;
+	static final int Y = 1;
+	static final int DX = 2;
+	static final int DY = 3;
+	static final int LOW_X = 4;
+	static final int LOW_Y = 5;
+	static final int HIGH_X = 6;
+	static final int HIGH_Y = 7;
+	static final int RIGHT = 8;       // index of right child, -1 for a leaf
+	static final int END = 9;         // end of subtree, exclusive
+	static final int FIRST_WALL = 10; // walls of a leaf, 0 for a branch
+	static final int END_WALL = 11;
+	static final int NODE_FIELDS = 12;
+
+	// fields of a wall, WALL_FIELDS values per wall
+	static final int START_X = 0;
+	static final int START_Y = 1;
+	static final int END_X = 2;
+	static final int END_Y = 3;
+	static final int COLOR = 4;      // rgb packed as 0xrrggbb
+	static final int DISTANCE = 5;
+	static final int WALL_FIELDS = 6;
+
+	// tag and version for the binary format
+	private static final int MAGIC = 0x42535031; // "BSP1"
+
+	private final int[] nodes;
+	private final int[] walls;
+	private final Wall[] wallObjects;
+
+	/**
+	 * Constructor for arrays that are filled in this form.
+	 * @param nodes NODE_FIELDS values per node
+	 * @param walls WALL_FIELDS values per wall
+	 * @param wallObjects the Wall of each wall
+	 */
+	CompiledBSPTree(int[] nodes, int[] walls, Wall[] wallObjects) {
+		this.nodes = nodes;
+		this.walls = walls;
+		this.wallObjects = wallObjects;
+	}
+
+	/**
+	 * Compiles the given tree. Uses an explicit stack as
+	 * trees for large mazes can be deep.
+	 * @param root of the tree, not null
+	 * @return the compiled tree
+	 */
+	public static CompiledBSPTree compile(BSPNode root) {
+		assert root != null : "CompiledBSPTree: can't compile an empty tree";
+		// count nodes and walls first to allocate arrays of exact size
+		int nodeCount = 0;
+		int wallCount = 0;
+		ArrayList<BSPNode> stack = new ArrayList<BSPNode>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			BSPNode node = stack.remove(stack.size()-1);
+			nodeCount++;
+			if (node.isIsleaf()) {
+				wallCount += ((BSPLeaf) node).getSlist().size();
+			}
+			else {
+				stack.add(((BSPBranch) node).getRightBranch());
+				stack.add(((BSPBranch) node).getLeftBranch());
+			}
+		}
+		int[] nodes = new int[nodeCount*NODE_FIELDS];
+		int[] walls = new int[wallCount*WALL_FIELDS];
+		Wall[] wallObjects = new Wall[wallCount];
+
+		// second pass in depth first order, for each node on the stack
+		// keep the branch it is the right child of, -1 for a left child
+		ArrayList<Integer> rightChildOf = new ArrayList<Integer>();
+		int next = 0;
+		int nextWall = 0;
+		stack.add(root);
+		rightChildOf.add(-1);
+		while (!stack.isEmpty()) {
+			BSPNode node = stack.remove(stack.size()-1);
+			int parent = rightChildOf.remove(rightChildOf.size()-1);
+			int index = next++;
+			int base = index*NODE_FIELDS;
+			if (parent >= 0)
+				nodes[parent*NODE_FIELDS + RIGHT] = index;
+			nodes[base + LOW_X] = node.getLowerBoundX();
+			nodes[base + LOW_Y] = node.getLowerBoundY();
+			nodes[base + HIGH_X] = node.getUpperBoundX();
+			nodes[base + HIGH_Y] = node.getUpperBoundY();
+			if (node.isIsleaf()) {
+				nodes[base + RIGHT] = -1;
+				nodes[base + FIRST_WALL] = nextWall;
+				for (Wall wall : ((BSPLeaf) node).getSlist()) {
+					storeWall(walls, nextWall, wall);
+					wallObjects[nextWall++] = wall;
+				}
+				nodes[base + END_WALL] = nextWall;
+				continue;
+			}
+			BSPBranch branch = (BSPBranch) node;
+			nodes[base + X] = branch.getX();
+			nodes[base + Y] = branch.getY();
+			nodes[base + DX] = branch.getDx();
+			nodes[base + DY] = branch.getDy();
+			stack.add(branch.getRightBranch());
+			rightChildOf.add(index);
+			stack.add(branch.getLeftBranch());
+			rightChildOf.add(-1);
+		}
+		// children have larger indices than their parent, so a backward
+		// pass sees the end of the right subtree before its parent
+		for (int i = nodeCount-1; i >= 0; i--) {
+			int right = nodes[i*NODE_FIELDS + RIGHT];
+			nodes[i*NODE_FIELDS + END] = (right < 0) ? i+1 : nodes[right*NODE_FIELDS + END];
+		}
+		return new CompiledBSPTree(nodes, walls, wallObjects);
+	}
+
+	/**
+	 * Reads a tree in the binary format of writeTo.
+	 * Creates new Wall objects as the walls are not shared with a maze.
+	 * @param in stream to read from
+	 * @return the tree
+	 * @throws IOException if reading fails or the data is not a tree
+	 */
+	public static CompiledBSPTree readFrom(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC)
+			throw new IOException("CompiledBSPTree: unknown format");
+		int[] nodes = readInts(in);
+		int[] walls = readInts(in);
+		if (nodes.length % NODE_FIELDS != 0 || walls.length % WALL_FIELDS != 0)
+			throw new IOException("CompiledBSPTree: corrupt data");
+		Wall[] wallObjects = new Wall[walls.length / WALL_FIELDS];
+		for (int i = 0; i < wallObjects.length; i++) {
+			int base = i*WALL_FIELDS;
+			Wall wall = new Wall(walls[base + START_X], walls[base + START_Y],
+					walls[base + END_X] - walls[base + START_X],
+					walls[base + END_Y] - walls[base + START_Y],
+					walls[base + DISTANCE], 0);
+			int rgb = walls[base + COLOR];
+			wall.setColor(new int[] {(rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff});
+			wallObjects[i] = wall;
+		}
+		return new CompiledBSPTree(nodes, walls, wallObjects);
+	}
+
+	/**
+	 * Writes the arrays of this tree in a binary format.
+	 * @param out stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		writeInts(out, nodes);
+		writeInts(out, walls);
+	}
+
+	/**
+	 * Finds all walls that touch the given rectangle, e.g. to draw
+	 * the part of a maze that is on display. Skips all subtrees
+	 * whose bounding box does not touch the rectangle.
+	 * @param minX lower x bound of the rectangle
+	 * @param minY lower y bound of the rectangle
+	 * @param maxX upper x bound of the rectangle
+	 * @param maxY upper y bound of the rectangle
+	 * @param result to add the indices of the walls to
+	 */
+	public void findWalls(int minX, int minY, int maxX, int maxY, BitSet result) {
+		final int count = getNodeCount();
+		int node = 0;
+		while (node < count) {
+			final int base = node*NODE_FIELDS;
+			if (nodes[base + LOW_X] > maxX || nodes[base + HIGH_X] < minX
+					|| nodes[base + LOW_Y] > maxY || nodes[base + HIGH_Y] < minY) {
+				node = nodes[base + END];
+				continue;
+			}
+			if (nodes[base + RIGHT] < 0) {
+				for (int wall = nodes[base + FIRST_WALL]; wall < nodes[base + END_WALL]; wall++) {
+					final int w = wall*WALL_FIELDS;
+					if (Math.min(walls[w + START_X], walls[w + END_X]) <= maxX
+							&& Math.max(walls[w + START_X], walls[w + END_X]) >= minX
+							&& Math.min(walls[w + START_Y], walls[w + END_Y]) <= maxY
+							&& Math.max(walls[w + START_Y], walls[w + END_Y]) >= minY)
+						result.set(wall);
+				}
+			}
+			node++;
+		}
+	}
+
+	/**
+	 * @return the number of nodes, the root has index 0
+	 */
+	public int getNodeCount() {
+		return nodes.length / NODE_FIELDS;
+	}
+	/**
+	 * @return the number of walls in all leaves
+	 */
+	public int getWallCount() {
+		return wallObjects.length;
+	}
+
+	////////////////////////////// access to nodes //////////////////////////////
+	public boolean isLeaf(int node) {
+		return nodes[node*NODE_FIELDS + RIGHT] < 0;
+	}
+	/**
+	 * @param node a branch
+	 * @return the index of the left child, always node+1
+	 */
+	public int getLeftChild(int node) {
+		return node + 1;
+	}
+	/**
+	 * @param node a branch
+	 * @return the index of the right child
+	 */
+	public int getRightChild(int node) {
+		return nodes[node*NODE_FIELDS + RIGHT];
+	}
+	/**
+	 * @param node any node
+	 * @return the index after the last node of the subtree of the given node
+	 */
+	public int getSubtreeEnd(int node) {
+		return nodes[node*NODE_FIELDS + END];
+	}
+	public int getX(int node) {
+		return nodes[node*NODE_FIELDS + X];
+	}
+	public int getY(int node) {
+		return nodes[node*NODE_FIELDS + Y];
+	}
+	public int getDx(int node) {
+		return nodes[node*NODE_FIELDS + DX];
+	}
+	public int getDy(int node) {
+		return nodes[node*NODE_FIELDS + DY];
+	}
+	public int getLowerBoundX(int node) {
+		return nodes[node*NODE_FIELDS + LOW_X];
+	}
+	public int getLowerBoundY(int node) {
+		return nodes[node*NODE_FIELDS + LOW_Y];
+	}
+	public int getUpperBoundX(int node) {
+		return nodes[node*NODE_FIELDS + HIGH_X];
+	}
+	public int getUpperBoundY(int node) {
+		return nodes[node*NODE_FIELDS + HIGH_Y];
+	}
+	/**
+	 * @param node a leaf
+	 * @return the index of the first wall of the leaf
+	 */
+	public int getFirstWall(int node) {
+		return nodes[node*NODE_FIELDS + FIRST_WALL];
+	}
+	/**
+	 * @param node a leaf
+	 * @return the index after the last wall of the leaf
+	 */
+	public int getEndWall(int node) {
+		return nodes[node*NODE_FIELDS + END_WALL];
+	}
+
+	////////////////////////////// access to walls //////////////////////////////
+	public int getWallStartX(int wall) {
+		return walls[wall*WALL_FIELDS + START_X];
+	}
+	public int getWallStartY(int wall) {
+		return walls[wall*WALL_FIELDS + START_Y];
+	}
+	public int getWallEndX(int wall) {
+		return walls[wall*WALL_FIELDS + END_X];
+	}
+	public int getWallEndY(int wall) {
+		return walls[wall*WALL_FIELDS + END_Y];
+	}
+	/**
+	 * @param wall index of a wall
+	 * @return the color as rgb value 0xrrggbb
+	 */
+	public int getWallColor(int wall) {
+		return walls[wall*WALL_FIELDS + COLOR];
+	}
+	/**
+	 * @param wall index of a wall
+	 * @return the Wall object, e.g. to check and set its seen flag
+	 */
+	public Wall getWall(int wall) {
+		return wallObjects[wall];
+	}
+	/**
+	 * Tells if the given wall is only a part of its Wall object,
+	 * which happens for trees from the KdTreeBuilder.
+	 * @param wall index of a wall
+	 * @return true if the coordinates differ from the Wall object, false otherwise
+	 */
+	public boolean isPartOfWall(int wall) {
+		final Wall w = wallObjects[wall];
+		final int base = wall*WALL_FIELDS;
+		return walls[base + START_X] != w.getStartPositionX() || walls[base + START_Y] != w.getStartPositionY()
+				|| walls[base + END_X] != w.getEndPositionX() || walls[base + END_Y] != w.getEndPositionY();
+	}
+	/**
+	 * Gives a tree that shares the arrays of this tree but has Wall
+	 * objects of its own with the seen flag cleared, such that
+	 * several games on the same maze keep track of seen walls separately.
+	 * Parts of the same Wall share the same new Wall object.
+	 * @return the tree with new Wall objects
+	 */
+	public CompiledBSPTree withOwnWalls() {
+		IdentityHashMap<Wall, Wall> copies = new IdentityHashMap<Wall, Wall>();
+		Wall[] objects = new Wall[wallObjects.length];
+		for (int i = 0; i < objects.length; i++) {
+			Wall wall = wallObjects[i];
+			Wall copy = copies.get(wall);
+			if (null == copy) {
+				copy = new Wall(wall.getStartPositionX(), wall.getStartPositionY(),
+						wall.getExtensionX(), wall.getExtensionY(), wall.getDistance(), 0);
+				copy.setColor(wall.getColorRGB().clone());
+				copy.setPartition(wall.isPartition());
+				copies.put(wall, copy);
+			}
+			objects[i] = copy;
+		}
+		return new CompiledBSPTree(nodes, walls, objects);
+	}
+	/**
+	 * Clears the seen flag of all walls, e.g. to play a maze again.
+	 */
+	public void resetSeen() {
+		for (Wall wall : wallObjects) {
+			wall.setSeen(false);
+		}
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	private static void storeWall(int[] walls, int index, Wall wall) {
+		int base = index*WALL_FIELDS;
+		walls[base + START_X] = wall.getStartPositionX();
+		walls[base + START_Y] = wall.getStartPositionY();
+		walls[base + END_X] = wall.getEndPositionX();
+		walls[base + END_Y] = wall.getEndPositionY();
+		walls[base + COLOR] = packColor(wall.getColorRGB());
+		walls[base + DISTANCE] = wall.getDistance();
+	}
+
+	/**
+	 * @param rgb color with separate red, green and blue values
+	 * @return the color as rgb value 0xrrggbb
+	 */
+	static int packColor(int[] rgb) {
+		return (rgb[0] & 0xff) << 16 | (rgb[1] & 0xff) << 8 | (rgb[2] & 0xff);
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			throw new IOException("CompiledBSPTree: corrupt data");
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+}
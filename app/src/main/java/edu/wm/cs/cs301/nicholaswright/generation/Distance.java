@@ -150,6 +150,15 @@ public class Distance {
 	public int[] computeDistances(Floorplan cells) {
 		// constraint: cells must be of size (width x height)
 		
+		// very large mazes: use a parallel breadth first search,
+		// it delivers the same distance values and thus the same exit
+		if (width * height >= PARALLEL_THRESHOLD) {
+			ParallelBFS bfs = new ParallelBFS(cells, width, height);
+			bfs.computeDists(dists, width/2, height/2);
+			exitPosition = getPositionWithMaxDistanceOnBorder();
+			bfs.computeDists(dists, exitPosition[0], exitPosition[1]);
+			return exitPosition;
+		}
 		// Step 1: find a suitable exit position
 		// Heuristic:
 		// compute temporary distances for a starting point 
@@ -164,6 +173,24 @@ public class Distance {
 		return exitPosition ;
 	}
 
+	/**
+	 * Computes distances towards the given exit position instead of
+	 * choosing one, e.g. to check the values that {@link DynamicDistance}
+	 * keeps up to date for a maze whose exit is fixed.
+	 * Cells that can not reach the exit get {@link #INFINITY}.
+	 * @param cells with information on wallboards for a maze, can not be null, read only
+	 * @param exitX x coordinate of the exit position
+	 * @param exitY y coordinate of the exit position
+	 */
+	void computeDistances(Floorplan cells, int exitX, int exitY) {
+		if (width * height >= PARALLEL_THRESHOLD)
+			new ParallelBFS(cells, width, height).computeDists(dists, exitX, exitY);
+		else
+			computeDists(cells, exitX, exitY);
+		exitPosition = new int[] {exitX, exitY};
+		startPosition = null;
+	}
+
 	/**
 	 * Gets the starting position.
 	 * Assumes that computeDistances() was called before.
@@ -216,6 +243,15 @@ public class Distance {
 			exitPosition = getPositionWithMinDistance() ;
 		return ((x == exitPosition[0]) && (y == exitPosition[1])) ;
 	}
+	/**
+	 * Forgets the cached starting position such that it is
+	 * determined again on the next request.
+	 * Used by {@link DynamicDistance} after distance values 
+	 * have been updated in place.
+	 */
+	void resetStartPosition() {
+		startPosition = null;
+	}
 	//////////////////////////////////////////////////////////////////////////
 	//////////////// private, internal methods ///////////////////////////////
 	//////////////////////////////////////////////////////////////////////////
@@ -301,14 +337,22 @@ public class Distance {
 	 * in matrix dists.
 	 */
 	static final int INFINITY = Integer.MAX_VALUE; 
+	/**
+	 * Number of cells from which on distances are computed
+	 * with a parallel breadth first search, see {@link ParallelBFS}.
+	 * Mazes of the regular skill levels stay below this limit,
+	 * larger mazes from explicit dimensions in an order use it.
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 17;
 
 	/**
 	 * Computes distances to the given position (ax,ay) for all cells in array dists.
+	 * Package visible to compare the {@link ParallelBFS} with it.
 	 * @param cells with information on wallboards for a maze, can not be null
 	 * @param ax, position, x coordinate
 	 * @param ay, position, y coordinate
 	 */
-	private void computeDists(Floorplan cells, int ax, int ay) {
+	void computeDists(Floorplan cells, int ax, int ay) {
 		//int x, y;
 		// initialize the distance array with a value for infinity 
 		setAllDistanceValues(INFINITY) ;
@@ -402,6 +446,9 @@ public class Distance {
 	 */
 	private CardinalDirection updateNeighborDistancesAndDirection(Floorplan cells, int currentX, int currentY) {
 		CardinalDirection result = null; // returns null by default
+		// a cell that is cut off from the exit has nothing to give, INFINITY + 1 would overflow
+		if (dists[currentX][currentY] == INFINITY)
+			return null;
 		int nextDistance = dists[currentX][currentY] + 1; // distance of a neighbor
 		int[] dir;
 		int nextX;
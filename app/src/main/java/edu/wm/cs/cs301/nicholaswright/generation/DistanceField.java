@@ -0,0 +1,103 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+/**
+ * A distance field holds for each cell of a maze the number of steps
+ * towards the closest of a set of source cells.
+ * It follows the same conventions as {@link Distance}:
+ * a source cell has distance 1 and cells that can not reach any source
+ * have distance {@link Distance#INFINITY}.
+ *
+ * Values are stored in a compact one dimensional array with index x*height+y.
+ * As long as all distances fit into 16 bits a char array is used,
+ * which takes half the memory of an int array. For very long paths
+ * the field falls back to an int array.
+ *
+ * A distance field is immutable once created by the {@link DistanceFieldService}.
+ *
+ * @author Nicholas Wright
+ */
+public class DistanceField {
+	/**
+	 * Value in the compact representation for an unreachable cell
+	 */
+	private static final char UNREACHABLE = 0;
+
+	private final int width;
+	private final int height;
+	/**
+	 * Compact distance values, null if wide is used
+	 */
+	private final char[] compact;
+	/**
+	 * Distance values that exceed the char range, null if compact is used
+	 */
+	private final int[] wide;
+	/**
+	 * The maximum finite distance value in this field
+	 */
+	private final int maxDistance;
+
+	/**
+	 * Constructor, copies the given values into a compact representation if possible.
+	 * @param width of the maze
+	 * @param height of the maze
+	 * @param values distance values with index x*height+y, unreachable cells hold Distance.INFINITY
+	 * @param maxDistance the maximum finite value in values
+	 */
+	DistanceField(int width, int height, int[] values, int maxDistance) {
+		this.width = width;
+		this.height = height;
+		this.maxDistance = maxDistance;
+		if (maxDistance < Character.MAX_VALUE) {
+			compact = new char[values.length];
+			for (int i = 0; i < values.length; i++) {
+				compact[i] = (values[i] == Distance.INFINITY) ? UNREACHABLE : (char) values[i];
+			}
+			wide = null;
+		}
+		else {
+			compact = null;
+			wide = values.clone();
+		}
+	}
+	/**
+	 * Gets the distance value for the given (x,y) position
+	 * @param x is the x coordinate, {@code 0 <= x < width}
+	 * @param y is the y coordinate, {@code 0 <= y < height}
+	 * @return the number of steps to the closest source plus 1,
+	 * Distance.INFINITY if no source can be reached
+	 */
+	public int getDistanceValue(int x, int y) {
+		if (null == compact)
+			return wide[x*height+y];
+		char value = compact[x*height+y];
+		return (value == UNREACHABLE) ? Distance.INFINITY : value;
+	}
+	/**
+	 * Gets the maximum finite distance value in this field.
+	 * @return the maximum distance
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+	/**
+	 * @return the width of the maze this field belongs to
+	 */
+	public int getWidth() {
+		return width;
+	}
+	/**
+	 * @return the height of the maze this field belongs to
+	 */
+	public int getHeight() {
+		return height;
+	}
+	/**
+	 * Gives the number of bytes occupied by the distance values.
+	 * Used by the cache to keep its memory consumption bounded.
+	 * @return the size of the internal array in bytes
+	 */
+	long getSizeInBytes() {
+		return (null == compact) ? 4L * wide.length : 2L * compact.length;
+	}
+}
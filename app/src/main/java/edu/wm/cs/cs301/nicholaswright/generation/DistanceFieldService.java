@@ -0,0 +1,206 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Provides distance fields for a maze towards arbitrary sets of target
+ * positions, e.g. additional exits, rooms or the position of a robot.
+ * This complements {@link Distance} which only holds distances
+ * towards the single exit of the maze.
+ *
+ * Fields are computed on demand with a breadth first search that starts
+ * from all given source positions at once. Computed fields are kept
+ * in a least recently used cache whose total size in bytes is bounded.
+ * If the cache exceeds its limit, the fields that have not been
+ * requested for the longest time are dropped.
+ *
+ * The service reads wallboards through the given maze. If wallboards
+ * change, {@link #clear()} must be called to drop outdated fields.
+ *
+ * Methods are synchronized as drivers may request fields from
+ * their own threads.
+ *
+ * @author Nicholas Wright
+ */
+public class DistanceFieldService {
+	/**
+	 * Default limit for the memory occupied by cached fields, 4 MB
+	 * is sufficient for about 25 fields of the largest skill level.
+	 */
+	public static final long DEFAULT_CACHE_BYTES = 4L * 1024 * 1024;
+
+	private final Maze maze;
+	private final int width;
+	private final int height;
+	/**
+	 * Upper bound for the total size of all cached fields
+	 */
+	private final long maxBytes;
+	/**
+	 * Current total size of all cached fields
+	 */
+	private long usedBytes;
+	/**
+	 * Cache of fields, iteration order is from least recently to most recently used
+	 */
+	private final LinkedHashMap<SourceKey, DistanceField> cache;
+	/**
+	 * Work arrays for the breadth first search, allocated on first use
+	 */
+	private int[] values;
+	private int[] queue;
+
+	/**
+	 * Constructor with the default cache limit.
+	 * @param maze provides dimensions and wallboards, can not be null
+	 */
+	public DistanceFieldService(Maze maze) {
+		this(maze, DEFAULT_CACHE_BYTES);
+	}
+	/**
+	 * Constructor
+	 * @param maze provides dimensions and wallboards, can not be null
+	 * @param maxBytes is the upper bound for the memory used by cached fields
+	 */
+	public DistanceFieldService(Maze maze, long maxBytes) {
+		this.maze = maze;
+		this.width = maze.getWidth();
+		this.height = maze.getHeight();
+		this.maxBytes = maxBytes;
+		// access order gives least recently used iteration
+		this.cache = new LinkedHashMap<SourceKey, DistanceField>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gives the distance field towards a single target position.
+	 * @param x is the x coordinate of the target, {@code 0 <= x < width}
+	 * @param y is the y coordinate of the target, {@code 0 <= y < height}
+	 * @return the distance field, never null
+	 */
+	public DistanceField getDistanceField(int x, int y) {
+		return getDistanceField(new int[][] {{x, y}});
+	}
+	/**
+	 * Gives the distance field towards the closest of the given target positions.
+	 * The order of the positions does not matter.
+	 * @param sources array of (x,y) positions, at least one, each inside the maze
+	 * @return the distance field, never null
+	 */
+	public synchronized DistanceField getDistanceField(int[][] sources) {
+		assert (null != sources && sources.length > 0) : "At least one source is required";
+		int[] cells = new int[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			assert maze.isValidPosition(sources[i][0], sources[i][1]) : "Invalid source position";
+			cells[i] = sources[i][0]*height + sources[i][1];
+		}
+		SourceKey key = new SourceKey(cells);
+		DistanceField field = cache.get(key);
+		if (null == field) {
+			field = computeField(key.cells);
+			cache.put(key, field);
+			usedBytes += field.getSizeInBytes();
+			evict();
+		}
+		return field;
+	}
+	/**
+	 * Drops all cached fields, needs to be called if wallboards of the maze change.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		usedBytes = 0;
+	}
+	/**
+	 * @return the number of fields currently held in the cache
+	 */
+	public synchronized int getCachedFieldCount() {
+		return cache.size();
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	//////////////// private, internal methods ///////////////////////////////
+	//////////////////////////////////////////////////////////////////////////
+	/**
+	 * Removes least recently used fields until the cache fits into its limit.
+	 * The most recently added field is always kept.
+	 */
+	private void evict() {
+		Iterator<DistanceField> it = cache.values().iterator();
+		while (usedBytes > maxBytes && cache.size() > 1) {
+			usedBytes -= it.next().getSizeInBytes();
+			it.remove();
+		}
+	}
+	/**
+	 * Performs a breadth first search that starts with all source cells
+	 * at distance 1.
+	 * @param sources cell indices x*height+y without duplicates
+	 * @return the new distance field
+	 */
+	private DistanceField computeField(int[] sources) {
+		if (null == values) {
+			values = new int[width*height];
+			queue = new int[width*height];
+		}
+		Arrays.fill(values, Distance.INFINITY);
+		int head = 0;
+		int tail = 0;
+		for (int cell : sources) {
+			values[cell] = 1;
+			queue[tail++] = cell;
+		}
+		int max = 1;
+		while (head < tail) {
+			int cell = queue[head++];
+			int x = cell / height;
+			int y = cell % height;
+			int next = values[cell] + 1;
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				if (maze.hasWall(x, y, cd))
+					continue;
+				int[] dir = cd.getDirection();
+				int nx = x + dir[0];
+				int ny = y + dir[1];
+				if (!maze.isValidPosition(nx, ny))
+					continue; // opening at the exit
+				int ncell = nx*height + ny;
+				if (values[ncell] == Distance.INFINITY) {
+					values[ncell] = next;
+					queue[tail++] = ncell;
+					max = next;
+				}
+			}
+		}
+		return new DistanceField(width, height, values, max);
+	}
+
+	/**
+	 * Key for the cache, a sorted set of source cell indices.
+	 */
+	private static class SourceKey {
+		private final int[] cells;
+		private final int hash;
+
+		SourceKey(int[] cells) {
+			Arrays.sort(cells);
+			// drop duplicates
+			int n = 0;
+			for (int i = 0; i < cells.length; i++) {
+				if (0 == i || cells[i] != cells[n-1])
+					cells[n++] = cells[i];
+			}
+			this.cells = (n == cells.length) ? cells : Arrays.copyOf(cells, n);
+			this.hash = Arrays.hashCode(this.cells);
+		}
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof SourceKey) && Arrays.equals(cells, ((SourceKey) other).cells);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
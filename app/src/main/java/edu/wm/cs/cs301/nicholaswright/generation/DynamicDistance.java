@@ -0,0 +1,262 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.util.PriorityQueue;
+
+/**
+ * This class keeps the distance matrix of a {@link Distance} object
+ * consistent with its {@link Floorplan} while wallboards are added
+ * or deleted after the maze has been generated.
+ *
+ * A call to {@link Distance#computeDistances(Floorplan) computeDistances}
+ * touches every cell of the maze. A single wallboard however only
+ * changes the graph between two adjacent cells, so this class repairs
+ * the distance values in the region that is actually affected:
+ * a) deleting a wallboard can only shorten paths, distance values are
+ * pushed outwards from the opening in a breadth first manner as long as
+ * they improve a neighbor's value.
+ * b) adding a wallboard can only lengthen paths, the cells whose shortest
+ * path ran through the new wallboard are identified, reset and then
+ * recomputed from their unaffected neighbors.
+ * The cost of both operations is proportional to the number of cells
+ * whose distance value changes, not to the size of the maze.
+ *
+ * The exit position is kept as is, it is the cell with distance 1.
+ * If adding a wallboard cuts off a region from the exit, cells in that
+ * region end up with distance {@link Distance#INFINITY}.
+ *
+ * The distance matrix is shared with the given Distance object and
+ * updated in place.
+ *
+ * @author Nicholas Wright
+ */
+public class DynamicDistance {
+	/**
+	 * The floorplan that is modified, shared with the maze
+	 */
+	private final Floorplan floorplan;
+	/**
+	 * The distance object whose matrix is kept up to date
+	 */
+	private final Distance distance;
+	/**
+	 * Direct reference to the matrix inside of distance
+	 */
+	private final int[][] dists;
+	private final int width;
+	private final int height;
+	/**
+	 * Marks cells that are affected by an added wallboard,
+	 * indexed by x*height+y, allocated on first use
+	 */
+	private boolean[] affected;
+
+	/**
+	 * Constructor
+	 * @param floorplan with the wallboards of the maze, can not be null
+	 * @param distance with valid distance values for the given floorplan, can not be null
+	 */
+	public DynamicDistance(Floorplan floorplan, Distance distance) {
+		this.floorplan = floorplan;
+		this.distance = distance;
+		this.dists = distance.getAllDistanceValues();
+		this.width = dists.length;
+		this.height = dists[0].length;
+	}
+
+	/**
+	 * Deletes the given wallboard from the floorplan and updates
+	 * all distance values that get smaller because of the new opening.
+	 * @param wallboard is an internal wallboard, both cells must be inside the maze
+	 * @return the number of cells whose distance value changed
+	 */
+	public int deleteWallboard(Wallboard wallboard) {
+		floorplan.deleteWallboard(wallboard);
+		int x = wallboard.getX();
+		int y = wallboard.getY();
+		int nx = wallboard.getNeighborX();
+		int ny = wallboard.getNeighborY();
+		// the opening matters only if one side can improve the other
+		PriorityQueue<Long> queue = new PriorityQueue<Long>();
+		int count = 0;
+		if (lower(nx, ny, x, y)) {
+			queue.add(entry(x, y));
+			count++;
+		}
+		else if (lower(x, y, nx, ny)) {
+			queue.add(entry(nx, ny));
+			count++;
+		}
+		else
+			return 0;
+		// the seed cell alone can change the farthest cell
+		count += propagate(queue);
+		distance.resetStartPosition();
+		return count;
+	}
+
+	/**
+	 * Adds the given wallboard on both sides to the floorplan and
+	 * updates all distance values that get larger because of it.
+	 * @param wallboard is an internal wallboard, both cells must be inside the maze
+	 * @return the number of cells whose distance value got reset and recomputed
+	 */
+	public int addWallboard(Wallboard wallboard) {
+		floorplan.addWallboard(wallboard, true);
+		int x = wallboard.getX();
+		int y = wallboard.getY();
+		int nx = wallboard.getNeighborX();
+		int ny = wallboard.getNeighborY();
+		// identify the cell that may have used the closed opening
+		// on its shortest path towards the exit
+		int cx, cy;
+		if (dists[x][y] == Distance.INFINITY || dists[nx][ny] == Distance.INFINITY)
+			return 0;
+		if (dists[x][y] == dists[nx][ny] + 1) {
+			cx = x;
+			cy = y;
+		}
+		else if (dists[nx][ny] == dists[x][y] + 1) {
+			cx = nx;
+			cy = ny;
+		}
+		else
+			return 0; // wallboard was not on any shortest path
+		if (hasParent(cx, cy))
+			return 0; // an alternative path of the same length exists
+
+		if (null == affected)
+			affected = new boolean[width*height];
+		// Step 1: collect all cells that lost every shortest path,
+		// a cell is affected if all of its parents are affected.
+		// Breadth first order guarantees that all cells of one distance level
+		// are classified before their children are checked.
+		int[] found = new int[16];
+		int size = 0;
+		int head = 0;
+		affected[cx*height+cy] = true;
+		found[size++] = cx*height+cy;
+		while (head < size) {
+			int cell = found[head++];
+			int px = cell / height;
+			int py = cell % height;
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				if (floorplan.hasWall(px, py, cd))
+					continue;
+				int[] dir = cd.getDirection();
+				int qx = px + dir[0];
+				int qy = py + dir[1];
+				if (!isInside(qx, qy) || affected[qx*height+qy])
+					continue;
+				if (dists[qx][qy] == dists[px][py] + 1 && !hasParent(qx, qy)) {
+					affected[qx*height+qy] = true;
+					if (size == found.length) {
+						int[] tmp = new int[2*size];
+						System.arraycopy(found, 0, tmp, 0, size);
+						found = tmp;
+					}
+					found[size++] = qx*height+qy;
+				}
+			}
+		}
+		// Step 2: reset affected cells and seed them with the best value
+		// that unaffected neighbors can offer
+		for (int i = 0; i < size; i++) {
+			dists[found[i] / height][found[i] % height] = Distance.INFINITY;
+		}
+		PriorityQueue<Long> queue = new PriorityQueue<Long>();
+		for (int i = 0; i < size; i++) {
+			int px = found[i] / height;
+			int py = found[i] % height;
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				if (floorplan.hasWall(px, py, cd))
+					continue;
+				int[] dir = cd.getDirection();
+				int qx = px + dir[0];
+				int qy = py + dir[1];
+				if (isInside(qx, qy) && !affected[qx*height+qy])
+					lower(qx, qy, px, py);
+			}
+			if (dists[px][py] != Distance.INFINITY)
+				queue.add(entry(px, py));
+		}
+		for (int i = 0; i < size; i++) {
+			affected[found[i]] = false;
+		}
+		// Step 3: settle the affected region in order of increasing distance
+		propagate(queue);
+		distance.resetStartPosition();
+		return size;
+	}
+
+	//////////////////////////////////////////////////////////////////////////
+	//////////////// private, internal methods ///////////////////////////////
+	//////////////////////////////////////////////////////////////////////////
+	/**
+	 * Settles distance values in order of increasing distance,
+	 * starting from the cells in the queue, and pushes values
+	 * to neighbors as long as they improve.
+	 * @param queue with entries obtained from {@link #entry(int, int)}
+	 * @return the number of cells that received a smaller value
+	 */
+	private int propagate(PriorityQueue<Long> queue) {
+		int count = 0;
+		while (!queue.isEmpty()) {
+			long e = queue.poll();
+			int cell = (int) e;
+			int px = cell / height;
+			int py = cell % height;
+			if ((int) (e >>> 32) != dists[px][py])
+				continue; // outdated entry, cell got a smaller value meanwhile
+			for (CardinalDirection cd : CardinalDirection.values()) {
+				if (floorplan.hasWall(px, py, cd))
+					continue;
+				int[] dir = cd.getDirection();
+				int qx = px + dir[0];
+				int qy = py + dir[1];
+				if (isInside(qx, qy) && lower(px, py, qx, qy)) {
+					queue.add(entry(qx, qy));
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	/**
+	 * Lowers the distance value of (qx,qy) to the value of (px,py) plus 1
+	 * if that is an improvement.
+	 * @return true if the value of (qx,qy) changed, false otherwise
+	 */
+	private boolean lower(int px, int py, int qx, int qy) {
+		if (dists[px][py] == Distance.INFINITY || dists[qx][qy] <= dists[px][py] + 1)
+			return false;
+		dists[qx][qy] = dists[px][py] + 1;
+		return true;
+	}
+	/**
+	 * Tells if cell (x,y) has a reachable neighbor that is not affected
+	 * and one step closer to the exit.
+	 */
+	private boolean hasParent(int x, int y) {
+		for (CardinalDirection cd : CardinalDirection.values()) {
+			if (floorplan.hasWall(x, y, cd))
+				continue;
+			int[] dir = cd.getDirection();
+			int qx = x + dir[0];
+			int qy = y + dir[1];
+			if (isInside(qx, qy) && dists[qx][qy] == dists[x][y] - 1
+					&& (null == affected || !affected[qx*height+qy]))
+				return true;
+		}
+		return false;
+	}
+	private boolean isInside(int x, int y) {
+		return (0 <= x && x < width) && (0 <= y && y < height);
+	}
+	/**
+	 * Encodes the current distance and position of a cell such that
+	 * the natural order of entries follows increasing distance.
+	 */
+	private long entry(int x, int y) {
+		return ((long) dists[x][y] << 32) | (x*height+y);
+	}
+}
@@ -90,7 +90,7 @@ public class Floorplan {
 	
 	private int width;
 	private int height ;
-	private int[][] cells; // width x height array of cells, cells[width][height]
+	private final CellStorage cells; // width x height cells, on the heap by default, see CellStorage
 	// each cell contains an integer which encodes presence/absence of wallboards
 	// cells[i][j] can be read as (i,j) coordinates much like (x,y) coordinates
 	// where the first dimension x grows towards the right and 
@@ -99,6 +99,23 @@ public class Floorplan {
 	// cells[i][j] is not intuitive in terms of rows and column indices in matrix notation 
 	// as position (i,j) would be column i and row j which is opposite to the normal  
 	// use of rows and columns indices for matrices.
+	// hears about wallboards that addWall adds, null if none
+	private WallboardListener wallboardListener;
+
+	/**
+	 * Receives the wallboards that addWall adds to a floorplan, e.g. the walls
+	 * that are seen in the first person view, such that a map of them can be
+	 * updated incrementally.
+	 */
+	public interface WallboardListener {
+		/**
+		 * Called for each wallboard that addWall adds and that was not present before.
+		 * @param x coordinate of the cell
+		 * @param y coordinate of the cell
+		 * @param cd direction of the wallboard, North or West
+		 */
+		void wallboardAdded(int x, int y, CardinalDirection cd);
+	}
 	
 	/**
 	 * Constructor
@@ -108,7 +125,20 @@ public class Floorplan {
 	public Floorplan(int w, int h) {
 		width = w ;
 		height = h ;
-		cells = new int[w][h];
+		cells = new HeapCellStorage(w, h);
+	}
+
+	/**
+	 * Constructor that operates on the given storage, e.g. a
+	 * {@link MappedCellStorage} to keep the cells of a very large maze off the heap.
+	 * The content of the storage is used as is, call {@link #initialize()}
+	 * for a new maze.
+	 * @param storage provides the values of all cells, can not be null
+	 */
+	public Floorplan(CellStorage storage) {
+		width = storage.getWidth() ;
+		height = storage.getHeight() ;
+		cells = storage;
 	}
 
 	/**
@@ -121,9 +151,10 @@ public class Floorplan {
 		// Alternative, 2d array is a 1d array with arrays as elements
 		width = input.length ;
 		height = input[0].length ;
-		cells = new int[width][];
+		int[][] copy = new int[width][];
 		for(int i = 0; i < width; i++)
-		    cells[i] = input[i].clone(); // clone row
+		    copy[i] = input[i].clone(); // clone row
+		cells = new HeapCellStorage(copy);
 		/* Basic version
 		this(input.length, input[0].length);
 		for (int i = 0; i < width; i++) {
@@ -133,6 +164,21 @@ public class Floorplan {
 		}
 		*/
 	}
+
+	/**
+	 * Gives a copy of this floorplan with cells of its own on the heap,
+	 * e.g. for a maze that is served more than once.
+	 * @return the copy
+	 */
+	Floorplan copy() {
+		Floorplan result = new Floorplan(width, height);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				result.cells.set(x, y, cells.get(x, y));
+			}
+		}
+		return result;
+	}
 	
 	/**
 	 * Initialize floorplan such that all cells have not been visited,
@@ -181,7 +227,7 @@ public class Floorplan {
 			return false ;
 		for (int i = 0; i < width; i++) {
 			for (int j = 0; j < height; j++) {
-				if (cells[i][j] != o.cells[i][j])
+				if (cells.get(i, j) != o.cells.get(i, j))
 					return false ;
 			}
 		}
@@ -206,7 +252,7 @@ public class Floorplan {
 	 */
 	public int getValueOfCell( int x, int y )
 	{
-		return cells[x][y] ;
+		return cells.get(x, y) ;
 	}
 	
 	/**
@@ -613,6 +659,13 @@ public class Floorplan {
 			logWall( x,  y,  dx,  dy);
 		/////////////////// END OF SPECIAL CODE FOR GRADING //////////////////////////////////////////////////////////////
 	}
+    /**
+     * Sets the listener for wallboards added by addWall, there is at most one.
+     * @param listener to notify, null to stop notifications
+     */
+    public void setWallboardListener(WallboardListener listener) {
+        wallboardListener = listener;
+    }
     /**
      * Add wallboards in either north or west direction for the given wall.
      * Wall coordinates need to be rescaled by map_unit to translate into
@@ -624,6 +677,19 @@ public class Floorplan {
      * @param map_unit gives the scaling factor to obtain the cell coordinates
      */
     public void addWall(Wall seg, int map_unit) {
+        addWall(seg.getStartPositionX(), seg.getStartPositionY(),
+                seg.getExtensionX(), seg.getExtensionY(), map_unit);
+    }
+    /**
+     * Add wallboards in either north or west direction for the given part of a wall,
+     * see addWall(Wall, int). Used for walls in a k-d tree that are seen in parts.
+     * @param startX x coordinate of the starting position of the wall
+     * @param startY y coordinate of the starting position of the wall
+     * @param extensionX direction and length of the wall in x coordinate
+     * @param extensionY direction and length of the wall in y coordinate
+     * @param map_unit gives the scaling factor to obtain the cell coordinates
+     */
+    public void addWall(int startX, int startY, int extensionX, int extensionY, int map_unit) {
         // moved method from FirstPersonDrawer here
         // Why: changes seencells by adding wallboards based on info in given seg
         // only piece of information used from FirstPersonDrawer is map_unit
@@ -637,14 +703,14 @@ public class Floorplan {
         //final int sdy = seg.getExtensionY() / map_unit; // constant, only set once here
         // note: either sdx or sdy is 0
         // define constants to avoid method calls in following loop
-        final int sdsx = MazeBuilder.getSign(seg.getExtensionX()); // 0: vertical, -1,1: horizontal
-        final int sdsy = MazeBuilder.getSign(seg.getExtensionY()); // 0: horizontal, -1,1: vertical
+        final int sdsx = MazeBuilder.getSign(extensionX); // 0: vertical, -1,1: horizontal
+        final int sdsy = MazeBuilder.getSign(extensionY); // 0: horizontal, -1,1: vertical
         
         // Step 2: get initial position (sx,sy) right
-        int sx = seg.getStartPositionX() / map_unit;
+        int sx = startX / map_unit;
         if (sdsx < 0) // this direction and negative 
             sx--;
-        int sy = seg.getStartPositionY() / map_unit; 
+        int sy = startY / map_unit; 
         if (sdsy < 0) // this direction and negative
             sy--;
         
@@ -654,7 +720,7 @@ public class Floorplan {
         //if (len != seg.length() / map_unit) {
         //    System.out.print("Error: seg length wrong: " + len + " vs " + seg.length());
         //}
-        final int len = seg.getLength() / map_unit;
+        final int len = Math.abs(extensionX + extensionY) / map_unit;
         
         // check conditions
         // warning: step 2 could range for sx, sy such that starting point may be at -1,
@@ -678,7 +744,12 @@ public class Floorplan {
             // but only from one side for the given cell (not its neighbor)
             wallboard.setLocationDirection(sx, sy, cd);
             //seencells.addWall(wallboard, false) ;
-            addWallboard(wallboard, false) ;
+            if (null != wallboardListener && !hasWall(sx, sy, cd)) {
+                addWallboard(wallboard, false) ;
+                wallboardListener.wallboardAdded(sx, sy, cd);
+            }
+            else
+                addWallboard(wallboard, false) ;
             // move to neighbor cell in the direction of the wall
             // note that exactly one of sdsx or sdsy is not 0
             sx += sdsx;
@@ -905,7 +976,7 @@ public class Floorplan {
 	 * @param cw_bit like CW_LEFT, CW_RIGHT, CW_TOP, CW_BOTTOM
 	 */
 	private void setBitToZero(int x, int y, int cw_bit) {
-		cells[x][y] &= ~cw_bit;
+		cells.set(x, y, cells.get(x, y) & ~cw_bit);
 	}
 	/**
 	 * Sets all wallboard bits to zero for a given cell
@@ -922,10 +993,10 @@ public class Floorplan {
 	// better to directly change client classes
 	//
 	protected boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) != 0;
+		return (cells.get(x, y) & bitmask) != 0;
 	}
 	protected boolean hasMaskedBitsFalse(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) == 0;
+		return (cells.get(x, y) & bitmask) == 0;
 	}
 
 	/**
@@ -957,7 +1028,7 @@ public class Floorplan {
 	 * @param bitmask
 	 */
 	private void setBitToOne(int x, int y, int bitmask) {
-		cells[x][y] |= bitmask ;
+		cells.set(x, y, cells.get(x, y) | bitmask) ;
 	}
 
 	///////////////// code for debugging ///////////////////////////////////////
@@ -975,7 +1046,7 @@ public class Floorplan {
 		{
 			prefix = " i:" + i + " j:";
 			for (int j = 0 ; j < height ; j++)
-				s += prefix + j + "=" + cells[i][j] ;
+				s += prefix + j + "=" + cells.get(i, j) ;
 			s += "\n" ;
 		}
 		return s ;
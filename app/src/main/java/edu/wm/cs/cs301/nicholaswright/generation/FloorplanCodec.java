@@ -0,0 +1,461 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import edu.wm.cs.cs301.nicholaswright.gui.Constants;
+
+/**
+ * Compact binary encoding of the floorplan of a generated maze.
+ * Most of the flags of a cell follow from a few rules once a maze is built:
+ * all exterior wallboards are up and are borders except for the wallboard at the exit,
+ * rooms are rectangles whose cells are marked as in a room and whose perimeter
+ * wallboards are borders except for the door candidates markAreaAsRoom picked,
+ * and the visited flag is the same for all cells, Eller's builder sets it
+ * and all others clear it.
+ * What is left is a single bit per interior wallboard, stored in a bitmap with
+ * the wallboard to the east and the wallboard to the south of each cell.
+ * Together with the exit, the rooms and their door candidates a floorplan
+ * takes a little more than 2 bits per cell instead of 32, e.g. about 21 KB
+ * for the largest skill level with 300x240 cells and 160 rooms.
+ * The bitmap can be deflated on top, which pays off for mazes with long
+ * straight walls but hardly for a perfect maze, whose bits are close to random.
+ *
+ * The east bits come column by column, i.e. bit x*height+y for the wallboard between
+ * (x,y) and (x+1,y), followed by the south bits, bit x*(height-1)+y after the east bits
+ * for the wallboard between (x,y) and (x,y+1), the same order as the cells in
+ * CellStorage and MazeCache, such that a column is decoded in a single sweep.
+ *
+ * Floorplans that do not follow the rules, e.g. one that is still being built,
+ * can not be encoded.
+ *
+ * @author Nicholas Wright
+ */
+public class FloorplanCodec {
+	// tag for the binary format
+	private static final int MAGIC = 0x464c5031; // "FLP1"
+	// flags of the header
+	private static final int FLAG_VISITED = 1;
+	private static final int FLAG_DEFLATED = 2;
+	// all bits a cell of a generated maze can have
+	private static final int KNOWN_BITS = Floorplan.CW_ALL | Floorplan.CW_VISITED
+			| (Floorplan.CW_ALL << Floorplan.CW_BOUND_SHIFT) | Floorplan.CW_IN_ROOM;
+
+	/**
+	 * Writes the given floorplan in the binary format.
+	 * @param floorplan of a generated maze
+	 * @param width of the floorplan
+	 * @param height of the floorplan
+	 * @param out stream to write to
+	 * @param deflate true to deflate the bitmap if that makes it smaller, not worth it if the stream is compressed anyway
+	 * @throws IOException if writing fails or the floorplan does not follow the rules of a generated maze
+	 */
+	public static void write(Floorplan floorplan, int width, int height, DataOutputStream out, boolean deflate)
+			throws IOException {
+		final long[] bitmap = new long[(getBitCount(width, height) + 63) >>> 6];
+		final int southBits = (width - 1)*height;
+		final boolean visited = 0 != (floorplan.getValueOfCell(0, 0) & Floorplan.CW_VISITED);
+		int exitX = -1;
+		int exitY = -1;
+		int exitBit = 0;
+		ArrayList<int[]> rooms = new ArrayList<int[]>();
+		long roomCells = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				final int value = floorplan.getValueOfCell(x, y);
+				if (0 != (value & ~KNOWN_BITS) || visited != (0 != (value & Floorplan.CW_VISITED)))
+					throw new IOException("FloorplanCodec: unexpected flags at " + x + ", " + y);
+				// wallboards to the east and to the south are stored, the others are their counterparts
+				if (x + 1 < width && checkInterior(floorplan, x, y, 1, 0))
+					setBit(bitmap, x*height + y);
+				if (y + 1 < height && checkInterior(floorplan, x, y, 0, 1))
+					setBit(bitmap, southBits + x*(height - 1) + y);
+				// exterior wallboards are all up except for the exit
+				for (int bit = Floorplan.CW_TOP; bit <= Floorplan.CW_RIGHT; bit <<= 1) {
+					if (!isExterior(x, y, width, height, bit))
+						continue;
+					if (0 == (value & (bit << Floorplan.CW_BOUND_SHIFT)))
+						throw new IOException("FloorplanCodec: missing border at " + x + ", " + y);
+					if (0 != (value & bit))
+						continue;
+					if (0 != exitBit)
+						throw new IOException("FloorplanCodec: more than one exit");
+					exitX = x;
+					exitY = y;
+					exitBit = bit;
+				}
+				if (0 != (value & Floorplan.CW_IN_ROOM)) {
+					roomCells++;
+					if (!isInRoom(floorplan, x - 1, y, width, height) && !isInRoom(floorplan, x, y - 1, width, height))
+						rooms.add(findRoom(floorplan, x, y, width, height));
+				}
+			}
+		}
+		out.writeInt(MAGIC);
+		out.writeInt(width);
+		out.writeInt(height);
+		final byte[] bytes = new byte[8*bitmap.length];
+		ByteBuffer.wrap(bytes).asLongBuffer().put(bitmap);
+		// the bits of a perfect maze are close to random, deflate is kept only if it helps
+		final byte[] deflated = deflate ? deflate(bytes) : null;
+		final boolean useDeflated = null != deflated && deflated.length + 4 < bytes.length;
+		out.writeByte((visited ? FLAG_VISITED : 0) | (useDeflated ? FLAG_DEFLATED : 0));
+		out.writeInt(exitX);
+		out.writeInt(exitY);
+		out.writeInt(exitBit);
+		out.writeInt(rooms.size());
+		for (int[] room : rooms) {
+			roomCells -= (long) (room[2] - room[0] + 1)*(room[3] - room[1] + 1);
+			writeRoom(floorplan, room, out);
+		}
+		// rooms are separate rectangles, so together they cover all cells in rooms
+		if (0 != roomCells)
+			throw new IOException("FloorplanCodec: rooms are not rectangles");
+		if (useDeflated) {
+			out.writeInt(deflated.length);
+			out.write(deflated);
+		}
+		else {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a floorplan in the binary format of write.
+	 * @param in stream to read from
+	 * @return the floorplan, on the heap
+	 * @throws IOException if reading fails or the data is not a floorplan of this format
+	 */
+	public static Floorplan read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC)
+			throw new IOException("FloorplanCodec: unknown format");
+		final int width = in.readInt();
+		final int height = in.readInt();
+		if (width < 1 || width > Constants.MAX_DIMENSION || height < 1 || height > Constants.MAX_DIMENSION)
+			throw new IOException("FloorplanCodec: corrupt data");
+		final int flags = in.readUnsignedByte();
+		final int exitX = in.readInt();
+		final int exitY = in.readInt();
+		final int exitBit = in.readInt();
+		if (0 != exitBit && !isExterior(exitX, exitY, width, height, exitBit))
+			throw new IOException("FloorplanCodec: corrupt exit");
+		final int roomCount = in.readInt();
+		if (roomCount < 0)
+			throw new IOException("FloorplanCodec: corrupt data");
+		int[][] rooms = new int[roomCount][];
+		for (int i = 0; i < roomCount; i++) {
+			rooms[i] = readRoom(in, width, height);
+		}
+		final long[] bitmap = readBitmap(in, getBitCount(width, height), 0 != (flags & FLAG_DEFLATED));
+		HeapCellStorage cells = new HeapCellStorage(width, height);
+		decodeWallboards(bitmap, width, height, 0 != (flags & FLAG_VISITED), cells);
+		if (0 != exitBit)
+			cells.set(exitX, exitY, cells.get(exitX, exitY) & ~exitBit);
+		for (int[] room : rooms) {
+			decodeRoom(room, cells);
+		}
+		return new Floorplan(cells);
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	private static int getBitCount(int width, int height) {
+		return (width - 1)*height + width*(height - 1);
+	}
+
+	/**
+	 * Checks that the wallboard between (x,y) and (x+dx,y+dy) is the same on both sides
+	 * and that it is a border only on the perimeter of a room.
+	 * @return true if there is a wallboard
+	 */
+	private static boolean checkInterior(Floorplan floorplan, int x, int y, int dx, int dy) throws IOException {
+		final int bit = getBit(dx, dy);
+		final int opposite = getBit(-dx, -dy);
+		final int value = floorplan.getValueOfCell(x, y);
+		final int other = floorplan.getValueOfCell(x + dx, y + dy);
+		final boolean wall = 0 != (value & bit);
+		final boolean border = 0 != (value & (bit << Floorplan.CW_BOUND_SHIFT));
+		if (wall != (0 != (other & opposite)) || border != (0 != (other & (opposite << Floorplan.CW_BOUND_SHIFT))))
+			throw new IOException("FloorplanCodec: one sided wallboard at " + x + ", " + y);
+		// door candidates on the perimeter of a room are the only exceptions, see writeRoom
+		if (border && (value & Floorplan.CW_IN_ROOM) == (other & Floorplan.CW_IN_ROOM))
+			throw new IOException("FloorplanCodec: border outside of a room at " + x + ", " + y);
+		return wall;
+	}
+
+	private static boolean isExterior(int x, int y, int width, int height, int bit) {
+		switch (bit) {
+		case Floorplan.CW_TOP:
+			return 0 == y && 0 <= x && x < width;
+		case Floorplan.CW_BOT:
+			return height - 1 == y && 0 <= x && x < width;
+		case Floorplan.CW_LEFT:
+			return 0 == x && 0 <= y && y < height;
+		case Floorplan.CW_RIGHT:
+			return width - 1 == x && 0 <= y && y < height;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isInRoom(Floorplan floorplan, int x, int y, int width, int height) {
+		return 0 <= x && x < width && 0 <= y && y < height
+				&& 0 != (floorplan.getValueOfCell(x, y) & Floorplan.CW_IN_ROOM);
+	}
+
+	/**
+	 * Finds the extent of the room with the given upper left corner and checks
+	 * that it is a rectangle inside the maze with no other cell of a room around it.
+	 * @return the corners {rx, ry, rxl, ryl} as in Floorplan.markAreaAsRoom
+	 */
+	private static int[] findRoom(Floorplan floorplan, int rx, int ry, int width, int height) throws IOException {
+		int rxl = rx;
+		while (isInRoom(floorplan, rxl + 1, ry, width, height))
+			rxl++;
+		int ryl = ry;
+		while (isInRoom(floorplan, rx, ryl + 1, width, height))
+			ryl++;
+		// the wallboards around a room are inside the maze
+		if (rx < 1 || ry < 1 || rxl >= width - 1 || ryl >= height - 1)
+			throw new IOException("FloorplanCodec: room at " + rx + ", " + ry + " touches the exterior");
+		for (int x = rx - 1; x <= rxl + 1; x++) {
+			for (int y = ry - 1; y <= ryl + 1; y++) {
+				final boolean inside = rx <= x && x <= rxl && ry <= y && y <= ryl;
+				if (inside != isInRoom(floorplan, x, y, width, height))
+					throw new IOException("FloorplanCodec: room at " + rx + ", " + ry + " is not a rectangle");
+			}
+		}
+		return new int[] {rx, ry, rxl, ryl};
+	}
+
+	/**
+	 * Writes the corners of a room and its door candidates, the wallboards on its
+	 * perimeter that are not a border. A door candidate is given by its number
+	 * on the perimeter as in Floorplan.markAreaAsRoom.
+	 * Coordinates and numbers are below 2^16 for mazes up to Constants.MAX_DIMENSION.
+	 */
+	private static void writeRoom(Floorplan floorplan, int[] room, DataOutputStream out) throws IOException {
+		for (int corner : room) {
+			out.writeShort(corner);
+		}
+		final int[] position = new int[4];
+		int count = 0;
+		final int perimeter = getPerimeter(room);
+		for (int door = 0; door < perimeter; door++) {
+			getPerimeterWallboard(room, door, position);
+			if (!hasBorder(floorplan.getValueOfCell(position[0], position[1]), position[2], position[3]))
+				count++;
+		}
+		out.writeShort(count);
+		for (int door = 0; door < perimeter; door++) {
+			getPerimeterWallboard(room, door, position);
+			if (!hasBorder(floorplan.getValueOfCell(position[0], position[1]), position[2], position[3]))
+				out.writeShort(door);
+		}
+	}
+
+	/**
+	 * Reads a room as written by writeRoom.
+	 * @return the corners followed by the door candidates
+	 */
+	private static int[] readRoom(DataInputStream in, int width, int height) throws IOException {
+		final int rx = in.readUnsignedShort();
+		final int ry = in.readUnsignedShort();
+		final int rxl = in.readUnsignedShort();
+		final int ryl = in.readUnsignedShort();
+		// the wallboards around a room are inside the maze
+		if (rx < 1 || rx > rxl || rxl >= width - 1 || ry < 1 || ry > ryl || ryl >= height - 1)
+			throw new IOException("FloorplanCodec: corrupt room");
+		final int count = in.readUnsignedShort();
+		final int perimeter = 2*(rxl - rx + 1) + 2*(ryl - ry + 1);
+		if (count < 0 || count > perimeter)
+			throw new IOException("FloorplanCodec: corrupt room");
+		int[] room = new int[4 + count];
+		room[0] = rx;
+		room[1] = ry;
+		room[2] = rxl;
+		room[3] = ryl;
+		for (int i = 0; i < count; i++) {
+			room[4 + i] = in.readUnsignedShort();
+			if (room[4 + i] < 0 || room[4 + i] >= perimeter)
+				throw new IOException("FloorplanCodec: corrupt room");
+		}
+		return room;
+	}
+
+	/**
+	 * Marks the cells of a room and the borders on its perimeter except for its door candidates.
+	 */
+	private static void decodeRoom(int[] room, CellStorage cells) {
+		for (int x = room[0]; x <= room[2]; x++) {
+			for (int y = room[1]; y <= room[3]; y++) {
+				cells.set(x, y, cells.get(x, y) | Floorplan.CW_IN_ROOM);
+			}
+		}
+		final int[] position = new int[4];
+		final int perimeter = getPerimeter(room);
+		for (int door = 0; door < perimeter; door++) {
+			getPerimeterWallboard(room, door, position);
+			setBorder(cells, position, true);
+		}
+		for (int i = 4; i < room.length; i++) {
+			getPerimeterWallboard(room, room[i], position);
+			setBorder(cells, position, false);
+		}
+	}
+
+	private static int getPerimeter(int[] room) {
+		return 2*(room[2] - room[0] + 1) + 2*(room[3] - room[1] + 1);
+	}
+
+	/**
+	 * Gives the wallboard with the given number on the perimeter of a room,
+	 * numbered as in Floorplan.markAreaAsRoom: top and bottom first, then left and right.
+	 * @param position receives {x, y, dx, dy} of the cell inside the room and the direction
+	 */
+	private static void getPerimeterWallboard(int[] room, int door, int[] position) {
+		final int rw = room[2] - room[0] + 1;
+		final int rh = room[3] - room[1] + 1;
+		if (door < rw*2) {
+			position[0] = room[0] + door % rw;
+			position[1] = room[1] + ((door < rw) ? 0 : rh-1);
+			position[2] = 0;
+			position[3] = (door < rw) ? -1 : 1;
+		} else {
+			door -= rw*2;
+			position[0] = room[0] + ((door < rh) ? 0 : rw-1);
+			position[1] = room[1] + door % rh;
+			position[2] = (door < rh) ? -1 : 1;
+			position[3] = 0;
+		}
+	}
+
+	private static boolean hasBorder(int value, int dx, int dy) {
+		return 0 != (value & (getBit(dx, dy) << Floorplan.CW_BOUND_SHIFT));
+	}
+
+	/**
+	 * Sets or clears the border of a wallboard on both sides.
+	 */
+	private static void setBorder(CellStorage cells, int[] position, boolean border) {
+		final int x = position[0];
+		final int y = position[1];
+		final int dx = position[2];
+		final int dy = position[3];
+		setBits(cells, x, y, getBit(dx, dy) << Floorplan.CW_BOUND_SHIFT, border);
+		setBits(cells, x + dx, y + dy, getBit(-dx, -dy) << Floorplan.CW_BOUND_SHIFT, border);
+	}
+
+	private static void setBits(CellStorage cells, int x, int y, int bits, boolean on) {
+		final int value = cells.get(x, y);
+		cells.set(x, y, on ? (value | bits) : (value & ~bits));
+	}
+
+	/**
+	 * Sets the wallboards and exterior borders of all cells column by column from the bitmap.
+	 */
+	private static void decodeWallboards(long[] bitmap, int width, int height, boolean visited, CellStorage cells) {
+		final int southBits = (width - 1)*height;
+		for (int x = 0; x < width; x++) {
+			final int east = x*height;
+			final int south = southBits + x*(height - 1);
+			for (int y = 0; y < height; y++) {
+				int value = visited ? Floorplan.CW_VISITED : 0;
+				if (0 == x)
+					value |= Floorplan.CW_LEFT | (Floorplan.CW_LEFT << Floorplan.CW_BOUND_SHIFT);
+				else if (getBit(bitmap, east - height + y))
+					value |= Floorplan.CW_LEFT;
+				if (width - 1 == x)
+					value |= Floorplan.CW_RIGHT | (Floorplan.CW_RIGHT << Floorplan.CW_BOUND_SHIFT);
+				else if (getBit(bitmap, east + y))
+					value |= Floorplan.CW_RIGHT;
+				if (0 == y)
+					value |= Floorplan.CW_TOP | (Floorplan.CW_TOP << Floorplan.CW_BOUND_SHIFT);
+				else if (getBit(bitmap, south + y - 1))
+					value |= Floorplan.CW_TOP;
+				if (height - 1 == y)
+					value |= Floorplan.CW_BOT | (Floorplan.CW_BOT << Floorplan.CW_BOUND_SHIFT);
+				else if (getBit(bitmap, south + y))
+					value |= Floorplan.CW_BOT;
+				cells.set(x, y, value);
+			}
+		}
+	}
+
+	/**
+	 * Gives the bit for a wallboard in direction (dx,dy) as in Floorplan.getBit.
+	 */
+	private static int getBit(int dx, int dy) {
+		if (dx > 0)
+			return Floorplan.CW_RIGHT;
+		if (dx < 0)
+			return Floorplan.CW_LEFT;
+		return (dy > 0) ? Floorplan.CW_BOT : Floorplan.CW_TOP;
+	}
+
+	private static void setBit(long[] bitmap, int index) {
+		bitmap[index >>> 6] |= 1L << index;
+	}
+
+	private static boolean getBit(long[] bitmap, int index) {
+		return 0 != (bitmap[index >>> 6] & (1L << index));
+	}
+
+	private static byte[] deflate(byte[] bytes) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.setInput(bytes);
+		deflater.finish();
+		byte[] buffer = new byte[bytes.length + 64];
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == buffer.length)
+				buffer = Arrays.copyOf(buffer, 2*buffer.length);
+			length += deflater.deflate(buffer, length, buffer.length - length);
+		}
+		deflater.end();
+		return Arrays.copyOf(buffer, length);
+	}
+
+	private static long[] readBitmap(DataInputStream in, int bits, boolean deflated) throws IOException {
+		long[] bitmap = new long[(bits + 63) >>> 6];
+		byte[] bytes = new byte[8*bitmap.length];
+		if (!deflated) {
+			in.readFully(bytes);
+		}
+		else {
+			final int length = in.readInt();
+			if (length < 0)
+				throw new IOException("FloorplanCodec: corrupt data");
+			byte[] compressed = new byte[length];
+			in.readFully(compressed);
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(compressed);
+				int count = 0;
+				while (count < bytes.length && !inflater.finished()) {
+					final int inflated = inflater.inflate(bytes, count, bytes.length - count);
+					if (0 == inflated && (inflater.needsInput() || inflater.needsDictionary()))
+						break;
+					count += inflated;
+				}
+				if (count != bytes.length)
+					throw new IOException("FloorplanCodec: corrupt bitmap");
+			}
+			catch (DataFormatException e) {
+				throw new IOException("FloorplanCodec: corrupt bitmap", e);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+		ByteBuffer.wrap(bytes).asLongBuffer().get(bitmap);
+		return bitmap;
+	}
+}
@@ -0,0 +1,43 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+/**
+ * Default cell storage for a floorplan, a width x height
+ * integer matrix on the heap.
+ *
+ * @author Nicholas Wright
+ */
+public class HeapCellStorage implements CellStorage {
+	private final int[][] cells; // width x height array of cells, cells[width][height]
+
+	/**
+	 * Constructor for a storage with all values 0
+	 * @param w width, {@code 0 < w}
+	 * @param h height, {@code 0 < h}
+	 */
+	public HeapCellStorage(int w, int h) {
+		cells = new int[w][h];
+	}
+	/**
+	 * Constructor that directly uses the given matrix.
+	 * @param cells width x height matrix, shared not copied
+	 */
+	HeapCellStorage(int[][] cells) {
+		this.cells = cells;
+	}
+	@Override
+	public int getWidth() {
+		return cells.length;
+	}
+	@Override
+	public int getHeight() {
+		return cells[0].length;
+	}
+	@Override
+	public int get(int x, int y) {
+		return cells[x][y];
+	}
+	@Override
+	public void set(int x, int y, int value) {
+		cells[x][y] = value;
+	}
+}
@@ -0,0 +1,299 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds an axis-aligned k-d tree of walls as an alternative to the BSPBuilder.
+ *
+ * All walls of a maze lie on the grid lines between cells, so the tree only
+ * needs partitions on grid lines. A region of the maze is split at the middle grid line
+ * of its longer side until no wall is left inside the region, i.e. all remaining walls lie
+ * on the border of the region and face into it. Such walls can not hide each other,
+ * so a leaf can draw them in any order, which is what the FirstPersonView expects.
+ *
+ * Partitions do not depend on the walls, so there is no grading and no dot products.
+ * A wall that crosses a partition is not split into new Wall objects, each side keeps a
+ * span of it, i.e. its coordinates clipped to the region, that refers to the same Wall.
+ * A wall on the partition itself goes to the side that it faces.
+ * Each level of the tree takes linear time in the number of spans and there are
+ * about log(width*height) levels.
+ *
+ * The result is a CompiledBSPTree: a split at x = p is a branch with partition
+ * (p, y, 0, 1) whose right child holds the region x >= p, a split at y = p is a branch
+ * with partition (x, p, -1, 0) whose right child holds the region y >= p.
+ * So the FirstPersonView and the potentially visible set traverse both trees alike.
+ *
+ * @author Nicholas Wright
+ */
+public class KdTreeBuilder {
+	// fields of a span, SPAN_FIELDS values per span
+	private static final int START_X = 0;
+	private static final int START_Y = 1;
+	private static final int END_X = 2;
+	private static final int END_Y = 3;
+	private static final int WALL = 4; // index in the list of walls
+	private static final int SPAN_FIELDS = 5;
+
+	private final ArrayList<Wall> walls;
+	private final int unit;
+	private int[] spans;
+	private int spanCount;
+	// compiled tree, filled in depth first order
+	private int[] nodes;
+	private int nodeCount;
+	private int[] leafWalls;
+	private Wall[] leafWallObjects;
+	private int leafWallCount;
+
+	/**
+	 * Constructor
+	 * @param walls of the maze, each horizontal or vertical with coordinates on grid lines
+	 * @param unit distance between grid lines, usually Constants.MAP_UNIT
+	 */
+	public KdTreeBuilder(ArrayList<Wall> walls, int unit) {
+		assert unit > 0 : "KdTreeBuilder: grid unit must be positive";
+		this.walls = walls;
+		this.unit = unit;
+	}
+
+	/**
+	 * Builds the tree for the region from (0,0) to (width*unit, height*unit).
+	 * @param width of the maze in cells
+	 * @param height of the maze in cells
+	 * @return the compiled tree
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	public CompiledBSPTree build(int width, int height) throws InterruptedException {
+		final int n = walls.size();
+		assert n > 0 : "KdTreeBuilder: can't build a tree without walls";
+		spans = new int[n*SPAN_FIELDS];
+		spanCount = 0;
+		int[] ids = new int[n];
+		for (int i = 0; i < n; i++) {
+			Wall wall = walls.get(i);
+			assert (wall.getExtensionX() == 0) != (wall.getExtensionY() == 0)
+				: "KdTreeBuilder: wall must be horizontal or vertical";
+			ids[i] = addSpan(wall.getStartPositionX(), wall.getStartPositionY(),
+					wall.getEndPositionX(), wall.getEndPositionY(), i);
+		}
+		nodes = new int[n*CompiledBSPTree.NODE_FIELDS];
+		nodeCount = 0;
+		leafWalls = new int[n*CompiledBSPTree.WALL_FIELDS];
+		leafWallObjects = new Wall[n];
+		leafWallCount = 0;
+		buildNode(ids, ids.length, 0, 0, width*unit, height*unit);
+		CompiledBSPTree tree = new CompiledBSPTree(
+				Arrays.copyOf(nodes, nodeCount*CompiledBSPTree.NODE_FIELDS),
+				Arrays.copyOf(leafWalls, leafWallCount*CompiledBSPTree.WALL_FIELDS),
+				Arrays.copyOf(leafWallObjects, leafWallCount));
+		// release working memory
+		spans = null;
+		nodes = null;
+		leafWalls = null;
+		leafWallObjects = null;
+		return tree;
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Builds the subtree for the given spans and region. Adds nodes
+	 * in depth first order, the first node added is the root of the subtree.
+	 * Skips partitions where one side is empty, so the region of a node
+	 * may be smaller than the given one.
+	 * @param ids spans in the region, the array may be reused
+	 * @param count number of spans, at least 1
+	 * @param x0 lower x bound of the region
+	 * @param y0 lower y bound of the region
+	 * @param x1 upper x bound of the region
+	 * @param y1 upper y bound of the region
+	 * @return index of the root of the subtree
+	 */
+	private int buildNode(int[] ids, int count, int x0, int y0, int x1, int y1) throws InterruptedException {
+		while (true) {
+			if (!hasInnerSpan(ids, count, x0, y0, x1, y1))
+				return addLeaf(ids, count);
+			// split the longer side at its middle grid line, the region
+			// is larger than a single cell as it contains a span inside
+			final boolean vertical = (x1 - x0) >= (y1 - y0);
+			final int p = vertical ? x0 + ((x1 - x0) / unit / 2) * unit : y0 + ((y1 - y0) / unit / 2) * unit;
+			int[] low = new int[count];
+			int[] high = new int[count];
+			int lowCount = 0, highCount = 0;
+			for (int i = 0; i < count; i++) {
+				final int id = ids[i];
+				final int base = id*SPAN_FIELDS;
+				// coordinates across and along the partition
+				final int start = spans[base + (vertical ? START_X : START_Y)];
+				final int end = spans[base + (vertical ? END_X : END_Y)];
+				if (Math.max(start, end) <= p && (start != end || start < p)) {
+					low[lowCount++] = id;
+				}
+				else if (Math.min(start, end) >= p && (start != end || start > p)) {
+					high[highCount++] = id;
+				}
+				else if (start == end) {
+					// on the partition, a vertical wall with dy > 0 faces x > p,
+					// a horizontal wall with dx > 0 faces y < p, see Wall.getDir
+					final int along = spans[base + (vertical ? END_Y : END_X)]
+							- spans[base + (vertical ? START_Y : START_X)];
+					if ((along > 0) == vertical)
+						high[highCount++] = id;
+					else
+						low[lowCount++] = id;
+				}
+				else {
+					// crosses the partition, keep the part below p in this span
+					// and add a new span for the part above p
+					final int other = vertical ? spans[base + START_Y] : spans[base + START_X];
+					final int upper;
+					if (vertical)
+						upper = addSpan(p, other, Math.max(start, end), other, spans[base + WALL]);
+					else
+						upper = addSpan(other, p, other, Math.max(start, end), spans[base + WALL]);
+					if (start > end) {
+						// keep the direction of the wall
+						reverseSpan(upper);
+						spans[base + (vertical ? START_X : START_Y)] = p;
+					}
+					else
+						spans[base + (vertical ? END_X : END_Y)] = p;
+					low[lowCount++] = id;
+					high[highCount++] = upper;
+				}
+			}
+			if (0 == highCount) {
+				ids = low;
+				if (vertical) x1 = p; else y1 = p;
+				continue;
+			}
+			if (0 == lowCount) {
+				ids = high;
+				if (vertical) x0 = p; else y0 = p;
+				continue;
+			}
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			final int node = addNode();
+			final int base = node*CompiledBSPTree.NODE_FIELDS;
+			nodes[base + CompiledBSPTree.X] = vertical ? p : x0;
+			nodes[base + CompiledBSPTree.Y] = vertical ? y0 : p;
+			nodes[base + CompiledBSPTree.DX] = vertical ? 0 : -1;
+			nodes[base + CompiledBSPTree.DY] = vertical ? 1 : 0;
+			// the left child follows the node
+			if (vertical)
+				buildNode(low, lowCount, x0, y0, p, y1);
+			else
+				buildNode(low, lowCount, x0, y0, x1, p);
+			low = null;
+			final int right = nodeCount;
+			if (vertical)
+				buildNode(high, highCount, p, y0, x1, y1);
+			else
+				buildNode(high, highCount, x0, p, x1, y1);
+			// the bounding box of a branch covers both children
+			final int left = node + 1;
+			nodes[base + CompiledBSPTree.RIGHT] = right;
+			nodes[base + CompiledBSPTree.END] = nodeCount;
+			nodes[base + CompiledBSPTree.LOW_X] = Math.min(nodeField(left, CompiledBSPTree.LOW_X), nodeField(right, CompiledBSPTree.LOW_X));
+			nodes[base + CompiledBSPTree.LOW_Y] = Math.min(nodeField(left, CompiledBSPTree.LOW_Y), nodeField(right, CompiledBSPTree.LOW_Y));
+			nodes[base + CompiledBSPTree.HIGH_X] = Math.max(nodeField(left, CompiledBSPTree.HIGH_X), nodeField(right, CompiledBSPTree.HIGH_X));
+			nodes[base + CompiledBSPTree.HIGH_Y] = Math.max(nodeField(left, CompiledBSPTree.HIGH_Y), nodeField(right, CompiledBSPTree.HIGH_Y));
+			return node;
+		}
+	}
+
+	/**
+	 * Tells if any span lies inside the region, not on its border.
+	 */
+	private boolean hasInnerSpan(int[] ids, int count, int x0, int y0, int x1, int y1) {
+		for (int i = 0; i < count; i++) {
+			final int base = ids[i]*SPAN_FIELDS;
+			if (spans[base + START_X] == spans[base + END_X]) {
+				final int x = spans[base + START_X];
+				if (x0 < x && x < x1)
+					return true;
+			}
+			else {
+				final int y = spans[base + START_Y];
+				if (y0 < y && y < y1)
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a leaf with the given spans, its bounding box covers the spans.
+	 * @return index of the leaf
+	 */
+	private int addLeaf(int[] ids, int count) {
+		final int node = addNode();
+		final int base = node*CompiledBSPTree.NODE_FIELDS;
+		int lowX = Integer.MAX_VALUE, lowY = Integer.MAX_VALUE;
+		int highX = Integer.MIN_VALUE, highY = Integer.MIN_VALUE;
+		if (leafWallObjects.length < leafWallCount + count) {
+			int capacity = Math.max(2*leafWallObjects.length, leafWallCount + count);
+			leafWalls = Arrays.copyOf(leafWalls, capacity*CompiledBSPTree.WALL_FIELDS);
+			leafWallObjects = Arrays.copyOf(leafWallObjects, capacity);
+		}
+		nodes[base + CompiledBSPTree.RIGHT] = -1;
+		nodes[base + CompiledBSPTree.END] = node + 1;
+		nodes[base + CompiledBSPTree.FIRST_WALL] = leafWallCount;
+		for (int i = 0; i < count; i++) {
+			final int span = ids[i]*SPAN_FIELDS;
+			final Wall wall = walls.get(spans[span + WALL]);
+			final int target = leafWallCount*CompiledBSPTree.WALL_FIELDS;
+			leafWalls[target + CompiledBSPTree.START_X] = spans[span + START_X];
+			leafWalls[target + CompiledBSPTree.START_Y] = spans[span + START_Y];
+			leafWalls[target + CompiledBSPTree.END_X] = spans[span + END_X];
+			leafWalls[target + CompiledBSPTree.END_Y] = spans[span + END_Y];
+			leafWalls[target + CompiledBSPTree.COLOR] = CompiledBSPTree.packColor(wall.getColorRGB());
+			leafWalls[target + CompiledBSPTree.DISTANCE] = wall.getDistance();
+			leafWallObjects[leafWallCount++] = wall;
+			lowX = Math.min(lowX, Math.min(spans[span + START_X], spans[span + END_X]));
+			lowY = Math.min(lowY, Math.min(spans[span + START_Y], spans[span + END_Y]));
+			highX = Math.max(highX, Math.max(spans[span + START_X], spans[span + END_X]));
+			highY = Math.max(highY, Math.max(spans[span + START_Y], spans[span + END_Y]));
+		}
+		nodes[base + CompiledBSPTree.END_WALL] = leafWallCount;
+		nodes[base + CompiledBSPTree.LOW_X] = lowX;
+		nodes[base + CompiledBSPTree.LOW_Y] = lowY;
+		nodes[base + CompiledBSPTree.HIGH_X] = highX;
+		nodes[base + CompiledBSPTree.HIGH_Y] = highY;
+		return node;
+	}
+
+	private int addNode() {
+		if (nodes.length < (nodeCount + 1)*CompiledBSPTree.NODE_FIELDS)
+			nodes = Arrays.copyOf(nodes, 2*nodes.length);
+		return nodeCount++;
+	}
+
+	private int nodeField(int node, int field) {
+		return nodes[node*CompiledBSPTree.NODE_FIELDS + field];
+	}
+
+	private int addSpan(int startX, int startY, int endX, int endY, int wall) {
+		if (spans.length < (spanCount + 1)*SPAN_FIELDS)
+			spans = Arrays.copyOf(spans, 2*spans.length);
+		final int base = spanCount*SPAN_FIELDS;
+		spans[base + START_X] = startX;
+		spans[base + START_Y] = startY;
+		spans[base + END_X] = endX;
+		spans[base + END_Y] = endY;
+		spans[base + WALL] = wall;
+		return spanCount++;
+	}
+
+	private void reverseSpan(int span) {
+		final int base = span*SPAN_FIELDS;
+		int x = spans[base + START_X];
+		int y = spans[base + START_Y];
+		spans[base + START_X] = spans[base + END_X];
+		spans[base + START_Y] = spans[base + END_Y];
+		spans[base + END_X] = x;
+		spans[base + END_Y] = y;
+	}
+}
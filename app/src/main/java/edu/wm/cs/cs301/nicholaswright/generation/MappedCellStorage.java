@@ -0,0 +1,118 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Cell storage for a floorplan that keeps its values in a memory mapped
+ * file instead of the heap. This takes the floorplan, 4 bytes per cell,
+ * off the heap, but it does not raise the largest maze that can be
+ * played: the distance matrix (4 bytes per cell), the openings and
+ * atomic distances of the {@link ParallelBFS} (5 bytes per cell) and
+ * the arrays of the BSP tree are still allocated on the heap, so a maze
+ * that does not fit into the heap fails once its distances are computed.
+ *
+ * The cells are laid out as one integer per cell with index x*height+y.
+ * As a single mapping is limited to 2 GB, the file is mapped in
+ * fixed size chunks of {@link #CHUNK_CELLS} cells.
+ * All chunks are mapped when the storage is created, but mapping
+ * does not load anything: the operating system pages in the
+ * parts of the file that are accessed and can drop them again
+ * under memory pressure.
+ *
+ * A temporary file is deleted right after it has been mapped,
+ * the mapping stays valid and the space is released once the
+ * storage is garbage collected.
+ *
+ * @author Nicholas Wright
+ */
+public class MappedCellStorage implements CellStorage {
+	/**
+	 * Number of cells in a chunk, 2^22 cells take 16 MB
+	 */
+	static final int CHUNK_SHIFT = 22;
+	static final int CHUNK_CELLS = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_CELLS - 1;
+
+	private final int width;
+	private final int height;
+	/**
+	 * Mapped chunks of the file, each a view with CHUNK_CELLS integers,
+	 * the last chunk may be smaller
+	 */
+	private final IntBuffer[] chunks;
+
+	/**
+	 * Constructor, maps the given file and enlarges it as needed.
+	 * Existing content of the file is kept, new content is 0.
+	 * @param w width, {@code 0 < w}
+	 * @param h height, {@code 0 < h}
+	 * @param file is the file to map
+	 * @throws IOException if the file can not be created or mapped
+	 */
+	public MappedCellStorage(int w, int h, File file) throws IOException {
+		width = w;
+		height = h;
+		long cells = (long) w * h;
+		chunks = new IntBuffer[(int) ((cells + CHUNK_CELLS - 1) >>> CHUNK_SHIFT)];
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (raf.length() < 4 * cells)
+				raf.setLength(4 * cells);
+			FileChannel channel = raf.getChannel();
+			for (int i = 0; i < chunks.length; i++) {
+				long first = (long) i << CHUNK_SHIFT;
+				long size = Math.min(CHUNK_CELLS, cells - first);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, 4 * first, 4 * size)
+						.order(ByteOrder.nativeOrder()).asIntBuffer();
+			}
+		}
+		finally {
+			// the mappings remain valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Creates a storage in a temporary file in the default temporary
+	 * directory, which is the cache directory of the app on Android.
+	 * @param w width, {@code 0 < w}
+	 * @param h height, {@code 0 < h}
+	 * @return the new storage with all values 0
+	 * @throws IOException if the file can not be created or mapped
+	 */
+	public static MappedCellStorage createTemporary(int w, int h) throws IOException {
+		File file = File.createTempFile("floorplan", ".cells");
+		try {
+			return new MappedCellStorage(w, h, file);
+		}
+		finally {
+			// unlinking keeps the mapped content alive until it is unmapped
+			if (!file.delete())
+				file.deleteOnExit();
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	@Override
+	public int get(int x, int y) {
+		long index = (long) x * height + y;
+		return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) index & CHUNK_MASK);
+	}
+	@Override
+	public void set(int x, int y, int value) {
+		long index = (long) x * height + y;
+		chunks[(int) (index >>> CHUNK_SHIFT)].put((int) index & CHUNK_MASK, value);
+	}
+}
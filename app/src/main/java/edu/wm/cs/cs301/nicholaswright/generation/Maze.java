@@ -69,7 +69,7 @@ public interface Maze {
 	/**
 	 * Gets access to a tree of nodes for segments of wallboards which is
 	 * used for drawing the currently visible part.
-	 * @return the rootnode
+	 * @return the rootnode, null if the maze only has a compiled tree
 	 */
 	BSPNode getRootnode();
 
@@ -78,6 +78,19 @@ public interface Maze {
 	 * @param rootnode the rootnode to set
 	 */
 	void setRootnode(BSPNode rootnode);
+
+	/**
+	 * Gives the tree of nodes for segments of wallboards in its compiled
+	 * form with primitive arrays, which is faster to traverse for drawing.
+	 * @return the compiled tree for the current rootnode
+	 */
+	CompiledBSPTree getCompiledBSPTree();
+	/**
+	 * Sets the compiled tree for drawing without a tree of nodes,
+	 * the rootnode is null afterwards.
+	 * @param tree the compiled tree to set
+	 */
+	void setCompiledBSPTree(CompiledBSPTree tree);
 	/**
 	 * Tells if (x,y) coordinate is within range.
 	 * @param x is on the horizontal axis
@@ -130,4 +143,19 @@ public interface Maze {
 	 * @param y is on the vertical axis, {@code 0 <= y < height}
 	 */
 	public void setStartingPosition(int x, int y);
+	/**
+	 * Tells if the distances and the tree of nodes are available.
+	 * A maze that is loaded lazily provides its size, floorplan and
+	 * starting position first, distances and tree follow in the background.
+	 * Until then, getMazedists and getCompiledBSPTree give null and
+	 * the distance to the exit is not known.
+	 * @return true if the maze is complete, false while it is still loading
+	 */
+	boolean isLoaded();
+	/**
+	 * Waits until the distances and the tree of nodes are available.
+	 * @return true if the maze is complete, false if loading failed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	boolean waitUntilLoaded() throws InterruptedException;
 }
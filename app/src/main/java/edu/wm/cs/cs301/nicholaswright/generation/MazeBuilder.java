@@ -2,6 +2,8 @@ package edu.wm.cs.cs301.nicholaswright.generation;
 
 import android.util.Log;
 
+import java.io.IOException;
+
 import edu.wm.cs.cs301.nicholaswright.gui.Constants;
 
 
@@ -81,14 +83,41 @@ public class MazeBuilder implements Runnable {
 		// derive parameters
 		width = Constants.SKILL_X[skill];
 		height = Constants.SKILL_Y[skill];
+		expectedPartiters = Constants.SKILL_PARTCT[skill];
+		// explicit dimensions overrule the skill level table
+		if (order.getWidth() > 0 && order.getHeight() > 0) {
+			width = order.getWidth();
+			height = order.getHeight();
+			expectedPartiters = (int) Math.min(Integer.MAX_VALUE,
+					Math.max(expectedPartiters, (long) width * height * Constants.PARTCT_PER_CELL));
+		}
 		// only algorithm without rooms guarantees a perfect maze
 		// rooms can result in loops, so for a perfect maze, set room number to 0
 		rooms = order.isPerfect() ? 0 : Constants.SKILL_ROOMS[skill];
-		expectedPartiters = Constants.SKILL_PARTCT[skill];
 		// instantiate data structures
-		floorplan = new Floorplan(width,height) ;
+		floorplan = createFloorplan(width, height) ;
 		dists = new Distance(width,height) ;
 	}
+	/**
+	 * Creates the floorplan for a maze of the given size. Very large mazes
+	 * keep their floorplan in a memory mapped file to take its cells off
+	 * the heap. The distances and the BSP tree still live on the heap,
+	 * so this does not raise the heap limit for the maze size.
+	 * @param width of the maze
+	 * @param height of the maze
+	 * @return new floorplan
+	 */
+	private static Floorplan createFloorplan(int width, int height) {
+		if ((long) width * height >= Constants.MAPPED_FLOORPLAN_CELLS) {
+			try {
+				return new Floorplan(MappedCellStorage.createTemporary(width, height));
+			}
+			catch (IOException e) {
+				Log.w(TAG, "Can not map floorplan to a file, using the heap: " + e.getMessage());
+			}
+		}
+		return new Floorplan(width, height);
+	}
 	/**
 	 * Main method to run construction of a new maze in a thread of its own.
 	 * This method is called by the MazeFactory to generate a maze.
@@ -112,9 +141,17 @@ public class MazeBuilder implements Runnable {
 
 			final int colchange = random.nextIntWithinInterval(0, 255); // used in the constructor for Segments  class Seg
 			final BSPBuilder b = new BSPBuilder(order, dists, floorplan, width, height, colchange, expectedPartiters) ;
-			BSPNode root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
-			// it also internally checks for cancel requests
-			// and throws an interrupted exception if that happens
+			BSPNode root = null;
+			CompiledBSPTree kdTree = null;
+			if ((long) width * height >= Constants.KD_TREE_MIN_CELLS) {
+				// large mazes get a k-d tree, which is built much faster than the BSP tree
+				kdTree = b.generateKdTree();
+			}
+			else {
+				root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
+				// it also internally checks for cancel requests
+				// and throws an interrupted exception if that happens
+			}
 
 			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
 
@@ -124,7 +161,10 @@ public class MazeBuilder implements Runnable {
 			mazeConfig.setWidth(width);
 			mazeConfig.setFloorplan(floorplan);
 			mazeConfig.setMazedists(dists);
-			mazeConfig.setRootnode(root);
+			if (null != kdTree)
+				mazeConfig.setCompiledBSPTree(kdTree);
+			else
+				mazeConfig.setRootnode(root);
 			mazeConfig.setStartingPosition(startx, starty);
 			order.updateProgress(100); // Order interface promises to communicate 100% upon delivery
 			order.deliver(mazeConfig);
@@ -251,7 +291,10 @@ public class MazeBuilder implements Runnable {
 		final int firstx = x; 
 		final int firsty = y;
 		
-		CardinalDirection[][] origcds = new CardinalDirection[width][height]; 
+		// direction in which each cell was entered, stored as ordinal+1 with 0 for none,
+		// a byte per cell keeps this linear and small for large mazes
+		byte[][] origcds = new byte[width][height]; 
+		CardinalDirection[] cds = CardinalDirection.values();
 		CardinalDirection cd = CardinalDirection.East;
 		CardinalDirection origcd = cd;
 		
@@ -264,16 +307,16 @@ public class MazeBuilder implements Runnable {
 				if (origcd == cd) {				
 					if (x == firstx && y == firsty)
 						break; 			
-					int[] dxy = origcds[x][y].getDirection();
+					int[] dxy = cds[origcds[x][y]-1].getDirection();
 					x -= dxy[0];
 					y -= dxy[1];
-					if (null == origcds[x][y]) {
+					if (0 == origcds[x][y]) {
 						// Happens at starting position
 						assert (x == firstx && y == firsty) : "catching null elsewhere than starting position" ;
 						cd = cd.randomDirection() ;
 					}
 					else
-						cd = origcds[x][y] ;
+						cd = cds[origcds[x][y]-1] ;
 					cd = cd.rotateClockwise();
 					origcd = cd;
 				}
@@ -283,7 +326,7 @@ public class MazeBuilder implements Runnable {
 				x += dxy[0];
 				y += dxy[1];
 				floorplan.setCellAsVisited(x, y);
-				origcds[x][y] = cd;
+				origcds[x][y] = (byte) (cd.ordinal()+1);
 				cd = cd.randomDirection();
 				origcd = cd;
 			}
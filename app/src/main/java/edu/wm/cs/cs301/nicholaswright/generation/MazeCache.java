@@ -0,0 +1,390 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import edu.wm.cs.cs301.nicholaswright.gui.Constants;
+
+/**
+ * Two tier cache for generated mazes. The same order with the same seed
+ * always results in the same maze, so a maze that was generated before can
+ * be served from the cache instead of generating it again.
+ *
+ * The first tier keeps maze objects in memory, the second tier keeps mazes in files
+ * of a directory in a compact binary form: dimensions, starting position,
+ * floorplan as a bitmap of its wallboards, see FloorplanCodec, distances
+ * and the compiled tree, compressed with deflate.
+ * Both tiers are limited by size in bytes and evict the least recently used
+ * mazes first.
+ *
+ * Mazes are addressed by a key that contains all parameters that determine their
+ * content: builder, dimensions, rooms, perfect flag, seed and the format version.
+ * A new format version makes all stored files unreachable, they are evicted eventually.
+ *
+ * A game changes the maze it plays on: the seen flags of its walls and, with
+ * MazeContainer.deleteWallboard and addWallboard, its floorplan and distances.
+ * The cache therefore keeps a copy of its own of each maze and serves every request
+ * with a new copy that has its own floorplan, distances and walls and shares only
+ * the arrays of the compiled tree, which never change.
+ *
+ * Singleton like MazeData, the disk tier is enabled once a directory is set.
+ *
+ * @author Nicholas Wright
+ */
+public class MazeCache {
+	// for logging
+	private static final String TAG = "MazeCache";
+
+	/**
+	 * Version of the binary format, part of every key,
+	 * increase it with any change of the format or of the maze generation
+	 */
+	static final int FORMAT_VERSION = 2;
+	// tag for the binary format
+	private static final int MAGIC = 0x4d415a45; // "MAZE"
+	private static final String SUFFIX = ".maze";
+
+	// default limits
+	private static final long DEFAULT_MEMORY_BYTES = 32L << 20;
+	private static final long DEFAULT_DISK_BYTES = 64L << 20;
+
+	private static MazeCache instance;
+
+	private final long maxMemoryBytes;
+	private final long maxDiskBytes;
+	private File directory;
+	/**
+	 * Mazes in memory with their estimated size, in access order
+	 */
+	private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long memoryBytes;
+
+	private static class Entry {
+		final Maze maze;
+		final long bytes;
+
+		Entry(Maze maze, long bytes) {
+			this.maze = maze;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param directory for the disk tier, null for a cache in memory only
+	 * @param maxMemoryBytes limit for mazes in memory
+	 * @param maxDiskBytes limit for maze files in the directory
+	 */
+	public MazeCache(File directory, long maxMemoryBytes, long maxDiskBytes) {
+		this.directory = directory;
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.maxDiskBytes = maxDiskBytes;
+	}
+
+	/**
+	 * @return the cache shared by all maze factories, in memory only until a directory is set
+	 */
+	public static synchronized MazeCache getInstance() {
+		if (instance == null) {
+			instance = new MazeCache(null, DEFAULT_MEMORY_BYTES, DEFAULT_DISK_BYTES);
+		}
+		return instance;
+	}
+
+	/**
+	 * Enables the disk tier.
+	 * @param directory to store mazes in, created if necessary
+	 */
+	public synchronized void setDirectory(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Gives the key for the maze that the given order results in,
+	 * dimensions and rooms are derived as in MazeBuilder.buildOrder.
+	 * @param order for a maze
+	 * @param seed the random seed the maze is generated with
+	 * @return the key, also usable as a file name
+	 */
+	public static String getKey(Order order, int seed) {
+		final int skill = order.getSkillLevel();
+		int width = Constants.SKILL_X[skill];
+		int height = Constants.SKILL_Y[skill];
+		if (order.getWidth() > 0 && order.getHeight() > 0) {
+			width = order.getWidth();
+			height = order.getHeight();
+		}
+		final int rooms = order.isPerfect() ? 0 : Constants.SKILL_ROOMS[skill];
+		return "v" + FORMAT_VERSION + "_" + order.getBuilder() + "_" + width + "x" + height
+				+ "_r" + rooms + "_" + (order.isPerfect() ? "perfect" : "loops") + "_s" + seed;
+	}
+
+	/**
+	 * Tells if a maze is in memory or in a file, without reading
+	 * it or changing the order of eviction.
+	 * @param key of the maze, see getKey
+	 * @return true if get would find the maze, false otherwise
+	 */
+	public synchronized boolean contains(String key) {
+		if (memory.containsKey(key))
+			return true;
+		return null != directory && new File(directory, key + SUFFIX).isFile();
+	}
+
+	/**
+	 * Gets a maze from memory or from its file.
+	 * Every call gives a new maze object that the caller can change.
+	 * @param key of the maze, see getKey
+	 * @return the maze or null if it is not in the cache
+	 */
+	public synchronized Maze get(String key) {
+		Entry entry = memory.get(key);
+		if (null != entry) {
+			Log.v(TAG, "Memory hit for " + key);
+			return copy(entry.maze);
+		}
+		if (null == directory)
+			return null;
+		File file = new File(directory, key + SUFFIX);
+		if (!file.isFile())
+			return null;
+		try {
+			long start = System.currentTimeMillis();
+			Maze maze = read(file);
+			// keep track of the last use for the eviction
+			file.setLastModified(System.currentTimeMillis());
+			putInMemory(key, maze);
+			Log.v(TAG, "Disk hit for " + key + " in " + (System.currentTimeMillis() - start) + " ms");
+			return copy(maze);
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Can not read " + file + ", removing it: " + e.getMessage());
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Puts a copy of a maze into memory and the maze into its file.
+	 * Later changes to the given maze do not reach the cache.
+	 * @param key of the maze, see getKey
+	 * @param maze as delivered by a maze builder
+	 */
+	public synchronized void put(String key, Maze maze) {
+		putInMemory(key, copy(maze));
+		if (null == directory)
+			return;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			Log.w(TAG, "Can not create directory " + directory);
+			return;
+		}
+		File file = new File(directory, key + SUFFIX);
+		File temp = new File(directory, key + ".tmp");
+		try {
+			write(maze, temp);
+			// replace the file at once, a reader never sees a partial file
+			if (!temp.renameTo(file))
+				throw new IOException("can not rename " + temp);
+			evictFiles(file);
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Can not write " + file + ": " + e.getMessage());
+			temp.delete();
+		}
+	}
+
+	/**
+	 * @return the estimated number of bytes of all mazes in memory
+	 */
+	public synchronized long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	/**
+	 * Removes all mazes from memory, files are kept.
+	 */
+	public synchronized void clearMemory() {
+		memory.clear();
+		memoryBytes = 0;
+	}
+
+	/**
+	 * Writes the given maze in the binary format.
+	 * @param maze to write
+	 * @param out stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void write(Maze maze, DataOutputStream out) throws IOException {
+		final int width = maze.getWidth();
+		final int height = maze.getHeight();
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(width);
+		out.writeInt(height);
+		int[] start = maze.getStartingPosition();
+		out.writeInt(start[0]);
+		out.writeInt(start[1]);
+		// the file is deflated as a whole, the bitmap of the floorplan is not deflated separately
+		FloorplanCodec.write(maze.getFloorplan(), width, height, out, false);
+		Distance dists = maze.getMazedists();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				out.writeInt(dists.getDistanceValue(x, y));
+			}
+		}
+		maze.getCompiledBSPTree().writeTo(out);
+	}
+
+	/**
+	 * Reads a maze in the binary format of write.
+	 * The maze has a compiled tree only, no tree of BSPNodes.
+	 * @param in stream to read from
+	 * @return the maze
+	 * @throws IOException if reading fails or the data is not a maze of this format
+	 */
+	public static Maze read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+			throw new IOException("MazeCache: unknown format");
+		final int width = in.readInt();
+		final int height = in.readInt();
+		if (width < 1 || width > Constants.MAX_DIMENSION || height < 1 || height > Constants.MAX_DIMENSION)
+			throw new IOException("MazeCache: corrupt data");
+		final int startX = in.readInt();
+		final int startY = in.readInt();
+		Floorplan floorplan = FloorplanCodec.read(in);
+		int[][] dists = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				dists[x][y] = in.readInt();
+			}
+		}
+		CompiledBSPTree tree = CompiledBSPTree.readFrom(in);
+		MazeContainer maze = new MazeContainer();
+		maze.setWidth(width);
+		maze.setHeight(height);
+		maze.setFloorplan(floorplan);
+		maze.setMazedists(new Distance(dists));
+		maze.setCompiledBSPTree(tree);
+		maze.setStartingPosition(startX, startY);
+		return maze;
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Copies a maze such that changes to the copy do not reach the given maze.
+	 * The copy has a compiled tree only, no tree of BSPNodes.
+	 */
+	private static Maze copy(Maze maze) {
+		final int width = maze.getWidth();
+		int[][] source = maze.getMazedists().getAllDistanceValues();
+		int[][] dists = new int[width][];
+		for (int x = 0; x < width; x++) {
+			dists[x] = source[x].clone();
+		}
+		MazeContainer result = new MazeContainer();
+		result.setWidth(width);
+		result.setHeight(maze.getHeight());
+		result.setFloorplan(maze.getFloorplan().copy());
+		result.setMazedists(new Distance(dists));
+		result.setCompiledBSPTree(maze.getCompiledBSPTree().withOwnWalls());
+		int[] start = maze.getStartingPosition();
+		result.setStartingPosition(start[0], start[1]);
+		return result;
+	}
+
+	private void putInMemory(String key, Maze maze) {
+		long bytes = estimateBytes(maze);
+		if (bytes > maxMemoryBytes)
+			return;
+		Entry old = memory.put(key, new Entry(maze, bytes));
+		if (null != old)
+			memoryBytes -= old.bytes;
+		memoryBytes += bytes;
+		// evict least recently used mazes
+		Iterator<Entry> it = memory.values().iterator();
+		while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+			Entry eldest = it.next();
+			memoryBytes -= eldest.bytes;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Estimates the heap occupied by a maze: an int per cell for
+	 * floorplan and distances, arrays of the compiled tree, Wall objects
+	 * and the tree of BSPNodes, which is about as large as the compiled tree.
+	 */
+	private static long estimateBytes(Maze maze) {
+		CompiledBSPTree tree = maze.getCompiledBSPTree();
+		long cells = (long) maze.getWidth() * maze.getHeight();
+		long treeBytes = 4L * (tree.getNodeCount() * CompiledBSPTree.NODE_FIELDS
+				+ tree.getWallCount() * CompiledBSPTree.WALL_FIELDS);
+		long wallBytes = 64L * tree.getWallCount();
+		return 8 * cells + (null == maze.getRootnode() ? 1 : 2) * treeBytes + wallBytes;
+	}
+
+	/**
+	 * Deletes least recently used files until the files fit into the limit.
+	 * @param keep the file just written, its time may equal that of older files
+	 */
+	private void evictFiles(File keep) {
+		File[] files = directory.listFiles();
+		if (null == files)
+			return;
+		long total = 0;
+		for (File file : files) {
+			total += file.length();
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (int i = 0; i < files.length && total > maxDiskBytes; i++) {
+			if (files[i].equals(keep))
+				continue;
+			total -= files[i].length();
+			Log.v(TAG, "Evicting " + files[i].getName());
+			files[i].delete();
+		}
+	}
+
+	private static Maze read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new InflaterInputStream(new FileInputStream(file)), 1 << 16));
+		try {
+			return read(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void write(Maze maze, File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new DeflaterOutputStream(new FileOutputStream(file), new Deflater(Deflater.BEST_SPEED)), 1 << 16));
+		try {
+			write(maze, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+}
@@ -32,9 +32,9 @@ import edu.wm.cs.cs301.nicholaswright.gui.Constants;
 public class MazeContainer implements Maze {
 	// properties of the current maze
 	private int width; // width of maze
-	// range: Constants.SKILL_X[0] <= width && width <= Constants.SKILL_X[last])
+	// range: 1 <= width && width <= Constants.MAX_DIMENSION, for regular skill levels within Constants.SKILL_X
 	private int height; // height of maze
-	// range: Constants.SKILL_Y[0] <= width && width <= Constants.SKILL_Y[last])
+	// range: 1 <= height && height <= Constants.MAX_DIMENSION, for regular skill levels within Constants.SKILL_Y
 	// (width,height) must be consistent with corresponding settings in mazecells and mazedists
 	private Floorplan floorplan ; // maze as a matrix of cells which keep track of the location of wallboards
 	private Distance mazedists ; // a matrix with distance values for each cell towards the exit
@@ -44,10 +44,13 @@ public class MazeContainer implements Maze {
 	// and is also the exit position in mazedists
 	
 	private BSPNode rootnode ; // a binary tree type search data structure to quickly locate a subset of segments
+	private CompiledBSPTree compiledTree ; // compiled form of the rootnode, created on demand
 	// a segment is a continuous sequence of wallboards in vertical or horizontal direction
 	// a subset of segments need to be quickly identified for drawing
 	// the BSP tree partitions the set of all segments and provides a binary search tree for the partitions
 	
+	private DynamicDistance dynamicDistance ; // keeps mazedists consistent if wallboards change, created on demand
+	
 	private int[] start ; // the starting position (x,y) for the game
 	// this position should be in in range: 0 <= x < width, 0 <= y < height
 	// it should be consistent with mazedists.getStartPosition() 
@@ -55,6 +58,10 @@ public class MazeContainer implements Maze {
 	// to be fully initialized, we need all other fields being set consistently
 	private boolean fullyInitialized;
 	
+	// a maze that is loaded lazily gets mazedists and rootnode later, see startLoading
+	private volatile boolean loading;
+	private boolean loadingFailed; // guarded by this
+	
 	/**
 	 * Default constructor leaves object in an state that requires a series of set methods
 	 * to be called for proper initialization.
@@ -69,11 +76,10 @@ public class MazeContainer implements Maze {
 		fullyInitialized = false;
 	}
 	/**
-	 * @param width is the width of the maze, must conform with Constants.SKILL_X values
+	 * @param width is the width of the maze, {@code 1 <= width <= Constants.MAX_DIMENSION}
 	 */
 	public void setWidth(int width) {
-		assert(Constants.SKILL_X[0] <= width && 
-				width <= Constants.SKILL_X[Constants.SKILL_X.length-1]);
+		assert(1 <= width && width <= Constants.MAX_DIMENSION);
 		this.width = width;
 	}
 	/**
@@ -85,12 +91,11 @@ public class MazeContainer implements Maze {
 		return width;
 	}
 	/**
-	 * @param height is the height of the maze, must conform with Constants.SKILL_Y values
+	 * @param height is the height of the maze, {@code 1 <= height <= Constants.MAX_DIMENSION}
 	 */
 	public void setHeight(int height) {
 		// check if value is in range of values
-		assert(Constants.SKILL_Y[0] <= height && 
-				height <= Constants.SKILL_Y[Constants.SKILL_Y.length-1]);	
+		assert(1 <= height && height <= Constants.MAX_DIMENSION);	
 		this.height = height;
 	}
 	/**
@@ -118,6 +123,7 @@ public class MazeContainer implements Maze {
 	 */
 	public void setFloorplan(Floorplan floorplan) {
 		this.floorplan = floorplan;
+		dynamicDistance = null;
 	}
 
 	/**
@@ -137,12 +143,13 @@ public class MazeContainer implements Maze {
 	 */
 	public void setMazedists(Distance mazedists) {
 		this.mazedists = mazedists;
+		dynamicDistance = null;
 	}
 
 	/**
 	 * Gives the rootnode for the tree of BSPnodes.
 	 * Warning, returns direct access to internal field.
-	 * @return the rootnode
+	 * @return the rootnode, null if the maze only has a compiled tree
 	 */
 	public BSPNode getRootnode() {
 		assert(isOperational()) : 
@@ -154,8 +161,32 @@ public class MazeContainer implements Maze {
 	 * Sets the root for the tree of BSPnodes
 	 * @param rootnode the rootnode to set
 	 */
-	public void setRootnode(BSPNode rootnode) {
+	public synchronized void setRootnode(BSPNode rootnode) {
 		this.rootnode = rootnode;
+		compiledTree = null;
+	}
+
+	/**
+	 * Gives the compiled form of the tree of BSPnodes,
+	 * compiles it on first access.
+	 * @return the compiled tree, null while the maze is still loading
+	 */
+	public synchronized CompiledBSPTree getCompiledBSPTree() {
+		assert(isOperational()) : 
+			"accessing content before object is fully initialized!";
+		if (null == compiledTree && !loading)
+			compiledTree = CompiledBSPTree.compile(rootnode);
+		return compiledTree;
+	}
+
+	/**
+	 * Sets the compiled tree directly, e.g. a k-d tree from the KdTreeBuilder.
+	 * There is no tree of BSPnodes for it, so the rootnode is set to null.
+	 * @param tree the compiled tree to set
+	 */
+	public synchronized void setCompiledBSPTree(CompiledBSPTree tree) {
+		rootnode = null;
+		compiledTree = tree;
 	}
 	/**
 	 * Tells if given (x,y) position is valid, i.e. within legal range of values
@@ -175,6 +206,7 @@ public class MazeContainer implements Maze {
 	public int getDistanceToExit(int x, int y) {
 		assert(isOperational()) : 
 			"accessing content before object is fully initialized!";
+		assert(!loading) : "accessing distances before they are loaded!";
 		return mazedists.getDistanceValue(x, y) ;
 	}
 	/**
@@ -226,6 +258,43 @@ public class MazeContainer implements Maze {
 		return (getDistanceToExit(x, y) > dnext) ? result : null;
 	}
 
+	/**
+	 * Deletes an internal wallboard while the maze is in use, e.g. for a 
+	 * dynamic maze where walls can be broken down. 
+	 * Distance values are updated only for the cells that get closer
+	 * to the exit, so the cost does not depend on the size of the maze.
+	 * @param wallboard is an internal wallboard, both adjacent cells must be inside the maze
+	 * @return the number of cells whose distance to the exit changed
+	 */
+	public int deleteWallboard(Wallboard wallboard) {
+		assert(isOperational()) : 
+			"accessing content before object is fully initialized!";
+		assert isValidPosition(wallboard.getNeighborX(), wallboard.getNeighborY()) : "Not an internal wallboard";
+		return getDynamicDistance().deleteWallboard(wallboard);
+	}
+	/**
+	 * Adds an internal wallboard while the maze is in use.
+	 * Distance values are updated only for the cells whose shortest path
+	 * to the exit went through the new wallboard.
+	 * @param wallboard is an internal wallboard, both adjacent cells must be inside the maze
+	 * @return the number of cells whose distance to the exit got recomputed
+	 */
+	public int addWallboard(Wallboard wallboard) {
+		assert(isOperational()) : 
+			"accessing content before object is fully initialized!";
+		assert isValidPosition(wallboard.getNeighborX(), wallboard.getNeighborY()) : "Not an internal wallboard";
+		return getDynamicDistance().addWallboard(wallboard);
+	}
+	/**
+	 * Provides the incremental distance structure for the current
+	 * floorplan and distance matrix, creates it on first use.
+	 */
+	private DynamicDistance getDynamicDistance() {
+		if (null == dynamicDistance)
+			dynamicDistance = new DynamicDistance(floorplan, mazedists);
+		return dynamicDistance;
+	}
+
 	/**
 	 * Provides the (x,y) starting position.
 	 * The starting position is typically chosen to by farthest away from the exit.
@@ -257,6 +326,54 @@ public class MazeContainer implements Maze {
 		start[0] = x ;
 		start[1] = y ;
 	}
+	/**
+	 * Marks the maze as loading: width, height, floorplan and starting position
+	 * are set and can be used, the distances and the tree of BSPnodes
+	 * follow with {@link #finishLoading(Distance, BSPNode) finishLoading}.
+	 */
+	public synchronized void startLoading() {
+		loading = true;
+		loadingFailed = false;
+	}
+	/**
+	 * Installs the distances and the tree of BSPnodes of a maze that is loading
+	 * and wakes up threads that wait for them.
+	 * @param mazedists the distances to set, must be not null
+	 * @param rootnode the rootnode to set, must be not null
+	 */
+	public synchronized void finishLoading(Distance mazedists, BSPNode rootnode) {
+		setMazedists(mazedists);
+		this.rootnode = rootnode;
+		compiledTree = null;
+		// set last, a thread that sees the maze as loaded sees its content
+		loading = false;
+		notifyAll();
+	}
+	/**
+	 * Tells threads that wait for a maze that is loading that it
+	 * will not be complete, the maze stays without distances and tree.
+	 */
+	public synchronized void failLoading() {
+		loadingFailed = true;
+		notifyAll();
+	}
+	/**
+	 * Tells if distances and tree of BSPnodes are available.
+	 * @return false while the maze is loading, true otherwise
+	 */
+	public boolean isLoaded() {
+		return !loading;
+	}
+	/**
+	 * Waits until a maze that is loading is complete or loading failed.
+	 * @return true if the maze is complete, false if loading failed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized boolean waitUntilLoaded() throws InterruptedException {
+		while (loading && !loadingFailed)
+			wait();
+		return !loading;
+	}
 	/**
 	 * Checks if object is fully initialized and in a valid state.
 	 * The object creation relies on a sequence of set methods being called,
@@ -268,17 +385,22 @@ public class MazeContainer implements Maze {
 		if (fullyInitialized) {
 			return true; // was checked before
 		}
-		// check width and height, range of values determined by skill level
-		// Constants class
-		int last = Constants.SKILL_X.length-1;
-		if (!(Constants.SKILL_X[0] <= width && width <= Constants.SKILL_X[last])) {
+		// check width and height, range of values determined by 
+		// Constants class, large mazes can exceed the skill level table
+		if (!(1 <= width && width <= Constants.MAX_DIMENSION)) {
 			return false;
 		}
-		if (!(Constants.SKILL_Y[0] <= height && height <= Constants.SKILL_Y[last])) {
+		if (!(1 <= height && height <= Constants.MAX_DIMENSION)) {
 			return false;
 		}
-		// check existence of cells, distances, bsp tree and starting position
-		if (null == floorplan || null == mazedists || null == rootnode || null == start)
+		// check existence of cells, distances, bsp tree and starting position,
+		// large mazes may only have the compiled form of the tree
+		if (null == floorplan || null == start)
+			return false;
+		// a maze that is still loading has no distances and tree yet
+		if (loading)
+			return true;
+		if (null == mazedists || (null == rootnode && null == compiledTree))
 			return false;
 		// the starting position must be 
 		fullyInitialized = true;
@@ -3,6 +3,8 @@ package edu.wm.cs.cs301.nicholaswright.generation;
 
 import android.util.Log;
 
+import edu.wm.cs.cs301.nicholaswright.gui.Constants;
+
 /**
  * This class encapsulates how a maze is generated. 
  * It takes orders to produce a maze, delegates it to the matching maze builder 
@@ -23,6 +25,10 @@ public class MazeFactory implements Factory {
 	private MazeBuilder builder;
 	// 
 	private Thread buildThread; // computations are performed in own separated thread with this.run()
+	// previously generated mazes, served without running a builder
+	private MazeCache cache = MazeCache.getInstance();
+	// background generation of mazes that are likely ordered next
+	private MazePrefetcher prefetcher = MazePrefetcher.getInstance();
 	
 	//////////////////////// Constructor ////////////////////////////////////////
 	/**
@@ -50,9 +56,7 @@ public class MazeFactory implements Factory {
 		// idle, so accept order
 		currentOrder = order;
 
-		// get the seed value from the order and set the random seed
-		int seed = order.getSeed();
-		SingleRandom.setSeed(seed);
+		// the seed value from the order is set on the build thread, see buildOrder
 
 		// set builder according to order
 		switch (order.getBuilder()) {
@@ -65,7 +69,15 @@ public class MazeFactory implements Factory {
 			buildOrder();
 			break;
 		case Eller:
-			builder = deterministic? new MazeBuilderEller(true) : new MazeBuilderEller();
+			// Eller's set bookkeeping grows with all processed cells,
+			// it does not scale to mazes beyond the skill level table,
+			// such orders are built with DFS instead of leaving the caller without a maze
+			if (isLargeMaze(order)) {
+				Log.w(TAG, "MazeFactory.order: Eller's algorithm does not support large mazes, building with DFS");
+				builder = deterministic? new MazeBuilder(true) : new MazeBuilder();
+			}
+			else
+				builder = deterministic? new MazeBuilderEller(true) : new MazeBuilderEller();
 			buildOrder();
 			break;
 		default:
@@ -104,6 +116,23 @@ public class MazeFactory implements Factory {
 		currentOrder = null;
 	}
 	
+	/**
+	 * Sets the cache to look up and store mazes, null to always generate mazes.
+	 * @param cache for mazes
+	 */
+	public void setCache(MazeCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets the prefetcher that has to stop before this factory builds a maze,
+	 * null if the factory does not share the random number generator with one.
+	 * @param prefetcher for mazes
+	 */
+	void setPrefetcher(MazePrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
 	/**
 	 * returns the instance of the builder. order() should be called first
 	 */
@@ -112,6 +141,16 @@ public class MazeFactory implements Factory {
 	}
 	
 	///////////////////////// private methods ///////////////////////////////////
+	/**
+	 * Tells if the order asks for explicit dimensions that exceed the
+	 * largest maze of the skill level table
+	 * @param order
+	 * @return true if the maze has more cells than the largest skill level
+	 */
+	private static boolean isLargeMaze(Order order) {
+		int last = Constants.SKILL_X.length-1;
+		return (long) order.getWidth() * order.getHeight() > Constants.SKILL_X[last] * Constants.SKILL_Y[last];
+	}
 	/**
 	 * Provide the builder with necessary input and start its execution
 	 */
@@ -121,8 +160,86 @@ public class MazeFactory implements Factory {
 			return;
 		}
 		Log.v(TAG, "MazeFactory.buildOrder: started") ;
-		builder.buildOrder(currentOrder);
-		buildThread = new Thread(builder);
+		final Order order = currentOrder;
+		// a deterministic builder resets the seed to its own fixed value
+		final int seed = deterministic ? builder.RANDOM_SEED : order.getSeed();
+		final MazeBuilder mazeBuilder = builder;
+		final MazePrefetcher mazePrefetcher = prefetcher;
+		// mazes beyond the mapped floorplan threshold are too large to keep
+		final MazeCache mazeCache = ((long) mazeWidth(order) * mazeHeight(order) < Constants.MAPPED_FLOORPLAN_CELLS) ? cache : null;
+		final String key = MazeCache.getKey(order, seed);
+		mazeBuilder.buildOrder((null == mazeCache) ? order : new CachingOrder(order, mazeCache, key));
+		buildThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				// builders share the random number generator, so a prefetch must
+				// stop before the seed is set, unless it builds this very maze
+				if (null != mazePrefetcher)
+					mazePrefetcher.release(key);
+				SingleRandom.setSeed(seed);
+				Maze maze = (null == mazeCache) ? null : mazeCache.get(key);
+				if (null != maze) {
+					order.updateProgress(100);
+					order.deliver(maze);
+					return;
+				}
+				mazeBuilder.run();
+			}
+		});
 		buildThread.start();
 	}
+	private static int mazeWidth(Order order) {
+		return (order.getWidth() > 0 && order.getHeight() > 0) ? order.getWidth() : Constants.SKILL_X[order.getSkillLevel()];
+	}
+	private static int mazeHeight(Order order) {
+		return (order.getWidth() > 0 && order.getHeight() > 0) ? order.getHeight() : Constants.SKILL_Y[order.getSkillLevel()];
+	}
+
+	/**
+	 * Passes an order to the builder and puts the delivered maze into the cache.
+	 */
+	static class CachingOrder implements Order {
+		private final Order order;
+		private final MazeCache cache;
+		private final String key;
+
+		CachingOrder(Order order, MazeCache cache, String key) {
+			this.order = order;
+			this.cache = cache;
+			this.key = key;
+		}
+		@Override
+		public int getSkillLevel() {
+			return order.getSkillLevel();
+		}
+		@Override
+		public int getWidth() {
+			return order.getWidth();
+		}
+		@Override
+		public int getHeight() {
+			return order.getHeight();
+		}
+		@Override
+		public Builder getBuilder() {
+			return order.getBuilder();
+		}
+		@Override
+		public boolean isPerfect() {
+			return order.isPerfect();
+		}
+		@Override
+		public int getSeed() {
+			return order.getSeed();
+		}
+		@Override
+		public void deliver(Maze mazeConfig) {
+			order.deliver(mazeConfig);
+			cache.put(key, mazeConfig);
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			order.updateProgress(percentage);
+		}
+	}
 }
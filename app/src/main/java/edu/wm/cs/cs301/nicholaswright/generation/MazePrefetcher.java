@@ -0,0 +1,263 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Order.Builder;
+import edu.wm.cs.cs301.nicholaswright.gui.Constants;
+
+/**
+ * Generates the mazes that are likely ordered next in the background,
+ * while the current maze is played. Guesses are a maze of the same builder
+ * at the same skill level and at the next skill level. Each guess gets
+ * its seed in advance, the seed is reserved here until the next order
+ * for a new maze of that builder and skill level takes it.
+ *
+ * Mazes are built at low priority on a worker thread and go into the MazeCache,
+ * where the MazeFactory finds them once the maze is actually ordered.
+ * Builders share the random number generator, so the MazeFactory releases the
+ * prefetcher before it builds a maze: a prefetch of the very same maze is completed,
+ * any other prefetch is cancelled.
+ *
+ * @author Nicholas Wright
+ */
+public class MazePrefetcher {
+	// for logging
+	private static final String TAG = "MazePrefetcher";
+
+	private static MazePrefetcher instance;
+
+	private final MazeCache cache;
+	// seeds reserved for the next new maze, by builder and skill level
+	private final HashMap<String, Integer> seeds = new HashMap<String, Integer>();
+	private final Random random = new Random();
+	// worker thread that builds the guesses one after the other
+	private Thread worker;
+	// key of the maze that is currently built, null if none
+	private String buildingKey;
+	// true if the worker stops after the current maze
+	private boolean stopping;
+
+	/**
+	 * Guess for the next order, a maze of the skill level table that is not perfect.
+	 */
+	private static class Guess implements Order {
+		private final Builder builder;
+		private final int skill;
+		private final int seed;
+
+		Guess(Builder builder, int skill, int seed) {
+			this.builder = builder;
+			this.skill = skill;
+			this.seed = seed;
+		}
+		@Override
+		public int getSkillLevel() {
+			return skill;
+		}
+		@Override
+		public int getWidth() {
+			return 0;
+		}
+		@Override
+		public int getHeight() {
+			return 0;
+		}
+		@Override
+		public Builder getBuilder() {
+			return builder;
+		}
+		@Override
+		public boolean isPerfect() {
+			return false;
+		}
+		@Override
+		public void deliver(Maze mazeConfig) {
+			// the factory puts the maze into the cache
+		}
+		@Override
+		public void updateProgress(int percentage) {
+		}
+		@Override
+		public int getSeed() {
+			return seed;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param cache to put prefetched mazes into
+	 */
+	public MazePrefetcher(MazeCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @return the prefetcher shared by all maze factories, uses the shared cache
+	 */
+	public static synchronized MazePrefetcher getInstance() {
+		if (instance == null) {
+			instance = new MazePrefetcher(MazeCache.getInstance());
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts to build the mazes that are likely ordered after the given one,
+	 * cancels any prefetch in progress.
+	 * @param builder of the current maze
+	 * @param skill level of the current maze
+	 */
+	public void prefetch(Builder builder, int skill) {
+		cancel();
+		if (null == createBuilder(builder)) {
+			Log.v(TAG, "No prefetch for algorithm " + builder);
+			return;
+		}
+		final ArrayList<Guess> guesses = new ArrayList<Guess>();
+		synchronized (this) {
+			for (int level = skill; level <= skill+1 && level < Constants.SKILL_X.length; level++) {
+				guesses.add(new Guess(builder, level, reserveSeed(builder, level)));
+			}
+			stopping = false;
+			worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					build(guesses);
+				}
+			});
+			worker.setPriority(Thread.MIN_PRIORITY);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Takes the seed that was reserved for a new maze of the given builder
+	 * and skill level. The maze of that seed may already be in the cache.
+	 * @param builder of the order
+	 * @param skill level of the order
+	 * @return the seed, -1 if there is none
+	 */
+	public synchronized int takeSeed(Builder builder, int skill) {
+		Integer seed = seeds.remove(getSeedKey(builder, skill));
+		return (null == seed) ? -1 : seed;
+	}
+
+	/**
+	 * Makes way for a maze factory to build the maze of the given key.
+	 * Waits for a prefetch of that maze to complete, cancels any other prefetch.
+	 * @param key of the maze about to be built, see MazeCache.getKey
+	 */
+	public void release(String key) {
+		Thread thread;
+		synchronized (this) {
+			if (null == worker || Thread.currentThread() == worker)
+				return;
+			thread = worker;
+			if (key.equals(buildingKey)) {
+				Log.v(TAG, "Completing prefetch of " + key);
+				stopping = true;
+			}
+			else {
+				stop();
+			}
+		}
+		join(thread);
+	}
+
+	/**
+	 * Cancels a prefetch in progress and waits for the worker thread to end.
+	 */
+	public void cancel() {
+		Thread thread;
+		synchronized (this) {
+			if (null == worker)
+				return;
+			thread = worker;
+			stop();
+		}
+		join(thread);
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Builds all guesses that are not in the cache yet, runs on the worker thread.
+	 * The builder runs on the worker thread as well, such that the
+	 * random number generator is free once the worker has ended.
+	 */
+	private void build(ArrayList<Guess> guesses) {
+		for (Guess guess : guesses) {
+			final String key = MazeCache.getKey(guess, guess.getSeed());
+			synchronized (this) {
+				if (stopping || Thread.currentThread() != worker)
+					break;
+				if (cache.contains(key))
+					continue;
+				buildingKey = key;
+			}
+			Log.v(TAG, "Prefetching " + key);
+			MazeBuilder builder = createBuilder(guess.getBuilder());
+			builder.buildOrder(new MazeFactory.CachingOrder(guess, cache, key));
+			SingleRandom.setSeed(guess.getSeed());
+			// stops with an interrupt
+			builder.run();
+		}
+		synchronized (this) {
+			if (Thread.currentThread() == worker) {
+				worker = null;
+				buildingKey = null;
+			}
+		}
+	}
+
+	/**
+	 * Stops the worker, needs the lock.
+	 */
+	private void stop() {
+		Log.v(TAG, "Cancelling prefetch of " + buildingKey);
+		stopping = true;
+		worker.interrupt();
+		worker = null;
+		buildingKey = null;
+	}
+
+	private static MazeBuilder createBuilder(Builder builder) {
+		switch (builder) {
+		case DFS:
+			return new MazeBuilder();
+		case Prim:
+			return new MazeBuilderPrim();
+		case Eller:
+			return new MazeBuilderEller();
+		default:
+			return null;
+		}
+	}
+
+	private static void join(Thread thread) {
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private int reserveSeed(Builder builder, int skill) {
+		String key = getSeedKey(builder, skill);
+		Integer seed = seeds.get(key);
+		if (null == seed) {
+			seed = random.nextInt(Integer.MAX_VALUE);
+			seeds.put(key, seed);
+		}
+		return seed;
+	}
+
+	private static String getSeedKey(Builder builder, int skill) {
+		return builder + "_" + skill;
+	}
+}
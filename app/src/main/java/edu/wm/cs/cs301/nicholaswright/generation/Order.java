@@ -14,6 +14,20 @@ public interface Order {
 	 * Gives the required skill level, range of values 0,1,2,...,15
 	 */
 	int getSkillLevel() ;
+	/**
+	 * Gives an explicit width for the maze, used for large mazes
+	 * beyond the dimensions of the skill level table in Constants.
+	 * The skill level still determines the number of rooms.
+	 * @return width with {@code 1 <= width <= Constants.MAX_DIMENSION},
+	 * or 0 to derive the width from the skill level
+	 */
+	int getWidth() ;
+	/**
+	 * Gives an explicit height for the maze, see {@link #getWidth()}.
+	 * @return height with {@code 1 <= height <= Constants.MAX_DIMENSION},
+	 * or 0 to derive the height from the skill level
+	 */
+	int getHeight() ;
 	/** 
 	 * Gives the requested builder algorithm, possible values 
 	 * are listed in the Builder enum type.
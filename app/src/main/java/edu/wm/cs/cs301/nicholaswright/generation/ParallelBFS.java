@@ -0,0 +1,259 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Level synchronous breadth first search that computes distance values
+ * for very large mazes with the help of a fork/join pool.
+ *
+ * The floorplan is first flattened into one byte per cell that encodes
+ * the directions in which a neighbor can be reached. The search then
+ * expands one distance level at a time: the current frontier is split
+ * into slices that are processed in parallel, each slice collects the
+ * newly reached cells in its own buffer, and the buffers are concatenated
+ * into the next frontier. A cell is claimed by exactly one slice through an
+ * atomic compare-and-set on its distance value.
+ *
+ * As every cell receives the number of the level at which it is first reached,
+ * the result is identical to the one of the sequential computation in
+ * {@link Distance}: the exit has distance 1, unreachable cells
+ * keep {@link Distance#INFINITY}.
+ *
+ * @author Nicholas Wright
+ */
+final class ParallelBFS {
+	/**
+	 * Number of frontier cells below which a slice is processed
+	 * by a single task without further splitting
+	 */
+	private static final int GRAIN = 4096;
+	/**
+	 * Number of columns flattened or copied by a single task
+	 */
+	private static final int COLUMN_GRAIN = 64;
+	/**
+	 * Distance value for cells that have not been reached yet
+	 */
+	private static final int UNVISITED = 0;
+
+	private final int width;
+	private final int height;
+	/**
+	 * Bit i is set if the neighbor in direction CardinalDirection.values()[i]
+	 * is inside the maze and not separated by a wallboard, index x*height+y
+	 */
+	private final byte[] openings;
+	/**
+	 * Distance values during the search, index x*height+y,
+	 * entries are UNVISITED before and after each search
+	 */
+	private final AtomicIntegerArray dist;
+	/**
+	 * Offsets in the flat index for each of the four directions
+	 */
+	private final int[] offsets;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor, flattens the given floorplan.
+	 * @param floorplan with information on wallboards, read only
+	 * @param width of the maze
+	 * @param height of the maze
+	 */
+	ParallelBFS(Floorplan floorplan, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.openings = new byte[width*height];
+		this.dist = new AtomicIntegerArray(width*height);
+		this.pool = ForkJoinPool.commonPool();
+		CardinalDirection[] cds = CardinalDirection.values();
+		offsets = new int[cds.length];
+		for (int i = 0; i < cds.length; i++) {
+			int[] d = cds[i].getDirection();
+			offsets[i] = d[0]*height + d[1];
+		}
+		pool.invoke(new Flatten(floorplan, 0, width));
+	}
+
+	/**
+	 * Computes distances towards the given position and stores them into dists.
+	 * @param dists matrix of dimension width x height to fill in
+	 * @param ax x coordinate of the position with distance 1
+	 * @param ay y coordinate of the position with distance 1
+	 */
+	void computeDists(int[][] dists, int ax, int ay) {
+		// all entries of dist are 0 (unvisited) at this point
+		int[] frontier = { ax*height + ay };
+		int size = 1;
+		dist.set(frontier[0], 1);
+		int level = 1;
+		while (size > 0) {
+			level++;
+			Chunk chunks = pool.invoke(new Expand(frontier, 0, size, level));
+			// concatenate per task buffers into the next frontier
+			int total = 0;
+			for (Chunk c = chunks; c != null; c = c.next) {
+				total += c.size;
+			}
+			if (frontier.length < total)
+				frontier = new int[Math.max(total, 2*frontier.length)];
+			size = 0;
+			for (Chunk c = chunks; c != null; c = c.next) {
+				System.arraycopy(c.cells, 0, frontier, size, c.size);
+				size += c.size;
+			}
+		}
+		pool.invoke(new CopyOut(dists, 0, width));
+	}
+
+	/**
+	 * A buffer of cells reached by a single task, linked with buffers of other tasks.
+	 */
+	private static final class Chunk {
+		int[] cells;
+		int size;
+		Chunk next;
+		Chunk last;
+	}
+
+	/**
+	 * Expands a slice of the current frontier by one level.
+	 */
+	private final class Expand extends RecursiveTask<Chunk> {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] frontier;
+		private final int lo;
+		private final int hi;
+		private final int level;
+
+		Expand(int[] frontier, int lo, int hi, int level) {
+			this.frontier = frontier;
+			this.lo = lo;
+			this.hi = hi;
+			this.level = level;
+		}
+
+		@Override
+		protected Chunk compute() {
+			if (hi - lo > GRAIN) {
+				int mid = (lo + hi) >>> 1;
+				Expand left = new Expand(frontier, lo, mid, level);
+				left.fork();
+				Chunk right = new Expand(frontier, mid, hi, level).compute();
+				Chunk result = left.join();
+				if (null == result)
+					return right;
+				if (null != right) {
+					result.last.next = right;
+					result.last = right.last;
+				}
+				return result;
+			}
+			Chunk chunk = new Chunk();
+			chunk.cells = new int[Math.max(16, 2*(hi - lo))];
+			for (int i = lo; i < hi; i++) {
+				int cell = frontier[i];
+				int open = openings[cell];
+				for (int k = 0; k < offsets.length; k++) {
+					if ((open & (1 << k)) == 0)
+						continue;
+					int ncell = cell + offsets[k];
+					// claim the cell, only one task can succeed
+					if (dist.get(ncell) == UNVISITED
+							&& dist.compareAndSet(ncell, UNVISITED, level)) {
+						if (chunk.size == chunk.cells.length) {
+							int[] tmp = new int[2*chunk.size];
+							System.arraycopy(chunk.cells, 0, tmp, 0, chunk.size);
+							chunk.cells = tmp;
+						}
+						chunk.cells[chunk.size++] = ncell;
+					}
+				}
+			}
+			if (0 == chunk.size)
+				return null;
+			chunk.last = chunk;
+			return chunk;
+		}
+	}
+
+	/**
+	 * Encodes the openings for a range of columns of the floorplan.
+	 */
+	private final class Flatten extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Floorplan floorplan;
+		private final int xlo;
+		private final int xhi;
+
+		Flatten(Floorplan floorplan, int xlo, int xhi) {
+			this.floorplan = floorplan;
+			this.xlo = xlo;
+			this.xhi = xhi;
+		}
+
+		@Override
+		protected void compute() {
+			if (xhi - xlo > COLUMN_GRAIN) {
+				int mid = (xlo + xhi) >>> 1;
+				invokeAll(new Flatten(floorplan, xlo, mid), new Flatten(floorplan, mid, xhi));
+				return;
+			}
+			CardinalDirection[] cds = CardinalDirection.values();
+			for (int x = xlo; x < xhi; x++) {
+				for (int y = 0; y < height; y++) {
+					int open = 0;
+					for (int k = 0; k < cds.length; k++) {
+						int[] d = cds[k].getDirection();
+						int nx = x + d[0];
+						int ny = y + d[1];
+						if (0 <= nx && nx < width && 0 <= ny && ny < height
+								&& floorplan.hasNoWall(x, y, cds[k]))
+							open |= 1 << k;
+					}
+					openings[x*height+y] = (byte) open;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies final distance values for a range of columns into the distance matrix
+	 * and resets the search values for the next search.
+	 */
+	private final class CopyOut extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[][] dists;
+		private final int xlo;
+		private final int xhi;
+
+		CopyOut(int[][] dists, int xlo, int xhi) {
+			this.dists = dists;
+			this.xlo = xlo;
+			this.xhi = xhi;
+		}
+
+		@Override
+		protected void compute() {
+			if (xhi - xlo > COLUMN_GRAIN) {
+				int mid = (xlo + xhi) >>> 1;
+				invokeAll(new CopyOut(dists, xlo, mid), new CopyOut(dists, mid, xhi));
+				return;
+			}
+			for (int x = xlo; x < xhi; x++) {
+				int[] column = dists[x];
+				for (int y = 0; y < height; y++) {
+					int d = dist.get(x*height+y);
+					column[y] = (d == UNVISITED) ? Distance.INFINITY : d;
+					dist.lazySet(x*height+y, UNVISITED);
+				}
+			}
+		}
+	}
+}
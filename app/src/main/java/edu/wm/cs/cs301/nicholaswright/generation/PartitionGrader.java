@@ -0,0 +1,204 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Grades candidate partitions for the BSPBuilder.
+ * The grade of a partition line is |lcount-rcount| + 3*splits where lcount and rcount
+ * are the numbers of walls on either side of the line and splits is the number of walls
+ * the line cuts, see Wall.calculateGrade.
+ *
+ * All walls are axis-aligned, so a partition is a vertical line x = const or a horizontal
+ * line y = const and the side of a wall only depends on the range of its x or y coordinates.
+ * Candidates are walls without a partition flag, many of them lie on the same line.
+ * The grader sorts the distinct candidate lines, puts the coordinate ranges of all walls
+ * into buckets between these lines and turns the buckets into prefix counts.
+ * Afterwards each candidate is graded exactly with a single binary search
+ * instead of a scan over the list.
+ *
+ * @author Nicholas Wright
+ */
+final class PartitionGrader {
+	private final int size;
+	private final Lines vertical;
+	private final Lines horizontal;
+
+	/**
+	 * Counts for a set of parallel candidate lines at sorted positions.
+	 * For a vertical line the coordinates are x values, for a horizontal line y values.
+	 */
+	private static final class Lines {
+		// distinct positions of candidate lines, sorted
+		final int[] positions;
+		// number of walls with lower end >= position
+		final int[] atOrAbove;
+		// number of walls with upper end <= position
+		final int[] atOrBelow;
+		// walls that lie on the line, separated by direction (positive or negative extension)
+		final int[] positive;
+		final int[] negative;
+
+		Lines(int[] candidates, int count) {
+			Arrays.sort(candidates, 0, count);
+			int distinct = 0;
+			for (int i = 0; i < count; i++) {
+				if (distinct == 0 || candidates[distinct-1] != candidates[i])
+					candidates[distinct++] = candidates[i];
+			}
+			positions = Arrays.copyOf(candidates, distinct);
+			// one extra bucket for walls beyond the last line
+			atOrAbove = new int[distinct+1];
+			atOrBelow = new int[distinct+1];
+			positive = new int[distinct];
+			negative = new int[distinct];
+		}
+
+		/**
+		 * Adds the coordinate range [low, high] of a wall.
+		 */
+		void addRange(int low, int high) {
+			// the wall counts for all lines up to the last one <= low
+			atOrAbove[upperBound(positions, low)]++;
+			// and for all lines from the first one >= high
+			atOrBelow[lowerBound(positions, high)]++;
+		}
+
+		/**
+		 * Adds a wall that lies on a line parallel to these lines.
+		 */
+		void addParallel(int position, boolean isPositive) {
+			int k = indexOf(position);
+			if (k < 0)
+				return;
+			if (isPositive)
+				positive[k]++;
+			else
+				negative[k]++;
+		}
+
+		/**
+		 * Turns buckets into counts, atOrAbove[k] and atOrBelow[k] then refer to line k.
+		 */
+		void accumulate() {
+			// atOrAbove[j] holds walls whose lower end is in [positions[j-1], positions[j])
+			for (int k = atOrAbove.length - 2; k >= 0; k--) {
+				atOrAbove[k] += atOrAbove[k+1];
+			}
+			System.arraycopy(atOrAbove, 1, atOrAbove, 0, atOrAbove.length - 1);
+			// atOrBelow[j] holds walls whose upper end is in (positions[j-1], positions[j]]
+			for (int k = 1; k < atOrBelow.length; k++) {
+				atOrBelow[k] += atOrBelow[k-1];
+			}
+		}
+
+		int indexOf(int position) {
+			int k = lowerBound(positions, position);
+			return (k < positions.length && positions[k] == position) ? k : -1;
+		}
+	}
+
+	/**
+	 * Constructor, prepares counts for all candidates among the given walls.
+	 * @param sl list of walls, all axis-aligned
+	 */
+	PartitionGrader(ArrayList<Wall> sl) {
+		size = sl.size();
+		int[] xs = new int[size];
+		int[] ys = new int[size];
+		int verticalCount = 0, horizontalCount = 0;
+		for (Wall se : sl) {
+			if (se.isPartition())
+				continue;
+			if (se.getExtensionX() == 0)
+				xs[verticalCount++] = se.getStartPositionX();
+			else
+				ys[horizontalCount++] = se.getStartPositionY();
+		}
+		vertical = new Lines(xs, verticalCount);
+		horizontal = new Lines(ys, horizontalCount);
+		for (Wall se : sl) {
+			int sx = se.getStartPositionX(), ex = se.getEndPositionX();
+			int sy = se.getStartPositionY(), ey = se.getEndPositionY();
+			vertical.addRange(Math.min(sx, ex), Math.max(sx, ex));
+			horizontal.addRange(Math.min(sy, ey), Math.max(sy, ey));
+			// a wall with no extension at all lies on both a vertical and a horizontal line,
+			// the direction of such a wall counts as vertical, see Wall.getDir
+			if (se.getExtensionX() == 0)
+				vertical.addParallel(sx, se.getExtensionY() >= 0);
+			else
+				horizontal.addParallel(sy, se.getExtensionX() > 0);
+		}
+		vertical.accumulate();
+		horizontal.accumulate();
+	}
+
+	/**
+	 * Calculates the grade of the given wall as a partition for all walls
+	 * of the list this grader was created for. Matches Wall.calculateGrade
+	 * for lists where the latter considers all walls.
+	 * @param pe candidate wall for the partition, a wall of the list without partition flag
+	 * @return the grade, smaller is better
+	 */
+	int grade(Wall pe) {
+		final int dx = pe.getExtensionX();
+		final int dy = pe.getExtensionY();
+		assert (dx == 0) != (dy == 0) : "PartitionGrader: partition must be horizontal or vertical";
+		final Lines lines = (dx == 0) ? vertical : horizontal;
+		final int k = lines.indexOf((dx == 0) ? pe.getStartPositionX() : pe.getStartPositionY());
+		assert k >= 0 : "PartitionGrader: wall is not a candidate";
+		final int collinear = lines.positive[k] + lines.negative[k];
+		final int ahead = lines.atOrAbove[k] - collinear;
+		final int behind = lines.atOrBelow[k] - collinear;
+		final int same, opposite;
+		final boolean aheadIsRight;
+		if (dx == 0) {
+			// vertical line x = p, the side of a wall is sign(x-p)*sign(dy)
+			aheadIsRight = dy > 0;
+			same = (dy > 0) ? lines.positive[k] : lines.negative[k];
+			opposite = (dy > 0) ? lines.negative[k] : lines.positive[k];
+		}
+		else {
+			// horizontal line y = p, the side of a wall is -sign(y-p)*sign(dx)
+			aheadIsRight = dx < 0;
+			same = (dx > 0) ? lines.positive[k] : lines.negative[k];
+			opposite = (dx > 0) ? lines.negative[k] : lines.positive[k];
+		}
+		final int splits = size - ahead - behind - collinear;
+		final int rcount = (aheadIsRight ? ahead : behind) + same;
+		final int lcount = (aheadIsRight ? behind : ahead) + opposite;
+		return Math.abs(lcount-rcount) + splits * 3;
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * @return index of the first value {@code >= key} in the sorted array
+	 */
+	private static int lowerBound(int[] sorted, int key) {
+		int lo = 0, hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] < key)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * @return index of the first value {@code > key} in the sorted array
+	 */
+	private static int upperBound(int[] sorted, int key) {
+		int lo = 0, hi = sorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid] <= key)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
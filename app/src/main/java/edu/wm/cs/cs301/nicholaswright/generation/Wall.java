@@ -461,10 +461,10 @@ public class Wall {
              // difference between beginning of wall and y
              // difference between end of wall and x
              // difference between end of wall and y
-            int dotStart = calculateDot(se.getStartPositionX() - x, se.getStartPositionY() - y);
-            int dotEnd = calculateDot(se.getEndPositionX() - x, se.getEndPositionY() - y);
+            long dotStart = calculateDot(se.getStartPositionX() - x, se.getStartPositionY() - y);
+            long dotEnd = calculateDot(se.getEndPositionX() - x, se.getEndPositionY() - y);
             // update splits if necessary
-            if (BSPBuilder.getSign(dotStart) != BSPBuilder.getSign(dotEnd)) {
+            if (Long.signum(dotStart) != Long.signum(dotEnd)) {
                 if (dotStart == 0)
                     dotStart = dotEnd;
                 else if (dotEnd != 0) {
@@ -487,12 +487,14 @@ public class Wall {
     }
 
     /**
-     * Helper method for calculateGrade, resulted from refactoring
+     * Helper method for calculateGrade, resulted from refactoring.
+     * Computed with long values as coordinates are scaled by the map unit
+     * and the product exceeds the int range for large mazes.
      * @param df1x
      * @param df1y
      * @return
      */
-    private int calculateDot(int df1x, int df1y) {
-        return df1x * dy + df1y * (-dx);
+    private long calculateDot(int df1x, int df1y) {
+        return (long) df1x * dy + (long) df1y * (-dx);
     }
 }
@@ -0,0 +1,143 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.Shader;
+
+/**
+ * Off-screen layer of the MazePanel, a transparent bitmap with a Canvas that
+ * implements the drawing primitives like the MazePanel does, including the
+ * stroke width of lines. The MazePanel draws the bitmap with drawLayer.
+ * Textured fills use the textures of the panel if the layer has them,
+ * otherwise the current color, and the mouse icon is a filled oval.
+ *
+ * @author Nicholas Wright
+ */
+public class CanvasSurface implements DrawingSurface {
+
+    private final Bitmap bitmap;
+    private final Canvas canvas;
+    private final Paint paint;
+    private final Path scratch_path = new Path();
+    private final Rect scratch_rect = new Rect();
+    private final Paint layer_paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // textures for walls and floor, null to fill with the current color
+    private final Shader shader_walls;
+    private final Shader shader_floor;
+
+    /**
+     * Constructor for a transparent layer
+     * @param width in pixels, {@code 0 < width}
+     * @param height in pixels, {@code 0 < height}
+     * @param strokeWidth of lines, same as for the surface the layer is drawn on
+     */
+    public CanvasSurface(int width, int height, float strokeWidth) {
+        this(width, height, strokeWidth, null, null);
+    }
+
+    /**
+     * Constructor for a transparent layer with textures, e.g. to render the first person view
+     * @param width in pixels, {@code 0 < width}
+     * @param height in pixels, {@code 0 < height}
+     * @param strokeWidth of lines, same as for the surface the layer is drawn on
+     * @param shaderWalls texture for fillPolygonTexture, may be null
+     * @param shaderFloor texture for fillRectTexture, may be null
+     */
+    public CanvasSurface(int width, int height, float strokeWidth, Shader shaderWalls, Shader shaderFloor) {
+        shader_walls = shaderWalls;
+        shader_floor = shaderFloor;
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        canvas = new Canvas(bitmap);
+        paint = new Paint();
+        paint.setStrokeWidth(strokeWidth);
+    }
+
+    /**
+     * @return the bitmap this layer draws on
+     */
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    @Override
+    public void setColor(int r, int g, int b) {
+        paint.setColor(Color.rgb(r, g, b));
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        canvas.drawLine(x1, y1, x2, y2, paint);
+    }
+
+    @Override
+    public void drawLines(float[] pts, int count) {
+        if (count > 0)
+            canvas.drawLines(pts, 0, count, paint);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        canvas.drawOval(x, y, x+width, y+height, paint);
+    }
+
+    @Override
+    public void drawMouseIcon(int x, int y, int width, int height) {
+        fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        canvas.drawRect(x, y, x+width, y+height, paint);
+    }
+
+    @Override
+    public void fillRectTexture(int x, int y, int width, int height) {
+        paint.setShader(shader_floor);
+        fillRect(x, y, width, height);
+        paint.setShader(null);
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        scratch_path.rewind();
+        scratch_path.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < nPoints; i++) {
+            scratch_path.lineTo(xPoints[i], yPoints[i]);
+        }
+        scratch_path.lineTo(xPoints[0], yPoints[0]);
+        canvas.drawPath(scratch_path, paint);
+    }
+
+    @Override
+    public void fillPolygonTexture(int[] xPoints, int[] yPoints, int nPoints) {
+        paint.setShader(shader_walls);
+        fillPolygon(xPoints, yPoints, nPoints);
+        paint.setShader(null);
+    }
+
+    @Override
+    public DrawingSurface createLayer(int width, int height) {
+        return new CanvasSurface(width, height, 1);
+    }
+
+    @Override
+    public void drawLayer(DrawingSurface layer, int x, int y) {
+        canvas.drawBitmap(((CanvasSurface) layer).getBitmap(), x, y, null);
+    }
+
+    @Override
+    public void drawLayer(DrawingSurface layer, int x, int y, int width, int height) {
+        scratch_rect.set(x, y, x + width, y + height);
+        canvas.drawBitmap(((CanvasSurface) layer).getBitmap(), null, scratch_rect, layer_paint);
+    }
+
+    @Override
+    public void update() {
+        // nothing to show, the layer is drawn by the surface that created it
+    }
+}
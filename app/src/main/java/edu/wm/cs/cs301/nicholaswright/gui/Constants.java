@@ -23,6 +23,35 @@ public class Constants {
 	public static int[] SKILL_ROOMS = { 0,  2,  2,  3,  4,  5, 10, 10, 20, 45, 45, 50, 50,  60,  80, 160 };
 	public static int[] SKILL_PARTCT = { 60, 600, 900, 1200, 2100, 2700, 3300,
 	5000, 6000, 13500, 19800, 25000, 29000, 45000, 85000, 85000*4 };
+	// Large mazes: an order can request explicit dimensions beyond the skill level table
+	// up to MAX_DIMENSION in each direction, the expected number of partition iterations
+	// for the progress bar is then estimated per cell
+	public static final int MAX_DIMENSION = 16384;
+	public static final int PARTCT_PER_CELL = 5;
+	// from this number of cells on, the floorplan is kept in a memory mapped file instead of the heap
+	public static final int MAPPED_FLOORPLAN_CELLS = 1 << 24;
+	// up to this number of cells, a potentially visible set for the first person view is precomputed
+	public static final int PVS_MAX_CELLS = 1 << 14;
+	// from this number of cells on, the walls are kept in a k-d tree instead of a BSP tree
+	public static final int KD_TREE_MIN_CELLS = 1 << 16;
+	// width and height in pixels of the tiles the map keeps its walls in, see Map
+	public static final int MAP_LAYER_TILE_SIZE = 256;
+	// up to this number of pixels over all levels, the map tile pyramid adds larger scales
+	public static final int MAP_PYRAMID_MAX_PIXELS = 1 << 23;
+	// the first person view drops to the next lower resolution if frames take longer than the budget on average
+	// over a window of frames, and goes back up if frames at the higher resolution are expected to take
+	// less than the headroom percentage of the budget; resolutions are in percent of the view size
+	public static final int FRAME_BUDGET_MILLIS = 16;
+	public static final int FRAME_HEADROOM_PERCENT = 70;
+	public static final int FRAME_WINDOW = 4;
+	public static final int[] RESOLUTION_PERCENT = { 100, 75, 50 };
+	// time an animated move or rotation takes, independent of how long a frame takes to render
+	public static final int ANIMATION_MILLIS = 120;
+	// number of recent frames the percentiles of the render statistics cover
+	public static final int RENDER_STATS_WINDOW = 120;
+	// while playing, one window of frames out of this many is measured,
+	// such that taking the times does not slow down the frames in between
+	public static final int RENDER_STATS_SAMPLE_WINDOWS = 8;
 	
 	// Possible states of the GUI
 	// these are states of an automaton that the graphical user interface implements
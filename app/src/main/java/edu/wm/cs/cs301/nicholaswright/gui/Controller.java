@@ -17,6 +17,11 @@ public class Controller {
 
     // for logging
     private static final String TAG = "Controller";
+    /**
+     * Map scale at the start of the game, the initial scale of the
+     * map view plus the 50 zoom steps formerly applied one by one
+     */
+    private static final int DEFAULT_MAP_SCALE = 65;
 
     /**
      * Either PlayManuallyActivity or PlayAnimationActivity
@@ -89,18 +94,31 @@ public class Controller {
         if(robot != null && driver != null) {
             robot.setMaze(this);
             driver.setDimensions(config.getWidth(), config.getHeight());
-            driver.setDistance(config.getMazedists());
+            // a maze that is still loading hands its distances to the driver
+            // on the driver thread, see DriverExecutor.setMaze
+            if (config.isLoaded())
+                driver.setDistance(config.getMazedists());
         }
 
         currentState.start(this, panel);
 
         // By default, have the map and the solution show up
-        currentState.keyDown(UserInput.ToggleLocalMap, 0);
-        currentState.keyDown(UserInput.ToggleFullMap, 0);
-        currentState.keyDown(UserInput.ToggleSolution, 0);
-        // crude fix to the map showing really small
-        for(int i = 0; i < 50; i++)
-            currentState.keyDown(UserInput.ZoomIn,0);
+        // at a readable scale, all in a single frame
+        currentState.setMapConfiguration(true, true, true, DEFAULT_MAP_SCALE);
+    }
+    /**
+     * Stops the game, e.g. when the activity goes away,
+     * such that its render thread ends.
+     */
+    public void stop() {
+        currentState.stop();
+    }
+    /**
+     * Zooms the map in or out by several steps at once.
+     * @param steps positive to zoom in, negative to zoom out
+     */
+    public void adjustMapScale(int steps) {
+        currentState.adjustMapScale(steps);
     }
 
     /**
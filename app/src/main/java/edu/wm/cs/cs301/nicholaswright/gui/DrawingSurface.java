@@ -0,0 +1,126 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+/**
+ * Drawing primitives used by the FirstPersonView and the Map to render a frame.
+ * Decouples the renderers from the Android UI: the MazePanel implements it
+ * on top of a Canvas, the SoftwareSurface rasterizes into an int[] framebuffer
+ * and works on a plain JVM, e.g. for benchmarks and regression tests.
+ *
+ * All coordinates are in pixels with the origin in the upper left corner.
+ * Drawing operations use the color of the last call to setColor.
+ *
+ * @author Nicholas Wright
+ */
+public interface DrawingSurface {
+
+    /**
+     * Sets the color for subsequent drawing operations
+     * @param r red, 0-255
+     * @param g green, 0-255
+     * @param b blue, 0-255
+     */
+    void setColor(int r, int g, int b);
+
+    /**
+     * Draws a line from (x1, y1) to (x2, y2)
+     * @param x1 x-coordinate of the first point
+     * @param y1 y-coordinate of the first point
+     * @param x2 x-coordinate of the second point
+     * @param y2 y-coordinate of the second point
+     */
+    void drawLine(int x1, int y1, int x2, int y2);
+
+    /**
+     * Draws a batch of lines, each line takes four consecutive values {x1, y1, x2, y2}.
+     * @param pts the coordinates of the lines
+     * @param count the number of values to use from pts, a multiple of 4
+     */
+    void drawLines(float[] pts, int count);
+
+    /**
+     * Draws and fills an oval inside the given bounding box
+     * @param x x-coordinate of the upper-left corner of the oval
+     * @param y y-coordinate of the upper-left corner of the oval
+     * @param width the width of the oval to be drawn
+     * @param height the height of the oval to be drawn
+     */
+    void fillOval(int x, int y, int width, int height);
+
+    /**
+     * Draws the icon for the current position inside the given bounding box
+     * @param x x-coordinate of the upper-left corner of the icon
+     * @param y y-coordinate of the upper-left corner of the icon
+     * @param width the width of the icon to be drawn
+     * @param height the height of the icon to be drawn
+     */
+    void drawMouseIcon(int x, int y, int width, int height);
+
+    /**
+     * Fills the rectangle that covers width pixels starting at x
+     * and height pixels starting at y.
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle to be drawn
+     * @param height the height of the rectangle to be drawn
+     */
+    void fillRect(int x, int y, int width, int height);
+
+    /**
+     * Fills the rectangle like fillRect but with the floor texture if the surface has one.
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle to be drawn
+     * @param height the height of the rectangle to be drawn
+     */
+    void fillRectTexture(int x, int y, int width, int height);
+
+    /**
+     * Fills a closed polygon defined by arrays of x and y coordinates.
+     * @param xPoints an array of x coordinates.
+     * @param yPoints a an array of y coordinates.
+     * @param nPoints the total number of points.
+     */
+    void fillPolygon(int[] xPoints, int[] yPoints, int nPoints);
+
+    /**
+     * Fills a closed polygon like fillPolygon but with the wall texture if the surface has one.
+     * @param xPoints an array of x coordinates.
+     * @param yPoints a an array of y coordinates.
+     * @param nPoints the total number of points.
+     */
+    void fillPolygonTexture(int[] xPoints, int[] yPoints, int nPoints);
+
+    /**
+     * Creates an off-screen surface of the same kind with all pixels transparent,
+     * e.g. to keep parts of a frame that rarely change.
+     * @param width in pixels, {@code 0 < width}
+     * @param height in pixels, {@code 0 < height}
+     * @return the new layer
+     */
+    DrawingSurface createLayer(int width, int height);
+
+    /**
+     * Draws a layer with its upper left corner at (x, y),
+     * transparent pixels of the layer keep the pixels of this surface.
+     * @param layer a surface created by createLayer of this surface
+     * @param x the x-coordinate of the upper left corner of the layer
+     * @param y the y-coordinate of the upper left corner of the layer
+     */
+    void drawLayer(DrawingSurface layer, int x, int y);
+
+    /**
+     * Draws a layer scaled to the given rectangle,
+     * transparent pixels of the layer keep the pixels of this surface.
+     * @param layer a surface created by createLayer of this surface
+     * @param x the x-coordinate of the upper left corner of the rectangle
+     * @param y the y-coordinate of the upper left corner of the rectangle
+     * @param width of the rectangle
+     * @param height of the rectangle
+     */
+    void drawLayer(DrawingSurface layer, int x, int y, int width, int height);
+
+    /**
+     * Signals that a frame is complete and can be shown.
+     */
+    void update();
+}
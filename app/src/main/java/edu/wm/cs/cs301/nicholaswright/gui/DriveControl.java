@@ -0,0 +1,99 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+/**
+ * Pauses, resumes and cancels a robot driver between its steps and measures
+ * the rate of steps. The driver calls awaitStep once per step of drive2Exit,
+ * which blocks with wait/notify while the drive is paused instead of polling.
+ *
+ * Time spent paused does not count for the step rate.
+ *
+ * @author Nicholas Wright
+ */
+public class DriveControl {
+	private boolean paused;
+	private boolean cancelled;
+	// number of steps so far
+	private long steps;
+	// time spent driving, without pauses, up to the last step
+	private long activeNanos;
+	// time of the last step, 0 before the first step
+	private long lastStep;
+
+	/**
+	 * Blocks while the drive is paused, counts a step otherwise.
+	 * @throws InterruptedException if the drive is cancelled
+	 */
+	public synchronized void awaitStep() throws InterruptedException {
+		final long now = System.nanoTime();
+		if (0 != lastStep)
+			activeNanos += now - lastStep;
+		while (paused && !cancelled) {
+			wait();
+		}
+		if (cancelled)
+			throw new InterruptedException("DriveControl: drive cancelled");
+		steps++;
+		lastStep = System.nanoTime();
+	}
+
+	/**
+	 * Pauses the drive before its next step.
+	 */
+	public synchronized void pause() {
+		paused = true;
+	}
+
+	/**
+	 * Resumes a paused drive.
+	 */
+	public synchronized void resume() {
+		paused = false;
+		notifyAll();
+	}
+
+	/**
+	 * Pauses a running drive, resumes a paused one.
+	 */
+	public synchronized void toggle() {
+		if (paused)
+			resume();
+		else
+			pause();
+	}
+
+	/**
+	 * Cancels the drive, its next step throws an InterruptedException.
+	 */
+	public synchronized void cancel() {
+		cancelled = true;
+		notifyAll();
+	}
+
+	/**
+	 * @return true if the drive is paused
+	 */
+	public synchronized boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * @return true if the drive is cancelled
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return the number of steps so far
+	 */
+	public synchronized long getStepCount() {
+		return steps;
+	}
+
+	/**
+	 * @return the average number of steps per second while not paused, 0 before the second step
+	 */
+	public synchronized double getStepsPerSecond() {
+		return (0 == activeNanos) ? 0 : (steps - 1) * 1e9 / activeNanos;
+	}
+}
@@ -0,0 +1,194 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+/**
+ * Runs the drive2Exit method of a robot driver on a dedicated thread,
+ * such that a long drive does not block a shared executor for other background work.
+ * The drive can be started, paused, resumed and cancelled at any time,
+ * e.g. to follow the lifecycle of an activity. Pausing and cancelling
+ * take effect at the next step of the driver, see DriveControl.
+ *
+ * The listener hears about the end of a drive on the driver thread,
+ * a cancelled drive ends without a call to the listener.
+ *
+ * A maze that is still loading, see Maze.isLoaded, is waited for on the
+ * driver thread, which then hands its distances to the driver.
+ *
+ * @author Nicholas Wright
+ */
+public class DriverExecutor {
+	// for logging
+	private static final String TAG = "DriverExecutor";
+
+	/**
+	 * Receives the result of a drive.
+	 */
+	public interface Listener {
+		/**
+		 * Called when drive2Exit returns.
+		 * @param solved the result of drive2Exit, true if the robot left the maze
+		 */
+		void onFinished(boolean solved);
+
+		/**
+		 * Called when drive2Exit fails with an exception, e.g. without operational sensors.
+		 * @param e the exception
+		 */
+		void onFailure(Exception e);
+	}
+
+	private final RobotDriver driver;
+	private final Listener listener;
+	private Thread thread;
+	/**
+	 * The maze to drive through if it may still be loading, null otherwise.
+	 */
+	private volatile Maze maze;
+
+	/**
+	 * Constructor
+	 * @param driver to run, with robot and maze set up
+	 * @param listener for the result of the drive
+	 */
+	public DriverExecutor(RobotDriver driver, Listener listener) {
+		this.driver = driver;
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the maze the driver drives through. If it is still loading when the drive starts,
+	 * the driver thread waits for its distances and hands them to the driver before the first step.
+	 * If loading fails, the listener hears about it with an IOException.
+	 * @param maze the maze of the driver
+	 */
+	public void setMaze(Maze maze) {
+		this.maze = maze;
+	}
+
+	/**
+	 * Starts the drive on its own thread, does nothing if the drive has been started before.
+	 */
+	public synchronized void start() {
+		if (null != thread)
+			return;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drive();
+			}
+		}, TAG);
+		thread.start();
+	}
+
+	/**
+	 * Pauses the drive before the next step of the driver.
+	 */
+	public void pause() {
+		driver.getDriveControl().pause();
+	}
+
+	/**
+	 * Resumes a paused drive.
+	 */
+	public void resume() {
+		driver.getDriveControl().resume();
+	}
+
+	/**
+	 * Cancels the drive, the driver stops at its next step
+	 * or when its thread is interrupted while it sleeps.
+	 */
+	public synchronized void cancel() {
+		driver.getDriveControl().cancel();
+		if (null != thread)
+			thread.interrupt();
+	}
+
+	/**
+	 * @return true if the drive has been started and has not ended yet
+	 */
+	public synchronized boolean isRunning() {
+		return null != thread && thread.isAlive();
+	}
+
+	/**
+	 * @return true if the drive is paused
+	 */
+	public boolean isPaused() {
+		return driver.getDriveControl().isPaused();
+	}
+
+	/**
+	 * @return the number of steps of the driver so far
+	 */
+	public long getStepCount() {
+		return driver.getDriveControl().getStepCount();
+	}
+
+	/**
+	 * @return the average number of steps per second, without pauses
+	 */
+	public double getStepsPerSecond() {
+		return driver.getDriveControl().getStepsPerSecond();
+	}
+
+	/**
+	 * Waits for the drive to end.
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public void join() throws InterruptedException {
+		Thread t;
+		synchronized (this) {
+			t = thread;
+		}
+		if (null != t)
+			t.join();
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Runs the driver and reports the result, runs on the driver thread.
+	 */
+	private void drive() {
+		final DriveControl control = driver.getDriveControl();
+		Log.v(TAG, "Starting driver algorithm");
+		try {
+			awaitDistances();
+			boolean solved = driver.drive2Exit();
+			if (!control.isCancelled())
+				listener.onFinished(solved);
+		}
+		catch (InterruptedException e) {
+			Log.v(TAG, "Drive cancelled");
+		}
+		catch (Exception e) {
+			if (control.isCancelled())
+				Log.v(TAG, "Drive cancelled: " + e);
+			else
+				listener.onFailure(e);
+		}
+		Log.v(TAG, "Drive ended after " + control.getStepCount() + " steps, "
+				+ String.format("%.1f", control.getStepsPerSecond()) + " steps per second");
+	}
+
+	/**
+	 * Waits for a maze that is still loading and hands its distances to the driver.
+	 * @throws IOException if the maze could not be loaded
+	 * @throws InterruptedException if the drive is cancelled while waiting
+	 */
+	private void awaitDistances() throws IOException, InterruptedException {
+		final Maze m = maze;
+		if (null == m || m.isLoaded())
+			return;
+		Log.v(TAG, "Waiting for the maze to load");
+		if (!m.waitUntilLoaded())
+			throw new IOException("Maze could not be loaded");
+		driver.setDistance(m.getMazedists());
+	}
+}
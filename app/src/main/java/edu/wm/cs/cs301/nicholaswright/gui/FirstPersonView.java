@@ -3,12 +3,16 @@
  */
 package edu.wm.cs.cs301.nicholaswright.gui;
 
-import edu.wm.cs.cs301.nicholaswright.generation.BSPBranch;
-import edu.wm.cs.cs301.nicholaswright.generation.BSPLeaf;
 import edu.wm.cs.cs301.nicholaswright.generation.BSPNode;
+import edu.wm.cs.cs301.nicholaswright.generation.CompiledBSPTree;
 import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
 import edu.wm.cs.cs301.nicholaswright.generation.Wall;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class encapsulates all functionality for drawing the current view 
@@ -30,8 +34,9 @@ public class FirstPersonView {
 	// StatePlaying, MapDrawer and FirstPersonDrawer
 	// constants, i.e. set in constructor call with values 
 	// that are not subject to change in maze
-	final private int viewWidth;  // = 400;
-	final private int viewHeight; // = 400;
+	// may be lowered with setResolution if frames take too long
+	private int viewWidth;  // = 400;
+	private int viewHeight; // = 400;
 	final private int mapUnit;    // = 128;
 	final private int stepSize;   // = map_unit/4;
 	// map scale may be adjusted by user input, controlled in StatePlaying
@@ -44,14 +49,16 @@ public class FirstPersonView {
 	final private Floorplan seenWalls;
 	
 	/** 
-	 * The root node to a tree with walls (Wall objects) in its leaves.
+	 * The tree with walls (Wall objects) in its leaves in its compiled form,
+	 * nodes are referred to by their index, the root has index 0.
 	 * This mazeData structure carries the information about walls
 	 * to draw. Walls are drawn as filled polygons. 
 	 * The content for this tree is determined in MazeBuilder
 	 * when the maze is created. 
 	 * It also used to decide visibility of walls.
 	 */
-	final private BSPNode bspRoot;
+	final private CompiledBSPTree bspTree;
+	private static final int ROOT = 0;
 	
 	/** 
 	 * The current viewing angle. This information is used in rotations
@@ -63,14 +70,14 @@ public class FirstPersonView {
 	private int angle;  
 	
 	/**
-	 * The drawing is performed on a MazePanel object. Storing it makes
+	 * The drawing is performed on a DrawingSurface, usually the MazePanel. Storing it makes
 	 * its access easier for code that traverses the tree of BSP nodes
 	 * to draw walls. Drawing is performed in a piecemeal manner on
 	 * a buffer image, such that updating the panel that is on screen 
 	 * with the current buffer image is the responsibility of
 	 * the StatePlaying class.
 	 */
-	private MazePanel panelGraphics;
+	private DrawingSurface panelGraphics;
 	
 	/**
 	 * The current position (x,y) scaled by map_unit and 
@@ -82,7 +89,7 @@ public class FirstPersonView {
 	private int viewY; 
 	
 	// set in constructor to then given view_height/2, used in bounding box
-	final private int scaleZ;      // = view_height/2; which is the horizon
+	private int scaleZ;      // = view_height/2; which is the horizon
 	
 	/**
 	 * If one focuses on the x-axis for the first person view 
@@ -104,6 +111,58 @@ public class FirstPersonView {
 	 */
 	private RangeSet rSet; 
 	
+	/**
+	 * Optional precomputed set of BSP leaves that can be visible from
+	 * each cell, set once it has been computed in the background.
+	 * If present, subtrees without potentially visible leaves are skipped
+	 * without the more expensive clipping in boundingBoxIsVisible.
+	 */
+	private volatile PotentiallyVisibleSet pvs;
+	/**
+	 * Leaves that can be visible from the current position,
+	 * null if all leaves need to be considered. Set in draw.
+	 */
+	private BitSet visibleLeaves;
+	/**
+	 * If not null, the traversal only records the leaves it visits
+	 * without drawing and without updating seen walls, 
+	 * used to compute the potentially visible set.
+	 */
+	private BitSet recordedLeaves;
+	/**
+	 * Walls of the tree that have been seen and are only a part
+	 * of their Wall object, see CompiledBSPTree.isPartOfWall.
+	 */
+	final private BitSet seenParts = new BitSet();
+	/**
+	 * The surface and view of the last frame, see isDrawn.
+	 */
+	private DrawingSurface lastSurface;
+	private int lastX;
+	private int lastY;
+	private int lastWalkDistance;
+	private int lastAngle;
+	private int lastWidth;
+	private int lastHeight;
+	
+	/**
+	 * Parallel rendering: the view is split into column strips, each strip
+	 * is drawn by a view of its own with its own range set on a worker pool,
+	 * see setParallelStrips. Null if the view is drawn on the calling thread.
+	 */
+	private FirstPersonView[] strips;
+	private ExecutorService stripPool;
+	/**
+	 * Columns this view draws, the whole width unless it draws a strip.
+	 */
+	private int stripLeft = 0;
+	private int stripRight = Integer.MAX_VALUE;
+	/**
+	 * If not null, walls that are drawn are only recorded here instead of
+	 * being marked as seen, such that strips do not update shared state.
+	 */
+	private BitSet drawnWalls;
+	
 	// debug stuff
 	private boolean deepDebug = false;
 	private boolean allVisible = false;
@@ -114,6 +173,22 @@ public class FirstPersonView {
 	private int drawRectWallCounter;
 	private int nesting = 0;
 	
+	/**
+	 * Render statistics, null if frames are not measured.
+	 * Times of the current frame are only taken if measuring is true,
+	 * which is also set for the strips of a view with statistics.
+	 * With sampling, only one window of frames out of sampledWindows is measured.
+	 */
+	private RenderStats stats;
+	private boolean measuring;
+	private int sampledWindows = 1;
+	private long frameNumber;
+	private final RenderStats.Frame frameStats = new RenderStats.Frame();
+	private int maxRangesCounter;
+	private long backgroundNanos;
+	private long wallNanos;
+	private long polygonNanos;
+	
 	/**
 	 * Constructor
 	 * @param width of display
@@ -121,22 +196,34 @@ public class FirstPersonView {
 	 * @param mapUnit current scaling factor
 	 * @param stepSize
 	 * @param seenWalls to store which walls were put on display
-	 * @param bspRoot
+	 * @param bspTree compiled tree of walls, e.g. from Maze.getCompiledBSPTree
 	 */
-	public FirstPersonView(int width, int height, int mapUnit, int stepSize, Floorplan seenWalls, BSPNode bspRoot) {
+	public FirstPersonView(int width, int height, int mapUnit, int stepSize, Floorplan seenWalls, CompiledBSPTree bspTree) {
 		// store given parameter values
 		viewWidth = width;
 		viewHeight = height;
 		this.mapUnit = mapUnit;
 		this.stepSize = stepSize;
 		this.seenWalls = seenWalls;
-		this.bspRoot = bspRoot; 
+		this.bspTree = bspTree; 
 		// constants and derived values
 		angle = 0; // angle for initial setting of direction is 0 == East, hidden constraint across classes
 		scaleZ = viewHeight/2;
 		// initialize fields
 		rSet = new RangeSet();
 	}
+	/**
+	 * Constructor that compiles the given tree
+	 * @param width of display
+	 * @param height of display
+	 * @param mapUnit current scaling factor
+	 * @param stepSize
+	 * @param seenWalls to store which walls were put on display
+	 * @param bspRoot
+	 */
+	public FirstPersonView(int width, int height, int mapUnit, int stepSize, Floorplan seenWalls, BSPNode bspRoot) {
+		this(width, height, mapUnit, stepSize, seenWalls, CompiledBSPTree.compile(bspRoot));
+	}
 	/**
 	 * Draws the first person view on the screen during the game
 	 * @param panel for drawing on the buffer image
@@ -145,7 +232,34 @@ public class FirstPersonView {
 	 * @param ang gives the current viewing angle
 	 * @param walkStep, only used to set viewX and viewY
 	 */
-	public void draw(MazePanel panel, int x, int y, int walkStep, int ang) {
+	public void draw(DrawingSurface panel, int x, int y, int walkStep, int ang) {
+		drawWithOffset(panel, x, y, stepSize*walkStep, ang);
+	}
+	/**
+	 * Draws the first person view for a position anywhere between two cells,
+	 * e.g. for a move that is animated by time.
+	 * @param panel for drawing on the buffer image
+	 * @param x coordinate of the cell the view is in or leaving
+	 * @param y coordinate of the cell the view is in or leaving
+	 * @param walkDistance distance from the cell along the viewing direction in map units,
+	 * negative for backwards, a walkStep is stepSize map units
+	 * @param ang gives the current viewing angle
+	 */
+	public void drawWithOffset(DrawingSurface panel, int x, int y, int walkDistance, int ang) {
+		if (null != stats && sampledWindows > 1)
+			setMeasuring((frameNumber++ / stats.getWindowSize()) % sampledWindows == 0);
+		final long start = measuring ? System.nanoTime() : 0;
+		// debug: reset counters
+		traverseNodeCounter = traverseWallSectorCounter =
+				drawRectCounter = drawRectLateCounter = drawRectWallCounter = maxRangesCounter = 0;
+		backgroundNanos = wallNanos = polygonNanos = 0;
+		// only the software surface takes writes from several threads, a Canvas does not
+		if (null != strips && panel instanceof SoftwareSurface) {
+			drawStrips((SoftwareSurface) panel, x, y, walkDistance, ang);
+			rememberFrame(panel, x, y, walkDistance, ang);
+			recordStats(start, true);
+			return;
+		}
 		// obtain a Graphics2D object we can draw on
         // viewers draw on the buffer graphics
 //        if (null == panel.getBufferGraphics()) {
@@ -158,25 +272,146 @@ public class FirstPersonView {
         
         // update fields angle, viewx, viewy for current position and viewing angle
         angle = ang ;
-        setView(x, y, walkStep);
+        setView(x, y, walkDistance);
+        PotentiallyVisibleSet set = pvs;
+        // the set only covers the views at whole walk steps, a distance in between,
+        // e.g. of an animated move, is drawn with all leaves
+        final BitSet potentiallyVisible = (null == set || 0 != walkDistance % stepSize) ? null
+        		: set.getVisibleLeaves(x, y, walkDistance/stepSize, ang);
         
-        // update graphics
-        // draw background figure: black on bottom half, grey on top half
-        drawBackground(panel);
-        // set color to white and draw what ever can be seen from the current position
-        panel.setColor(255, 255, 255); // white
-        // reset the set of ranges to a single new element (0,width-1)
-        // to cover the full width of the view 
-        // as we have not drawn any polygons (walls) yet.
-        rSet.set(0, viewWidth-1); 
-        
-        // debug: reset counters
-        traverseNodeCounter = traverseWallSectorCounter =
-        		drawRectCounter = drawRectLateCounter = drawRectWallCounter = 0;
-        //
-        drawAllVisibleSectors(bspRoot);
+        drawFrame(panel, potentiallyVisible);
+        rememberFrame(panel, x, y, walkDistance, ang);
+        recordStats(start, false);
+	}
+
+	/**
+	 * Tells if the last frame was drawn onto the given surface for the given view,
+	 * parameters as in drawWithOffset. A caller that keeps a surface for this view alone,
+	 * e.g. an off-screen layer, does not need to draw it again if nothing changed.
+	 * @param surface to check
+	 * @param x coordinate of current position
+	 * @param y coordinate of current position
+	 * @param walkDistance as in drawWithOffset
+	 * @param ang gives the current viewing angle
+	 * @return true if the surface shows this view, false if it needs to be drawn
+	 */
+	public boolean isDrawn(DrawingSurface surface, int x, int y, int walkDistance, int ang) {
+		return surface == lastSurface && x == lastX && y == lastY && walkDistance == lastWalkDistance
+				&& ang == lastAngle && viewWidth == lastWidth && viewHeight == lastHeight;
+	}
+
+
+	/**
+	 * Sets the size of the image that subsequent draw calls produce,
+	 * e.g. a lower resolution than the display that is scaled up to it.
+	 * The field of view stays the same.
+	 * @param width of the image
+	 * @param height of the image
+	 */
+	public void setResolution(int width, int height) {
+		viewWidth = width;
+		viewHeight = height;
+		scaleZ = viewHeight/2;
+	}
+
+	/**
+	 * Sets the statistics that each subsequent frame is recorded in,
+	 * see RenderStats.
+	 * @param stats to record frames in, null to stop measuring frames
+	 */
+	public void setRenderStats(RenderStats stats) {
+		setRenderStats(stats, 1);
+	}
+
+	/**
+	 * Sets the statistics that frames are recorded in, measuring only
+	 * one window of consecutive frames out of the given number of windows.
+	 * Taking the times costs a call of System.nanoTime per wall and polygon,
+	 * sampling keeps that cost away from most frames.
+	 * @param stats to record frames in, null to stop measuring frames
+	 * @param windows the first of this many windows of frames is measured, 1 to measure all frames
+	 */
+	public void setRenderStats(RenderStats stats, int windows) {
+		this.stats = stats;
+		sampledWindows = Math.max(1, windows);
+		frameNumber = 0;
+		setMeasuring(null != stats);
 	}
 
+	/**
+	 * Switches parallel rendering on or off. With more than one strip, the view is
+	 * split into that many column strips of equal width, each strip traverses the
+	 * tree front to back with its own range set on a pool of worker threads and
+	 * writes its columns into the shared framebuffer. Only draw calls on a
+	 * SoftwareSurface are parallel, other surfaces are drawn on the calling thread.
+	 * Walls drawn by strips are marked as seen on the calling thread after the frame.
+	 * On a single processor the strips only add the cost of handing over work,
+	 * so the view stays on the calling thread.
+	 * @param count number of strips, 1 or less to draw on the calling thread
+	 */
+	public void setParallelStrips(int count) {
+		setStrips((1 == Runtime.getRuntime().availableProcessors()) ? 1 : count);
+	}
+
+	/**
+	 * Sets up the given number of strips regardless of the number of processors,
+	 * package visible for tests that compare frames with and without strips.
+	 * @param count number of strips, 1 or less to draw on the calling thread
+	 */
+	void setStrips(int count) {
+		if (null != stripPool)
+			stripPool.shutdown();
+		stripPool = null;
+		strips = null;
+		if (count <= 1)
+			return;
+		strips = new FirstPersonView[count];
+		for (int i = 0; i < count; i++) {
+			strips[i] = new FirstPersonView(viewWidth, viewHeight, mapUnit, stepSize, null, bspTree);
+			strips[i].drawnWalls = new BitSet();
+			strips[i].measuring = measuring;
+		}
+		stripPool = Executors.newFixedThreadPool(count, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "FirstPersonView strip");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Sets the potentially visible set to use for subsequent draw calls.
+	 * @param set is computed for the maze of this view, null to consider all leaves
+	 */
+	public void setPotentiallyVisibleSet(PotentiallyVisibleSet set) {
+		pvs = set;
+	}
+	
+	/**
+	 * Runs the traversal of the draw method for the given position without
+	 * drawing anything and records all BSP leaves that it visits.
+	 * Walls are not marked as seen.
+	 * @param x coordinate of current position
+	 * @param y coordinate of current position
+	 * @param walkStep as in draw
+	 * @param ang gives the current viewing angle
+	 * @param leaves to add the node indices of visited leaves to
+	 */
+	void recordVisibleLeaves(int x, int y, int walkStep, int ang, BitSet leaves) {
+		angle = ang ;
+		setView(x, y, stepSize*walkStep);
+		visibleLeaves = null;
+		recordedLeaves = leaves;
+		rSet.set(0, viewWidth-1);
+		try {
+			drawAllVisibleSectors(ROOT);
+		}
+		finally {
+			recordedLeaves = null;
+		}
+	}
 
 	////////////////////////////// internal, private methods ///////////////////////////////
 	private int getViewDX(int angle) {
@@ -192,11 +427,11 @@ public class FirstPersonView {
 	 * Updates viewX and viewY based on current angle and for current position.
 	 * @param x coordinate of current position
 	 * @param y coordinate of current position
-	 * @param walkStep goes into a scaling factor
+	 * @param walkDistance in map units along the viewing direction
 	 */
-	private void setView(int x, int y, int walkStep) {
+	private void setView(int x, int y, int walkDistance) {
 		// Notes: only used in draw method
-		final int factor = stepSize*walkStep-Constants.VIEW_OFFSET;
+		final int factor = walkDistance-Constants.VIEW_OFFSET;
 		viewX = (x*mapUnit+mapUnit/2) + unscaleViewD(getViewDX(angle)*factor);
         viewY = (y*mapUnit+mapUnit/2) + unscaleViewD(getViewDY(angle)*factor);
 	}
@@ -205,13 +440,16 @@ public class FirstPersonView {
 	 * Note that this also erases previous drawings of maze or map.
 	 * @param panel graphics to draw on, must be not null
 	 */
-	private void drawBackground(MazePanel panel) {
+	private void drawBackground(DrawingSurface panel) {
+		// columns of the view or of the strip
+		final int left = stripLeft;
+		final int width = Math.min(stripRight, viewWidth-1) + 1 - left;
 		// black rectangle in upper half of screen
 		panel.setColor(0, 0, 0); // black
-		panel.fillRect(0, 0, viewWidth, viewHeight/2);
+		panel.fillRect(left, 0, width, viewHeight/2);
 		// grey rectangle in lower half of screen
 		panel.setColor(102, 102, 102); // dark gray
-		panel.fillRectTexture(0, viewHeight/2, viewWidth, viewHeight/2);
+		panel.fillRectTexture(left, viewHeight/2, width, viewHeight/2);
 
 	}
 	/**
@@ -219,52 +457,63 @@ public class FirstPersonView {
 	 * where the bounding box is visible
 	 * @param node is the current node of interest
 	 */
-	private void drawAllVisibleSectors(BSPNode node) {
+	private void drawAllVisibleSectors(int node) {
 		traverseNodeCounter++; // debug
 		
 		// Anchor, stop recursion at leaf nodes
-		if (node.isIsleaf()) {
-			drawAllWallsOfASector((BSPLeaf) node);
+		if (bspTree.isLeaf(node)) {
+			drawAllWallsOfASector(node);
 			return;
 		}
 		
 		// for intermediate nodes proceed recursively through all visible branches
-		BSPBranch n = (BSPBranch) node;
+		final CompiledBSPTree n = bspTree;
 		
 		// debug code
 		if (deepDebug) {
 			dbg("                               ".substring(0, nesting) +
-					"traverse_node "+n.getX()+" "+n.getY()+" "+n.getDx()+" "+n.getDy()+" "+
-					n.getLowerBoundX()+" "+n.getLowerBoundY()+" "+n.getUpperBoundX()+" "+n.getUpperBoundY());
+					"traverse_node "+n.getX(node)+" "+n.getY(node)+" "+n.getDx(node)+" "+n.getDy(node)+" "+
+					n.getLowerBoundX(node)+" "+n.getLowerBoundY(node)+" "+n.getUpperBoundX(node)+" "+n.getUpperBoundY(node));
 		}
 		nesting++; // debug
 		
-		final int dot = (viewX-n.getX())*n.getDy() - (viewY-n.getY())*n.getDx();
+		final int dot = (viewX-n.getX(node))*n.getDy(node) - (viewY-n.getY(node))*n.getDx(node);
 		// The type of tree traversal depends on the value of dot
 		// either do right before left or vice versa
 		// but only if node is visible at all
 		
 		// if dot >= 0 consider right node before left node
-		BSPNode right = n.getRightBranch();
-		if ((dot >= 0) && (boundingBoxIsVisible(right))) {
+		final int right = n.getRightChild(node);
+		if ((dot >= 0) && isPotentiallyVisible(right) && (boundingBoxIsVisible(right))) {
 			drawAllVisibleSectors(right);
 		}
 		// consider left node
-		BSPNode left = n.getLeftBranch();
-		if (boundingBoxIsVisible(left))
+		final int left = n.getLeftChild(node);
+		if (isPotentiallyVisible(left) && boundingBoxIsVisible(left))
 			drawAllVisibleSectors(left);
 		// if dot < 0 consider right node now (after left node)
-		if ((dot < 0) && (boundingBoxIsVisible(right))) {
+		if ((dot < 0) && isPotentiallyVisible(right) && (boundingBoxIsVisible(right))) {
 			drawAllVisibleSectors(right);
 		}
 		nesting--; // debug
 	}
+	/**
+	 * Checks the precomputed set of potentially visible leaves, 
+	 * a cheap test that avoids clipping for subtrees that can not be seen
+	 * from the current position.
+	 * @param node the current node
+	 * @return false if no leaf of the subtree can be visible, true otherwise
+	 */
+	private boolean isPotentiallyVisible(int node) {
+		return null == visibleLeaves 
+				|| PotentiallyVisibleSet.containsAny(visibleLeaves, node, bspTree.getSubtreeEnd(node));
+	}
 	/**
 	 * Decide if the bounding box is visible
 	 * @param node the current node
 	 * @return true if node should be drawn, false otherwise
 	 */
-	private boolean boundingBoxIsVisible(BSPNode node) {
+	private boolean boundingBoxIsVisible(int node) {
 		
 		if (allVisible) // unused feature, presumably for debugging
 			return true;
@@ -279,10 +528,10 @@ public class FirstPersonView {
 		// to check for an intersection with the range set
 		// calculate 2 intermediate points (p1x,p1y) and (p2x,p2y) first
 		// then derive x1 and x2
-		final int xmin = node.getLowerBoundX() - viewX;
-		final int ymin = node.getLowerBoundY() - viewY;
-		final int xmax = node.getUpperBoundX() - viewX;
-		final int ymax = node.getUpperBoundY() - viewY;
+		final int xmin = bspTree.getLowerBoundX(node) - viewX;
+		final int ymin = bspTree.getLowerBoundY(node) - viewY;
+		final int xmax = bspTree.getUpperBoundX(node) - viewX;
+		final int ymax = bspTree.getUpperBoundY(node) - viewY;
 		// initialize (p1x,p1y) and (p2x,p2y) with bounds
 		int p1x = xmin; 
 		int p2x = xmax;
@@ -349,14 +598,14 @@ public class FirstPersonView {
 	 * @param node the current node
 	 * @return true if any of the special cases match, false otherwise
 	 */
-	private boolean isOutOfView(BSPNode node) {
-		if (angle >= 45 && angle <= 135 && viewY > node.getUpperBoundY())
+	private boolean isOutOfView(int node) {
+		if (angle >= 45 && angle <= 135 && viewY > bspTree.getUpperBoundY(node))
 			return true;
-		if (angle >= 225 && angle <= 315 && viewY < node.getLowerBoundY())
+		if (angle >= 225 && angle <= 315 && viewY < bspTree.getLowerBoundY(node))
 			return true;
-		if (angle >= 135 && angle <= 225 && viewX < node.getLowerBoundX())
+		if (angle >= 135 && angle <= 225 && viewX < bspTree.getLowerBoundX(node))
 			return true;
-		if ((angle >= 315 || angle <= 45) && viewX > node.getUpperBoundX())
+		if ((angle >= 315 || angle <= 45) && viewX > bspTree.getUpperBoundX(node))
 			return true;
 		return false;
 	}
@@ -365,26 +614,33 @@ public class FirstPersonView {
 	 * Traverses all walls of this leaf and draws corresponding rectangles on screen
 	 * @param node is the leaf node
 	 */
-	private void drawAllWallsOfASector(BSPLeaf node) {
-		ArrayList<Wall> sl = node.getSlist();
+	private void drawAllWallsOfASector(int node) {
+		if (null != recordedLeaves)
+			recordedLeaves.set(node);
 		// debug
 		traverseWallSectorCounter++;
 		if (deepDebug) {
 			dbg("                               ".substring(0, nesting) +
-					"traverseWallSector "+node.getLowerBoundX()+" "+node.getLowerBoundY()+
-					" "+node.getUpperBoundX()+" "+node.getUpperBoundY());
+					"traverseWallSector "+bspTree.getLowerBoundX(node)+" "+bspTree.getLowerBoundY(node)+
+					" "+bspTree.getUpperBoundX(node)+" "+bspTree.getUpperBoundY(node));
 		}
 		// for all walls of this node
-		for (int i = 0; i != sl.size(); i++) {
-			Wall w = (Wall) sl.get(i);
+		final int end = bspTree.getEndWall(node);
+		for (int i = bspTree.getFirstWall(node); i != end; i++) {
 			// draw rectangle
-			drawWall(w);
+			if (measuring) {
+				final long start = System.nanoTime();
+				drawWall(i);
+				wallNanos += System.nanoTime() - start;
+			}
+			else
+				drawWall(i);
 			// debug
 			if (deepDebug) {
 				dbg("                               ".substring(0, nesting) +
 						" traverseWallSector(" + i +") "+
-						w.getStartPositionX()+" "+w.getStartPositionY()+" "+
-						w.getExtensionX()+" "+w.getExtensionY());
+						bspTree.getWallStartX(i)+" "+bspTree.getWallStartY(i)+" "+
+						bspTree.getWallEndX(i)+" "+bspTree.getWallEndY(i));
 			}
 
 		}
@@ -393,18 +649,18 @@ public class FirstPersonView {
 	/**
 	 * Draws wall on screen via graphics attribute gc.
 	 * Helper method for drawAllWallsOfASector.
-	 * @param wall whose seen attribute may be set to true
+	 * @param wall index of the wall in the tree, its seen attribute may be set to true
 	 */
-	private void drawWall(Wall wall) {
+	private void drawWall(int wall) {
 		drawRectCounter++; // debug, counter
 		
 		// some notes: 
 		// perspective centers on (centerX,centerY) = (view_width/2,view_height/2)
 		// initialization part for x1, x2, y11, y12, y21, y22
-		final int ox1 = wall.getStartPositionX() - viewX;
-		final int ox2 = wall.getEndPositionX()   - viewX;
-		final int y1  = wall.getStartPositionY() - viewY;
-		final int y2  = wall.getEndPositionY()   - viewY;
+		final int ox1 = bspTree.getWallStartX(wall) - viewX;
+		final int ox2 = bspTree.getWallEndX(wall)   - viewX;
+		final int y1  = bspTree.getWallStartY(wall) - viewY;
+		final int y2  = bspTree.getWallEndY(wall)   - viewY;
 		
 		RangePair rp = getNewRangePair(ox1, ox2, y1, y2);
 		if (!rp.clip3d())
@@ -425,15 +681,177 @@ public class FirstPersonView {
 		
 		// moved code for drawing bits and pieces into yet another method to 
 		// gain more clarity on what information is actually needed
-		int[] color = wall.getColorRGB();
-		panelGraphics.setColor(color[0], color[1], color[2]);
+		if (null == recordedLeaves) {
+			final int rgb = bspTree.getWallColor(wall);
+			panelGraphics.setColor((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+		}
 		boolean drawn = drawPolygons(x1, x2, y11, y12, y21, y22);
 		
-		if (drawn && !wall.isSeen()) {
-			wall.setSeen(true); // updates the wall
-			// set the seenWalls bit for all wallboards of a wall
-			// the wall parameter given is not modified
-			seenWalls.addWall(wall, mapUnit); // updates seenWalls
+		if (drawn && null == recordedLeaves) {
+			if (null != drawnWalls)
+				drawnWalls.set(wall);
+			else
+				markSeen(wall);
+		}
+	}
+	
+	/**
+	 * Draws a frame with a traversal of the tree.
+	 * Parameters angle, viewX and viewY must be set for the current view.
+	 * @param panel to draw on
+	 * @param leaves to consider, null for all leaves
+	 */
+	private void drawFrame(DrawingSurface panel, BitSet leaves) {
+		visibleLeaves = leaves;
+		// update graphics
+		// draw background figure: black on bottom half, grey on top half
+		if (measuring) {
+			final long start = System.nanoTime();
+			drawBackground(panel);
+			backgroundNanos += System.nanoTime() - start;
+		}
+		else
+			drawBackground(panel);
+		// set color to white and draw what ever can be seen from the current position
+		panel.setColor(255, 255, 255); // white
+		// reset the set of ranges to a single new element (0,width-1)
+		// to cover the full width of the view, or the columns of a strip,
+		// as we have not drawn any polygons (walls) yet.
+		rSet.set(stripLeft, Math.min(stripRight, viewWidth-1));
+		drawAllVisibleSectors(ROOT);
+	}
+
+	/**
+	 * Takes the counters and times of the frame that started at the given time
+	 * if frames are measured and records them if statistics are set.
+	 * @param start time the frame started
+	 * @param fromStrips true to sum the counters and times of the strips
+	 */
+	private void recordStats(long start, boolean fromStrips) {
+		if (!measuring)
+			return;
+		final RenderStats.Frame frame = frameStats;
+		frame.nodes = traverseNodeCounter;
+		frame.leaves = traverseWallSectorCounter;
+		frame.walls = drawRectCounter;
+		frame.projectedWalls = drawRectLateCounter;
+		frame.polygons = drawRectWallCounter;
+		frame.maxRanges = maxRangesCounter;
+		long background = backgroundNanos;
+		long walls = wallNanos;
+		long polygons = polygonNanos;
+		long strip = 0;
+		if (fromStrips) {
+			for (FirstPersonView view : strips) {
+				frame.nodes += view.traverseNodeCounter;
+				frame.leaves += view.traverseWallSectorCounter;
+				frame.walls += view.drawRectCounter;
+				frame.projectedWalls += view.drawRectLateCounter;
+				frame.polygons += view.drawRectWallCounter;
+				frame.maxRanges += view.maxRangesCounter;
+				background += view.backgroundNanos;
+				walls += view.wallNanos;
+				polygons += view.polygonNanos;
+				strip += view.frameStats.totalNanos;
+			}
+		}
+		frame.totalNanos = System.nanoTime() - start;
+		frame.rasterizationNanos = background + polygons;
+		frame.projectionNanos = walls - polygons;
+		// for strips, the parts add up to the time of all strips together
+		frame.traversalNanos = Math.max(0, (0 == strip ? frame.totalNanos : strip)
+				- frame.rasterizationNanos - frame.projectionNanos);
+		if (null != stats)
+			stats.record(frame);
+	}
+
+	private void setMeasuring(boolean on) {
+		measuring = on;
+		if (null != strips) {
+			for (FirstPersonView strip : strips)
+				strip.measuring = on;
+		}
+	}
+
+	private void rememberFrame(DrawingSurface panel, int x, int y, int walkDistance, int ang) {
+		lastSurface = panel;
+		lastX = x;
+		lastY = y;
+		lastWalkDistance = walkDistance;
+		lastAngle = ang;
+		lastWidth = viewWidth;
+		lastHeight = viewHeight;
+	}
+
+	/**
+	 * Marks a wall as seen and adds its wallboards to seenWalls.
+	 * @param wall index of the wall in the tree
+	 */
+	private void markSeen(int wall) {
+		{
+			Wall w = bspTree.getWall(wall);
+			if (bspTree.isPartOfWall(wall)) {
+				// walls of a k-d tree are seen in parts, only add the wallboards of this part
+				if (!seenParts.get(wall)) {
+					seenParts.set(wall);
+					w.setSeen(true);
+					final int sx = bspTree.getWallStartX(wall);
+					final int sy = bspTree.getWallStartY(wall);
+					seenWalls.addWall(sx, sy, bspTree.getWallEndX(wall) - sx, bspTree.getWallEndY(wall) - sy, mapUnit);
+				}
+			}
+			else if (!w.isSeen()) {
+				w.setSeen(true); // updates the wall
+				// set the seenWalls bit for all wallboards of a wall
+				// the wall parameter given is not modified
+				seenWalls.addWall(w, mapUnit); // updates seenWalls
+			}
+		}
+	}
+	
+	/**
+	 * Draws the view with the strips on the worker pool and waits for all of them,
+	 * then marks the walls they have drawn as seen.
+	 */
+	private void drawStrips(SoftwareSurface panel, final int x, final int y, final int walkDistance, final int ang) {
+		final PotentiallyVisibleSet set = pvs;
+		final Future<?>[] frames = new Future<?>[strips.length];
+		for (int i = 0; i < strips.length; i++) {
+			final FirstPersonView strip = strips[i];
+			// each strip has its own color and scratch buffers, the pixels are shared
+			final SoftwareSurface surface = panel.createView();
+			strip.setResolution(viewWidth, viewHeight);
+			strip.pvs = set;
+			strip.stripLeft = i*viewWidth/strips.length;
+			strip.stripRight = (i+1)*viewWidth/strips.length - 1;
+			frames[i] = stripPool.submit(new Runnable() {
+				@Override
+				public void run() {
+					strip.drawWithOffset(surface, x, y, walkDistance, ang);
+				}
+			});
+		}
+		boolean interrupted = false;
+		for (Future<?> frame : frames) {
+			// strips write into the framebuffer, so wait for all of them in any case
+			while (true) {
+				try {
+					frame.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new RuntimeException("FirstPersonView: drawing a strip failed", e.getCause());
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		for (FirstPersonView strip : strips) {
+			final BitSet walls = strip.drawnWalls;
+			for (int wall = walls.nextSetBit(0); wall >= 0; wall = walls.nextSetBit(wall+1))
+				markSeen(wall);
+			walls.clear();
 		}
 	}
 	
@@ -506,7 +924,15 @@ public class FirstPersonView {
 			// debug
 			//System.out.println("polygon-x: " + xps[0] + ", " + xps[1] + ", " + xps[2] + ", " + xps[3]) ;
 			//System.out.println("polygon-y: " + yps[0] + ", " + yps[1] + ", " + yps[2] + ", " + yps[3]) ;
-			panelGraphics.fillPolygonTexture(xps, yps, 4);
+			if (null == recordedLeaves) {
+				if (measuring) {
+					final long start = System.nanoTime();
+					panelGraphics.fillPolygonTexture(xps, yps, 4);
+					polygonNanos += System.nanoTime() - start;
+				}
+				else
+					panelGraphics.fillPolygonTexture(xps, yps, 4);
+			}
 			// for debugging purposes, code will draw a red line around polygon
 			// this makes individual walls visible
 			/*
@@ -520,6 +946,7 @@ public class FirstPersonView {
 			x1i = x2i+1;            // progress for while loop, value must increase
 			
 			drawRectWallCounter++; // debug, counter
+			maxRangesCounter = Math.max(maxRangesCounter, rSet.size());
 		}
 		return drawn;
 	}
@@ -13,13 +13,16 @@ import android.widget.TextView;
 
 import com.google.android.material.snackbar.Snackbar;
 
+import java.io.File;
 import java.util.Random;
 
 import edu.wm.cs.cs301.nicholaswright.R;
 import edu.wm.cs.cs301.nicholaswright.generation.Factory;
 import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeCache;
 import edu.wm.cs.cs301.nicholaswright.generation.MazeData;
 import edu.wm.cs.cs301.nicholaswright.generation.MazeFactory;
+import edu.wm.cs.cs301.nicholaswright.generation.MazePrefetcher;
 import edu.wm.cs.cs301.nicholaswright.generation.Order;
 
 /**
@@ -60,6 +63,8 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
     private Builder builder;  // the builder
     private String builder_name; // the name of the generation algorithm
     private int skillLevel; // complexity of the maze. In the range (0, 15)
+    private int width; // explicit width for a large maze, 0 if given by the skill level
+    private int height; // explicit height for a large maze, 0 if given by the skill level
 
     // other maze generation information
     private Factory factory;
@@ -87,8 +92,8 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
 
 
         if(newMaze){
-            // generate a new seed and set it
-            setSeed(generateSeed());
+            // use the seed of a maze that may have been prefetched, otherwise generate a new seed
+            setSeed(takePrefetchedSeed());
         }
         else{
             // look into the preferences and set the seed
@@ -99,6 +104,8 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
         // This won't change anything if we're not generating a new maze.
         saveSeedToPreferences();
 
+        // keep generated mazes in the app's cache directory, the system may clear it
+        MazeCache.getInstance().setDirectory(new File(getCacheDir(), "mazes"));
         factory = new MazeFactory();
 
         // implement background thread to update progressbar
@@ -134,6 +141,9 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
         builder_name = data.getString("generation");
         setBuilder(builder_name);
         skillLevel = data.getInt("skillLevel");
+        // optional, only present for large mazes
+        width = data.getInt("width");
+        height = data.getInt("height");
 
         Log.v(TAG,"Data received: " + driver + ", " + builder_name + ", " + skillLevel);
 
@@ -218,6 +228,16 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
         return skillLevel;
     }
 
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
     @Override
     public Builder getBuilder() {
         return builder;
@@ -236,6 +256,10 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
     public void deliver(Maze mazeConfig) {
         mazeData.setMaze(mazeConfig);
         switch_to_playing();
+        // while this maze is played, generate the ones that are likely ordered next
+        if(width == 0 || height == 0){
+            MazePrefetcher.getInstance().prefetch(builder, skillLevel);
+        }
     }
 
     /**
@@ -280,6 +304,20 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
         return r.nextInt(Integer.MAX_VALUE);
     }
 
+    /**
+     * Takes the seed reserved for a new maze of the current builder and skill level,
+     * the MazePrefetcher may have generated that maze already.
+     * @return the reserved seed or a new seed if there is none
+     */
+    private int takePrefetchedSeed(){
+        if(width > 0 && height > 0){
+            return generateSeed();
+        }
+        int prefetched = MazePrefetcher.getInstance().takeSeed(builder, skillLevel);
+        Log.v(TAG, "Prefetched seed: " + prefetched);
+        return (prefetched == -1) ? generateSeed() : prefetched;
+    }
+
     /**
      * Looks into the local preferences file for a seed given the activity's current
      * builder and skill level fields (set according to the message sent from AMazeActivity).
@@ -294,7 +332,7 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
     private int getSeedFromPreferences(){
         SharedPreferences preferences = getPreferences(MODE_PRIVATE);
         // generate the string key
-        String key = builder_name + "_" + skillLevel;
+        String key = getPreferencesKey();
         int savedSeed = preferences.getInt(key, -1);
 
         Log.v(TAG, "found seed = " + savedSeed + " in preferences");
@@ -307,6 +345,19 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
         return savedSeed;
     }
 
+    /**
+     * Gives the key for the seed in the preferences, "[builderName]_[skillLevel]"
+     * or "[builderName]_[skillLevel]_[width]x[height]" for a large maze
+     * @return the key
+     */
+    private String getPreferencesKey(){
+        String key = builder_name + "_" + skillLevel;
+        if(width > 0 && height > 0){
+            key += "_" + width + "x" + height;
+        }
+        return key;
+    }
+
     /**
      * Opens the preferences file and saves the current generation fields (builder, skill,
      * and generation seed) to the local preferences.
@@ -319,7 +370,7 @@ public class GeneratingActivity extends AppCompatActivity implements Order {
         SharedPreferences.Editor editor = preferences.edit();
 
         // generate the string key
-        String key = builder_name + "_" + skillLevel;
+        String key = getPreferencesKey();
 
         Log.v(TAG, "Saving " + key + ": " + seed + " to preferences");
 
@@ -3,6 +3,10 @@
  */
 package edu.wm.cs.cs301.nicholaswright.gui;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
 import edu.wm.cs.cs301.nicholaswright.generation.CardinalDirection;
 import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
 import edu.wm.cs.cs301.nicholaswright.generation.Maze;
@@ -39,6 +43,8 @@ public class Map {
 	 * The user can increment or decrement the scale of the map.
 	 * map_scale is used to keep track of the current setting.
 	 * Minimum value is 1.
+	 * It is read several times while drawing a frame, so it must not
+	 * change while a frame is drawn, see StatePlaying.renderLock.
 	 */
 	int mapScale;
 	
@@ -58,6 +64,51 @@ public class Map {
 	 */
 	final Maze maze ;
 
+	/**
+	 * Line buffers for the layers of the map, each layer is drawn
+	 * in a single color with a single call to the panel.
+	 * The buffers are kept across frames to avoid allocations.
+	 */
+	private final LineBatch seenLines = new LineBatch() ;
+	private final LineBatch unseenLines = new LineBatch() ;
+	private final LineBatch solutionLines = new LineBatch() ;
+
+	/**
+	 * Off-screen layers with the walls of the map at the current scale:
+	 * seen walls in white and all walls in grey. The layers are split into
+	 * square tiles of Constants.MAP_LAYER_TILE_SIZE pixels, each frame draws
+	 * the tiles on screen with a translation instead of drawing the walls one by one.
+	 * Tiles are created when they come on screen, and only the most recently
+	 * drawn ones are kept, enough for a whole screen, such that memory and work
+	 * per frame do not depend on the size of the maze or the scale.
+	 * Tiles of seen walls are updated with the wallboards that are added
+	 * to seenWalls, tiles of all walls never change. Tiles are created
+	 * for a scale and a surface and dropped if either changes.
+	 * Keys are tile column and row, see getTileKey, in order of last use.
+	 */
+	private final LinkedHashMap<Long, DrawingSurface> seenTiles = new LinkedHashMap<Long, DrawingSurface>(64, 0.75f, true) ;
+	private final LinkedHashMap<Long, DrawingSurface> mazeTiles = new LinkedHashMap<Long, DrawingSurface>(64, 0.75f, true) ;
+	private DrawingSurface layerSurface ;
+	private int layerScale ;
+	// false draws the walls line by line, e.g. to compare with the layers
+	boolean useLayers = true ;
+	// room around the walls in a layer for the stroke width of lines
+	static final int LAYER_MARGIN = 4 ;
+	/**
+	 * Pre-rendered tiles of all walls at power of two scales, used for showMaze
+	 * at scales up to its largest level instead of the layer of all walls.
+	 * Set by the thread that starts to build it, levels are added in the background.
+	 * Null if there is none.
+	 */
+	private volatile MapTilePyramid tilePyramid ;
+	/**
+	 * Wallboards added to seenWalls since the last frame, {x, y, direction} per wallboard.
+	 * The first person view may add them on another thread.
+	 */
+	private int[] addedWallboards = new int[96] ;
+	private int addedCount ;
+	private boolean collectWallboards ;
+
 	/**
 	 * Constructor 
 	 * @param width of display
@@ -103,6 +154,26 @@ public class Map {
 		if (1 > mapScale)
 			mapScale = 1 ;
 	}
+	
+	/**
+	 * Sets the map scale directly.
+	 * @param scale the new scale, values below 1 are set to 1
+	 */
+	public void setMapScale(int scale) {
+		mapScale = scale >= 1 ? scale : 1 ;
+	}
+	
+	public int getMapScale() {
+		return mapScale ;
+	}
+	
+	/**
+	 * Sets the pyramid of pre-rendered walls to draw the whole maze with.
+	 * @param pyramid for the maze of this map, null to draw the walls without one
+	 */
+	public void setTilePyramid(MapTilePyramid pyramid) {
+		tilePyramid = pyramid ;
+	}
 
 	/**
 	 * Draws the current map on top of the first person view.
@@ -119,7 +190,7 @@ public class Map {
 	 * @param showSolution if true shows a path to the exit as a yellow line,
 	 * otherwise path is not shown.
 	 */
-	public void draw(MazePanel panel, int x, int y, int angle, int walkStep,
+	public void draw(DrawingSurface panel, int x, int y, int angle, int walkStep,
 			boolean showMaze, boolean showSolution) {
 		//Graphics g = panel.getBufferGraphics() ;
         // viewers draw on the buffer graphics
@@ -127,9 +198,26 @@ public class Map {
 //            System.out.println("MapDrawer.draw: can't get graphics object to draw on, skipping draw operation") ;
 //            return;
 //        }
+        drawWithOffset(panel, x, y, angle, stepSize*walkStep, showMaze, showSolution) ;
+	}
+	/**
+	 * Draws the current map for a position anywhere between two cells,
+	 * e.g. for a move that is animated by time.
+	 * @param panel
+	 * @param x coordinate of the cell the view is in or leaving
+	 * @param y coordinate of the cell the view is in or leaving
+	 * @param angle
+	 * @param walkDistance distance from the cell along the viewing direction in map units,
+	 * negative for backwards, a walkStep is stepSize map units
+	 * @param showMaze if true, highlights already seen walls in white
+	 * @param showSolution if true shows a path to the exit as a yellow line,
+	 * otherwise path is not shown.
+	 */
+	public void drawWithOffset(DrawingSurface panel, int x, int y, int angle, int walkDistance,
+			boolean showMaze, boolean showSolution) {
         final int viewDX = getViewDX(angle); 
         final int viewDY = getViewDY(angle);
-        drawMap(panel, x, y, walkStep, viewDX, viewDY, showMaze, showSolution) ;
+        drawMap(panel, x, y, walkDistance, viewDX, viewDY, showMaze, showSolution) ;
         drawCurrentLocation(panel, viewDX, viewDY) ;
 	}
 	//////////////////////////////// private, internal methods //////////////////////////////
@@ -151,18 +239,52 @@ public class Map {
 	 * @param px current position, x index
 	 * @param py current position, y index 
 	 */
-	private void drawMap(MazePanel panel, int px, int py, int walkStep, 
+	private void drawMap(DrawingSurface panel, int px, int py, int walkDistance, 
 			int viewDX, int viewDY, boolean showMaze, boolean showSolution) {
+		// note: 1/2 of width and height is the center of the screen
+		// the whole map is centered at the current position
+		final int offsetX = getOffset(px, walkDistance, viewDX, viewWidth);
+		final int offsetY = getOffset(py, walkDistance, viewDY, viewHeight);
+		
+		// grey walls come from the tile pyramid if it has a level for the scale
+		final MapTilePyramid pyramid = tilePyramid;
+		final boolean mazeDrawn = showMaze && null != pyramid
+				&& pyramid.draw(panel, mapScale, offsetX, viewHeight-1-offsetY, viewWidth, viewHeight);
+		final boolean drawMaze = showMaze && !mazeDrawn;
+		
+		if (useLayers) {
+			// upper left corner of the layers such that cell (0,0) is at the same
+			// coordinates as for mapToCoordinateX and mapToCoordinateY
+			final int left = offsetX - LAYER_MARGIN;
+			final int top = viewHeight-1-offsetY - LAYER_MARGIN - maze.getHeight()*mapScale;
+			prepareLayers(panel);
+			if (drawMaze)
+				drawTiles(panel, mazeTiles, false, left, top);
+			drawTiles(panel, seenTiles, true, left, top);
+		}
+		else {
+			drawMapLines(panel, offsetX, offsetY, drawMaze);
+		}
+		
+		if (showSolution) {
+			drawSolution(panel, offsetX, offsetY, px, py) ;
+		}
+	}
+	/**
+	 * Draws the walls of the visible part of the map line by line,
+	 * without layers.
+	 * @param panel graphics handler to manipulate screen
+	 * @param offsetX is the offset for x coordinates
+	 * @param offsetY is the offset for y coordinates
+	 * @param showMaze if true, draws walls that were not seen in grey
+	 */
+	private void drawMapLines(DrawingSurface panel, int offsetX, int offsetY, boolean showMaze) {
 		// dimensions of the maze in terms of cell ids
 		final int mazeWidth = maze.getWidth() ;
 		final int mazeHeight = maze.getHeight() ;
 		
-		panel.setColor(255, 255, 255); // white
-		
-		// note: 1/2 of width and height is the center of the screen
-		// the whole map is centered at the current position
-		final int offsetX = getOffset(px, walkStep, viewDX, viewWidth);
-		final int offsetY = getOffset(py, walkStep, viewDY, viewHeight);
+		seenLines.clear();
+		unseenLines.clear();
 		
 		// We need to calculate bounds for cell indices to consider
 		// for drawing. Since not the whole maze may be visible
@@ -184,31 +306,218 @@ public class Map {
 				int startY = mapToCoordinateY(y, offsetY);
 				
 				// draw horizontal line
-				boolean theCondition = (x >= mazeWidth) ? false : ((y < mazeHeight) ?
-						maze.hasWall(x,y, CardinalDirection.North) :
-							maze.hasWall(x,y-1, CardinalDirection.South));
-
-				int[] color = ( seenWalls.hasWall(x,y, CardinalDirection.North) ) ? new int[] {255, 255, 255} : new int[] {153, 153, 153}; // white or gray
-				panel.setColor(color[0], color[1], color[2]);
-				if ((seenWalls.hasWall(x,y, CardinalDirection.North) || showMaze) && theCondition)
-					panel.drawLine(startX, startY, startX + mapScale, startY); // y coordinate same
+				// white or gray layer
+				boolean seen = seenWalls.hasWall(x,y, CardinalDirection.North) ;
+				if ((seen || showMaze) && hasMapWall(maze, x, y, CardinalDirection.North))
+					(seen ? seenLines : unseenLines).add(startX, startY, startX + mapScale, startY); // y coordinate same
 				
 				// draw vertical line
-				theCondition = (y >= mazeHeight) ? false : ((x < mazeWidth) ?
-						maze.hasWall(x,y, CardinalDirection.West) :
-							maze.hasWall((x-1),y, CardinalDirection.East));
-
-				color = ( seenWalls.hasWall(x,y, CardinalDirection.West) ) ? new int[] {255, 255, 255} : new int[] {153, 153, 153}; // white or gray
-				panel.setColor(color[0], color[1], color[2]);
-
-				if ((seenWalls.hasWall(x,y, CardinalDirection.West) || showMaze) && theCondition)
-					panel.drawLine(startX, startY, startX, startY - mapScale); // x coordinate same
+				seen = seenWalls.hasWall(x,y, CardinalDirection.West) ;
+				if ((seen || showMaze) && hasMapWall(maze, x, y, CardinalDirection.West))
+					(seen ? seenLines : unseenLines).add(startX, startY, startX, startY - mapScale); // x coordinate same
 			}
-		
-		if (showSolution) {
-			drawSolution(panel, offsetX, offsetY, px, py) ;
+		panel.setColor(153, 153, 153); // gray
+		unseenLines.draw(panel);
+		panel.setColor(255, 255, 255); // white
+		seenLines.draw(panel);
+	}
+	/**
+	 * Tells if the map shows a wall at the top (North) or on the left (West) of the given cell.
+	 * Cells on the right and top border outside of the maze show the walls of their neighbor.
+	 * @param maze to draw
+	 * @param x coordinate of cell, {@code 0 <= x <= width}
+	 * @param y coordinate of cell, {@code 0 <= y <= height}
+	 * @param cd either North or West
+	 * @return true if there is a wall to draw
+	 */
+	static boolean hasMapWall(Maze maze, int x, int y, CardinalDirection cd) {
+		final int mazeWidth = maze.getWidth() ;
+		final int mazeHeight = maze.getHeight() ;
+		if (CardinalDirection.North == cd)
+			return (x >= mazeWidth) ? false : ((y < mazeHeight) ?
+					maze.hasWall(x,y, CardinalDirection.North) :
+						maze.hasWall(x,y-1, CardinalDirection.South));
+		return (y >= mazeHeight) ? false : ((x < mazeWidth) ?
+				maze.hasWall(x,y, CardinalDirection.West) :
+					maze.hasWall((x-1),y, CardinalDirection.East));
+	}
+	/**
+	 * Makes sure the tiles fit the current scale and surface and contain all seen walls.
+	 * Drops all tiles if either changed, otherwise draws the wallboards added since
+	 * the last frame into the tiles of seen walls.
+	 * @param panel surface the tiles are drawn on
+	 */
+	private void prepareLayers(DrawingSurface panel) {
+		if (layerScale != mapScale || layerSurface != panel) {
+			layerSurface = panel;
+			layerScale = mapScale;
+			seenTiles.clear();
+			mazeTiles.clear();
+			synchronized (this) {
+				// new tiles read seenWalls, wallboards added before do not need to be drawn again
+				addedCount = 0;
+				if (!collectWallboards) {
+					collectWallboards = true;
+					seenWalls.setWallboardListener(new Floorplan.WallboardListener() {
+						@Override
+						public void wallboardAdded(int x, int y, CardinalDirection cd) {
+							addWallboard(x, y, cd);
+						}
+					});
+				}
+			}
+		}
+		else {
+			drawAddedWallboards();
+		}
+	}
+	/**
+	 * Draws the tiles of a layer that are on screen, creates the ones that are missing.
+	 * @param panel to draw on
+	 * @param tiles of the layer
+	 * @param seenOnly if true, the layer of seen walls, otherwise the layer of all walls
+	 * @param left x coordinate of the upper left corner of the layer on screen
+	 * @param top y coordinate of the upper left corner of the layer on screen
+	 */
+	private void drawTiles(DrawingSurface panel, LinkedHashMap<Long, DrawingSurface> tiles,
+			boolean seenOnly, int left, int top) {
+		final int size = Constants.MAP_LAYER_TILE_SIZE;
+		final int layerWidth = maze.getWidth()*mapScale + 1 + 2*LAYER_MARGIN;
+		final int layerHeight = maze.getHeight()*mapScale + 1 + 2*LAYER_MARGIN;
+		// part of the layer that is on screen
+		final int minX = Math.max(0, -left);
+		final int minY = Math.max(0, -top);
+		final int maxX = Math.min(layerWidth, viewWidth - left) - 1;
+		final int maxY = Math.min(layerHeight, viewHeight - top) - 1;
+		for (int row = minY/size; row <= maxY/size && minY <= maxY; row++) {
+			for (int column = minX/size; column <= maxX/size && minX <= maxX; column++) {
+				final Long key = getTileKey(column, row);
+				DrawingSurface tile = tiles.get(key);
+				if (null == tile) {
+					tile = panel.createLayer(size, size);
+					drawTile(tile, column, row, seenOnly);
+					tiles.put(key, tile);
+					// the least recently drawn tiles are off screen
+					if (tiles.size() > getMaxTiles()) {
+						Iterator<DrawingSurface> eldest = tiles.values().iterator();
+						eldest.next();
+						eldest.remove();
+					}
+				}
+				panel.drawLayer(tile, left + column*size, top + row*size);
+			}
+		}
+	}
+	/**
+	 * Draws the walls that reach into a tile.
+	 * @param tile to draw on
+	 * @param column of the tile in the layer
+	 * @param row of the tile in the layer
+	 * @param seenOnly if true, draws seen walls in white, otherwise all walls in grey
+	 */
+	private void drawTile(DrawingSurface tile, int column, int row, boolean seenOnly) {
+		final int size = Constants.MAP_LAYER_TILE_SIZE;
+		final int tileX = column*size;
+		final int tileY = row*size;
+		// cells whose walls can reach into the tile, lines extend by the margin at most
+		final int minX = Math.max(0, (tileX - 2*LAYER_MARGIN)/mapScale - 1);
+		final int maxX = Math.min(maze.getWidth(), (tileX + size + 2*LAYER_MARGIN)/mapScale + 1);
+		final int minY = Math.max(0, maze.getHeight() - (tileY + size + 2*LAYER_MARGIN)/mapScale - 1);
+		final int maxY = Math.min(maze.getHeight(), maze.getHeight() - (tileY - 2*LAYER_MARGIN)/mapScale + 1);
+		final LineBatch lines = seenOnly ? seenLines : unseenLines;
+		lines.clear();
+		for (int y = minY; y <= maxY; y++)
+			for (int x = minX; x <= maxX; x++) {
+				if ((!seenOnly || seenWalls.hasWall(x, y, CardinalDirection.North)) && hasMapWall(maze, x, y, CardinalDirection.North))
+					addLayerLine(lines, x, y, CardinalDirection.North, tileX, tileY);
+				if ((!seenOnly || seenWalls.hasWall(x, y, CardinalDirection.West)) && hasMapWall(maze, x, y, CardinalDirection.West))
+					addLayerLine(lines, x, y, CardinalDirection.West, tileX, tileY);
+			}
+		if (seenOnly)
+			tile.setColor(255, 255, 255); // white
+		else
+			tile.setColor(153, 153, 153); // gray
+		lines.draw(tile);
+	}
+	/**
+	 * Draws the wallboards added to seenWalls since the last frame into the tiles of seen walls
+	 * they reach into, tiles that are created later read them from seenWalls.
+	 */
+	private void drawAddedWallboards() {
+		final int size = Constants.MAP_LAYER_TILE_SIZE;
+		synchronized (this) {
+			if (0 == addedCount)
+				return;
+			for (java.util.Map.Entry<Long, DrawingSurface> entry : seenTiles.entrySet()) {
+				final int tileX = getTileColumn(entry.getKey())*size;
+				final int tileY = getTileRow(entry.getKey())*size;
+				seenLines.clear();
+				for (int i = 0; i < addedCount; i += 3) {
+					final int x = addedWallboards[i];
+					final int y = addedWallboards[i+1];
+					final CardinalDirection cd = (0 == addedWallboards[i+2]) ? CardinalDirection.North : CardinalDirection.West;
+					// layer coordinates of the upper left end of the line
+					final int startX = x*mapScale + LAYER_MARGIN - tileX;
+					final int startY = LAYER_MARGIN + (maze.getHeight() - y - 1)*mapScale - tileY;
+					if (startX + mapScale + LAYER_MARGIN < 0 || startX - LAYER_MARGIN >= size
+							|| startY + mapScale + LAYER_MARGIN < 0 || startY - LAYER_MARGIN >= size)
+						continue;
+					if (hasMapWall(maze, x, y, cd))
+						addLayerLine(seenLines, x, y, cd, tileX, tileY);
+				}
+				final DrawingSurface tile = entry.getValue();
+				tile.setColor(255, 255, 255); // white
+				seenLines.draw(tile);
+			}
+			addedCount = 0;
 		}
 	}
+	/**
+	 * @return the number of tiles per layer that are kept, enough to cover the screen
+	 * at any offset
+	 */
+	private int getMaxTiles() {
+		final int size = Constants.MAP_LAYER_TILE_SIZE;
+		return ((viewWidth + size - 1)/size + 1) * ((viewHeight + size - 1)/size + 1);
+	}
+	/**
+	 * @return the number of tiles of seen walls and of all walls that are kept
+	 */
+	int getLayerTileCount() {
+		return seenTiles.size() + mazeTiles.size();
+	}
+	private static Long getTileKey(int column, int row) {
+		return ((long) column << 32) | row;
+	}
+	private static int getTileColumn(long key) {
+		return (int) (key >>> 32);
+	}
+	private static int getTileRow(long key) {
+		return (int) key;
+	}
+	/**
+	 * Adds the line for a wallboard in tile coordinates. Layer coordinates
+	 * are the coordinates on screen for offsets of 0, moved by the margin,
+	 * tile coordinates are relative to the upper left corner of the tile.
+	 */
+	private void addLayerLine(LineBatch lines, int x, int y, CardinalDirection cd, int tileX, int tileY) {
+		final int startX = x*mapScale + LAYER_MARGIN - tileX;
+		final int startY = LAYER_MARGIN + (maze.getHeight() - y)*mapScale - tileY;
+		if (CardinalDirection.North == cd)
+			lines.add(startX, startY, startX + mapScale, startY);
+		else
+			lines.add(startX, startY, startX, startY - mapScale);
+	}
+	/**
+	 * Keeps a wallboard added to seenWalls for the next frame.
+	 */
+	private synchronized void addWallboard(int x, int y, CardinalDirection cd) {
+		if (addedCount + 3 > addedWallboards.length)
+			addedWallboards = Arrays.copyOf(addedWallboards, 2*addedWallboards.length) ;
+		addedWallboards[addedCount++] = x ;
+		addedWallboards[addedCount++] = y ;
+		addedWallboards[addedCount++] = (CardinalDirection.North == cd) ? 0 : 1 ;
+	}
 	/**
 	 * Obtains the maximum for a given offset
 	 * @param offset either in x or y direction
@@ -229,20 +538,21 @@ public class Map {
 	 * @return minimum that is greater or equal 0
 	 */
 	private int getMinimum(final int offset) {
-		final int result = -offset/mapScale;
+		// the walls of the cell before end on the first row or column of the screen
+		final int result = -offset/mapScale - 1;
 		return (result < 0) ? 0 : result;
 	}
 
 	/**
 	 * Calculates the offset in either x or y direction
 	 * @param coordinate is either x or y coordinate of current position
-	 * @param walkStep
+	 * @param walkDistance in map units
 	 * @param viewDirection is either viewDX or viewDY
 	 * @param viewLength is either viewWidth or viewHeight
 	 * @return the offset
 	 */
-	private int getOffset(int coordinate, int walkStep, int viewDirection, int viewLength) {
-		final int tmp = coordinate*mapUnit + mapUnit/2 + mapToOffset((stepSize*walkStep),viewDirection);
+	private int getOffset(int coordinate, int walkDistance, int viewDirection, int viewLength) {
+		final int tmp = coordinate*mapUnit + mapUnit/2 + mapToOffset(walkDistance,viewDirection);
 		return -tmp*mapScale/mapUnit + viewLength/2;
 	}
 	
@@ -316,7 +626,7 @@ public class Map {
 	 * or arrow visually collide with an adjacent wallboard on the
 	 * map visualization. 
 	 */
-	private void drawCurrentLocation(MazePanel panel, int viewDX, int viewDY) {
+	private void drawCurrentLocation(DrawingSurface panel, int viewDX, int viewDY) {
 		panel.setColor(255, 0, 0); // red
 		// draw oval of appropriate size at the center of the screen
 		int centerX = viewWidth/2; // center x
@@ -340,7 +650,7 @@ public class Map {
 	 * @param startX is the x coordinate of the starting point
 	 * @param startY is the y coordinate of the starting point
 	 */
-	private void drawArrow(MazePanel panel, int viewDX, int viewDY, 
+	private void drawArrow(DrawingSurface panel, int viewDX, int viewDY, 
 			final int startX, final int startY) {
 		// calculate length and coordinates for main line
 		final int arrowLength = mapScale*7/16; // arrow length, about 1/2 map_scale
@@ -372,7 +682,7 @@ public class Map {
 	/**
 	 * Draws a yellow line to show the solution on the overall map. 
 	 * Method is only called if in state playing and map_mode 
-	 * and showSolution are true.
+	 * and showSolution are true, the line shows up once the maze is loaded.
 	 * Since the current position is fixed at the center of the screen, 
 	 * all lines on the map are drawn with some offset.
 	 * @param panel to draw lines on
@@ -381,7 +691,10 @@ public class Map {
 	 * @param px is the current position, an index x for a cell
 	 * @param py is the current position, an index y for a cell
 	 */
-	private void drawSolution(MazePanel panel, int offsetX, int offsetY, int px, int py) {
+	private void drawSolution(DrawingSurface panel, int offsetX, int offsetY, int px, int py) {
+		// a maze that is still loading has no distances yet
+		if (!maze.isLoaded())
+			return;
 
 		if (!maze.isValidPosition(px, py)) {
 			dbg(" Parameter error: position out of bounds: (" + px + "," + 
@@ -394,7 +707,7 @@ public class Map {
 		int sy = py;
 		int distance = maze.getDistanceToExit(sx, sy);
 		
-		panel.setColor(255, 255, 0); // yellow
+		solutionLines.clear();
 		
 		// while we are more than 1 step away from the final position
 		while (distance > 1) {
@@ -424,7 +737,7 @@ public class Map {
 			//int ny2 = view_height-1-(neighbor[1]*map_scale + offy) - map_scale/2;
 			int nx2 = mapToCoordinateX(neighbor[0],offsetX) + mapScale/2;
 			int ny2 = mapToCoordinateY(neighbor[1],offsetY) - mapScale/2;
-			panel.drawLine(nx1, ny1, nx2, ny2);
+			solutionLines.add(nx1, ny1, nx2, ny2);
 			
 			// update loop variables for current position (sx,sy)
 			// and distance d for next iteration
@@ -432,9 +745,37 @@ public class Map {
 			sy = neighbor[1];
 			distance = maze.getDistanceToExit(sx, sy) ;
 		}
+		panel.setColor(255, 255, 0); // yellow
+		solutionLines.draw(panel);
 	}
 	
 
+	/**
+	 * Growable buffer of line coordinates {x1, y1, x2, y2, ...}
+	 * that is drawn with a single call to DrawingSurface.drawLines.
+	 */
+	private static class LineBatch {
+		private float[] pts = new float[256] ;
+		private int count ;
+		
+		void clear() {
+			count = 0 ;
+		}
+		
+		void add(int x1, int y1, int x2, int y2) {
+			if (count + 4 > pts.length)
+				pts = Arrays.copyOf(pts, 2*pts.length) ;
+			pts[count++] = x1 ;
+			pts[count++] = y1 ;
+			pts[count++] = x2 ;
+			pts[count++] = y2 ;
+		}
+		
+		void draw(DrawingSurface panel) {
+			panel.drawLines(pts, count) ;
+		}
+	}
+
 	/**
 	 * Debug output
 	 * @param str
@@ -0,0 +1,240 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.util.Log;
+
+import java.util.Arrays;
+
+import edu.wm.cs.cs301.nicholaswright.generation.CardinalDirection;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+/**
+ * Pre-rendered images of all walls of a maze, the grey walls the map shows
+ * with showMaze, at the power of two scales 1, 2, 4, ...
+ * Each level is cut into square tiles, such that drawing the map at any
+ * zoom level only composites the few tiles on screen, no matter how
+ * many walls the maze has. A map scale between two levels uses the
+ * next larger level, scaled down.
+ *
+ * Levels are built from the smallest scale on in the background and become
+ * available one after the other. The pixels of all levels are limited by
+ * Constants.MAP_PYRAMID_MAX_PIXELS, larger scales are drawn by the Map itself.
+ *
+ * Level coordinates are the coordinates of Map layers: cell (x,y) has its
+ * lower left corner at (x*scale + margin, margin + (height-y)*scale).
+ *
+ * @author Nicholas Wright
+ */
+public class MapTilePyramid {
+	// for logging
+	private static final String TAG = "MapTilePyramid";
+	// width and height of a tile in pixels
+	static final int TILE_SIZE = 256;
+
+	private final Maze maze;
+	private final int margin;
+	// completed levels in order of increasing scale, replaced as a whole when a level is added
+	private volatile Level[] levels = new Level[0];
+
+	/**
+	 * Tiles of a single scale, row by row.
+	 */
+	private static final class Level {
+		final int scale;
+		final int width;
+		final int height;
+		final int columns;
+		final int rows;
+		final DrawingSurface[] tiles;
+
+		Level(int scale, int width, int height) {
+			this.scale = scale;
+			this.width = width;
+			this.height = height;
+			columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+			rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+			tiles = new DrawingSurface[columns*rows];
+		}
+	}
+
+	/**
+	 * Constructor for a pyramid without levels, see build.
+	 * @param maze to draw
+	 * @param margin in pixels around the walls for the stroke width of lines
+	 */
+	public MapTilePyramid(Maze maze, int margin) {
+		this.maze = maze;
+		this.margin = margin;
+	}
+
+	/**
+	 * Builds the pyramid for the given map on a background thread
+	 * and hands it to the map, which uses each level once it is complete.
+	 * @param maze to draw
+	 * @param surface the map is drawn on, creates the tiles
+	 * @param map to show the pyramid
+	 * @return the background thread, can be interrupted to stop it
+	 */
+	public static Thread buildInBackground(final Maze maze, final DrawingSurface surface, final Map map) {
+		final MapTilePyramid pyramid = new MapTilePyramid(maze, Map.LAYER_MARGIN);
+		map.setTilePyramid(pyramid);
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					long start = System.currentTimeMillis();
+					pyramid.build(surface);
+					Log.v(TAG, "Built " + pyramid.getLevelCount() + " levels in "
+							+ (System.currentTimeMillis() - start) + " ms");
+				} catch (InterruptedException e) {
+					Log.v(TAG, "Building interrupted");
+				}
+			}
+		}, TAG);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Renders all levels that fit into Constants.MAP_PYRAMID_MAX_PIXELS.
+	 * @param surface creates the tiles
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	public void build(DrawingSurface surface) throws InterruptedException {
+		long pixels = 0;
+		for (int scale = 1; ; scale *= 2) {
+			final int width = maze.getWidth()*scale + 1 + 2*margin;
+			final int height = maze.getHeight()*scale + 1 + 2*margin;
+			pixels += (long) width * height;
+			if (pixels > Constants.MAP_PYRAMID_MAX_PIXELS)
+				break;
+			Level level = new Level(scale, width, height);
+			for (int row = 0; row < level.rows; row++) {
+				for (int column = 0; column < level.columns; column++) {
+					if (Thread.interrupted())
+						throw new InterruptedException();
+					level.tiles[row*level.columns + column] = renderTile(surface, level, column, row);
+				}
+			}
+			Level[] extended = Arrays.copyOf(levels, levels.length + 1);
+			extended[levels.length] = level;
+			levels = extended;
+		}
+	}
+
+	/**
+	 * @return the number of completed levels
+	 */
+	public int getLevelCount() {
+		return levels.length;
+	}
+
+	/**
+	 * @return the largest scale of a completed level, 0 if there is none
+	 */
+	public int getMaxScale() {
+		final Level[] current = levels;
+		return (0 == current.length) ? 0 : current[current.length-1].scale;
+	}
+
+	/**
+	 * Draws the walls at the given scale with the tiles that are on screen.
+	 * @param panel to draw on
+	 * @param scale the map scale, at most getMaxScale
+	 * @param offsetX screen x coordinate of the left side of cell column 0, as in Map
+	 * @param bottomY screen y coordinate of the lower side of cell row 0, as in Map
+	 * @param viewWidth width of the screen
+	 * @param viewHeight height of the screen
+	 * @return true if the walls are drawn, false if there is no level for the scale
+	 */
+	public boolean draw(DrawingSurface panel, int scale, int offsetX, int bottomY, int viewWidth, int viewHeight) {
+		final Level level = findLevel(scale);
+		if (null == level)
+			return false;
+		// screen coordinates of the upper left corner of the walls
+		final int topY = bottomY - maze.getHeight()*scale;
+		for (int row = 0; row < level.rows; row++) {
+			final int y0 = topY + toScreen(row*TILE_SIZE, scale, level.scale);
+			final int y1 = topY + toScreen(Math.min((row+1)*TILE_SIZE, level.height), scale, level.scale);
+			if (y1 <= 0 || y0 >= viewHeight)
+				continue;
+			for (int column = 0; column < level.columns; column++) {
+				final int x0 = offsetX + toScreen(column*TILE_SIZE, scale, level.scale);
+				final int x1 = offsetX + toScreen(Math.min((column+1)*TILE_SIZE, level.width), scale, level.scale);
+				if (x1 <= 0 || x0 >= viewWidth)
+					continue;
+				final DrawingSurface tile = level.tiles[row*level.columns + column];
+				if (scale == level.scale)
+					panel.drawLayer(tile, x0, y0);
+				else
+					panel.drawLayer(tile, x0, y0, x1 - x0, y1 - y0);
+			}
+		}
+		return true;
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * @return the level with the smallest scale that is at least the given one, null if none
+	 */
+	private Level findLevel(int scale) {
+		for (Level level : levels) {
+			if (level.scale >= scale)
+				return level;
+		}
+		return null;
+	}
+
+	/**
+	 * Maps a level coordinate to a screen coordinate relative to the corner of the walls.
+	 */
+	private int toScreen(int levelCoordinate, int scale, int levelScale) {
+		return (levelCoordinate - margin)*scale/levelScale;
+	}
+
+	/**
+	 * Draws the walls that touch a tile into a new layer.
+	 */
+	private DrawingSurface renderTile(DrawingSurface surface, Level level, int column, int row) {
+		final int s = level.scale;
+		final int tileX = column*TILE_SIZE;
+		final int tileY = row*TILE_SIZE;
+		final int width = Math.min(TILE_SIZE, level.width - tileX);
+		final int height = Math.min(TILE_SIZE, level.height - tileY);
+		final int mazeWidth = maze.getWidth();
+		final int mazeHeight = maze.getHeight();
+		// cells whose walls can reach into the tile, lines extend by the margin at most
+		final int minX = Math.max(0, (tileX - 2*margin)/s - 1);
+		final int maxX = Math.min(mazeWidth, (tileX + width)/s + 1);
+		final int minY = Math.max(0, mazeHeight - (tileY + height)/s - 1);
+		final int maxY = Math.min(mazeHeight, mazeHeight - (tileY - 2*margin)/s + 1);
+		float[] pts = new float[64];
+		int count = 0;
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				final int startX = x*s + margin - tileX;
+				final int startY = margin + (mazeHeight - y)*s - tileY;
+				if (pts.length < count + 8)
+					pts = Arrays.copyOf(pts, 2*pts.length);
+				if (Map.hasMapWall(maze, x, y, CardinalDirection.North)) {
+					pts[count++] = startX;
+					pts[count++] = startY;
+					pts[count++] = startX + s;
+					pts[count++] = startY;
+				}
+				if (Map.hasMapWall(maze, x, y, CardinalDirection.West)) {
+					pts[count++] = startX;
+					pts[count++] = startY;
+					pts[count++] = startX;
+					pts[count++] = startY - s;
+				}
+			}
+		}
+		DrawingSurface tile = surface.createLayer(width, height);
+		tile.setColor(153, 153, 153); // gray
+		tile.drawLines(pts, count);
+		return tile;
+	}
+}
@@ -29,6 +29,8 @@ import org.w3c.dom.NodeList;
  * The class is a simple wrapper to make all fields of a Maze object accessible 
  * such that with the help of this class it is straightforward
  * to instantiate a MazeConfiguration object.
+ * MazeStreamReader reads the same format in a single pass without a document,
+ * which is much faster for large files.
  * 
  *
  */
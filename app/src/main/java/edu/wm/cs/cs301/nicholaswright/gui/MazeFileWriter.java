@@ -27,6 +27,7 @@ import org.w3c.dom.Element;
  * not distributed across classes that carry that information, e.g. BSPNode.
  * All methods are static. 
  * The XML format is a straightforward enumeration of elements and not particularly sophisticated. 
+ * MazeStreamWriter writes the same format element by element without a document.
  * 
  *
  */
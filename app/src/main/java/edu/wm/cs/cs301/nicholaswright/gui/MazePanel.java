@@ -6,7 +6,6 @@ import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Rect;
@@ -20,18 +19,34 @@ import edu.wm.cs.cs301.nicholaswright.R;
 /**
  * Graphics container for the maze game. Implements a View for PlayManuallyActivity and
  * PlayAnimationActivity on which different components can draw the graphics.
+ * The drawing primitives of the DrawingSurface are implemented with a Canvas
+ * on a buffer bitmap that is shown on screen in onDraw.
  */
-public class MazePanel extends View {
+public class MazePanel extends View implements DrawingSurface {
 
     // for logging
     private static final String TAG = "MazePanel";
+    // width of lines in pixels
+    private static final int STROKE_WIDTH = 5;
 
     // drawing objects
     private Paint paint;
     private Bitmap drawing_bitmap;
+    // frames are drawn on a render thread into drawing_bitmap while onDraw shows shown_bitmap,
+    // update swaps them, both guarded by buffer_lock
+    private Bitmap shown_bitmap;
+    private final Object buffer_lock = new Object();
     private Canvas panel_canvas;
     private Shader shader_walls;
     private Shader shader_floor;
+    // decoded once in init, drawn on every frame of the map
+    private Bitmap mouse_bitmap;
+
+    // scratch objects reused across calls to avoid allocations per frame
+    private final Path scratch_path = new Path();
+    private final Rect scratch_rect = new Rect();
+    // filters layers that are drawn scaled
+    private final Paint layer_paint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
     private FirstPersonView firstPersonView;
     private Map mapView;
@@ -55,7 +70,9 @@ public class MazePanel extends View {
         Log.v(TAG, "Drawing");
         super.onDraw(canvas);
 
-        canvas.drawBitmap(drawing_bitmap, new Matrix(), paint);
+        synchronized (buffer_lock) {
+            canvas.drawBitmap(shown_bitmap, 0, 0, null);
+        }
     }
 
     /**
@@ -65,9 +82,10 @@ public class MazePanel extends View {
     private void init(){
         paint = new Paint();
         paint.setColor(Color.BLACK);
-        paint.setStrokeWidth(5);
+        paint.setStrokeWidth(STROKE_WIDTH);
 
         drawing_bitmap = Bitmap.createBitmap(1200, 1200, Bitmap.Config.ARGB_8888);
+        shown_bitmap = Bitmap.createBitmap(1200, 1200, Bitmap.Config.ARGB_8888);
         panel_canvas = new Canvas(drawing_bitmap);
 
         Bitmap shader_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.cheese_walls);
@@ -75,19 +93,28 @@ public class MazePanel extends View {
         shader_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.cheese_floor);
         shader_floor = new BitmapShader(shader_bitmap, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
 
+        mouse_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.mouse_icon);
+
     }
 
     /**
-     * Method to draw the buffer image on a graphics object that is
-     * obtained from the superclass.
-     * Warning: do not override getGraphics() or drawing might fail.
+     * Shows the frame drawn so far and continues with the other buffer,
+     * each frame is drawn completely, so the content of the buffer does not matter.
+     * Can be called on any thread, e.g. the render thread.
      */
+    @Override
     public void update() {
         if(panel_canvas == null){
             return;
         }
 
-        invalidate();
+        synchronized (buffer_lock) {
+            Bitmap drawn = drawing_bitmap;
+            drawing_bitmap = shown_bitmap;
+            shown_bitmap = drawn;
+            panel_canvas.setBitmap(drawing_bitmap);
+        }
+        postInvalidate();
 
     }
 
@@ -102,6 +129,7 @@ public class MazePanel extends View {
      * @param g green, 0-255
      * @param b blue, 0-255
      */
+    @Override
     public void setColor(int r, int g, int b) {
         paint.setColor(Color.rgb(r,g,b));
     }
@@ -113,10 +141,23 @@ public class MazePanel extends View {
      * @param x2 x-coordinate of the second point
      * @param y2 y-coordinate of the second point
      */
+    @Override
     public void drawLine(int x1, int y1, int x2, int y2) {
         panel_canvas.drawLine(x1, y1, x2, y2, paint);
     }
 
+    /**
+     * Draws a batch of lines in the current color with a single call.
+     * Each line takes four consecutive values {x1, y1, x2, y2}.
+     * @param pts the coordinates of the lines
+     * @param count the number of values to use from pts, a multiple of 4
+     */
+    @Override
+    public void drawLines(float[] pts, int count) {
+        if (count > 0)
+            panel_canvas.drawLines(pts, 0, count, paint);
+    }
+
     /**
      * Draws and fills an oval
      * @param x x-coordinate of the upper-left corner of the oval
@@ -124,6 +165,7 @@ public class MazePanel extends View {
      * @param width the width of the oval to be drawn
      * @param height the height of the oval to be drawn
      */
+    @Override
     public void fillOval(int x, int y, int width, int height) {
         panel_canvas.drawOval(x, y, x+width, y+width, paint);
     }
@@ -135,10 +177,10 @@ public class MazePanel extends View {
      * @param width the width of the icon to be drawn
      * @param height the height of the icon to be drawn
      */
+    @Override
     public void drawMouseIcon(int x, int y, int width, int height) {
-        Bitmap mouse_bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.mouse_icon);
-        Rect r = new Rect(x, y, x+width, y+height);
-        panel_canvas.drawBitmap(mouse_bitmap,null,r,paint);
+        scratch_rect.set(x, y, x+width, y+height);
+        panel_canvas.drawBitmap(mouse_bitmap,null,scratch_rect,paint);
     }
 
     /**
@@ -151,6 +193,7 @@ public class MazePanel extends View {
      * @param width the width of the rectangle to be drawn
      * @param height the height of the rectangle to be drawn
      */
+    @Override
     public void fillRect(int x, int y, int width, int height) {
         panel_canvas.drawRect(x, y, x+width, y+height, paint);
     }
@@ -167,6 +210,7 @@ public class MazePanel extends View {
      * @param width the width of the rectangle to be drawn
      * @param height the height of the rectangle to be drawn
      */
+    @Override
     public void fillRectTexture(int x, int y, int width, int height) {
 
         paint.setShader(shader_floor);
@@ -184,18 +228,12 @@ public class MazePanel extends View {
      * @param yPoints a an array of y coordinates.
      * @param nPoints the total number of points.
      */
+    @Override
     public void fillPolygonTexture(int[] xPoints, int[] yPoints, int nPoints) {
 
         paint.setShader(shader_walls);
 
-        Path path = new Path();
-        path.moveTo(xPoints[0], yPoints[0]);
-        for(int i = 1; i < nPoints; i++){
-            path.lineTo(xPoints[i], yPoints[i]);
-        }
-        path.lineTo(xPoints[0], yPoints[0]);
-
-        panel_canvas.drawPath(path, paint);
+        panel_canvas.drawPath(polygonPath(xPoints, yPoints, nPoints), paint);
 
         paint.setShader(null);
     }
@@ -207,15 +245,65 @@ public class MazePanel extends View {
      * @param yPoints a an array of y coordinates.
      * @param nPoints the total number of points.
      */
+    @Override
     public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
-        Path path = new Path();
-        path.moveTo(xPoints[0], yPoints[0]);
+        panel_canvas.drawPath(polygonPath(xPoints, yPoints, nPoints), paint);
+    }
+
+    /**
+     * Fills the scratch path with a closed polygon, the path is only
+     * valid until the next call.
+     * @param xPoints an array of x coordinates.
+     * @param yPoints a an array of y coordinates.
+     * @param nPoints the total number of points.
+     * @return the shared scratch path
+     */
+    private Path polygonPath(int[] xPoints, int[] yPoints, int nPoints) {
+        // rewind keeps the internal storage of the path for reuse
+        scratch_path.rewind();
+        scratch_path.moveTo(xPoints[0], yPoints[0]);
         for(int i = 1; i < nPoints; i++){
-            path.lineTo(xPoints[i], yPoints[i]);
+            scratch_path.lineTo(xPoints[i], yPoints[i]);
         }
-        path.lineTo(xPoints[0], yPoints[0]);
+        scratch_path.lineTo(xPoints[0], yPoints[0]);
+        return scratch_path;
+    }
 
-        panel_canvas.drawPath(path, paint);
+    /**
+     * Creates a transparent bitmap layer whose lines have the stroke width
+     * and whose textured fills have the textures of this panel.
+     * @param width in pixels, {@code 0 < width}
+     * @param height in pixels, {@code 0 < height}
+     * @return the new layer
+     */
+    @Override
+    public DrawingSurface createLayer(int width, int height) {
+        return new CanvasSurface(width, height, STROKE_WIDTH, shader_walls, shader_floor);
+    }
+
+    /**
+     * Draws the bitmap of a layer with its upper left corner at (x, y).
+     * @param layer a layer created by createLayer
+     * @param x the x-coordinate of the upper left corner of the layer
+     * @param y the y-coordinate of the upper left corner of the layer
+     */
+    @Override
+    public void drawLayer(DrawingSurface layer, int x, int y) {
+        panel_canvas.drawBitmap(((CanvasSurface) layer).getBitmap(), x, y, null);
+    }
+
+    /**
+     * Draws the bitmap of a layer scaled to the given rectangle with bitmap filtering.
+     * @param layer a layer created by createLayer
+     * @param x the x-coordinate of the upper left corner of the rectangle
+     * @param y the y-coordinate of the upper left corner of the rectangle
+     * @param width of the rectangle
+     * @param height of the rectangle
+     */
+    @Override
+    public void drawLayer(DrawingSurface layer, int x, int y, int width, int height) {
+        scratch_rect.set(x, y, x + width, y + height);
+        panel_canvas.drawBitmap(((CanvasSurface) layer).getBitmap(), null, scratch_rect, layer_paint);
     }
 
     /**
@@ -0,0 +1,526 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.util.Log;
+import android.util.Xml;
+
+import edu.wm.cs.cs301.nicholaswright.generation.BSPBranch;
+import edu.wm.cs.cs301.nicholaswright.generation.BSPLeaf;
+import edu.wm.cs.cs301.nicholaswright.generation.BSPNode;
+import edu.wm.cs.cs301.nicholaswright.generation.Distance;
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeContainer;
+import edu.wm.cs.cs301.nicholaswright.generation.Wall;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reads a maze configuration in the XML format of MazeFileWriter with a streaming parser.
+ * Unlike MazeFileReader, which builds a document and searches it for every value,
+ * the file is read in a single forward pass: each element is parsed from its name
+ * and stored right away in arrays indexed by the numbers in the name.
+ * Cells and distances go into int arrays, the fields of the BSP nodes and their walls
+ * into arrays in the order of the file. After the pass, the tree of BSPNodes is built
+ * from the preorder numbering of the nodes.
+ * The sizes of the maze must come before cells and distances and the walls of a leaf
+ * must follow each other, as MazeFileWriter and MazeStreamWriter write them.
+ * With loadLazily, the pass stops after the start position and the rest of the file,
+ * the BSP nodes, is read on a background thread while the maze is already in use.
+ *
+ * @author Nicholas Wright
+ */
+public class MazeStreamReader {
+	// for logging
+	private static final String TAG = "MazeStreamReader";
+
+	// fields of a node, see nodes
+	private static final int NODE_LEAF = 0;
+	private static final int NODE_X = 1;
+	private static final int NODE_Y = 2;
+	private static final int NODE_DX = 3;
+	private static final int NODE_DY = 4;
+	private static final int NODE_WALL_COUNT = 5;
+	private static final int NODE_FIRST_WALL = 6;
+	private static final int NODE_FIELDS = 7;
+	// fields of a wall, see walls
+	private static final int WALL_NODE = 0;
+	private static final int WALL_INDEX = 1;
+	private static final int WALL_DIST = 2;
+	private static final int WALL_DX = 3;
+	private static final int WALL_DY = 4;
+	private static final int WALL_X = 5;
+	private static final int WALL_Y = 6;
+	private static final int WALL_COLOR = 7;
+	private static final int WALL_SEEN = 8;
+	private static final int WALL_PARTITION = 9;
+	private static final int WALL_FIELDS = 10;
+	// bound for the number of walls per corner of the grid of cells, numbers of walls
+	// and nodes beyond it are rejected, a generated maze has less than 2 walls per corner
+	// and a tree has less than twice as many nodes as walls
+	private static final int MAX_WALLS_PER_CORNER = 8;
+
+	// fields of maze configuration object
+	private int width = -1;
+	private int height = -1;
+	private int rooms;
+	private int expected_partiters;
+	private int startx;
+	private int starty;
+	private int[][] cellValues;
+	private int[][] dists;
+	private BSPNode root;
+	// true once the Maze element is read
+	private boolean inMaze;
+
+	// fields of the nodes by node number, NODE_FIELDS values per node
+	private int[] nodes = new int[16*NODE_FIELDS];
+	private int nodeCount;
+	// fields of the walls in the order of the file, WALL_FIELDS values per wall
+	private int[] walls = new int[16*WALL_FIELDS];
+	private int wallCount;
+	// shared index for buildNode, the number of the next node in preorder
+	private int next;
+
+	/**
+	 * Constructor reads maze data from the given file with the parser of the platform.
+	 * @param filename with data of a Maze object
+	 * @throws IOException if reading fails or the file is not a maze in this format
+	 */
+	public MazeStreamReader(String filename) throws IOException {
+		this(Xml.newPullParser(), new BufferedInputStream(new FileInputStream(filename)), true);
+	}
+
+	/**
+	 * Constructor reads maze data from the given stream.
+	 * @param parser to read elements with, e.g. Xml.newPullParser()
+	 * @param in stream to read from, it is not closed
+	 * @throws IOException if reading fails or the data is not a maze in this format
+	 */
+	public MazeStreamReader(XmlPullParser parser, InputStream in) throws IOException {
+		this(parser, in, false);
+	}
+
+	private MazeStreamReader() {
+		// loadLazily reads the file in two steps
+	}
+
+	private MazeStreamReader(XmlPullParser parser, InputStream in, boolean close) throws IOException {
+		try {
+			load(parser, in);
+		}
+		catch (XmlPullParserException e) {
+			throw new IOException("MazeStreamReader: " + e.getMessage(), e);
+		}
+		finally {
+			if (close)
+				in.close();
+		}
+	}
+
+	/**
+	 * Starts to load the maze in the given file with the parser of the platform.
+	 * The maze configuration is returned as soon as its size, floorplan and starting position
+	 * are read, such that the game can start. Distances and BSP tree are read on a background
+	 * thread and installed into the maze configuration when ready, see Maze.isLoaded.
+	 * @param filename with data of a Maze object
+	 * @return maze configuration that is still loading
+	 * @throws IOException if reading fails before the starting position
+	 */
+	public static Maze loadLazily(String filename) throws IOException {
+		return loadLazily(Xml.newPullParser(), new BufferedInputStream(new FileInputStream(filename)), true);
+	}
+
+	/**
+	 * Starts to load the maze from the given stream, see loadLazily(String).
+	 * @param parser to read elements with, e.g. Xml.newPullParser()
+	 * @param in stream to read from, it is not closed and in use until the maze is loaded
+	 * @return maze configuration that is still loading
+	 * @throws IOException if reading fails before the starting position
+	 */
+	public static Maze loadLazily(XmlPullParser parser, InputStream in) throws IOException {
+		return loadLazily(parser, in, false);
+	}
+
+	/**
+	 * Provides the data loaded from file wrapped in a maze configuration.
+	 * @return maze configuration loaded from file
+	 */
+	Maze getMazeConfiguration() {
+		Maze mazeConfig = new MazeContainer();
+		mazeConfig.setHeight(getHeight());
+		mazeConfig.setWidth(getWidth());
+		mazeConfig.setFloorplan(getCells());
+		mazeConfig.setMazedists(new Distance(getDistances()));
+		mazeConfig.setRootnode(getRootNode());
+		mazeConfig.setStartingPosition(getStartX(), getStartY());
+		return mazeConfig;
+	}
+	/////////////////// set of straightforward get methods //////////////
+	int getWidth() {
+		return width;
+	}
+	int getHeight() {
+		return height;
+	}
+	int getRooms() {
+		return rooms;
+	}
+	int[][] getDistances() {
+		return dists;
+	}
+	int getExpectedPartiters() {
+		return expected_partiters;
+	}
+	Floorplan getCells() {
+		return new Floorplan(cellValues);
+	}
+	int getStartX() {
+		return startx;
+	}
+	int getStartY() {
+		return starty;
+	}
+	BSPNode getRootNode() {
+		return root;
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Reads all elements in a single pass and builds the tree.
+	 */
+	private void load(XmlPullParser parser, InputStream in) throws IOException, XmlPullParserException {
+		parser.setInput(in, null);
+		readElements(parser, null);
+		buildTree();
+	}
+
+	/**
+	 * Reads the elements up to the start position and hands the maze configuration
+	 * to the caller, a background thread reads the remaining elements.
+	 */
+	private static Maze loadLazily(final XmlPullParser parser, final InputStream in, final boolean close)
+			throws IOException {
+		final MazeStreamReader reader = new MazeStreamReader();
+		boolean started = false;
+		try {
+			parser.setInput(in, null);
+			// the start position comes after cells and distances and before the BSP nodes
+			if (!reader.readElements(parser, "startY") || null == reader.cellValues)
+				throw new IOException("MazeStreamReader: incomplete maze");
+			final MazeContainer maze = new MazeContainer();
+			maze.startLoading();
+			maze.setHeight(reader.height);
+			maze.setWidth(reader.width);
+			maze.setFloorplan(reader.getCells());
+			maze.setStartingPosition(reader.startx, reader.starty);
+			Thread loader = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						reader.readElements(parser, null);
+						reader.buildTree();
+						maze.finishLoading(new Distance(reader.dists), reader.root);
+					}
+					catch (IOException | XmlPullParserException e) {
+						Log.w(TAG, "Can not load the BSP tree: " + e.getMessage());
+					}
+					finally {
+						if (!maze.isLoaded())
+							maze.failLoading();
+						if (close)
+							closeQuietly(in);
+					}
+				}
+			}, TAG);
+			loader.setDaemon(true);
+			loader.start();
+			started = true;
+			return maze;
+		}
+		catch (XmlPullParserException e) {
+			throw new IOException("MazeStreamReader: " + e.getMessage(), e);
+		}
+		finally {
+			// once started, the loader closes the stream
+			if (close && !started)
+				in.close();
+		}
+	}
+
+	private static void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		}
+		catch (IOException e) {
+			// all data is read
+		}
+	}
+
+	/**
+	 * Reads elements up to and including the element with the given name,
+	 * or up to the end of the document if there is none.
+	 * @return true if the element with the given name was read
+	 */
+	private boolean readElements(XmlPullParser parser, String last) throws IOException, XmlPullParserException {
+		for (int event = parser.next(); XmlPullParser.END_DOCUMENT != event; event = parser.next()) {
+			if (XmlPullParser.START_TAG != event)
+				continue;
+			final String name = parser.getName();
+			if ("Maze".equals(name)) {
+				inMaze = true;
+				continue;
+			}
+			if (!inMaze)
+				throw new IOException("MazeStreamReader: unexpected element " + name);
+			// every element below Maze holds a single value, nextText moves to its end tag
+			readElement(name, parser.nextText().trim());
+			if (name.equals(last))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the tree from the nodes read so far.
+	 */
+	private void buildTree() throws IOException {
+		if (width < 0 || height < 0 || 0 == nodeCount)
+			throw new IOException("MazeStreamReader: incomplete maze");
+		next = 0;
+		root = buildNode();
+	}
+
+	/**
+	 * Stores the value of a single element given its name, e.g. cell_17 or xSeg_3_2.
+	 */
+	private void readElement(String name, String value) throws IOException {
+		final int split = name.indexOf('_');
+		final String field = (split < 0) ? name : name.substring(0, split);
+		switch (field) {
+		case "sizeX":
+			width = parseInt(value);
+			break;
+		case "sizeY":
+			height = parseInt(value);
+			break;
+		case "roomNum":
+			rooms = parseInt(value);
+			break;
+		case "partiters":
+			expected_partiters = parseInt(value);
+			break;
+		case "startX":
+			startx = parseInt(value);
+			break;
+		case "startY":
+			starty = parseInt(value);
+			break;
+		case "cell":
+		case "dists":
+			readCellValue(field, parseIndex(name, split + 1, name.length()), parseInt(value));
+			break;
+		case "xlBSPNode":
+		case "ylBSPNode":
+		case "xuBSPNode":
+		case "yuBSPNode":
+			// bounds are computed from the walls when the tree is built
+			break;
+		case "isleafBSPNode":
+			setNodeField(parseIndex(name, split + 1, name.length()), NODE_LEAF, Boolean.parseBoolean(value) ? 1 : 0);
+			break;
+		case "xBSPNode":
+			setNodeField(parseIndex(name, split + 1, name.length()), NODE_X, parseInt(value));
+			break;
+		case "yBSPNode":
+			setNodeField(parseIndex(name, split + 1, name.length()), NODE_Y, parseInt(value));
+			break;
+		case "dxBSPNode":
+			setNodeField(parseIndex(name, split + 1, name.length()), NODE_DX, parseInt(value));
+			break;
+		case "dyBSPNode":
+			setNodeField(parseIndex(name, split + 1, name.length()), NODE_DY, parseInt(value));
+			break;
+		case "numSeg":
+			setNodeField(parseIndex(name, split + 1, name.length()), NODE_WALL_COUNT, parseInt(value));
+			break;
+		case "distSeg":
+			setWallField(name, split, WALL_DIST, parseInt(value));
+			break;
+		case "dxSeg":
+			setWallField(name, split, WALL_DX, parseInt(value));
+			break;
+		case "dySeg":
+			setWallField(name, split, WALL_DY, parseInt(value));
+			break;
+		case "xSeg":
+			setWallField(name, split, WALL_X, parseInt(value));
+			break;
+		case "ySeg":
+			setWallField(name, split, WALL_Y, parseInt(value));
+			break;
+		case "colSeg":
+			setWallField(name, split, WALL_COLOR, parseInt(value));
+			break;
+		case "seenSeg":
+			setWallField(name, split, WALL_SEEN, Boolean.parseBoolean(value) ? 1 : 0);
+			break;
+		case "partitionSeg":
+			setWallField(name, split, WALL_PARTITION, Boolean.parseBoolean(value) ? 1 : 0);
+			break;
+		default:
+			// unknown elements are ignored, as MazeFileReader does
+			break;
+		}
+	}
+
+	/**
+	 * Stores a cell or distance value, cells are numbered column by column.
+	 */
+	private void readCellValue(String field, int number, int value) throws IOException {
+		if (width < 0 || height < 0)
+			throw new IOException("MazeStreamReader: " + field + " before the size of the maze");
+		if (number >= width*height)
+			throw new IOException("MazeStreamReader: " + field + "_" + number + " out of range");
+		if (null == cellValues) {
+			cellValues = new int[width][height];
+			dists = new int[width][height];
+		}
+		final int[][] target = "cell".equals(field) ? cellValues : dists;
+		target[number / height][number % height] = value;
+	}
+
+	private void setNodeField(int number, int field, int value) throws IOException {
+		if (number >= 2*getWallLimit())
+			throw new IOException("MazeStreamReader: BSP node " + number + " out of range");
+		if (number >= nodeCount) {
+			final int count = number + 1;
+			if (count*NODE_FIELDS > nodes.length)
+				nodes = Arrays.copyOf(nodes, Math.max(2*nodes.length, count*NODE_FIELDS));
+			// nodes that are not in the file yet start without walls
+			for (int i = nodeCount; i < count; i++)
+				nodes[i*NODE_FIELDS + NODE_FIRST_WALL] = -1;
+			nodeCount = count;
+		}
+		nodes[number*NODE_FIELDS + field] = value;
+	}
+
+	/**
+	 * Stores a field of the wall with the numbers in the given name, e.g. xSeg_3_2
+	 * for wall 2 of node 3. A wall with other numbers than the last one starts a new wall.
+	 */
+	private void setWallField(String name, int split, int field, int value) throws IOException {
+		final int second = name.indexOf('_', split + 1);
+		if (second < 0)
+			throw new IOException("MazeStreamReader: malformed element " + name);
+		final int node = parseIndex(name, split + 1, second);
+		final int index = parseIndex(name, second + 1, name.length());
+		final int limit = getWallLimit();
+		if (node >= 2*limit || index >= limit)
+			throw new IOException("MazeStreamReader: " + name + " out of range");
+		int wall = wallCount - 1;
+		if (wall < 0 || walls[wall*WALL_FIELDS + WALL_NODE] != node || walls[wall*WALL_FIELDS + WALL_INDEX] != index) {
+			if (wallCount >= limit)
+				throw new IOException("MazeStreamReader: more than " + limit + " walls");
+			wall = wallCount++;
+			if (wallCount*WALL_FIELDS > walls.length)
+				walls = Arrays.copyOf(walls, (int) Math.min(2L*walls.length, (long) limit*WALL_FIELDS));
+			walls[wall*WALL_FIELDS + WALL_NODE] = node;
+			walls[wall*WALL_FIELDS + WALL_INDEX] = index;
+			// the walls of a leaf follow each other, the first one tells where they start
+			if (0 == index)
+				setNodeField(node, NODE_FIRST_WALL, wall);
+		}
+		walls[wall*WALL_FIELDS + field] = value;
+	}
+
+	/**
+	 * Gives the number of walls a file for a maze of the size read so far may have,
+	 * node numbers are below twice that number. Keeps the arrays of nodes and walls
+	 * within the size of the maze, whatever the numbers in the file are.
+	 * @throws IOException if the size of the maze is not read yet
+	 */
+	private int getWallLimit() throws IOException {
+		if (width < 0 || height < 0)
+			throw new IOException("MazeStreamReader: BSP tree before the size of the maze");
+		final long limit = MAX_WALLS_PER_CORNER*(width + 1L)*(height + 1L);
+		// node and wall fields of all numbers below the limit fit into an int array
+		return (int) Math.min(limit, Integer.MAX_VALUE/(2*Math.max(NODE_FIELDS, WALL_FIELDS)));
+	}
+
+	/**
+	 * Builds the subtree of the node with the number next, the nodes are numbered in preorder:
+	 * the left child of a branch has the next number, the right child the number
+	 * after the last node of the left subtree.
+	 */
+	private BSPNode buildNode() throws IOException {
+		final int number = next;
+		if (number >= nodeCount)
+			throw new IOException("MazeStreamReader: missing BSP node " + number);
+		final int base = number*NODE_FIELDS;
+		if (0 != nodes[base + NODE_LEAF]) {
+			final int count = nodes[base + NODE_WALL_COUNT];
+			final int first = nodes[base + NODE_FIRST_WALL];
+			ArrayList<Wall> list = new ArrayList<Wall>(count);
+			for (int i = 0; i < count; i++) {
+				final int wall = first + i;
+				if (first < 0 || wall >= wallCount || walls[wall*WALL_FIELDS + WALL_NODE] != number
+						|| walls[wall*WALL_FIELDS + WALL_INDEX] != i)
+					throw new IOException("MazeStreamReader: missing wall " + i + " of BSP node " + number);
+				list.add(buildWall(wall));
+			}
+			return new BSPLeaf(list);
+		}
+		// read left branch before right branch, increment index number for next node to visit
+		next++;
+		final BSPNode left = buildNode();
+		next++;
+		final BSPNode right = buildNode();
+		return new BSPBranch(nodes[base + NODE_X], nodes[base + NODE_Y],
+				nodes[base + NODE_DX], nodes[base + NODE_DY], left, right);
+	}
+
+	private Wall buildWall(int wall) {
+		final int base = wall*WALL_FIELDS;
+		// the color is set explicitly below, 0 is a dummy for the constructor
+		Wall result = new Wall(walls[base + WALL_X], walls[base + WALL_Y],
+				walls[base + WALL_DX], walls[base + WALL_DY], walls[base + WALL_DIST], 0);
+		result.setColor(MazePanel.getRGBValuesFromSingleInt(walls[base + WALL_COLOR]));
+		result.setSeen(0 != walls[base + WALL_SEEN]);
+		result.setPartition(0 != walls[base + WALL_PARTITION]);
+		return result;
+	}
+
+	private static int parseInt(String value) throws IOException {
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("MazeStreamReader: not a number: " + value, e);
+		}
+	}
+
+	/**
+	 * Parses the decimal number in name between begin and end without creating a substring.
+	 */
+	private static int parseIndex(String name, int begin, int end) throws IOException {
+		if (begin >= end)
+			throw new IOException("MazeStreamReader: malformed element " + name);
+		int result = 0;
+		for (int i = begin; i < end; i++) {
+			final char c = name.charAt(i);
+			if (c < '0' || c > '9' || result > (Integer.MAX_VALUE - 9)/10)
+				throw new IOException("MazeStreamReader: malformed element " + name);
+			result = 10*result + (c - '0');
+		}
+		return result;
+	}
+}
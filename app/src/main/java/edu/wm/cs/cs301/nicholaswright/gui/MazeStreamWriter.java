@@ -0,0 +1,161 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.util.Xml;
+
+import edu.wm.cs.cs301.nicholaswright.generation.BSPBranch;
+import edu.wm.cs.cs301.nicholaswright.generation.BSPLeaf;
+import edu.wm.cs.cs301.nicholaswright.generation.BSPNode;
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Wall;
+
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Writes a maze configuration in the XML format of MazeFileWriter with a streaming serializer,
+ * element by element, without building a document in memory.
+ * The elements are the same and come in the same order: sizes, cells and distances
+ * numbered column by column, the start position and the BSP nodes in preorder,
+ * each branch followed by its left and then its right subtree, each leaf followed by its walls.
+ * Files can be read with MazeStreamReader and with MazeFileReader.
+ *
+ * @author Nicholas Wright
+ */
+public class MazeStreamWriter {
+
+	private final XmlSerializer serializer;
+
+	/**
+	 * Constructor
+	 * @param serializer to write elements with, e.g. Xml.newSerializer()
+	 */
+	public MazeStreamWriter(XmlSerializer serializer) {
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Writes maze content to a file with the serializer of the platform.
+	 * @throws IOException if writing fails
+	 */
+	public static void store(String filename, int width, int height, int rooms, int expected_partiters,
+			BSPNode root, Floorplan cells, int[][] dists, int startX, int startY) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(filename));
+		try {
+			new MazeStreamWriter(Xml.newSerializer()).store(out, width, height, rooms, expected_partiters,
+					root, cells, dists, startX, startY);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes maze content to a stream, parameters as in MazeFileWriter.store.
+	 * @param out stream to write to, it is flushed but not closed
+	 * @param width of the maze
+	 * @param height of the maze
+	 * @param rooms number of rooms
+	 * @param expected_partiters expected number of partition iterations
+	 * @param root of the tree of BSPNodes, not null
+	 * @param cells floorplan of the maze
+	 * @param dists distance of each cell to the exit
+	 * @param startX coordinate of the starting position
+	 * @param startY coordinate of the starting position
+	 * @throws IOException if writing fails
+	 */
+	public void store(OutputStream out, int width, int height, int rooms, int expected_partiters,
+			BSPNode root, Floorplan cells, int[][] dists, int startX, int startY) throws IOException {
+		serializer.setOutput(out, "UTF-8");
+		serializer.startDocument("UTF-8", false);
+		serializer.startTag(null, "Maze");
+		writeElement("sizeX", width);
+		writeElement("sizeY", height);
+		writeElement("roomNum", rooms);
+		writeElement("partiters", expected_partiters);
+		int number = 0;
+		for (int x = 0; x != width; x++) {
+			for (int y = 0; y != height; y++) {
+				writeElement("cell_" + number, cells.getValueOfCell(x, y));
+				number++;
+			}
+		}
+		number = 0;
+		for (int x = 0; x != width; x++) {
+			for (int y = 0; y != height; y++) {
+				writeElement("dists_" + number, dists[x][y]);
+				number++;
+			}
+		}
+		writeElement("startX", startX);
+		writeElement("startY", startY);
+		writeNodes(root);
+		serializer.endTag(null, "Maze");
+		serializer.endDocument();
+		serializer.flush();
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Writes the nodes of the tree in preorder, the number of a node is its position in that order.
+	 */
+	private void writeNodes(BSPNode root) throws IOException {
+		final ArrayDeque<BSPNode> stack = new ArrayDeque<BSPNode>();
+		stack.push(root);
+		int number = 0;
+		while (!stack.isEmpty()) {
+			final BSPNode node = stack.pop();
+			writeElement("xlBSPNode_" + number, node.getLowerBoundX());
+			writeElement("ylBSPNode_" + number, node.getLowerBoundY());
+			writeElement("xuBSPNode_" + number, node.getUpperBoundX());
+			writeElement("yuBSPNode_" + number, node.getUpperBoundY());
+			writeElement("isleafBSPNode_" + number, Boolean.toString(node.isIsleaf()));
+			if (node.isIsleaf()) {
+				int i = 0;
+				writeElement("numSeg_" + number, ((BSPLeaf) node).getSlist().size());
+				for (Wall wall : ((BSPLeaf) node).getSlist()) {
+					writeWall(wall, number, i);
+					i++;
+				}
+			}
+			else {
+				final BSPBranch branch = (BSPBranch) node;
+				writeElement("xBSPNode_" + number, branch.getX());
+				writeElement("yBSPNode_" + number, branch.getY());
+				writeElement("dxBSPNode_" + number, branch.getDx());
+				writeElement("dyBSPNode_" + number, branch.getDy());
+				// the left subtree comes right after its parent
+				stack.push(branch.getRightBranch());
+				stack.push(branch.getLeftBranch());
+			}
+			number++;
+		}
+	}
+
+	private void writeWall(Wall wall, int number, int i) throws IOException {
+		final String suffix = "_" + number + "_" + i;
+		writeElement("distSeg" + suffix, wall.getDistance());
+		writeElement("dxSeg" + suffix, wall.getExtensionX());
+		writeElement("dySeg" + suffix, wall.getExtensionY());
+		writeElement("partitionSeg" + suffix, Boolean.toString(wall.isPartition()));
+		writeElement("seenSeg" + suffix, Boolean.toString(wall.isSeen()));
+		writeElement("xSeg" + suffix, wall.getStartPositionX());
+		writeElement("ySeg" + suffix, wall.getStartPositionY());
+		writeElement("colSeg" + suffix, MazePanel.getRGBIntFromSeparateValues(wall.getColorRGB()));
+	}
+
+	private void writeElement(String name, int value) throws IOException {
+		writeElement(name, Integer.toString(value));
+	}
+
+	private void writeElement(String name, String value) throws IOException {
+		serializer.startTag(null, name);
+		serializer.text(value);
+		serializer.endTag(null, name);
+	}
+}
@@ -3,7 +3,6 @@ package edu.wm.cs.cs301.nicholaswright.gui;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -14,6 +13,8 @@ import android.widget.ToggleButton;
 
 import com.google.android.material.snackbar.Snackbar;
 
+import java.io.IOException;
+
 import edu.wm.cs.cs301.nicholaswright.R;
 import edu.wm.cs.cs301.nicholaswright.generation.MazeData;
 import edu.wm.cs.cs301.nicholaswright.gui.Constants.UserInput;
@@ -62,7 +63,9 @@ public class PlayAnimationActivity extends AppCompatActivity {
     private Controller controller;
     private Robot robot;
     private RobotDriver driver;
-    driveAsync driveTask;
+    private DriverExecutor driveTask;
+    // true if the user paused the animation, the lifecycle does not resume it then
+    private boolean userPaused = false;
 
     // reference to the global maze variable
     MazeData mazeData;
@@ -92,41 +95,73 @@ public class PlayAnimationActivity extends AppCompatActivity {
 
 
         driver = controller.getDriver();
-        driveTask = new driveAsync();
-        driveTask.execute();
-    }
-
-    /**
-     * Handles creation of the animation thread and its interaction with the
-     * UI thread.
-     */
-    private class driveAsync extends AsyncTask<Void, Void, Void> {
-
-        @Override
-        protected Void doInBackground(Void... voids) {
-
-            try {
-                Log.v(TAG, "Starting driver algorithm");
-                // drive through the maze
-                boolean mazeSolved = driver.drive2Exit();
+        // the drive runs on its own thread, not on a shared executor
+        driveTask = new DriverExecutor(driver, new DriverExecutor.Listener() {
+            @Override
+            public void onFinished(boolean solved) {
                 // did we reach the end?
-                if(!mazeSolved) {
+                if(!solved) {
                     controller.lose();
                 }
             }
-            catch (UnsupportedOperationException e) {
-                Log.v(TAG, "in drive2Exit: Sensor failure");
-                controller.lose();
-            }
-            catch(Exception e){
-                Log.v(TAG, "In drive2exit: an error");
+
+            @Override
+            public void onFailure(Exception e) {
+                if(e instanceof IOException) {
+                    // the maze is incomplete, there is no game to win or lose
+                    Log.w(TAG, "In drive2exit: " + e.getMessage());
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            setMazetoNull();
+                            finish();
+                        }
+                    });
+                    return;
+                }
+                if(e instanceof UnsupportedOperationException) {
+                    Log.v(TAG, "in drive2Exit: Sensor failure");
+                }
+                else {
+                    Log.v(TAG, "In drive2exit: an error " + e);
+                }
                 controller.lose();
             }
+        });
+        driveTask.setMaze(mazeData.getMaze());
+        driveTask.start();
+    }
 
+    /**
+     * Pauses the drive while the activity is not in the foreground.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        driveTask.pause();
+    }
 
-            return null;
+    /**
+     * Resumes the drive unless the user paused it.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if(!userPaused) {
+            driveTask.resume();
         }
+    }
 
+    /**
+     * Stops the drive and the game when the activity goes away, e.g. with the back button.
+     */
+    @Override
+    public void onDestroy() {
+        driveTask.cancel();
+        controller.stop();
+        Log.v(TAG, "Driver made " + driveTask.getStepCount() + " steps at "
+                + String.format("%.1f", driveTask.getStepsPerSecond()) + " steps per second");
+        super.onDestroy();
     }
 
     /**
@@ -178,16 +213,14 @@ public class PlayAnimationActivity extends AppCompatActivity {
             @Override
             public void onClick(View view) {
                 Log.v(TAG, "zoom in button tapped");
-                for(int i = 0; i < 8; i++)
-                    controller.keyDown(UserInput.ZoomIn, 0);
+                controller.adjustMapScale(8);
             }
         });
         zoom_out.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 Log.v(TAG, "zoom out button tapped");
-                for(int i = 0; i < 8; i++)
-                    controller.keyDown(UserInput.ZoomOut, 0);
+                controller.adjustMapScale(-8);
             }
         });
         forward.setOnClickListener(new View.OnClickListener(){
@@ -222,12 +255,13 @@ public class PlayAnimationActivity extends AppCompatActivity {
         // Toggle button makes a call to the pause functionality of the driver
         pause.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                if (isChecked) {
-                    Log.v(TAG, "Unpausing animation");
-                    driver.togglePaused();
-                } else {
+                userPaused = !userPaused;
+                if (userPaused) {
                     Log.v(TAG, "Pausing animation");
-                    driver.togglePaused();
+                    driveTask.pause();
+                } else {
+                    Log.v(TAG, "Unpausing animation");
+                    driveTask.resume();
                 }
             }
         });
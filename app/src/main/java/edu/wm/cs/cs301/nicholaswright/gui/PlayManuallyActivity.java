@@ -85,6 +85,15 @@ public class PlayManuallyActivity extends AppCompatActivity {
         controller.start(mazeData.getMaze());
     }
 
+    /**
+     * Stops the game when the activity goes away, e.g. with the back button.
+     */
+    @Override
+    public void onDestroy() {
+        controller.stop();
+        super.onDestroy();
+    }
+
     /**
      * Accessor method to give access to the panel
      */
@@ -169,16 +178,14 @@ public class PlayManuallyActivity extends AppCompatActivity {
             @Override
             public void onClick(View view) {
                 Log.v(TAG, "zoom in button tapped");
-                for(int i = 0; i < 8; i++)
-                    controller.keyDown(UserInput.ZoomIn, 0);
+                controller.adjustMapScale(8);
             }
         });
         zoom_out.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 Log.v(TAG, "zoom out button tapped");
-                for(int i = 0; i < 8; i++)
-                    controller.keyDown(UserInput.ZoomOut, 0);
+                controller.adjustMapScale(-8);
             }
         });
 
@@ -0,0 +1,185 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.util.Log;
+
+import java.util.BitSet;
+
+import edu.wm.cs.cs301.nicholaswright.generation.CompiledBSPTree;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+/**
+ * Precomputed potentially visible set (PVS) for the first person view:
+ * for each cell of a maze, the set of BSP leaves that the FirstPersonView
+ * can visit when it draws from that cell.
+ *
+ * The player is always at a cell center, looks in one of the angles
+ * a rotation passes through, or is in the middle of a step
+ * forward or backward along one of the four directions.
+ * This gives a small finite number of views per cell.
+ * The set of a cell is the union of leaves visited by the traversal
+ * for all these views, so for any of these views the FirstPersonView
+ * can skip subtrees without potentially visible leaves without
+ * changing what it draws.
+ *
+ * Leaves are identified by their node index in the CompiledBSPTree,
+ * which is in depth first order such that the nodes of any subtree
+ * form an interval of indices.
+ * Each set is a BitSet over these indices.
+ *
+ * @author Nicholas Wright
+ */
+public class PotentiallyVisibleSet {
+	// for logging
+	private static final String TAG = "PotentiallyVisibleSet";
+
+	/**
+	 * Offsets of intermediate angles of a rotation by 90 degrees in 4 steps,
+	 * a step is 90/4 with integer division. An animated rotation, see ViewAnimator,
+	 * passes other angles as well, those are drawn without the set.
+	 */
+	private static final int[] ROTATION_OFFSETS = { 0, 22, 45, 67, -22, -45, -67 };
+	/**
+	 * Walk steps of a move forward or backward, a step is Constants.STEP_SIZE map units
+	 */
+	private static final int MAX_WALK_STEP = 3;
+
+	private final int width;
+	private final int height;
+	private final int leafCount;
+	/**
+	 * Potentially visible leaves per cell, index x*height+y
+	 */
+	private final BitSet[] visible;
+
+	/**
+	 * Constructor, sets are filled by compute.
+	 * @param tree the compiled BSP tree
+	 * @param width of the maze
+	 * @param height of the maze
+	 */
+	private PotentiallyVisibleSet(CompiledBSPTree tree, int width, int height) {
+		this.width = width;
+		this.height = height;
+		visible = new BitSet[width*height];
+		int leaves = 0;
+		for (int node = 0; node < tree.getNodeCount(); node++) {
+			if (tree.isLeaf(node))
+				leaves++;
+		}
+		leafCount = leaves;
+	}
+
+	/**
+	 * Computes the potentially visible set for all cells of the given maze.
+	 * Only reads the maze, so it can run in parallel to the game.
+	 * @param maze with a BSP tree
+	 * @return the potentially visible set
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	public static PotentiallyVisibleSet compute(Maze maze) throws InterruptedException {
+		final int width = maze.getWidth();
+		final int height = maze.getHeight();
+		final CompiledBSPTree tree = maze.getCompiledBSPTree();
+		PotentiallyVisibleSet result = new PotentiallyVisibleSet(tree, width, height);
+		// a separate view for recording, it neither draws nor updates seen walls
+		FirstPersonView recorder = new FirstPersonView(Constants.VIEW_WIDTH,
+				Constants.VIEW_HEIGHT, Constants.MAP_UNIT, Constants.STEP_SIZE,
+				null, tree);
+		for (int x = 0; x < width; x++) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			for (int y = 0; y < height; y++) {
+				BitSet leaves = new BitSet(tree.getNodeCount());
+				for (int base = 0; base < 360; base += 90) {
+					for (int offset : ROTATION_OFFSETS) {
+						recorder.recordVisibleLeaves(x, y, 0, (base+offset+360) % 360, leaves);
+					}
+					for (int step = 1; step <= MAX_WALK_STEP; step++) {
+						recorder.recordVisibleLeaves(x, y, step, base, leaves);
+						recorder.recordVisibleLeaves(x, y, -step, base, leaves);
+					}
+				}
+				result.visible[x*height+y] = leaves;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the potentially visible set on a low priority background thread
+	 * and hands it to the given view once it is complete.
+	 * @param maze with a BSP tree
+	 * @param view to draw the maze, receives the result
+	 * @return the background thread, can be interrupted to stop it
+	 */
+	public static Thread computeInBackground(final Maze maze, final FirstPersonView view) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					long start = System.currentTimeMillis();
+					PotentiallyVisibleSet set = compute(maze);
+					view.setPotentiallyVisibleSet(set);
+					Log.v(TAG, "Computed for " + set.leafCount + " leaves in "
+							+ (System.currentTimeMillis() - start) + " ms");
+				} catch (InterruptedException e) {
+					Log.v(TAG, "Computation interrupted");
+				}
+			}
+		}, TAG);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Gets the leaves that can be visible for the given view.
+	 * @param x coordinate of current position
+	 * @param y coordinate of current position
+	 * @param walkStep as in FirstPersonView.draw
+	 * @param angle current viewing angle
+	 * @return the set of potentially visible leaves or null
+	 * if the view is not covered by the precomputation
+	 */
+	public BitSet getVisibleLeaves(int x, int y, int walkStep, int angle) {
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			return null;
+		if (0 == walkStep) {
+			if (!isRotationAngle(angle))
+				return null;
+		}
+		else if (0 != angle % 90 || Math.abs(walkStep) > MAX_WALK_STEP)
+			return null;
+		return visible[x*height+y];
+	}
+
+	/**
+	 * Tells if any leaf of the given subtree is in the given set.
+	 * @param leaves set of leaf indices
+	 * @param node root of the subtree
+	 * @param subtreeEnd index after the last node of the subtree
+	 * @return true if the subtree contains a leaf of the set, false otherwise
+	 */
+	public static boolean containsAny(BitSet leaves, int node, int subtreeEnd) {
+		int next = leaves.nextSetBit(node);
+		return next >= 0 && next < subtreeEnd;
+	}
+
+	/**
+	 * @return the number of leaves of the tree
+	 */
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	private boolean isRotationAngle(int angle) {
+		for (int offset : ROTATION_OFFSETS) {
+			if ((angle - offset + 360) % 90 == 0)
+				return true;
+		}
+		return false;
+	}
+}
@@ -37,6 +37,14 @@ public class RangeSet {
 		return ranges.isEmpty();
 	}
 
+	/**
+	 * Gives the number of intervals in the set.
+	 * @return the number of disjoint intervals
+	 */
+	public int size() {
+		return ranges.size();
+	}
+
 	/**
 	 * Clears the set and fills it with a single new interval as specified
 	 * @param lowerBound minimum value for new element
@@ -0,0 +1,183 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of the frames the first person view renders.
+ * Each frame provides a snapshot of the counters of the tree traversal,
+ * the number of intervals the range set is split into and the render time,
+ * split into traversal, projection and rasterization.
+ * Percentiles of the times are kept over a rolling window of recent frames.
+ * Frames are recorded on the render thread, the statistics can be read on any thread.
+ *
+ * @author Nicholas Wright
+ */
+public class RenderStats {
+
+	/**
+	 * Parts of the render time of a frame.
+	 */
+	public enum Phase {
+		// visiting nodes of the tree and clipping their bounding boxes
+		TRAVERSAL,
+		// clipping walls and projecting them onto the view
+		PROJECTION,
+		// filling the background and the polygons of walls
+		RASTERIZATION,
+		// the whole frame
+		TOTAL
+	}
+
+	/**
+	 * Counters and times of a single frame.
+	 * If the view is drawn in parallel strips, counters and the times of the parts
+	 * are summed over all strips while the total is the time of the whole frame.
+	 */
+	public static class Frame {
+		// nodes of the tree visited
+		public int nodes;
+		// leaves visited
+		public int leaves;
+		// walls considered
+		public int walls;
+		// walls that are in front of the view after clipping
+		public int projectedWalls;
+		// polygons filled for the visible parts of walls
+		public int polygons;
+		// largest number of intervals in the range set during the frame
+		public int maxRanges;
+		public long traversalNanos;
+		public long projectionNanos;
+		public long rasterizationNanos;
+		public long totalNanos;
+
+		/**
+		 * @param phase a part of the frame or the whole frame
+		 * @return the time of the phase
+		 */
+		public long getNanos(Phase phase) {
+			switch (phase) {
+			case TRAVERSAL:
+				return traversalNanos;
+			case PROJECTION:
+				return projectionNanos;
+			case RASTERIZATION:
+				return rasterizationNanos;
+			default:
+				return totalNanos;
+			}
+		}
+
+		void set(Frame other) {
+			nodes = other.nodes;
+			leaves = other.leaves;
+			walls = other.walls;
+			projectedWalls = other.projectedWalls;
+			polygons = other.polygons;
+			maxRanges = other.maxRanges;
+			traversalNanos = other.traversalNanos;
+			projectionNanos = other.projectionNanos;
+			rasterizationNanos = other.rasterizationNanos;
+			totalNanos = other.totalNanos;
+		}
+	}
+
+	private final Frame last = new Frame();
+	// times of the frames in the window, one ring buffer per phase
+	private final long[][] window;
+	private int next;
+	private int size;
+	private long frameCount;
+
+	/**
+	 * Constructor with the window from Constants.
+	 */
+	public RenderStats() {
+		this(Constants.RENDER_STATS_WINDOW);
+	}
+
+	/**
+	 * Constructor
+	 * @param windowSize number of recent frames the percentiles cover, {@code 0 < windowSize}
+	 */
+	public RenderStats(int windowSize) {
+		assert 0 < windowSize : "RenderStats: illegal window " + windowSize;
+		window = new long[Phase.values().length][windowSize];
+	}
+
+	/**
+	 * Records the statistics of a frame, the frame is copied.
+	 * @param frame counters and times of the frame
+	 */
+	public synchronized void record(Frame frame) {
+		last.set(frame);
+		for (Phase phase : Phase.values())
+			window[phase.ordinal()][next] = frame.getNanos(phase);
+		next = (next + 1) % window[0].length;
+		size = Math.min(size + 1, window[0].length);
+		frameCount++;
+	}
+
+	/**
+	 * @return a copy of the statistics of the last frame, all zero before the first frame
+	 */
+	public synchronized Frame getLastFrame() {
+		final Frame copy = new Frame();
+		copy.set(last);
+		return copy;
+	}
+
+	/**
+	 * @return the number of recent frames the percentiles cover
+	 */
+	public int getWindowSize() {
+		return window[0].length;
+	}
+
+	/**
+	 * @return the number of frames recorded so far
+	 */
+	public synchronized long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Gives a percentile of the time of a phase over the frames in the window,
+	 * the smallest time that at least the given percentage of frames do not exceed.
+	 * @param phase a part of the frame or the whole frame
+	 * @param percent the percentile, {@code 0 < percent <= 100}, e.g. 50 for the median
+	 * @return the time in nanoseconds, 0 before the first frame
+	 */
+	public synchronized long getPercentileNanos(Phase phase, int percent) {
+		assert 0 < percent && percent <= 100 : "RenderStats: illegal percentile " + percent;
+		if (0 == size)
+			return 0;
+		final long[] sorted = Arrays.copyOf(window[phase.ordinal()], size);
+		Arrays.sort(sorted);
+		// nearest rank
+		final int rank = (percent*size + 99)/100;
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	/**
+	 * Summarizes the window with the median and the 99th percentile of each phase
+	 * and the counters of the last frame, e.g. for the log.
+	 */
+	@Override
+	public synchronized String toString() {
+		final StringBuilder result = new StringBuilder();
+		result.append(frameCount).append(" frames");
+		for (Phase phase : Phase.values()) {
+			result.append(", ").append(phase.name().toLowerCase())
+					.append(" p50 ").append(getPercentileNanos(phase, 50)/1000)
+					.append(" us p99 ").append(getPercentileNanos(phase, 99)/1000).append(" us");
+		}
+		result.append(", last frame ").append(last.nodes).append(" nodes ")
+				.append(last.leaves).append(" leaves ")
+				.append(last.walls).append(" walls ")
+				.append(last.projectedWalls).append(" projected ")
+				.append(last.polygons).append(" polygons ")
+				.append(last.maxRanges).append(" ranges");
+		return result.toString();
+	}
+}
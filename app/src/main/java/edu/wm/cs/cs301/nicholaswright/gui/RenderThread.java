@@ -0,0 +1,100 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.view.Choreographer;
+
+/**
+ * Renders frames on a thread of its own at the refresh of the display.
+ * The thread has its own Choreographer, such that frames are paced
+ * by the display and not by the thread that handles input or runs the game.
+ * A frame is rendered on request and then as long as the renderer asks for more,
+ * e.g. while an animation runs.
+ *
+ * @author Nicholas Wright
+ */
+public class RenderThread {
+	// for logging
+	private static final String TAG = "RenderThread";
+
+	/**
+	 * Renders a single frame on the render thread.
+	 */
+	public interface Renderer {
+		/**
+		 * @param frameTimeNanos time the frame is shown, on the clock of System.nanoTime
+		 * @return true if another frame is needed right after this one
+		 */
+		boolean renderFrame(long frameTimeNanos);
+	}
+
+	private final Renderer renderer;
+	private final HandlerThread thread;
+	private final Handler handler;
+	// only accessed on the render thread
+	private Choreographer choreographer;
+	private boolean frameScheduled;
+
+	private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			frameScheduled = false;
+			if (renderer.renderFrame(frameTimeNanos))
+				scheduleFrame();
+		}
+	};
+	private final Runnable requestCallback = new Runnable() {
+		@Override
+		public void run() {
+			scheduleFrame();
+		}
+	};
+
+	/**
+	 * Starts the render thread.
+	 * @param renderer to call for each frame
+	 */
+	public RenderThread(Renderer renderer) {
+		this.renderer = renderer;
+		thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+		thread.start();
+		handler = new Handler(thread.getLooper());
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				// the Choreographer belongs to the looper of the calling thread
+				choreographer = Choreographer.getInstance();
+			}
+		});
+	}
+
+	/**
+	 * Requests a frame at the next refresh of the display,
+	 * any number of requests before that result in a single frame.
+	 * Can be called on any thread.
+	 */
+	public void requestFrame() {
+		handler.post(requestCallback);
+	}
+
+	/**
+	 * Stops the render thread after the frames that are already requested.
+	 */
+	public void quit() {
+		handler.removeCallbacks(requestCallback);
+		thread.quitSafely();
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Schedules a frame unless one is pending, runs on the render thread.
+	 */
+	private void scheduleFrame() {
+		if (frameScheduled)
+			return;
+		frameScheduled = true;
+		choreographer.postFrameCallback(frameCallback);
+	}
+}
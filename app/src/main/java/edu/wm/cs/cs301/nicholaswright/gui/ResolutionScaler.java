@@ -0,0 +1,110 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import android.util.Log;
+
+/**
+ * Picks the internal resolution of the first person view from measured frame times.
+ * The view is rendered at a percentage of its full size and scaled up to the panel.
+ * If the average frame time over a window of frames misses the budget,
+ * the next lower resolution is used. If the frame time expected at the next
+ * higher resolution, scaled by the number of pixels, stays below a headroom
+ * fraction of the budget, the next higher resolution is used again.
+ * Estimating the higher resolution keeps the scaler from switching back and forth.
+ *
+ * @author Nicholas Wright
+ */
+public class ResolutionScaler {
+	// for logging
+	private static final String TAG = "ResolutionScaler";
+
+	private final long budgetNanos;
+	private final int headroomPercent;
+	private final int window;
+	// resolutions in percent of the full size, from the highest to the lowest
+	private final int[] percents;
+
+	private int level;
+	private long windowNanos;
+	private int windowFrames;
+
+	/**
+	 * Constructor with the settings from Constants.
+	 */
+	public ResolutionScaler() {
+		this(Constants.FRAME_BUDGET_MILLIS, Constants.FRAME_HEADROOM_PERCENT,
+				Constants.FRAME_WINDOW, Constants.RESOLUTION_PERCENT);
+	}
+
+	/**
+	 * Constructor
+	 * @param budgetMillis the time a frame may take, {@code 0 < budgetMillis}
+	 * @param headroomPercent percentage of the budget a frame at a higher resolution may take, {@code 0 < headroomPercent <= 100}
+	 * @param window number of frames to average, {@code 0 < window}
+	 * @param percents resolutions in percent of the full size in decreasing order, the first one is used initially
+	 */
+	public ResolutionScaler(int budgetMillis, int headroomPercent, int window, int[] percents) {
+		assert 0 < budgetMillis && 0 < headroomPercent && headroomPercent <= 100 && 0 < window;
+		assert 0 < percents.length;
+		this.budgetNanos = budgetMillis * 1000000L;
+		this.headroomPercent = headroomPercent;
+		this.window = window;
+		this.percents = percents.clone();
+	}
+
+	/**
+	 * Records the time of a frame that was rendered at the current resolution
+	 * and changes the resolution at the end of a window if needed.
+	 * @param nanos time it took to render the frame
+	 */
+	public void recordFrame(long nanos) {
+		windowNanos += nanos;
+		windowFrames++;
+		if (windowFrames < window)
+			return;
+		final long average = windowNanos / windowFrames;
+		windowNanos = 0;
+		windowFrames = 0;
+		if (average > budgetNanos && level + 1 < percents.length) {
+			level++;
+			Log.v(TAG, "Frames take " + average/1000 + " us, dropping to " + percents[level] + "%");
+		}
+		else if (level > 0 && 100*expectedNanos(average, level - 1) < headroomPercent*budgetNanos) {
+			level--;
+			Log.v(TAG, "Frames take " + average/1000 + " us, going up to " + percents[level] + "%");
+		}
+	}
+
+	/**
+	 * @return the current resolution in percent of the full size
+	 */
+	public int getPercent() {
+		return percents[level];
+	}
+
+	/**
+	 * @return true if the view is rendered at the highest resolution
+	 */
+	public boolean isFullResolution() {
+		return 0 == level;
+	}
+
+	/**
+	 * Scales a length of the full resolution to the current resolution.
+	 * @param fullLength width or height at full resolution
+	 * @return the length at the current resolution, at least 1
+	 */
+	public int scale(int fullLength) {
+		return Math.max(1, fullLength*percents[level]/100);
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Estimates the frame time at another level from the number of pixels.
+	 */
+	private long expectedNanos(long nanos, int otherLevel) {
+		final long other = percents[otherLevel];
+		final long current = percents[level];
+		return nanos*other*other/(current*current);
+	}
+}
@@ -93,5 +93,12 @@ public interface RobotDriver {
 	 * unpause it.
 	 */
 	void togglePaused();
+
+	/**
+	 * Gives the control that pauses, resumes and cancels drive2Exit
+	 * between steps and measures its step rate.
+	 * @return the control of this driver
+	 */
+	DriveControl getDriveControl();
 	
 }
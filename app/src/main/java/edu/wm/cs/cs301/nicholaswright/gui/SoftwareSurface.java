@@ -0,0 +1,351 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import java.util.Arrays;
+
+/**
+ * Headless drawing surface that rasterizes into an int[] framebuffer
+ * of ARGB pixels, row by row with index y*width+x.
+ * It only depends on plain Java, so the renderers can run on a JVM
+ * without a device, e.g. to measure frames per second of the
+ * FirstPersonView or to compare rendered frames pixel by pixel.
+ *
+ * The rasterization is deliberately simple and deterministic:
+ * polygons and ovals cover the pixels whose centers are inside,
+ * lines are one pixel wide, and there are no textures:
+ * textured fills use the current color, the mouse icon is a filled oval.
+ * Layers are surfaces of this class that start out transparent.
+ * The result resembles the MazePanel output but is not identical to it.
+ *
+ * @author Nicholas Wright
+ */
+public class SoftwareSurface implements DrawingSurface {
+
+    private static final int OPAQUE = 0xff000000;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private int color = OPAQUE; // current color, black
+    private int frameCount;
+
+    // scratch buffer for scanline intersections, grows as needed
+    private double[] crossings = new double[8];
+
+    /**
+     * Constructor for a surface with all pixels black
+     * @param width in pixels, {@code 0 < width}
+     * @param height in pixels, {@code 0 < height}
+     */
+    public SoftwareSurface(int width, int height) {
+        assert 0 < width && 0 < height : "SoftwareSurface: illegal size " + width + "x" + height;
+        this.width = width;
+        this.height = height;
+        pixels = new int[width*height];
+        clear(OPAQUE);
+    }
+
+    /**
+     * Constructor for a view that draws into the pixels of another surface.
+     */
+    private SoftwareSurface(SoftwareSurface shared) {
+        this.width = shared.width;
+        this.height = shared.height;
+        this.pixels = shared.pixels;
+    }
+
+    /**
+     * Constructor with the dimensions of the view from Constants.
+     */
+    public SoftwareSurface() {
+        this(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Provides direct access to the framebuffer, shared not copied
+     * @return the ARGB pixels with index y*width+x
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @param x coordinate, {@code 0 <= x < width}
+     * @param y coordinate, {@code 0 <= y < height}
+     * @return the ARGB value of the pixel
+     */
+    public int getPixel(int x, int y) {
+        return pixels[y*width+x];
+    }
+
+    /**
+     * @return the number of calls to update, i.e. the number of completed frames
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Sets all pixels to the given value
+     * @param argb the new value for all pixels
+     */
+    public void clear(int argb) {
+        Arrays.fill(pixels, argb);
+    }
+
+    /**
+     * Compares this framebuffer with the one of another surface of the same size.
+     * @param other surface to compare with
+     * @return the number of pixels that differ
+     */
+    public int countDifferentPixels(SoftwareSurface other) {
+        if (other.width != width || other.height != height)
+            throw new IllegalArgumentException("Surfaces differ in size: " + width + "x" + height
+                    + " vs " + other.width + "x" + other.height);
+        int count = 0;
+        int[] otherPixels = other.pixels;
+        for (int i = 0; i < pixels.length; i++) {
+            if (pixels[i] != otherPixels[i])
+                count++;
+        }
+        return count;
+    }
+
+    ///////////////////////////////////// DrawingSurface ///////////////////////////////////////////
+
+    @Override
+    public void setColor(int r, int g, int b) {
+        color = OPAQUE | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        // Bresenham, plotting clips each pixel
+        final int dx = Math.abs(x2 - x1);
+        final int dy = -Math.abs(y2 - y1);
+        final int sx = x1 < x2 ? 1 : -1;
+        final int sy = y1 < y2 ? 1 : -1;
+        int err = dx + dy;
+        int x = x1;
+        int y = y1;
+        while (true) {
+            plot(x, y);
+            if (x == x2 && y == y2)
+                break;
+            int e2 = 2*err;
+            if (e2 >= dy) {
+                err += dy;
+                x += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y += sy;
+            }
+        }
+    }
+
+    @Override
+    public void drawLines(float[] pts, int count) {
+        for (int i = 0; i + 3 < count; i += 4) {
+            drawLine(Math.round(pts[i]), Math.round(pts[i+1]), Math.round(pts[i+2]), Math.round(pts[i+3]));
+        }
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0)
+            return;
+        final double rx = width/2.0;
+        final double ry = height/2.0;
+        final double cx = x + rx;
+        final double cy = y + ry;
+        final int yStart = Math.max(y, 0);
+        final int yEnd = Math.min(y + height, this.height);
+        for (int row = yStart; row < yEnd; row++) {
+            double ny = (row + 0.5 - cy)/ry;
+            double half = 1 - ny*ny;
+            if (half <= 0)
+                continue;
+            half = rx*Math.sqrt(half);
+            fillSpan(row, cx - half, cx + half);
+        }
+    }
+
+    @Override
+    public void drawMouseIcon(int x, int y, int width, int height) {
+        fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        final int x0 = Math.max(x, 0);
+        final int x1 = Math.min(x + width, this.width);
+        final int y0 = Math.max(y, 0);
+        final int y1 = Math.min(y + height, this.height);
+        if (x0 >= x1)
+            return;
+        for (int row = y0; row < y1; row++) {
+            Arrays.fill(pixels, row*this.width + x0, row*this.width + x1, color);
+        }
+    }
+
+    @Override
+    public void fillRectTexture(int x, int y, int width, int height) {
+        fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        if (nPoints < 3)
+            return;
+        if (crossings.length < nPoints)
+            crossings = new double[nPoints];
+        int minY = yPoints[0];
+        int maxY = yPoints[0];
+        for (int i = 1; i < nPoints; i++) {
+            minY = Math.min(minY, yPoints[i]);
+            maxY = Math.max(maxY, yPoints[i]);
+        }
+        minY = Math.max(minY, 0);
+        maxY = Math.min(maxY, height);
+        // scanline fill with even-odd rule, sampling at pixel centers
+        for (int row = minY; row < maxY; row++) {
+            final double yc = row + 0.5;
+            int n = 0;
+            for (int i = 0, j = nPoints - 1; i < nPoints; j = i++) {
+                int ya = yPoints[j];
+                int yb = yPoints[i];
+                if ((ya <= yc) != (yb <= yc)) {
+                    crossings[n++] = xPoints[j] + (yc - ya)*(xPoints[i] - xPoints[j])/(yb - ya);
+                }
+            }
+            // few crossings per row, insertion sort is fine
+            for (int i = 1; i < n; i++) {
+                double v = crossings[i];
+                int k = i - 1;
+                while (k >= 0 && crossings[k] > v) {
+                    crossings[k+1] = crossings[k];
+                    k--;
+                }
+                crossings[k+1] = v;
+            }
+            for (int i = 0; i + 1 < n; i += 2) {
+                fillSpan(row, crossings[i], crossings[i+1]);
+            }
+        }
+    }
+
+    @Override
+    public void fillPolygonTexture(int[] xPoints, int[] yPoints, int nPoints) {
+        fillPolygon(xPoints, yPoints, nPoints);
+    }
+
+    /**
+     * Provides a surface that draws into the same framebuffer but has its own
+     * current color and scratch buffers. Threads that draw disjoint parts of
+     * a frame use a view each, the framebuffer is not synchronized.
+     * @return a new view on the pixels of this surface
+     */
+    public SoftwareSurface createView() {
+        return new SoftwareSurface(this);
+    }
+
+    @Override
+    public DrawingSurface createLayer(int width, int height) {
+        SoftwareSurface layer = new SoftwareSurface(width, height);
+        layer.clear(0);
+        return layer;
+    }
+
+    @Override
+    public void drawLayer(DrawingSurface layer, int x, int y) {
+        final SoftwareSurface source = (SoftwareSurface) layer;
+        final int x0 = Math.max(x, 0);
+        final int x1 = Math.min(x + source.width, width);
+        final int y0 = Math.max(y, 0);
+        final int y1 = Math.min(y + source.height, height);
+        for (int row = y0; row < y1; row++) {
+            int from = (row - y)*source.width + (x0 - x);
+            int to = row*width + x0;
+            for (int col = x0; col < x1; col++, from++, to++) {
+                final int argb = source.pixels[from];
+                // layers only hold opaque or fully transparent pixels
+                if (0 != (argb & OPAQUE))
+                    pixels[to] = argb;
+            }
+        }
+    }
+
+    /**
+     * Scales with the pixels of the layer that fall on a pixel of this surface,
+     * each pixel of the layer falls on exactly one pixel when scaled down and
+     * an opaque one wins over transparent ones, such that thin lines remain.
+     */
+    @Override
+    public void drawLayer(DrawingSurface layer, int x, int y, int width, int height) {
+        final SoftwareSurface source = (SoftwareSurface) layer;
+        if (width <= 0 || height <= 0)
+            return;
+        final int x0 = Math.max(x, 0);
+        final int x1 = Math.min(x + width, this.width);
+        final int y0 = Math.max(y, 0);
+        final int y1 = Math.min(y + height, this.height);
+        for (int row = y0; row < y1; row++) {
+            final int fromRow = (row - y)*source.height/height;
+            final int toRow = Math.max(fromRow + 1, (row - y + 1)*source.height/height);
+            for (int col = x0; col < x1; col++) {
+                final int fromCol = (col - x)*source.width/width;
+                final int toCol = Math.max(fromCol + 1, (col - x + 1)*source.width/width);
+                final int argb = opaquePixel(source, fromCol, toCol, fromRow, toRow);
+                if (0 != (argb & OPAQUE))
+                    pixels[row*this.width + col] = argb;
+            }
+        }
+    }
+
+    @Override
+    public void update() {
+        frameCount++;
+    }
+
+    //////////////////////////////// private, internal methods //////////////////////////////
+
+    /**
+     * Sets a single pixel to the current color if it is on the surface
+     */
+    private void plot(int x, int y) {
+        if (x >= 0 && x < width && y >= 0 && y < height)
+            pixels[y*width+x] = color;
+    }
+
+    /**
+     * @return the last opaque pixel of the given area of a layer, 0 if there is none
+     */
+    private static int opaquePixel(SoftwareSurface source, int fromCol, int toCol, int fromRow, int toRow) {
+        int result = 0;
+        for (int row = fromRow; row < Math.min(toRow, source.height); row++)
+            for (int col = fromCol; col < Math.min(toCol, source.width); col++) {
+                final int argb = source.pixels[row*source.width + col];
+                if (0 != (argb & OPAQUE))
+                    result = argb;
+            }
+        return result;
+    }
+
+    /**
+     * Fills the pixels of the given row whose centers lie in [left, right)
+     */
+    private void fillSpan(int row, double left, double right) {
+        int x0 = Math.max((int) Math.ceil(left - 0.5), 0);
+        int x1 = Math.min((int) Math.ceil(right - 0.5), width);
+        if (x0 < x1)
+            Arrays.fill(pixels, row*width + x0, row*width + x1, color);
+    }
+}
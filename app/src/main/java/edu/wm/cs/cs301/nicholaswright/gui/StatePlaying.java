@@ -2,6 +2,8 @@ package edu.wm.cs.cs301.nicholaswright.gui;
 
 
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import edu.wm.cs.cs301.nicholaswright.generation.CardinalDirection;
@@ -11,8 +13,8 @@ import edu.wm.cs.cs301.nicholaswright.generation.Maze;
 public class StatePlaying {
     // for logging
     private static final String TAG = "StatePlaying";
-    FirstPersonView firstPersonView;
-    Map mapView;
+    FirstPersonView firstPersonView; // null while the maze is loading, guarded by renderLock
+    Map mapView; // guarded by renderLock
     MazePanel panel;
     Controller control;
 
@@ -22,18 +24,26 @@ public class StatePlaying {
     private boolean showSolution;       // toggle switch to show solution in overall maze on screen
     private boolean mapMode; // true: display map of maze, false: do not display map of maze
     // mapMode is toggled by user keyboard input, causes a call to drawMap during play mode
+    // the three switches and the scale of mapView are read by the render thread,
+    // they are only changed while holding the renderLock
 
     // current position and direction with regard to MazeConfiguration
     int px, py ; // current position on maze grid (x,y)
     int dx, dy;  // current direction
 
     int angle; // current viewing angle, east == 0 degrees
-    int walkStep; // counter for intermediate steps within a single step forward or backward
     Floorplan seenCells; // a matrix with cells to memorize which cells are visible from the current point of view
     // the FirstPersonDrawer obtains this information and the MapDrawer uses it for highlighting currently visible walls on the map
 
     RobotDriver driver;
 
+    // background computation of the potentially visible set for the first person view
+    private volatile Thread pvsBuilder;
+    // waits for the BSP tree of a maze that is still loading to set up the first person view
+    private Thread loadWaiter;
+    // background rendering of the map tile pyramid for the whole maze
+    private Thread pyramidBuilder;
+
     // debug stuff
     //private boolean deepdebug = false;
     //private boolean allVisible = false;
@@ -57,6 +67,52 @@ public class StatePlaying {
 
 
     boolean started;
+    private volatile boolean winning; // set once the exit is reached
+
+    /**
+     * Render scheduling: frames are rendered on a render thread at the
+     * refresh of the display, see RenderThread. State changes only mark
+     * the screen as dirty with invalidate(), any number of changes between
+     * two frames results in a single frame. Moves and rotations update the
+     * state of the game right away and queue a transition with the animator,
+     * the render thread draws the view the animator gives for each frame.
+     */
+    private final Object renderLock = new Object();
+    private boolean dirty;          // guarded by renderLock
+    private boolean animating;      // guarded by renderLock
+    private final ViewAnimator animator = new ViewAnimator(Constants.ANIMATION_MILLIS, Constants.MAP_UNIT);
+    private final ViewAnimator.Pose pose = new ViewAnimator.Pose(); // guarded by renderLock
+    private RenderThread renderThread;
+    /**
+     * Dynamic resolution: the first person view is rendered at a lower
+     * resolution into an off-screen layer and scaled up to the panel
+     * if frames miss their time budget, see ResolutionScaler.
+     * The layer is also used at full resolution while the map is shown,
+     * such that frames where only the map changes keep the drawn view.
+     * Only accessed while holding the renderLock.
+     */
+    private final ResolutionScaler resolution = new ResolutionScaler();
+    private DrawingSurface viewLayer;
+    private int viewLayerPercent;
+    /**
+     * Statistics of the frames of the first person view, logged once per window of frames.
+     * Only every RENDER_STATS_SAMPLE_WINDOWS-th window of frames is measured.
+     */
+    private final RenderStats renderStats = new RenderStats();
+    private long loggedFrames; // guarded by renderLock
+    private final RenderThread.Renderer renderer = new RenderThread.Renderer() {
+        @Override
+        public boolean renderFrame(long frameTimeNanos) {
+            synchronized (renderLock) {
+                final boolean wasAnimating = animating;
+                animating = animator.sample(frameTimeNanos, pose);
+                // the frame after an animation shows where it ends
+                if (dirty || animating || wasAnimating)
+                    render();
+                return animating;
+            }
+        }
+    };
 
     public StatePlaying() {
         started = false;
@@ -75,6 +131,7 @@ public class StatePlaying {
      */
     public void start(Controller controller, MazePanel panel) {
         started = true;
+        winning = false;
         // keep the reference to the controller to be able to call method to switch the state
         control = controller;
         // keep the reference to the panel for drawing
@@ -83,14 +140,15 @@ public class StatePlaying {
         //
         // adjust internal state of maze model
         // visibility settings
-        showMaze = false ;
-        showSolution = false ;
-        mapMode = false;
+        synchronized (renderLock) {
+            showMaze = false ;
+            showSolution = false ;
+            mapMode = false;
+        }
         // init data structure for visible walls
         seenCells = new Floorplan(mazeConfig.getWidth()+1,mazeConfig.getHeight()+1) ;
         // set the current position and direction consistently with the viewing direction
         setPositionDirectionViewingDirection();
-        walkStep = 0; // counts incremental steps during move/rotate operation
 
         if (panel != null) {
             startDrawer();
@@ -109,12 +167,94 @@ public class StatePlaying {
      * for this state.
      */
     protected void startDrawer() {
-        firstPersonView = new FirstPersonView(Constants.VIEW_WIDTH,
+        final Map map = new Map(seenCells, 15, mazeConfig) ;
+        // the new view starts at full resolution, a lower one is set up again on the next frame
+        synchronized (renderLock) {
+            mapView = map;
+            viewLayer = null;
+            firstPersonView = null;
+        }
+        if (loadWaiter != null)
+            loadWaiter.interrupt();
+        loadWaiter = null;
+        if (pvsBuilder != null)
+            pvsBuilder.interrupt();
+        pvsBuilder = null;
+        // the first person view needs the BSP tree, a maze that is loading lazily gets it later
+        if (mazeConfig.isLoaded())
+            startFirstPersonView(mazeConfig);
+        else
+            loadWaiter = waitForFirstPersonView(mazeConfig);
+        // pre-render the whole maze for the map at power of two scales
+        if (pyramidBuilder != null)
+            pyramidBuilder.interrupt();
+        pyramidBuilder = MapTilePyramid.buildInBackground(mazeConfig, panel, map);
+        // render on a thread of its own, starting at the current position
+        animator.setPose(px, py, angle);
+        if (renderThread == null)
+            renderThread = new RenderThread(renderer);
+        // request the initial screen for this state
+        invalidate();
+    }
+    /**
+     * Sets up the first person view for a maze with a BSP tree
+     * and starts the computation of its potentially visible set.
+     */
+    private void startFirstPersonView(Maze maze) {
+        final FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH,
                 Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
-                Constants.STEP_SIZE, seenCells, mazeConfig.getRootnode()) ;
-        mapView = new Map(seenCells, 15, mazeConfig) ;
-        // draw the initial screen for this state
-        draw();
+                Constants.STEP_SIZE, seenCells, maze.getCompiledBSPTree()) ;
+        view.setRenderStats(renderStats, Constants.RENDER_STATS_SAMPLE_WINDOWS);
+        synchronized (renderLock) {
+            firstPersonView = view;
+        }
+        // precompute visibility per cell to speed up the first person view
+        if ((long) maze.getWidth()*maze.getHeight() <= Constants.PVS_MAX_CELLS)
+            pvsBuilder = PotentiallyVisibleSet.computeInBackground(maze, view);
+    }
+    /**
+     * Waits on a thread of its own for a maze that is still loading and then
+     * sets up the first person view, until then frames show the map only
+     * and the player can already move.
+     */
+    private Thread waitForFirstPersonView(final Maze maze) {
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!maze.waitUntilLoaded()) {
+                        Log.w(TAG, "Maze could not be loaded, no first person view");
+                        return;
+                    }
+                }
+                catch (InterruptedException e) {
+                    return; // game stopped or restarted
+                }
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                startFirstPersonView(maze);
+                invalidate();
+            }
+        }, "StatePlaying.loadWaiter");
+        waiter.setDaemon(true);
+        waiter.start();
+        return waiter;
+    }
+    /**
+     * Stops the render thread and the background computations,
+     * threads that wait for the animation are released.
+     */
+    public void stop() {
+        if (renderThread != null)
+            renderThread.quit();
+        renderThread = null;
+        animator.cancel();
+        if (loadWaiter != null)
+            loadWaiter.interrupt();
+        if (pvsBuilder != null)
+            pvsBuilder.interrupt();
+        if (pyramidBuilder != null)
+            pyramidBuilder.interrupt();
     }
     /**
      * Internal method to set the current position, the direction
@@ -147,6 +287,9 @@ public class StatePlaying {
     public boolean keyDown(Constants.UserInput key, int value) {
         if (!started)
             return false;
+        // the player is outside of the maze, the last move is still animated
+        if (winning)
+            return true;
 
         // react to input for directions and interrupt signal (ESCAPE key)
         // react to input for displaying a map of the current path or of the overall maze (on/off toggle switch)
@@ -158,9 +301,8 @@ public class StatePlaying {
             case Up: // move forward
                 walk(1);
                 // check termination, did we leave the maze?
-                if (isOutside(px,py)) {
-                    control.win();
-                }
+                if (isOutside(px,py))
+                    winAfterAnimation();
                 break;
             case Left: // turn left
                 rotate(1);
@@ -171,9 +313,8 @@ public class StatePlaying {
             case Down: // move backward
                 walk(-1);
                 // check termination, did we leave the maze?
-                if (isOutside(px,py)) {
-                    control.win();
-                }
+                if (isOutside(px,py))
+                    winAfterAnimation();
                 break;
             case ReturnToTitle: // escape to title screen
                 //control.switchToTitle();
@@ -182,63 +323,165 @@ public class StatePlaying {
                 // go to position if within maze
                 if (mazeConfig.isValidPosition(px + dx, py + dy)) {
                     setCurrentPosition(px + dx, py + dy) ;
-                    draw() ;
+                    animator.setPose(px, py, angle);
+                    invalidate() ;
                 }
                 break;
             case ToggleLocalMap: // show local information: current position and visible walls
                 // precondition for showMaze and showSolution to be effective
                 // acts as a toggle switch
-                mapMode = !mapMode;
-                draw() ;
+                synchronized (renderLock) {
+                    mapMode = !mapMode;
+                }
+                invalidate() ;
                 break;
             case ToggleFullMap: // show the whole maze
                 // acts as a toggle switch
-                showMaze = !showMaze;
-                draw() ;
+                synchronized (renderLock) {
+                    showMaze = !showMaze;
+                }
+                invalidate() ;
                 break;
             case ToggleSolution: // show the solution as a yellow line towards the exit
                 // acts as a toggle switch
-                showSolution = !showSolution;
-                draw() ;
+                synchronized (renderLock) {
+                    showSolution = !showSolution;
+                }
+                invalidate() ;
                 break;
             case ZoomIn: // zoom into map
                 adjustMapScale(true);
-                draw() ;
+                invalidate() ;
                 break ;
             case ZoomOut: // zoom out of map
                 adjustMapScale(false);
-                draw() ;
+                invalidate() ;
                 break ;
         } // end of internal switch statement for playing state
         return true;
     }
     /**
-     * Draws the current content on panel to show it on screen.
+     * Marks the screen as dirty and requests a frame at the next
+     * refresh of the display unless one is already pending.
+     * Cheap to call, so it can be called for every change of state.
      */
-    protected void draw() {
-        if (panel == null) {
+    protected void invalidate() {
+        if (panel == null || renderThread == null) {
             printWarning();
             return;
         }
+        synchronized (renderLock) {
+            dirty = true;
+        }
+        renderThread.requestFrame();
+    }
+    /**
+     * Renders a frame for the current pose, caller must hold the renderLock.
+     */
+    private void render() {
+        dirty = false;
+        final long start = System.nanoTime();
         // draw the first person view and the map view if wanted
-        firstPersonView.draw(panel, px, py, walkStep, angle) ;
+        drawFirstPersonView();
         if (isInMapMode()) {
-            mapView.draw(panel, px, py, angle, walkStep,
+            mapView.drawWithOffset(panel, pose.x, pose.y, pose.angle, pose.walkDistance,
                     isInShowMazeMode(),isInShowSolutionMode()) ;
         }
         // update the screen with the buffer graphics
         panel.update() ;
+        resolution.recordFrame(System.nanoTime() - start);
+        if (renderStats.getFrameCount() >= loggedFrames + Constants.RENDER_STATS_WINDOW) {
+            loggedFrames = renderStats.getFrameCount();
+            Log.v(TAG, "First person view: " + renderStats);
+        }
+    }
+    /**
+     * Provides the statistics of the frames of the first person view,
+     * e.g. the median and the 99th percentile of the render time.
+     * @return the statistics, updated on the render thread
+     */
+    public RenderStats getRenderStats() {
+        return renderStats;
+    }
+    /**
+     * Draws the first person view at the resolution the ResolutionScaler picks,
+     * into a layer of its own if it is scaled or the map is drawn on top of it,
+     * caller must hold the renderLock.
+     */
+    private void drawFirstPersonView() {
+        if (null == firstPersonView) {
+            // the maze is still loading, the map is drawn on an empty view
+            panel.setColor(0, 0, 0);
+            panel.fillRect(0, 0, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+            return;
+        }
+        if (resolution.isFullResolution() && !isInMapMode()) {
+            if (null != viewLayer) {
+                viewLayer = null;
+                firstPersonView.setResolution(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+            }
+            firstPersonView.drawWithOffset(panel, pose.x, pose.y, pose.walkDistance, pose.angle) ;
+            return;
+        }
+        if (null == viewLayer || viewLayerPercent != resolution.getPercent()) {
+            viewLayerPercent = resolution.getPercent();
+            final int width = resolution.scale(Constants.VIEW_WIDTH);
+            final int height = resolution.scale(Constants.VIEW_HEIGHT);
+            viewLayer = panel.createLayer(width, height);
+            firstPersonView.setResolution(width, height);
+        }
+        // the layer holds the view alone, it only needs to be drawn if the view changed
+        if (!firstPersonView.isDrawn(viewLayer, pose.x, pose.y, pose.walkDistance, pose.angle))
+            firstPersonView.drawWithOffset(viewLayer, pose.x, pose.y, pose.walkDistance, pose.angle) ;
+        if (resolution.isFullResolution())
+            panel.drawLayer(viewLayer, 0, 0);
+        else
+            panel.drawLayer(viewLayer, 0, 0, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+    }
+    /**
+     * Sets the map display options in one go and requests a single frame.
+     * @param showMap true to display the map of the maze
+     * @param showFullMaze true to display the whole maze on the map
+     * @param showPath true to display the solution on the map
+     * @param scale the map scale, values below 1 are set to 1
+     */
+    public void setMapConfiguration(boolean showMap, boolean showFullMaze, boolean showPath, int scale) {
+        synchronized (renderLock) {
+            mapMode = showMap;
+            showMaze = showFullMaze;
+            showSolution = showPath;
+            if (mapView != null)
+                mapView.setMapScale(scale);
+        }
+        invalidate();
+    }
+    /**
+     * Changes the map scale by the given number of steps
+     * and requests a single frame, replaces repeated ZoomIn
+     * and ZoomOut input.
+     * @param steps positive to zoom in, negative to zoom out
+     */
+    public void adjustMapScale(int steps) {
+        if (!started)
+            return;
+        synchronized (renderLock) {
+            if (mapView != null)
+                mapView.setMapScale(mapView.getMapScale() + steps);
+        }
+        invalidate();
     }
     /**
      * Adjusts the internal map scale setting for the map view.
      * @param increment if true increase, otherwise decrease scale for map
      */
     private void adjustMapScale(boolean increment) {
-        if (increment) {
-            mapView.incrementMapScale() ;
-        }
-        else {
-            mapView.decrementMapScale() ;
+        synchronized (renderLock) {
+            if (increment) {
+                mapView.incrementMapScale() ;
+            }
+            else {
+                mapView.decrementMapScale() ;
+            }
         }
     }
     /**
@@ -315,39 +558,75 @@ public class StatePlaying {
         return !mazeConfig.hasWall(px, py, cd);
     }
     /**
-     * Draws and waits. Used to obtain a smooth appearance for rotate and move operations
+     * Waits until at most the given number of transitions are queued for the animation.
+     * Only threads other than the main thread wait, e.g. a robot driver, such that it
+     * does not run ahead of the animation, input on the main thread never blocks.
+     * @param max number of queued transitions to wait for
      */
-    private void slowedDownRedraw() {
-        draw() ;
+    private void awaitAnimation(int max) {
+        if (renderThread == null || Looper.myLooper() == Looper.getMainLooper())
+            return;
         try {
-            Thread.sleep(25);
-        } catch (Exception e) {
-            // may happen if thread is interrupted
-            // no reason to do anything about it, ignore exception
+            animator.awaitQueued(max);
+        } catch (InterruptedException e) {
+            // the driver is cancelled, it notices at its next step
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ends the game once the move out of the maze has been animated.
+     * A robot driver waits for the animation on its own thread. Input on the
+     * main thread does not block, the win is posted to the main thread when
+     * the animator has played the last transition.
+     */
+    private void winAfterAnimation() {
+        winning = true;
+        if (renderThread == null || Looper.myLooper() != Looper.getMainLooper()) {
+            // a robot shows its last move before the game ends
+            awaitAnimation(0);
+            control.win();
+            return;
         }
+        final Handler main = new Handler(Looper.getMainLooper());
+        animator.whenIdle(new Runnable() {
+            @Override
+            public void run() {
+                main.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the game may have been left in the meantime
+                        if (renderThread != null)
+                            control.win();
+                    }
+                });
+            }
+        });
     }
 
     /**
-     * Performs a rotation with 4 intermediate views,
-     * updates the screen and the internal direction
+     * Performs a rotation by 90 degrees, updates the internal direction
+     * right away and animates the view.
+     * A driver waits for the animation before it takes the lock, such that
+     * input on the main thread is not blocked while it waits.
      * @param dir for current direction, values are either 1 or -1
      */
-    synchronized private void rotate(int dir) {
-        final int originalAngle = angle;
-        final int steps = 4;
-
-        for (int i = 0; i != steps; i++) {
-            // add 1/4 of 90 degrees per step
-            // if dir is -1 then subtract instead of addition
-            angle = originalAngle + dir*(90*(i+1))/steps;
-            angle = (angle+1800) % 360;
-            // draw method is called and uses angle field for direction
-            // information.
-            slowedDownRedraw();
+    private void rotate(int dir) {
+        awaitAnimation(0);
+        synchronized (this) {
+            rotateNow(dir);
         }
-        // update maze direction only after intermediate steps are done
-        // because choice of direction values are more limited.
+    }
+
+    private void rotateNow(int dir) {
+        final int originalAngle = angle;
+        // if dir is -1 then subtract instead of addition
+        angle = (originalAngle + dir*90 + 360) % 360;
         setDirectionToMatchCurrentAngle();
+        // without a render thread, e.g. in a dry-run, there is nothing to animate
+        if (renderThread != null)
+            animator.rotate(px, py, originalAngle, originalAngle + dir*90);
+        invalidate();
         //logPosition(); // debugging
 
         // update values
@@ -365,26 +644,29 @@ public class StatePlaying {
     }
 
     /**
-     * Moves in the given direction with 4 intermediate steps,
-     * updates the screen and the internal position
+     * Moves in the given direction, updates the internal position
+     * right away and animates the view.
+     * A driver waits for the animation before it takes the lock, such that
+     * input on the main thread is not blocked while it waits.
      * @param dir, only possible values are 1 (forward) and -1 (backward)
      */
-    synchronized private void walk(int dir) {
+    private void walk(int dir) {
+        awaitAnimation(0);
+        synchronized (this) {
+            walkNow(dir);
+        }
+    }
+
+    private void walkNow(int dir) {
         // check if there is a wall in the way
         if (!checkMove(dir))
             return;
-        // walkStep is a parameter of FirstPersonDrawer.draw()
-        // it is used there for scaling steps
-        // so walkStep is implicitly used in slowedDownRedraw
-        // which triggers the draw operation in
-        // FirstPersonDrawer and MapDrawer
-        for (int step = 0; step != 4; step++) {
-            walkStep += dir;
-            slowedDownRedraw();
-        }
-
+        final int fromX = px;
+        final int fromY = py;
         setCurrentPosition(px + dir*dx, py + dir*dy) ;
-        walkStep = 0; // reset counter for next time
+        if (renderThread != null)
+            animator.walk(fromX, fromY, px, py, angle, dir);
+        invalidate();
         //logPosition(); // debugging
 
         // for figuring out printed coordinates system
@@ -0,0 +1,226 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Interpolates the view between the positions and directions of the game
+ * for moves and rotations. The game updates its state right away and queues
+ * a transition, the render thread samples the view for the time of each frame.
+ * A transition takes the same time no matter how long frames take to render,
+ * slow rendering only results in fewer frames.
+ *
+ * Transitions are played one after the other. If several are queued,
+ * each one is shortened such that the view catches up with the game.
+ * Callers that must not run ahead of the animation, e.g. a robot driver,
+ * wait for the queue with awaitQueued. Callers that must not block, e.g.
+ * input on the main thread, register a callback with whenIdle instead.
+ *
+ * @author Nicholas Wright
+ */
+public class ViewAnimator {
+
+	/**
+	 * Position and direction of the view for a single frame.
+	 */
+	public static class Pose {
+		// cell of the position
+		public int x;
+		public int y;
+		// viewing angle in degrees, east == 0
+		public int angle;
+		// distance walked from the cell along the viewing direction in map units, negative for backwards
+		public int walkDistance;
+
+		void set(int x, int y, int angle, int walkDistance) {
+			this.x = x;
+			this.y = y;
+			this.angle = angle;
+			this.walkDistance = walkDistance;
+		}
+	}
+
+	/**
+	 * A move from a cell to a neighbor or a rotation in a cell.
+	 */
+	private static final class Transition {
+		final int x;
+		final int y;
+		final int fromAngle;
+		// not normalized, such that the rotation takes the short way
+		final int toAngle;
+		// -1 or 1 for a move backward or forward, 0 for a rotation
+		final int walk;
+		// start of the transition in frame time, negative until its first frame
+		long start = -1;
+		long duration;
+
+		Transition(int x, int y, int fromAngle, int toAngle, int walk) {
+			this.x = x;
+			this.y = y;
+			this.fromAngle = fromAngle;
+			this.toAngle = toAngle;
+			this.walk = walk;
+		}
+	}
+
+	private final long durationNanos;
+	private final int mapUnit;
+	private final ArrayDeque<Transition> queue = new ArrayDeque<Transition>();
+	// callbacks to run once the queue is empty
+	private final ArrayList<Runnable> idleCallbacks = new ArrayList<Runnable>();
+	// position and direction after the last queued transition
+	private int restX;
+	private int restY;
+	private int restAngle;
+
+	/**
+	 * Constructor
+	 * @param durationMillis time a single move or rotation takes
+	 * @param mapUnit length of a cell in map units, see Constants.MAP_UNIT
+	 */
+	public ViewAnimator(int durationMillis, int mapUnit) {
+		this.durationNanos = durationMillis * 1000000L;
+		this.mapUnit = mapUnit;
+	}
+
+	/**
+	 * Places the view without a transition, e.g. at the start or for a jump.
+	 * Pending transitions are dropped.
+	 * @param x coordinate of the cell
+	 * @param y coordinate of the cell
+	 * @param angle viewing angle in degrees
+	 */
+	public synchronized void setPose(int x, int y, int angle) {
+		queue.clear();
+		idleCallbacks.clear();
+		restX = x;
+		restY = y;
+		restAngle = angle;
+		notifyAll();
+	}
+
+	/**
+	 * Queues a move to a neighboring cell.
+	 * @param fromX coordinate of the cell the move starts in
+	 * @param fromY coordinate of the cell the move starts in
+	 * @param toX coordinate of the cell the move ends in
+	 * @param toY coordinate of the cell the move ends in
+	 * @param angle viewing angle in degrees
+	 * @param dir 1 for forward, -1 for backward
+	 */
+	public synchronized void walk(int fromX, int fromY, int toX, int toY, int angle, int dir) {
+		queue.add(new Transition(fromX, fromY, angle, angle, dir));
+		restX = toX;
+		restY = toY;
+		restAngle = angle;
+	}
+
+	/**
+	 * Queues a rotation in a cell.
+	 * @param x coordinate of the cell
+	 * @param y coordinate of the cell
+	 * @param fromAngle angle at the start in degrees
+	 * @param toAngle angle at the end in degrees, not normalized such that it gives the direction of the rotation
+	 */
+	public synchronized void rotate(int x, int y, int fromAngle, int toAngle) {
+		queue.add(new Transition(x, y, fromAngle, toAngle, 0));
+		restX = x;
+		restY = y;
+		restAngle = normalize(toAngle);
+	}
+
+	/**
+	 * Sets the pose of the view for the given frame time and drops transitions that are over.
+	 * @param frameTimeNanos time of the frame, on the clock of System.nanoTime
+	 * @param pose receives the position and direction of the view
+	 * @return true if a transition is still running and more frames are needed
+	 */
+	public synchronized boolean sample(long frameTimeNanos, Pose pose) {
+		while (!queue.isEmpty()) {
+			final Transition current = queue.peek();
+			if (current.start < 0)
+				begin(current, frameTimeNanos);
+			final long elapsed = frameTimeNanos - current.start;
+			if (elapsed < current.duration) {
+				final double fraction = (double) elapsed / current.duration;
+				pose.set(current.x, current.y,
+						normalize(current.fromAngle + (int) Math.round((current.toAngle - current.fromAngle)*fraction)),
+						(int) Math.round(current.walk*mapUnit*fraction));
+				return true;
+			}
+			queue.poll();
+			// the next transition starts where this one ended, not at the next frame
+			if (!queue.isEmpty())
+				begin(queue.peek(), current.start + current.duration);
+			notifyAll();
+		}
+		pose.set(restX, restY, restAngle, 0);
+		runIdleCallbacks();
+		return false;
+	}
+
+	/**
+	 * @return true if there are transitions to play
+	 */
+	public synchronized boolean isAnimating() {
+		return !queue.isEmpty();
+	}
+
+	/**
+	 * Waits until at most the given number of transitions are queued.
+	 * @param max number of transitions, 0 to wait for the end of the animation
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 */
+	public synchronized void awaitQueued(int max) throws InterruptedException {
+		while (queue.size() > max)
+			wait();
+	}
+
+	/**
+	 * Runs the given callback once all queued transitions have been played,
+	 * right away on the calling thread if nothing is queued, otherwise on the
+	 * thread that samples the frame in which the last transition ends.
+	 * The callback must not block, it runs while the animator is locked.
+	 * Callbacks that are still waiting are dropped by setPose and cancel.
+	 * @param callback to run at the end of the animation
+	 */
+	public synchronized void whenIdle(Runnable callback) {
+		idleCallbacks.add(callback);
+		if (queue.isEmpty())
+			runIdleCallbacks();
+	}
+
+	/**
+	 * Drops all transitions and wakes up waiting threads, the view rests at the last pose.
+	 */
+	public synchronized void cancel() {
+		queue.clear();
+		idleCallbacks.clear();
+		notifyAll();
+	}
+
+	//////////////////////////////// private, internal methods //////////////////////////////
+
+	/**
+	 * Starts a transition at the given time, shortened by the number of transitions
+	 * that are queued behind it.
+	 */
+	private void begin(Transition transition, long start) {
+		transition.start = start;
+		transition.duration = Math.max(1, durationNanos / queue.size());
+	}
+
+	private void runIdleCallbacks() {
+		if (idleCallbacks.isEmpty())
+			return;
+		Runnable[] callbacks = idleCallbacks.toArray(new Runnable[idleCallbacks.size()]);
+		idleCallbacks.clear();
+		for (Runnable callback : callbacks)
+			callback.run();
+	}
+
+	private static int normalize(int angle) {
+		return ((angle % 360) + 360) % 360;
+	}
+}
@@ -46,7 +46,8 @@ public class WallFollower implements RobotDriver {
 	// In order of (LEFT, RIGHT, FORWARD, BACKWARD)
 	private boolean[] operationalSensors;
 
-	private boolean paused = false;
+	// pauses and cancels drive2Exit between steps
+	private final DriveControl control = new DriveControl();
 	
 	/**
 	 * empty constructor that initializes everything to either null,
@@ -275,8 +276,13 @@ public class WallFollower implements RobotDriver {
      * Toggles the paused state of the drive2Exit function
      */
 	public void togglePaused(){
-	    paused = !paused;
-    }
+		control.toggle();
+	}
+
+	@Override
+	public DriveControl getDriveControl() {
+		return control;
+	}
 
 	/**
 	 * Drives the robot towards the exit given it exists and 
@@ -300,11 +306,9 @@ public class WallFollower implements RobotDriver {
 		// while we're not done
 		while(!robot.isAtExit()) {
 
-		    // if the user decides to pause the algorithm, we wait until the user
-            // unpauses, checking every .1 seconds
-		    while(paused){
-		        Thread.currentThread().sleep(100);
-            }
+			// if the user decides to pause the algorithm, we wait until the user
+			// unpauses, a cancelled drive ends here with an InterruptedException
+			control.awaitStep();
 			
 			// check to see if it's stopped
 			if(robot.hasStopped()) {
@@ -55,7 +55,8 @@ public class Wizard implements RobotDriver {
 	// In order of (LEFT, RIGHT, FORWARD, BACKWARD)
 	private boolean[] operationalSensors;
 
-	private boolean paused = false;
+	// pauses and cancels drive2Exit between steps
+	private final DriveControl control = new DriveControl();
 	
 	/**
 	 * empty constructor that initializes everything to either null,
@@ -269,7 +270,12 @@ public class Wizard implements RobotDriver {
 	 * Toggles the paused state of the drive2Exit function
 	 */
 	public void togglePaused(){
-		paused = !paused;
+		control.toggle();
+	}
+
+	@Override
+	public DriveControl getDriveControl() {
+		return control;
 	}
 	/**
 	 * Drives the robot towards the exit given it exists and 
@@ -289,10 +295,8 @@ public class Wizard implements RobotDriver {
 		while(!robot.isAtExit()) {
 
 			// if the user decides to pause the algorithm, we wait until the user
-			// unpauses, checking every .1 seconds
-			while(paused){
-				Thread.currentThread().sleep(100);
-			}
+			// unpauses, a cancelled drive ends here with an InterruptedException
+			control.awaitStep();
 
 			curPosition = robot.getCurrentPosition();
 			nextPosition = getCloserNeighbor(curPosition[0], curPosition[1]);
@@ -0,0 +1,99 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the compiled form of a BSP tree matches the tree it is
+ * compiled from and survives a round trip through the binary format.
+ *
+ * @author Nicholas Wright
+ */
+public class CompiledBSPTreeTest {
+
+    private static Maze buildMaze() {
+        return TestOrder.buildMaze(new MazeBuilder(true), 5, false, 5);
+    }
+
+    /**
+     * Compares the subtree of the given node with the compiled subtree
+     * starting at the given index.
+     * @return the index after the compiled subtree
+     */
+    private static int compare(BSPNode node, CompiledBSPTree tree, int index) {
+        assertEquals(node.getLowerBoundX(), tree.getLowerBoundX(index));
+        assertEquals(node.getLowerBoundY(), tree.getLowerBoundY(index));
+        assertEquals(node.getUpperBoundX(), tree.getUpperBoundX(index));
+        assertEquals(node.getUpperBoundY(), tree.getUpperBoundY(index));
+        assertEquals(node.isIsleaf(), tree.isLeaf(index));
+        if (node.isIsleaf()) {
+            ArrayList<Wall> walls = ((BSPLeaf) node).getSlist();
+            int first = tree.getFirstWall(index);
+            assertEquals(walls.size(), tree.getEndWall(index) - first);
+            for (int i = 0; i < walls.size(); i++) {
+                Wall wall = walls.get(i);
+                assertSame(wall, tree.getWall(first + i));
+                assertEquals(wall.getStartPositionX(), tree.getWallStartX(first + i));
+                assertEquals(wall.getStartPositionY(), tree.getWallStartY(first + i));
+                assertEquals(wall.getEndPositionX(), tree.getWallEndX(first + i));
+                assertEquals(wall.getEndPositionY(), tree.getWallEndY(first + i));
+            }
+            assertEquals(index + 1, tree.getSubtreeEnd(index));
+            return index + 1;
+        }
+        BSPBranch branch = (BSPBranch) node;
+        assertEquals(branch.getX(), tree.getX(index));
+        assertEquals(branch.getY(), tree.getY(index));
+        assertEquals(branch.getDx(), tree.getDx(index));
+        assertEquals(branch.getDy(), tree.getDy(index));
+        assertEquals(index + 1, tree.getLeftChild(index));
+        int right = compare(branch.getLeftBranch(), tree, index + 1);
+        assertEquals(right, tree.getRightChild(index));
+        int end = compare(branch.getRightBranch(), tree, right);
+        assertEquals(end, tree.getSubtreeEnd(index));
+        return end;
+    }
+
+    @Test
+    public void testCompiledTreeMatchesTree() {
+        Maze maze = buildMaze();
+        CompiledBSPTree tree = maze.getCompiledBSPTree();
+        assertSame(tree, maze.getCompiledBSPTree());
+        assertEquals(tree.getNodeCount(), compare(maze.getRootnode(), tree, 0));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        CompiledBSPTree tree = buildMaze().getCompiledBSPTree();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.writeTo(new DataOutputStream(bytes));
+        CompiledBSPTree copy = CompiledBSPTree.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(tree.getNodeCount(), copy.getNodeCount());
+        assertEquals(tree.getWallCount(), copy.getWallCount());
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            assertEquals(tree.isLeaf(node), copy.isLeaf(node));
+            assertEquals(tree.getSubtreeEnd(node), copy.getSubtreeEnd(node));
+            assertEquals(tree.getUpperBoundX(node), copy.getUpperBoundX(node));
+        }
+        for (int wall = 0; wall < tree.getWallCount(); wall++) {
+            assertEquals(tree.getWallColor(wall), copy.getWallColor(wall));
+            assertEquals(tree.getWallEndY(wall), copy.getWallEndY(wall));
+            assertArrayEquals(tree.getWall(wall).getColorRGB(), copy.getWall(wall).getColorRGB());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsOtherData() throws IOException {
+        CompiledBSPTree.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3, 4})));
+    }
+}
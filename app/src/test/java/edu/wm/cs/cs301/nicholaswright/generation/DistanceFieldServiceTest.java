@@ -0,0 +1,89 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the distance field service gives the same distances as Distance
+ * for the exit, takes the closest of several sources and keeps its cache
+ * within the byte limit by dropping the least recently used fields.
+ *
+ * @author Nicholas Wright
+ */
+public class DistanceFieldServiceTest {
+
+    private static Maze buildMaze() {
+        return TestOrder.buildMaze(new MazeBuilder(), 3, false, 23);
+    }
+
+    @Test
+    public void testExitFieldEqualsDistance() {
+        Maze maze = buildMaze();
+        Distance distance = maze.getMazedists();
+        int[] exit = distance.getExitPosition();
+        DistanceField field = new DistanceFieldService(maze).getDistanceField(exit[0], exit[1]);
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                assertEquals(distance.getDistanceValue(x, y), field.getDistanceValue(x, y));
+            }
+        }
+        assertEquals(distance.getMaxDistance(), field.getMaxDistance());
+    }
+
+    @Test
+    public void testClosestOfSeveralSources() {
+        Maze maze = buildMaze();
+        DistanceFieldService service = new DistanceFieldService(maze);
+        int[][] sources = { {0, 0}, {maze.getWidth() - 1, maze.getHeight() - 1}, {2, 1} };
+        DistanceField both = service.getDistanceField(sources);
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                int min = Distance.INFINITY;
+                for (int[] source : sources) {
+                    min = Math.min(min, service.getDistanceField(source[0], source[1]).getDistanceValue(x, y));
+                }
+                assertEquals(min, both.getDistanceValue(x, y));
+            }
+        }
+        // order and duplicates of sources do not matter
+        assertSame(both, service.getDistanceField(new int[][] { {2, 1}, {0, 0}, {2, 1},
+                {maze.getWidth() - 1, maze.getHeight() - 1} }));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedBySize() {
+        Maze maze = buildMaze();
+        final long fieldBytes = 2L*maze.getWidth()*maze.getHeight();
+        // room for two and a half fields
+        DistanceFieldService service = new DistanceFieldService(maze, 2*fieldBytes + fieldBytes/2);
+        DistanceField a = service.getDistanceField(0, 0);
+        assertEquals(fieldBytes, a.getSizeInBytes());
+        DistanceField b = service.getDistanceField(1, 0);
+        // a hit makes a the most recently used field
+        assertSame(a, service.getDistanceField(0, 0));
+        DistanceField c = service.getDistanceField(2, 0);
+        assertEquals(2, service.getCachedFieldCount());
+        assertSame(a, service.getDistanceField(0, 0));
+        assertSame(c, service.getDistanceField(2, 0));
+        // b was dropped and is computed again
+        DistanceField again = service.getDistanceField(1, 0);
+        assertNotSame(b, again);
+        assertEquals(b.getDistanceValue(3, 3), again.getDistanceValue(3, 3));
+        assertEquals(2, service.getCachedFieldCount());
+        service.clear();
+        assertEquals(0, service.getCachedFieldCount());
+    }
+
+    @Test
+    public void testKeepsFieldLargerThanLimit() {
+        Maze maze = buildMaze();
+        DistanceFieldService service = new DistanceFieldService(maze, 16);
+        DistanceField a = service.getDistanceField(0, 0);
+        assertEquals(1, service.getCachedFieldCount());
+        assertSame(a, service.getDistanceField(0, 0));
+        service.getDistanceField(1, 0);
+        assertEquals(1, service.getCachedFieldCount());
+        assertNotSame(a, service.getDistanceField(0, 0));
+    }
+}
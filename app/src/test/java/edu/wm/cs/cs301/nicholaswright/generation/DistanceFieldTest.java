@@ -0,0 +1,69 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that distance fields keep values in 16 bits where they fit,
+ * fall back to 32 bits for longer distances and keep unreachable
+ * cells apart from all finite distances.
+ *
+ * @author Nicholas Wright
+ */
+public class DistanceFieldTest {
+
+    private static int[] values(int... values) {
+        return values;
+    }
+
+    @Test
+    public void testCompactValues() {
+        // the largest distance that fits next to the marker for unreachable cells
+        final int max = Character.MAX_VALUE - 1;
+        DistanceField field = new DistanceField(2, 3, values(1, 2, max, Distance.INFINITY, 300, 7), max);
+        assertEquals(2L*6, field.getSizeInBytes());
+        assertEquals(1, field.getDistanceValue(0, 0));
+        assertEquals(2, field.getDistanceValue(0, 1));
+        assertEquals(max, field.getDistanceValue(0, 2));
+        assertEquals(Distance.INFINITY, field.getDistanceValue(1, 0));
+        assertEquals(300, field.getDistanceValue(1, 1));
+        assertEquals(7, field.getDistanceValue(1, 2));
+        assertEquals(max, field.getMaxDistance());
+        assertEquals(2, field.getWidth());
+        assertEquals(3, field.getHeight());
+    }
+
+    @Test
+    public void testWideValues() {
+        // from 65535 on, the largest char value, distances are kept in an int array
+        for (int max : new int[] { Character.MAX_VALUE, Character.MAX_VALUE + 1, 1 << 24 }) {
+            int[] values = values(1, max, Distance.INFINITY, max - 1);
+            DistanceField field = new DistanceField(2, 2, values, max);
+            assertEquals(4L*4, field.getSizeInBytes());
+            assertEquals(1, field.getDistanceValue(0, 0));
+            assertEquals(max, field.getDistanceValue(0, 1));
+            assertEquals(Distance.INFINITY, field.getDistanceValue(1, 0));
+            assertEquals(max - 1, field.getDistanceValue(1, 1));
+            assertEquals(max, field.getMaxDistance());
+            // the field keeps a copy of its own
+            values[1] = 5;
+            assertEquals(max, field.getDistanceValue(0, 1));
+        }
+    }
+
+    @Test
+    public void testAllUnreachableButSource() {
+        int[] values = new int[12];
+        Arrays.fill(values, Distance.INFINITY);
+        values[5] = 1;
+        DistanceField field = new DistanceField(3, 4, values, 1);
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 4; y++) {
+                assertEquals((1 == x && 1 == y) ? 1 : Distance.INFINITY, field.getDistanceValue(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the distances DynamicDistance updates in place after wallboards
+ * are added or deleted are the ones a fresh computation gives.
+ *
+ * @author Nicholas Wright
+ */
+public class DynamicDistanceTest {
+
+    private static Maze buildMaze(int skill, boolean perfect) {
+        return TestOrder.buildMaze(new MazeBuilder(), skill, perfect, 7);
+    }
+
+    /**
+     * Makes random edits and compares all distances and the farthest
+     * distance with a fresh computation towards the same exit after each edit.
+     */
+    private static void checkRandomEdits(Maze maze, int edits, long seed) {
+        final int width = maze.getWidth();
+        final int height = maze.getHeight();
+        final Floorplan floorplan = maze.getFloorplan();
+        final Distance distance = maze.getMazedists();
+        final int[] exit = distance.getExitPosition().clone();
+        DynamicDistance dynamic = new DynamicDistance(floorplan, distance);
+        Random random = new Random(seed);
+        int cutOff = 0;
+        for (int i = 0; i < edits; i++) {
+            // an internal wallboard to the east or to the south of a cell
+            CardinalDirection cd = random.nextBoolean() ? CardinalDirection.East : CardinalDirection.South;
+            int x = random.nextInt(CardinalDirection.East == cd ? width - 1 : width);
+            int y = random.nextInt(CardinalDirection.South == cd ? height - 1 : height);
+            Wallboard wallboard = new Wallboard(x, y, cd);
+            if (floorplan.hasWall(x, y, cd))
+                dynamic.deleteWallboard(wallboard);
+            else
+                dynamic.addWallboard(wallboard);
+            Distance fresh = new Distance(width, height);
+            fresh.computeDistances(floorplan, exit[0], exit[1]);
+            for (int px = 0; px < width; px++) {
+                for (int py = 0; py < height; py++) {
+                    assertEquals("edit " + i + " at " + px + ", " + py,
+                            fresh.getDistanceValue(px, py), distance.getDistanceValue(px, py));
+                    if (Distance.INFINITY == fresh.getDistanceValue(px, py))
+                        cutOff++;
+                }
+            }
+            assertEquals("farthest distance after edit " + i, fresh.getMaxDistance(), distance.getMaxDistance());
+        }
+        // the edits also cover regions that are cut off from the exit
+        assertTrue(cutOff > 0);
+    }
+
+    @Test
+    public void testRandomEditsPerfectMaze() {
+        checkRandomEdits(buildMaze(2, true), 400, 1);
+    }
+
+    @Test
+    public void testRandomEditsWithRooms() {
+        checkRandomEdits(buildMaze(4, false), 400, 2);
+    }
+
+    @Test
+    public void testSingleCellChange() {
+        // 4x2 corridor from the exit at (0,0) along the top row and back along the bottom row
+        // to the farthest cell (2,1), plus a spur (0,1), (1,1)
+        Floorplan floorplan = new Floorplan(4, 2);
+        floorplan.initialize();
+        floorplan.deleteWallboard(new Wallboard(0, 0, CardinalDirection.East));
+        floorplan.deleteWallboard(new Wallboard(1, 0, CardinalDirection.East));
+        floorplan.deleteWallboard(new Wallboard(2, 0, CardinalDirection.East));
+        floorplan.deleteWallboard(new Wallboard(3, 0, CardinalDirection.South));
+        floorplan.deleteWallboard(new Wallboard(3, 1, CardinalDirection.West));
+        floorplan.deleteWallboard(new Wallboard(0, 0, CardinalDirection.South));
+        floorplan.deleteWallboard(new Wallboard(0, 1, CardinalDirection.East));
+        Distance distance = new Distance(4, 2);
+        distance.computeDistances(floorplan, 0, 0);
+        assertEquals(6, distance.getMaxDistance());
+        assertArrayEquals(new int[] {2, 1}, distance.getStartPosition());
+        // opening (2,1) to (1,1) lowers the farthest cell from 6 to 4 and no other cell,
+        // the farthest cell is now (3,1) with 5
+        DynamicDistance dynamic = new DynamicDistance(floorplan, distance);
+        assertEquals(1, dynamic.deleteWallboard(new Wallboard(2, 1, CardinalDirection.West)));
+        assertEquals(4, distance.getDistanceValue(2, 1));
+        assertEquals(5, distance.getMaxDistance());
+        assertArrayEquals(new int[] {3, 1}, distance.getStartPosition());
+    }
+}
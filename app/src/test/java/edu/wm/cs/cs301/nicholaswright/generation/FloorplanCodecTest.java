@@ -0,0 +1,115 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that floorplans of generated mazes are encoded as edge bitmaps
+ * and decoded without any change, and that other floorplans are rejected.
+ *
+ * @author Nicholas Wright
+ */
+public class FloorplanCodecTest {
+
+    private static byte[] encode(Floorplan floorplan, int width, int height, boolean deflate) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        FloorplanCodec.write(floorplan, width, height, out, deflate);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Floorplan decode(byte[] data) throws IOException {
+        return FloorplanCodec.read(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        MazeBuilder[] builders = { new MazeBuilder(), new MazeBuilderPrim(), new MazeBuilderEller() };
+        for (MazeBuilder builder : builders) {
+            for (boolean perfect : new boolean[] { true, false }) {
+                Maze maze = TestOrder.buildMaze(builder, 6, perfect, 13);
+                for (boolean deflate : new boolean[] { false, true }) {
+                    byte[] data = encode(maze.getFloorplan(), maze.getWidth(), maze.getHeight(), deflate);
+                    assertEquals(builder.getClass().getSimpleName() + " perfect " + perfect + " deflate " + deflate,
+                            maze.getFloorplan(), decode(data));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSize() throws IOException {
+        Maze maze = TestOrder.buildMaze(new MazeBuilder(), 15, false, 13);
+        final long cells = (long) maze.getWidth()*maze.getHeight();
+        byte[] raw = encode(maze.getFloorplan(), maze.getWidth(), maze.getHeight(), false);
+        byte[] deflated = encode(maze.getFloorplan(), maze.getWidth(), maze.getHeight(), true);
+        // two bits per cell plus the rooms
+        assertTrue(raw.length < cells/4 + 4096);
+        assertTrue(deflated.length <= raw.length);
+        assertEquals(maze.getFloorplan(), decode(raw));
+        // a grid with all wallboards up has nothing but ones in the bitmap
+        Floorplan grid = new Floorplan(200, 200);
+        grid.initialize();
+        grid.setExitPosition(0, 100);
+        raw = encode(grid, 200, 200, false);
+        deflated = encode(grid, 200, 200, true);
+        assertTrue(deflated.length < raw.length/10);
+        assertEquals(grid, decode(deflated));
+    }
+
+    @Test
+    public void testRejectsFloorplansThatAreNotGenerated() {
+        // still being built, all cells are new
+        Floorplan initial = new Floorplan(5, 4);
+        initial.initialize();
+        initial.setCellAsVisited(0, 0);
+        // two exits
+        Floorplan exits = new Floorplan(5, 4);
+        exits.initialize();
+        exits.setExitPosition(0, 2);
+        exits.setExitPosition(4, 1);
+        // a wallboard on one side only
+        Floorplan oneSided = new Floorplan(5, 4);
+        oneSided.initialize();
+        oneSided.deleteWallboard(new Wallboard(1, 1, CardinalDirection.East));
+        oneSided.addWallboard(new Wallboard(1, 1, CardinalDirection.East), false);
+        for (Floorplan floorplan : new Floorplan[] { initial, exits, oneSided }) {
+            try {
+                encode(floorplan, 5, 4, false);
+                fail("encoded a floorplan that is not generated");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsCorruptData() throws IOException {
+        Maze maze = TestOrder.buildMaze(new MazeBuilder(), 2, false, 13);
+        byte[] data = encode(maze.getFloorplan(), maze.getWidth(), maze.getHeight(), true);
+        // a truncated bitmap and a room outside of the maze
+        byte[] truncated = Arrays.copyOf(data, data.length - 3);
+        byte[] room = data.clone();
+        // the first room starts after magic, size, flags, exit and room count, its y goes far outside
+        final int firstRoom = 3*4 + 1 + 3*4 + 4;
+        assertTrue(data[firstRoom - 1] > 0);
+        room[firstRoom + 2] = 127;
+        for (byte[] corrupt : new byte[][] { truncated, room }) {
+            try {
+                decode(corrupt);
+                fail("decoded corrupt data");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Random;
+
+import edu.wm.cs.cs301.nicholaswright.gui.Constants;
+import edu.wm.cs.cs301.nicholaswright.gui.FirstPersonView;
+import edu.wm.cs.cs301.nicholaswright.gui.SoftwareSurface;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the k-d tree covers the same walls as the BSP tree,
+ * answers range queries and draws the same first person view.
+ *
+ * @author Nicholas Wright
+ */
+public class KdTreeBuilderTest {
+    private static final int BLACK = 0xff000000;
+    private static final int GREY = 0xff666666;
+
+    private static Maze buildMaze() {
+        return TestOrder.buildMaze(new MazeBuilder(true), 4, false, 7);
+    }
+
+    private static CompiledBSPTree buildKdTree(Maze maze) throws InterruptedException {
+        BSPBuilder builder = new BSPBuilder(null, maze.getMazedists(), maze.getFloorplan(),
+                maze.getWidth(), maze.getHeight(), 0, 1);
+        return builder.generateKdTree();
+    }
+
+    /**
+     * Sums up the length of all walls of the tree per wallboard position,
+     * key is start and direction of a wallboard.
+     */
+    private static HashMap<String, Integer> wallboards(CompiledBSPTree tree) {
+        HashMap<String, Integer> result = new HashMap<String, Integer>();
+        for (int wall = 0; wall < tree.getWallCount(); wall++) {
+            int sx = tree.getWallStartX(wall), sy = tree.getWallStartY(wall);
+            int dx = Integer.signum(tree.getWallEndX(wall) - sx) * Constants.MAP_UNIT;
+            int dy = Integer.signum(tree.getWallEndY(wall) - sy) * Constants.MAP_UNIT;
+            for (int x = sx, y = sy; x != tree.getWallEndX(wall) || y != tree.getWallEndY(wall); x += dx, y += dy) {
+                String key = x + "," + y + "," + dx + "," + dy;
+                Integer count = result.get(key);
+                result.put(key, (null == count) ? 1 : count + 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts pixels where one surface shows a wall and the other one does not.
+     * The colors of walls differ as the walls for the k-d tree
+     * are generated with another color change value.
+     */
+    private static int countDifferentShapes(SoftwareSurface a, SoftwareSurface b) {
+        int[] pa = a.getPixels();
+        int[] pb = b.getPixels();
+        int count = 0;
+        for (int i = 0; i < pa.length; i++) {
+            if (isBackground(pa[i]) != isBackground(pb[i]) || (isBackground(pa[i]) && pa[i] != pb[i]))
+                count++;
+        }
+        return count;
+    }
+
+    private static boolean isBackground(int argb) {
+        return argb == BLACK || argb == GREY;
+    }
+
+    @Test
+    public void testCoversSameWallboards() throws InterruptedException {
+        Maze maze = buildMaze();
+        CompiledBSPTree bsp = maze.getCompiledBSPTree();
+        CompiledBSPTree kd = buildKdTree(maze);
+        HashMap<String, Integer> expected = wallboards(bsp);
+        assertEquals(expected, wallboards(kd));
+        // no wallboard is covered twice
+        for (Integer count : expected.values()) {
+            assertEquals(1, count.intValue());
+        }
+    }
+
+    @Test
+    public void testWallsOfLeafOnItsBorder() throws InterruptedException {
+        CompiledBSPTree kd = buildKdTree(buildMaze());
+        for (int node = 0; node < kd.getNodeCount(); node++) {
+            if (!kd.isLeaf(node))
+                continue;
+            for (int wall = kd.getFirstWall(node); wall < kd.getEndWall(node); wall++) {
+                boolean vertical = kd.getWallStartX(wall) == kd.getWallEndX(wall);
+                if (vertical) {
+                    int x = kd.getWallStartX(wall);
+                    assertTrue(x == kd.getLowerBoundX(node) || x == kd.getUpperBoundX(node));
+                }
+                else {
+                    int y = kd.getWallStartY(wall);
+                    assertTrue(y == kd.getLowerBoundY(node) || y == kd.getUpperBoundY(node));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFindWallsMatchesScan() throws InterruptedException {
+        Maze maze = buildMaze();
+        Random random = new Random(3);
+        int size = Math.max(maze.getWidth(), maze.getHeight()) * Constants.MAP_UNIT;
+        for (CompiledBSPTree tree : new CompiledBSPTree[] { maze.getCompiledBSPTree(), buildKdTree(maze) }) {
+            for (int round = 0; round < 100; round++) {
+                int minX = random.nextInt(size), minY = random.nextInt(size);
+                int maxX = minX + random.nextInt(size/2), maxY = minY + random.nextInt(size/2);
+                BitSet expected = new BitSet();
+                for (int wall = 0; wall < tree.getWallCount(); wall++) {
+                    if (Math.min(tree.getWallStartX(wall), tree.getWallEndX(wall)) <= maxX
+                            && Math.max(tree.getWallStartX(wall), tree.getWallEndX(wall)) >= minX
+                            && Math.min(tree.getWallStartY(wall), tree.getWallEndY(wall)) <= maxY
+                            && Math.max(tree.getWallStartY(wall), tree.getWallEndY(wall)) >= minY)
+                        expected.set(wall);
+                }
+                BitSet found = new BitSet();
+                tree.findWalls(minX, minY, maxX, maxY, found);
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void testDrawsLikeBSPTree() throws InterruptedException {
+        Maze maze = buildMaze();
+        Floorplan seenBsp = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        Floorplan seenKd = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        FirstPersonView bspView = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenBsp, maze.getCompiledBSPTree());
+        FirstPersonView kdView = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenKd, buildKdTree(maze));
+        SoftwareSurface bspSurface = new SoftwareSurface();
+        SoftwareSurface kdSurface = new SoftwareSurface();
+        long different = 0;
+        long total = 0;
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                for (int angle = 0; angle < 360; angle += 45) {
+                    bspView.draw(bspSurface, x, y, 0, angle);
+                    kdView.draw(kdSurface, x, y, 0, angle);
+                    different += countDifferentShapes(bspSurface, kdSurface);
+                    total += bspSurface.getPixels().length;
+                }
+            }
+        }
+        // walls are split at other positions, which may round
+        // the edges of a polygon differently by a pixel
+        assertTrue(different * 1000 < total);
+        // both views mark the same wallboards as seen
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                for (CardinalDirection cd : CardinalDirection.values()) {
+                    assertEquals(seenBsp.hasWall(x, y, cd), seenKd.hasWall(x, y, cd));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a memory mapped cell storage keeps the values of all cells,
+ * in particular on both sides of the boundary between two mapped chunks.
+ *
+ * @author Nicholas Wright
+ */
+public class MappedCellStorageTest {
+    // a little more than one chunk of 2^22 cells such that the second chunk is a short one
+    private static final int WIDTH = 2049;
+    private static final int HEIGHT = 2049;
+
+    private static int valueAt(long index) {
+        return (int) (index * 2654435761L) ^ 0x5bd1e995;
+    }
+
+    /**
+     * Sets and gets the cells around the chunk boundary, at both ends
+     * of the storage and a sample of all cells in between.
+     */
+    private static void checkRoundTrip(CellStorage storage, boolean write) {
+        final long boundary = MappedCellStorage.CHUNK_CELLS;
+        final long cells = (long) WIDTH*HEIGHT;
+        long[] indices = { 0, 1, boundary - 2, boundary - 1, boundary, boundary + 1, cells - 1 };
+        for (int pass = 0; pass < 2; pass++) {
+            boolean set = write && 0 == pass;
+            for (long index : indices) {
+                int x = (int) (index / HEIGHT);
+                int y = (int) (index % HEIGHT);
+                if (set)
+                    storage.set(x, y, valueAt(index));
+                else
+                    assertEquals("cell " + x + ", " + y, valueAt(index), storage.get(x, y));
+            }
+            for (long index = 3; index < cells; index += 4099) {
+                int x = (int) (index / HEIGHT);
+                int y = (int) (index % HEIGHT);
+                if (set)
+                    storage.set(x, y, valueAt(index));
+                else
+                    assertEquals("cell " + x + ", " + y, valueAt(index), storage.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTripAcrossChunks() throws IOException {
+        assertTrue((long) WIDTH*HEIGHT > MappedCellStorage.CHUNK_CELLS);
+        MappedCellStorage storage = MappedCellStorage.createTemporary(WIDTH, HEIGHT);
+        assertEquals(WIDTH, storage.getWidth());
+        assertEquals(HEIGHT, storage.getHeight());
+        // new cells are 0 on both sides of the boundary
+        final int boundary = MappedCellStorage.CHUNK_CELLS;
+        assertEquals(0, storage.get((boundary - 1)/HEIGHT, (boundary - 1)%HEIGHT));
+        assertEquals(0, storage.get(boundary/HEIGHT, boundary%HEIGHT));
+        checkRoundTrip(storage, true);
+        // neighboring cells across the boundary are distinct
+        storage.set((boundary - 1)/HEIGHT, (boundary - 1)%HEIGHT, -1);
+        assertEquals(valueAt(boundary), storage.get(boundary/HEIGHT, boundary%HEIGHT));
+    }
+
+    @Test
+    public void testContentIsKeptInFile() throws IOException {
+        File file = File.createTempFile("floorplan", ".cells");
+        try {
+            checkRoundTrip(new MappedCellStorage(WIDTH, HEIGHT, file), true);
+            assertEquals(4L*WIDTH*HEIGHT, file.length());
+            // a second mapping of the same file sees the values of the first one
+            checkRoundTrip(new MappedCellStorage(WIDTH, HEIGHT, file), false);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTemporaryFileIsUnlinked() throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"));
+        String[] before = dir.list();
+        MappedCellStorage storage = MappedCellStorage.createTemporary(16, 16);
+        storage.set(15, 15, 42);
+        // no floorplan file is left behind while the mapping is still in use
+        for (String name : dir.list()) {
+            if (name.startsWith("floorplan") && name.endsWith(".cells"))
+                assertTrue(name, Arrays.asList(before).contains(name));
+        }
+        assertEquals(42, storage.get(15, 15));
+    }
+}
@@ -0,0 +1,189 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the maze cache serves mazes from memory and from disk,
+ * keeps them intact and evicts them by size.
+ *
+ * @author Nicholas Wright
+ */
+public class MazeCacheTest {
+
+    private static Maze buildMaze(int skill, int seed) {
+        return TestOrder.buildMaze(new MazeBuilder(), skill, false, seed);
+    }
+
+    private static Wallboard findInternalWallboard(Maze maze) {
+        for (int x = 0; x < maze.getWidth() - 1; x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                if (maze.hasWall(x, y, CardinalDirection.East))
+                    return new Wallboard(x, y, CardinalDirection.East);
+            }
+        }
+        fail("no internal wallboard");
+        return null;
+    }
+
+    private static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testRoundTripThroughDisk() throws IOException {
+        File directory = Files.createTempDirectory("mazes").toFile();
+        try {
+            Maze maze = buildMaze(3, 11);
+            String key = MazeCache.getKey(new TestOrder(3, false, 11), 11);
+            new MazeCache(directory, 1L << 20, 1L << 20).put(key, maze);
+            // a new cache has nothing in memory and reads the file
+            MazeCache cache = new MazeCache(directory, 1L << 20, 1L << 20);
+            Maze copy = cache.get(key);
+            assertNotNull(copy);
+            assertNotSame(maze, copy);
+            assertEquals(maze.getWidth(), copy.getWidth());
+            assertEquals(maze.getHeight(), copy.getHeight());
+            assertEquals(maze.getFloorplan(), copy.getFloorplan());
+            assertArrayEquals(maze.getStartingPosition(), copy.getStartingPosition());
+            for (int x = 0; x < maze.getWidth(); x++) {
+                assertArrayEquals(maze.getMazedists().getAllDistanceValues()[x],
+                        copy.getMazedists().getAllDistanceValues()[x]);
+            }
+            assertEquals(maze.getCompiledBSPTree().getNodeCount(), copy.getCompiledBSPTree().getNodeCount());
+            assertEquals(maze.getCompiledBSPTree().getWallCount(), copy.getCompiledBSPTree().getWallCount());
+            assertTrue(copy.isValidPosition(copy.getStartingPosition()[0], copy.getStartingPosition()[1]));
+            // the second access is served from memory, as a maze of its own
+            Maze again = cache.get(key);
+            assertNotSame(copy, again);
+            assertEquals(copy.getFloorplan(), again.getFloorplan());
+        }
+        finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void testEveryGetHasItsOwnMaze() {
+        MazeCache cache = new MazeCache(null, 1L << 20, 0);
+        Maze maze = buildMaze(1, 5);
+        cache.put("maze", maze);
+        Floorplan original = maze.getFloorplan().copy();
+        // the game on the delivered maze sees all walls and breaks down a wallboard
+        CompiledBSPTree tree = maze.getCompiledBSPTree();
+        for (int wall = 0; wall < tree.getWallCount(); wall++) {
+            tree.getWall(wall).setSeen(true);
+        }
+        Wallboard wallboard = findInternalWallboard(maze);
+        ((MazeContainer) maze).deleteWallboard(wallboard);
+        // a second game gets the maze as it was generated
+        Maze first = cache.get("maze");
+        assertNotSame(maze, first);
+        assertEquals(original, first.getFloorplan());
+        CompiledBSPTree firstTree = first.getCompiledBSPTree();
+        assertEquals(tree.getWallCount(), firstTree.getWallCount());
+        for (int wall = 0; wall < firstTree.getWallCount(); wall++) {
+            assertFalse(firstTree.getWall(wall).isSeen());
+            assertTrue(tree.getWall(wall).isSeen());
+        }
+        // which does not share its state with a third game
+        firstTree.getWall(0).setSeen(true);
+        ((MazeContainer) first).deleteWallboard(wallboard);
+        Maze second = cache.get("maze");
+        assertFalse(second.getCompiledBSPTree().getWall(0).isSeen());
+        assertEquals(original, second.getFloorplan());
+        assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void testContainsHasNoSideEffects() throws IOException {
+        File directory = Files.createTempDirectory("mazes").toFile();
+        try {
+            Maze first = buildMaze(2, 1);
+            Maze second = buildMaze(2, 2);
+            Maze third = buildMaze(2, 3);
+            MazeCache probe = new MazeCache(null, Long.MAX_VALUE, 0);
+            probe.put("first", first);
+            long size = probe.getMemoryBytes();
+            MazeCache cache = new MazeCache(directory, 2*size + size/2, 1L << 26);
+            cache.put("first", first);
+            cache.put("second", second);
+            CompiledBSPTree tree = first.getCompiledBSPTree();
+            tree.getWall(0).setSeen(true);
+            // a probe neither resets the seen walls nor counts as a use for the eviction
+            assertTrue(cache.contains("first"));
+            assertTrue(tree.getWall(0).isSeen());
+            cache.put("third", third);
+            assertTrue(cache.contains("first"));
+            cache.clearMemory();
+            // files are found without reading them
+            assertTrue(cache.contains("second"));
+            assertFalse(cache.contains("other"));
+            assertEquals(0, cache.getMemoryBytes());
+        }
+        finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        Maze first = buildMaze(2, 1);
+        Maze second = buildMaze(2, 2);
+        Maze third = buildMaze(2, 3);
+        MazeCache probe = new MazeCache(null, Long.MAX_VALUE, 0);
+        probe.put("first", first);
+        long size = probe.getMemoryBytes();
+        // room for two mazes of this size
+        MazeCache cache = new MazeCache(null, 2*size + size/2, 0);
+        cache.put("first", first);
+        cache.put("second", second);
+        assertNotNull(cache.get("first"));
+        cache.put("third", third);
+        // second is the least recently used one
+        assertNull(cache.get("second"));
+        assertEquals(first.getFloorplan(), cache.get("first").getFloorplan());
+        assertEquals(third.getFloorplan(), cache.get("third").getFloorplan());
+        assertTrue(cache.getMemoryBytes() <= 2*size + size/2);
+    }
+
+    @Test
+    public void testEvictsFilesBeyondLimit() throws IOException {
+        File directory = Files.createTempDirectory("mazes").toFile();
+        try {
+            Maze maze = buildMaze(1, 4);
+            MazeCache cache = new MazeCache(directory, 0, 1L << 20);
+            cache.put("a", maze);
+            long size = new File(directory, "a.maze").length();
+            assertTrue(size > 0);
+            cache = new MazeCache(directory, 0, 2*size);
+            cache.put("b", maze);
+            cache.put("c", maze);
+            assertEquals(2, directory.listFiles().length);
+            assertNotNull(cache.get("c"));
+        }
+        finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void testKeyCoversGenerationParameters() {
+        String key = MazeCache.getKey(new TestOrder(3, false, 11), 11);
+        assertEquals(key, MazeCache.getKey(new TestOrder(3, false, 11), 11));
+        assertFalse(key.equals(MazeCache.getKey(new TestOrder(3, false, 11), 12)));
+        assertFalse(key.equals(MazeCache.getKey(new TestOrder(4, false, 11), 11)));
+        assertTrue(key.contains("v" + MazeCache.FORMAT_VERSION));
+    }
+}
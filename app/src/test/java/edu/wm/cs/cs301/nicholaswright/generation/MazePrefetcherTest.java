@@ -0,0 +1,62 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that prefetched mazes are served by the factory and that
+ * a wrong guess is cancelled without disturbing the ordered maze.
+ *
+ * @author Nicholas Wright
+ */
+public class MazePrefetcherTest {
+
+    /**
+     * Orders a maze from a factory that uses the given cache and prefetcher.
+     */
+    private static Maze order(MazeCache cache, MazePrefetcher prefetcher, int skill, int seed) {
+        MazeFactory factory = new MazeFactory();
+        factory.setCache(cache);
+        factory.setPrefetcher(prefetcher);
+        TestOrder order = new TestOrder(skill, false, seed);
+        assertTrue(factory.order(order));
+        factory.waitTillDelivered();
+        assertNotNull(order.getMaze());
+        return order.getMaze();
+    }
+
+    @Test
+    public void testServesPrefetchedMaze() {
+        MazeCache cache = new MazeCache(null, 1L << 26, 0);
+        MazePrefetcher prefetcher = new MazePrefetcher(cache);
+        prefetcher.prefetch(Order.Builder.DFS, 2);
+        int seed = prefetcher.takeSeed(Order.Builder.DFS, 2);
+        assertTrue(seed >= 0);
+        assertEquals(-1, prefetcher.takeSeed(Order.Builder.DFS, 2));
+        // the factory waits for the prefetch of the same maze and takes it from the cache
+        Maze maze = order(cache, prefetcher, 2, seed);
+        assertTrue(cache.contains(MazeCache.getKey(new TestOrder(2, false, seed), seed)));
+        // same maze as without any prefetch
+        Maze expected = order(null, null, 2, seed);
+        assertEquals(expected.getFloorplan(), maze.getFloorplan());
+        assertArrayEquals(expected.getStartingPosition(), maze.getStartingPosition());
+        prefetcher.cancel();
+    }
+
+    @Test
+    public void testWrongGuessIsCancelled() {
+        MazeCache cache = new MazeCache(null, 1L << 26, 0);
+        MazePrefetcher prefetcher = new MazePrefetcher(cache);
+        prefetcher.prefetch(Order.Builder.DFS, 10);
+        int guessed = prefetcher.takeSeed(Order.Builder.DFS, 10);
+        // another maze is ordered while the prefetch is running
+        Maze maze = order(cache, prefetcher, 3, 42);
+        Maze expected = order(null, null, 3, 42);
+        assertEquals(expected.getFloorplan(), maze.getFloorplan());
+        assertArrayEquals(expected.getStartingPosition(), maze.getStartingPosition());
+        // the prefetch ended without a maze
+        assertNull(cache.get(MazeCache.getKey(new TestOrder(10, false, guessed), guessed)));
+        assertNull(cache.get(MazeCache.getKey(new TestOrder(11, false, guessed), guessed)));
+    }
+}
@@ -0,0 +1,80 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Size tier benchmark for large mazes with explicit dimensions.
+ * Builds mazes of increasing size with the DFS builder, checks the
+ * result and reports build time and the heap it takes per cell.
+ *
+ * The tiers are not part of the unit test run, they only run if the
+ * system property amaze.benchmark is set, e.g. with
+ * gradlew test -Damaze.benchmark. The heap figures come from
+ * Runtime readings around System.gc() and are only a rough guide.
+ *
+ * A maze currently takes about 210 bytes per cell, most of it in the
+ * distance matrix, the wallboards and the BSP tree, which all grow with
+ * the number of cells. A 10,000 x 10,000 maze would need about 21 GB,
+ * which is out of reach for the app. The tier for it only runs if
+ * amaze.benchmark.huge is set as well and needs a heap to match.
+ * Saving mazes of these sizes is not covered here.
+ *
+ * @author Nicholas Wright
+ */
+public class MazeSizeBenchmarkTest {
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(null != System.getProperty("amaze.benchmark"));
+    }
+
+    /**
+     * Builds a maze of the given size on the current thread,
+     * checks it and reports time and retained heap.
+     */
+    private void runTier(int width, int height) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        Maze maze = TestOrder.buildMaze(new MazeBuilder(true), new TestOrder(width, height, 13));
+
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        long cells = (long) width * height;
+        long bytesPerCell = Math.max(0, after - before) / cells;
+        System.out.println("Maze " + width + "x" + height + ": " + millis + " ms, "
+                + bytesPerCell + " bytes per cell");
+
+        assertEquals(width, maze.getWidth());
+        assertEquals(height, maze.getHeight());
+        int[] startPos = maze.getStartingPosition();
+        assertTrue(maze.getDistanceToExit(startPos[0], startPos[1]) > 1);
+    }
+
+    @Test
+    public void testLargestSkillLevelSize() {
+        runTier(300, 240);
+    }
+
+    @Test
+    public void testMillionCells() {
+        runTier(1000, 1000);
+    }
+
+    @Test
+    public void testFourMillionCells() {
+        runTier(2000, 2000);
+    }
+
+    @Test
+    public void testHundredMillionCells() {
+        Assume.assumeTrue(null != System.getProperty("amaze.benchmark.huge"));
+        runTier(10000, 10000);
+    }
+}
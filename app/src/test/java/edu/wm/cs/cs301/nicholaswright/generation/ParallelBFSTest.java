@@ -0,0 +1,108 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the parallel breadth first search gives the same distances
+ * as the sequential computation in Distance, for mazes below and above
+ * the size from which on Distance uses it and for cells that can not
+ * reach the exit.
+ *
+ * @author Nicholas Wright
+ */
+public class ParallelBFSTest {
+
+    /**
+     * Creates a floorplan where each internal wallboard is deleted with
+     * the given probability, which results in loops and in regions that
+     * are cut off from each other.
+     */
+    private static Floorplan randomFloorplan(int width, int height, double open, long seed) {
+        Random random = new Random(seed);
+        Floorplan floorplan = new Floorplan(width, height);
+        floorplan.initialize();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (x < width - 1 && random.nextDouble() < open)
+                    floorplan.deleteWallboard(new Wallboard(x, y, CardinalDirection.East));
+                if (y < height - 1 && random.nextDouble() < open)
+                    floorplan.deleteWallboard(new Wallboard(x, y, CardinalDirection.South));
+            }
+        }
+        return floorplan;
+    }
+
+    /**
+     * Compares the distances of both searches towards the given position.
+     * @return the number of cells that can not reach the position
+     */
+    private static int compare(Floorplan floorplan, int width, int height, int ax, int ay) {
+        Distance sequential = new Distance(width, height);
+        sequential.computeDists(floorplan, ax, ay);
+        int[][] parallel = new int[width][height];
+        ParallelBFS bfs = new ParallelBFS(floorplan, width, height);
+        bfs.computeDists(parallel, ax, ay);
+        int unreachable = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                assertEquals("cell " + x + ", " + y, sequential.getDistanceValue(x, y), parallel[x][y]);
+                if (Distance.INFINITY == parallel[x][y])
+                    unreachable++;
+            }
+        }
+        // a second search with the same object starts from a clean state
+        bfs.computeDists(parallel, width - 1 - ax, height - 1 - ay);
+        sequential.computeDists(floorplan, width - 1 - ax, height - 1 - ay);
+        for (int x = 0; x < width; x++) {
+            assertArrayEquals(sequential.getAllDistanceValues()[x], parallel[x]);
+        }
+        return unreachable;
+    }
+
+    @Test
+    public void testGeneratedMaze() {
+        Maze maze = TestOrder.buildMaze(new MazeBuilder(), 4, false, 17);
+        int[] exit = maze.getMazedists().getExitPosition();
+        assertEquals(0, compare(maze.getFloorplan(), maze.getWidth(), maze.getHeight(), exit[0], exit[1]));
+    }
+
+    @Test
+    public void testBelowThreshold() {
+        final int width = 120;
+        final int height = 90;
+        assertTrue(width * height < Distance.PARALLEL_THRESHOLD);
+        Floorplan floorplan = randomFloorplan(width, height, 0.55, 1);
+        assertTrue(compare(floorplan, width, height, width/2, height/2) > 0);
+    }
+
+    @Test
+    public void testAboveThreshold() {
+        final int width = 420;
+        final int height = 330;
+        assertTrue(width * height >= Distance.PARALLEL_THRESHOLD);
+        Floorplan floorplan = randomFloorplan(width, height, 0.55, 2);
+        assertTrue(compare(floorplan, width, height, 0, height/2) > 0);
+        // Distance switches to the parallel search at this size and gives the same exit
+        Distance fromDistance = new Distance(width, height);
+        int[] exit = fromDistance.computeDistances(floorplan);
+        Distance sequential = new Distance(width, height);
+        sequential.computeDists(floorplan, exit[0], exit[1]);
+        for (int x = 0; x < width; x++) {
+            assertArrayEquals(sequential.getAllDistanceValues()[x], fromDistance.getAllDistanceValues()[x]);
+        }
+    }
+
+    @Test
+    public void testFullyOpenAndClosed() {
+        // no wallboards inside: distance is one more than the manhattan distance
+        Floorplan open = randomFloorplan(40, 30, 1.0, 3);
+        assertEquals(0, compare(open, 40, 30, 5, 7));
+        // all wallboards up: every cell but the position is cut off
+        Floorplan closed = randomFloorplan(40, 30, 0.0, 4);
+        assertEquals(40*30 - 1, compare(closed, 40, 30, 5, 7));
+    }
+}
@@ -0,0 +1,70 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the sorted sweep grading of partitions matches the
+ * grade computed by a scan over all walls in Wall.calculateGrade.
+ *
+ * @author Nicholas Wright
+ */
+public class PartitionGraderTest {
+    private static final int UNIT = 128;
+
+    /**
+     * Creates random horizontal and vertical walls on a small grid,
+     * such that many walls are collinear or touch each other.
+     * Wall.calculateGrade considers all walls for lists below 100 walls.
+     */
+    private static ArrayList<Wall> randomWalls(Random random, int count) {
+        ArrayList<Wall> sl = new ArrayList<Wall>();
+        for (int i = 0; i < count; i++) {
+            int x = (4 + random.nextInt(8)) * UNIT;
+            int y = (4 + random.nextInt(8)) * UNIT;
+            int length = (1 + random.nextInt(4)) * UNIT * (random.nextBoolean() ? 1 : -1);
+            if (random.nextBoolean())
+                sl.add(new Wall(x, y, length, 0, 0, 0));
+            else
+                sl.add(new Wall(x, y, 0, length, 0, 0));
+        }
+        return sl;
+    }
+
+    @Test
+    public void testGradeMatchesScan() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            ArrayList<Wall> sl = randomWalls(random, 1 + random.nextInt(99));
+            PartitionGrader grader = new PartitionGrader(sl);
+            for (Wall pe : sl) {
+                assertEquals(pe.calculateGrade(sl), grader.grade(pe));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleWall() {
+        ArrayList<Wall> sl = new ArrayList<Wall>();
+        sl.add(new Wall(0, 0, UNIT, 0, 0, 0));
+        assertEquals(1, new PartitionGrader(sl).grade(sl.get(0)));
+    }
+
+    @Test
+    public void testSplitsAreCounted() {
+        ArrayList<Wall> sl = new ArrayList<Wall>();
+        Wall vertical = new Wall(2*UNIT, 0, 0, 4*UNIT, 0, 0);
+        sl.add(vertical);
+        // crosses the line x = 2*UNIT
+        sl.add(new Wall(0, UNIT, 4*UNIT, 0, 0, 0));
+        // touches the line with one end only, no split
+        sl.add(new Wall(2*UNIT, 3*UNIT, 2*UNIT, 0, 0, 0));
+        PartitionGrader grader = new PartitionGrader(sl);
+        assertEquals(vertical.calculateGrade(sl), grader.grade(vertical));
+        assertEquals(3 + 2, grader.grade(vertical));
+    }
+}
@@ -0,0 +1,98 @@
+package edu.wm.cs.cs301.nicholaswright.generation;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Order for tests that uses the DFS builder and keeps the delivered maze.
+ * Shared by the tests in generation and gui, hence public.
+ *
+ * @author Nicholas Wright
+ */
+public class TestOrder implements Order {
+    private final int skill;
+    private final int width;
+    private final int height;
+    private final boolean perfect;
+    private final int seed;
+    private Maze maze;
+
+    /**
+     * Order for a maze of the given skill level.
+     */
+    public TestOrder(int skill, boolean perfect, int seed) {
+        this(skill, 0, 0, perfect, seed);
+    }
+
+    /**
+     * Order for a perfect maze with explicit dimensions.
+     */
+    public TestOrder(int width, int height, int seed) {
+        this(0, width, height, true, seed);
+    }
+
+    private TestOrder(int skill, int width, int height, boolean perfect, int seed) {
+        this.skill = skill;
+        this.width = width;
+        this.height = height;
+        this.perfect = perfect;
+        this.seed = seed;
+    }
+
+    /**
+     * Builds the maze for the order on the current thread with
+     * the random generator set to the seed of the order.
+     */
+    public static Maze buildMaze(MazeBuilder builder, TestOrder order) {
+        SingleRandom.setSeed(order.seed);
+        builder.buildOrder(order);
+        builder.run();
+        assertNotNull(order.maze);
+        return order.maze;
+    }
+
+    /**
+     * Builds a maze of the given skill level with the given builder.
+     */
+    public static Maze buildMaze(MazeBuilder builder, int skill, boolean perfect, int seed) {
+        return buildMaze(builder, new TestOrder(skill, perfect, seed));
+    }
+
+    /**
+     * @return the delivered maze, null if none was delivered yet
+     */
+    public Maze getMaze() {
+        return maze;
+    }
+
+    @Override
+    public int getSkillLevel() {
+        return skill;
+    }
+    @Override
+    public int getWidth() {
+        return width;
+    }
+    @Override
+    public int getHeight() {
+        return height;
+    }
+    @Override
+    public Builder getBuilder() {
+        return Builder.DFS;
+    }
+    @Override
+    public boolean isPerfect() {
+        return perfect;
+    }
+    @Override
+    public void deliver(Maze mazeConfig) {
+        maze = mazeConfig;
+    }
+    @Override
+    public void updateProgress(int percentage) {
+    }
+    @Override
+    public int getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,190 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Distance;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeContainer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the driver executor runs a drive on its own thread,
+ * pauses it without steps, resumes and cancels it and counts its steps,
+ * and that it waits for a maze that is still loading.
+ *
+ * @author Nicholas Wright
+ */
+public class DriverExecutorTest {
+
+    /**
+     * Driver that makes a given number of steps, each step takes a millisecond.
+     */
+    private static class StepDriver implements RobotDriver {
+        private final DriveControl control = new DriveControl();
+        private final int steps;
+        private volatile Distance distance;
+
+        StepDriver(int steps) {
+            this.steps = steps;
+        }
+        @Override
+        public boolean drive2Exit() throws Exception {
+            for (int i = 0; i < steps; i++) {
+                control.awaitStep();
+                Thread.sleep(1);
+            }
+            return true;
+        }
+        @Override
+        public DriveControl getDriveControl() {
+            return control;
+        }
+        @Override
+        public void togglePaused() {
+            control.toggle();
+        }
+        @Override
+        public void setRobot(Robot r) {
+        }
+        @Override
+        public void setDimensions(int width, int height) {
+        }
+        @Override
+        public void setDistance(Distance distance) {
+            this.distance = distance;
+        }
+        @Override
+        public void triggerUpdateSensorInformation() {
+        }
+        @Override
+        public float getEnergyConsumption() {
+            return 0;
+        }
+        @Override
+        public int getPathLength() {
+            return 0;
+        }
+        @Override
+        public void startSensorThread(Robot.Direction dir) {
+        }
+        @Override
+        public void killAllSensors() {
+        }
+        @Override
+        public void toggleSensorThread(Robot.Direction dir) {
+        }
+    }
+
+    /**
+     * Listener that records the result.
+     */
+    private static class Result implements DriverExecutor.Listener {
+        private volatile int calls;
+        private volatile boolean solved;
+        private volatile Exception failure;
+
+        @Override
+        public void onFinished(boolean solved) {
+            this.solved = solved;
+            calls++;
+        }
+        @Override
+        public void onFailure(Exception e) {
+            failure = e;
+            calls++;
+        }
+    }
+
+    @Test
+    public void testRunsToTheEnd() throws InterruptedException {
+        Result result = new Result();
+        DriverExecutor executor = new DriverExecutor(new StepDriver(20), result);
+        executor.start();
+        executor.join();
+        assertFalse(executor.isRunning());
+        assertEquals(1, result.calls);
+        assertTrue(result.solved);
+        assertEquals(20, executor.getStepCount());
+        assertTrue(executor.getStepsPerSecond() > 0);
+    }
+
+    @Test
+    public void testPauseStopsSteps() throws InterruptedException {
+        Result result = new Result();
+        DriverExecutor executor = new DriverExecutor(new StepDriver(1000), result);
+        executor.pause();
+        executor.start();
+        Thread.sleep(50);
+        // a paused drive does not even make its first step
+        assertEquals(0, executor.getStepCount());
+        assertTrue(executor.isRunning());
+        executor.resume();
+        executor.join();
+        assertEquals(1000, executor.getStepCount());
+        assertEquals(1, result.calls);
+    }
+
+    @Test
+    public void testCancelEndsPausedDrive() throws InterruptedException {
+        Result result = new Result();
+        DriverExecutor executor = new DriverExecutor(new StepDriver(1000), result);
+        executor.start();
+        Thread.sleep(20);
+        executor.pause();
+        executor.cancel();
+        executor.join();
+        assertFalse(executor.isRunning());
+        assertTrue(executor.getStepCount() < 1000);
+        // a cancelled drive has no result
+        assertEquals(0, result.calls);
+    }
+
+    @Test
+    public void testWaitsForLoadingMaze() throws InterruptedException {
+        Result result = new Result();
+        StepDriver driver = new StepDriver(20);
+        DriverExecutor executor = new DriverExecutor(driver, result);
+        // the size, floorplan and start of a complete maze, the rest is still loading
+        Maze complete = MapTest.buildMaze();
+        MazeContainer maze = new MazeContainer();
+        maze.startLoading();
+        maze.setWidth(complete.getWidth());
+        maze.setHeight(complete.getHeight());
+        maze.setFloorplan(complete.getFloorplan());
+        int[] start = complete.getStartingPosition();
+        maze.setStartingPosition(start[0], start[1]);
+        executor.setMaze(maze);
+        executor.start();
+        Thread.sleep(20);
+        assertTrue(executor.isRunning());
+        assertEquals(0, executor.getStepCount());
+        Distance distance = complete.getMazedists();
+        maze.finishLoading(distance, complete.getRootnode());
+        executor.join();
+        assertSame(distance, driver.distance);
+        assertEquals(20, executor.getStepCount());
+        assertEquals(1, result.calls);
+        assertTrue(result.solved);
+    }
+
+    @Test
+    public void testFailedLoadEndsDrive() throws InterruptedException {
+        Result result = new Result();
+        StepDriver driver = new StepDriver(20);
+        DriverExecutor executor = new DriverExecutor(driver, result);
+        MazeContainer maze = new MazeContainer();
+        maze.startLoading();
+        executor.setMaze(maze);
+        executor.start();
+        Thread.sleep(20);
+        maze.failLoading();
+        executor.join();
+        assertNull(driver.distance);
+        assertEquals(0, executor.getStepCount());
+        assertEquals(1, result.calls);
+        assertTrue(result.failure instanceof IOException);
+    }
+}
@@ -0,0 +1,84 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeBuilder;
+import edu.wm.cs.cs301.nicholaswright.generation.TestOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Headless frame rate benchmark for the first person view.
+ * Draws the same walk through a maze on a SoftwareSurface on the
+ * calling thread and with parallel strips and reports frames per
+ * second and the RenderStats of each run.
+ *
+ * Not part of the unit test run, it only runs if the system property
+ * amaze.benchmark is set, see MazeSizeBenchmarkTest.
+ *
+ * @author Nicholas Wright
+ */
+public class FirstPersonViewBenchmarkTest {
+    private static final int STRIPS = 4;
+    private static final int[] ANGLES = {0, 45, 90, 158, 180, 270};
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(null != System.getProperty("amaze.benchmark"));
+    }
+
+    /**
+     * Draws a frame for every cell, angle and a few walk distances,
+     * once to warm up and once measured, and reports the result.
+     */
+    private static void run(String name, int strips) {
+        Maze maze = TestOrder.buildMaze(new MazeBuilder(true), 6, false, 13);
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE,
+                new Floorplan(maze.getWidth()+1, maze.getHeight()+1), maze.getCompiledBSPTree());
+        view.setParallelStrips(strips);
+        SoftwareSurface surface = new SoftwareSurface();
+        final int frames = walk(view, surface, maze);
+
+        // the percentiles cover all frames of the measured walk
+        RenderStats stats = new RenderStats(frames);
+        view.setRenderStats(stats);
+        final long start = System.nanoTime();
+        walk(view, surface, maze);
+        final long nanos = System.nanoTime() - start;
+        view.setRenderStats(null);
+        view.setParallelStrips(1);
+
+        assertEquals(frames, stats.getFrameCount());
+        System.out.println(name + ": " + frames*1000000000L/nanos + " fps, " + stats);
+    }
+
+    private static int walk(FirstPersonView view, SoftwareSurface surface, Maze maze) {
+        int frames = 0;
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                for (int angle : ANGLES) {
+                    for (int walkDistance = 0; walkDistance < Constants.MAP_UNIT; walkDistance += Constants.MAP_UNIT/4) {
+                        view.drawWithOffset(surface, x, y, walkDistance, angle);
+                        frames++;
+                    }
+                }
+            }
+        }
+        return frames;
+    }
+
+    @Test
+    public void testSequential() {
+        run("Sequential", 1);
+    }
+
+    @Test
+    public void testStrips() {
+        run(STRIPS + " strips on " + Runtime.getRuntime().availableProcessors() + " processors", STRIPS);
+    }
+}
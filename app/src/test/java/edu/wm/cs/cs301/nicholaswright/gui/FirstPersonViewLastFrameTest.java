@@ -0,0 +1,34 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the first person view tells if a surface still shows a frame.
+ *
+ * @author Nicholas Wright
+ */
+public class FirstPersonViewLastFrameTest {
+
+    @Test
+    public void testKnowsTheLastFrame() {
+        Maze maze = MapTest.buildMaze();
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE,
+                new Floorplan(maze.getWidth()+1, maze.getHeight()+1), maze.getCompiledBSPTree());
+        SoftwareSurface panel = new SoftwareSurface();
+        SoftwareSurface other = new SoftwareSurface();
+        assertFalse(view.isDrawn(panel, 1, 1, 0, 0));
+        view.drawWithOffset(panel, 1, 1, 0, 0);
+        assertTrue(view.isDrawn(panel, 1, 1, 0, 0));
+        assertFalse(view.isDrawn(other, 1, 1, 0, 0));
+        assertFalse(view.isDrawn(panel, 1, 1, 8, 0));
+        assertFalse(view.isDrawn(panel, 1, 1, 0, 90));
+        view.setResolution(Constants.VIEW_WIDTH/2, Constants.VIEW_HEIGHT/2);
+        assertFalse(view.isDrawn(panel, 1, 1, 0, 0));
+    }
+}
@@ -0,0 +1,59 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.CardinalDirection;
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the first person view draws the same frames and marks
+ * the same walls as seen with parallel strips as on a single thread.
+ *
+ * @author Nicholas Wright
+ */
+public class FirstPersonViewStripsTest {
+
+    private static FirstPersonView newView(Maze maze, Floorplan seenWalls) {
+        return new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenWalls, maze.getCompiledBSPTree());
+    }
+
+    @Test
+    public void testStripsDrawTheSameFrames() {
+        // walls remember if they are seen, so each view gets a maze of its own
+        Maze sequentialMaze = MapTest.buildMaze();
+        Maze parallelMaze = MapTest.buildMaze();
+        Floorplan sequentialSeen = new Floorplan(sequentialMaze.getWidth()+1, sequentialMaze.getHeight()+1);
+        Floorplan parallelSeen = new Floorplan(parallelMaze.getWidth()+1, parallelMaze.getHeight()+1);
+        FirstPersonView sequential = newView(sequentialMaze, sequentialSeen);
+        FirstPersonView parallel = newView(parallelMaze, parallelSeen);
+        parallel.setStrips(4);
+        SoftwareSurface expected = new SoftwareSurface();
+        SoftwareSurface actual = new SoftwareSurface();
+        int[] angles = {0, 45, 90, 158, 180, 270};
+        long pixels = 0;
+        long different = 0;
+        for (int x = 0; x < sequentialMaze.getWidth(); x++) {
+            for (int y = 0; y < sequentialMaze.getHeight(); y++) {
+                for (int angle : angles) {
+                    sequential.draw(expected, x, y, 0, angle);
+                    parallel.draw(actual, x, y, 0, angle);
+                    pixels += Constants.VIEW_WIDTH*Constants.VIEW_HEIGHT;
+                    different += expected.countDifferentPixels(actual);
+                }
+            }
+        }
+        parallel.setStrips(1);
+        // polygons that are split at the border of a strip have slightly different edges
+        // and may round differently by a pixel at the top and bottom of a column
+        assertTrue("Pixels differ: " + different, different*1000 < pixels);
+        for (int x = 0; x <= sequentialMaze.getWidth(); x++)
+            for (int y = 0; y <= sequentialMaze.getHeight(); y++)
+                for (CardinalDirection cd : CardinalDirection.values())
+                    assertEquals("Seen wall differs at " + x + "," + y + " " + cd,
+                            sequentialSeen.hasWall(x, y, cd), parallelSeen.hasWall(x, y, cd));
+    }
+}
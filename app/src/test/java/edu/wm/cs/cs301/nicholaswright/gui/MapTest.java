@@ -0,0 +1,184 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeBuilder;
+import edu.wm.cs.cs301.nicholaswright.generation.TestOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the map drawn from its off-screen layers is the same
+ * as the map drawn line by line while walls are seen along the way,
+ * and that the tile pyramid draws the whole maze like the layers do.
+ *
+ * @author Nicholas Wright
+ */
+public class MapTest {
+    private static final int BLACK = 0xff000000;
+
+    /**
+     * @return a maze with rooms, also used by other tests of the package
+     */
+    static Maze buildMaze() {
+        return TestOrder.buildMaze(new MazeBuilder(true), 3, false, 13);
+    }
+
+    @Test
+    public void testLayersDrawLikeLines() {
+        Maze maze = buildMaze();
+        Floorplan seenWalls = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenWalls, maze.getCompiledBSPTree());
+        Map layered = new Map(seenWalls, 15, maze);
+        Map lines = new Map(seenWalls, 15, maze);
+        lines.useLayers = false;
+        SoftwareSurface viewSurface = new SoftwareSurface();
+        SoftwareSurface layeredSurface = new SoftwareSurface();
+        SoftwareSurface linesSurface = new SoftwareSurface();
+        // walk towards the exit, looking around in each cell
+        int[] position = maze.getStartingPosition();
+        int frame = 0;
+        while (null != position && maze.getDistanceToExit(position[0], position[1]) > 1) {
+            for (int angle = 0; angle < 360; angle += 90, frame++) {
+                view.draw(viewSurface, position[0], position[1], 0, angle);
+                // zoom in and out now and then
+                if (frame % 17 == 0) {
+                    int scale = 5 + frame % 30;
+                    layered.setMapScale(scale);
+                    lines.setMapScale(scale);
+                }
+                boolean showMaze = frame % 3 == 0;
+                layeredSurface.clear(BLACK);
+                linesSurface.clear(BLACK);
+                layered.draw(layeredSurface, position[0], position[1], angle, 0, showMaze, false);
+                lines.draw(linesSurface, position[0], position[1], angle, 0, showMaze, false);
+                assertEquals(0, layeredSurface.countDifferentPixels(linesSurface));
+            }
+            position = maze.getNeighborCloserToExit(position[0], position[1]);
+        }
+        assertTrue(frame > 0);
+    }
+
+    @Test
+    public void testTilesAtLargeScales() {
+        Maze maze = buildMaze();
+        Floorplan seenWalls = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenWalls, maze.getCompiledBSPTree());
+        Map layered = new Map(seenWalls, 65, maze);
+        Map lines = new Map(seenWalls, 65, maze);
+        lines.useLayers = false;
+        SoftwareSurface viewSurface = new SoftwareSurface();
+        SoftwareSurface layeredSurface = new SoftwareSurface();
+        SoftwareSurface linesSurface = new SoftwareSurface();
+        // tiles for a screen at any offset, independent of the maze and the scale
+        final int size = Constants.MAP_LAYER_TILE_SIZE;
+        final int maxTiles = 2*((Constants.VIEW_WIDTH + size - 1)/size + 1)*((Constants.VIEW_HEIGHT + size - 1)/size + 1);
+        int[] position = maze.getStartingPosition();
+        int frame = 0;
+        for (int scale : new int[] {65, 120}) {
+            layered.setMapScale(scale);
+            lines.setMapScale(scale);
+            int[] start = position;
+            while (null != position && maze.getDistanceToExit(position[0], position[1]) > 1) {
+                // seen walls are added between frames, in the middle of a move as well
+                view.draw(viewSurface, position[0], position[1], 0, 90*(frame % 4));
+                layeredSurface.clear(BLACK);
+                linesSurface.clear(BLACK);
+                layered.drawWithOffset(layeredSurface, position[0], position[1], 90, 16*(frame % 8), true, false);
+                lines.drawWithOffset(linesSurface, position[0], position[1], 90, 16*(frame % 8), true, false);
+                assertEquals(0, layeredSurface.countDifferentPixels(linesSurface));
+                assertTrue(layered.getLayerTileCount() <= maxTiles);
+                position = maze.getNeighborCloserToExit(position[0], position[1]);
+                frame++;
+            }
+            position = start;
+        }
+        assertTrue(frame > 0);
+    }
+
+    @Test
+    public void testLayerBlitsWithTranslation() {
+        SoftwareSurface surface = new SoftwareSurface(8, 8);
+        DrawingSurface layer = surface.createLayer(4, 4);
+        layer.setColor(255, 255, 255);
+        layer.drawLine(0, 0, 3, 0);
+        surface.drawLayer(layer, 6, 2);
+        // the layer is clipped at the border, transparent pixels are skipped
+        assertEquals(0xffffffff, surface.getPixel(6, 2));
+        assertEquals(0xffffffff, surface.getPixel(7, 2));
+        assertEquals(BLACK, surface.getPixel(6, 3));
+        assertEquals(BLACK, surface.getPixel(5, 2));
+    }
+
+    @Test
+    public void testPyramidDrawsLikeLayers() throws InterruptedException {
+        Maze maze = buildMaze();
+        Floorplan seenWalls = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        MapTilePyramid pyramid = new MapTilePyramid(maze, Map.LAYER_MARGIN);
+        pyramid.build(new SoftwareSurface());
+        Map tiled = new Map(seenWalls, 15, maze);
+        tiled.setTilePyramid(pyramid);
+        Map layered = new Map(seenWalls, 15, maze);
+        SoftwareSurface tiledSurface = new SoftwareSurface();
+        SoftwareSurface layeredSurface = new SoftwareSurface();
+        int[] position = maze.getStartingPosition();
+        // power of two scales are drawn from tiles without scaling
+        for (int scale = 1; scale <= pyramid.getMaxScale(); scale *= 2) {
+            tiled.setMapScale(scale);
+            layered.setMapScale(scale);
+            tiledSurface.clear(BLACK);
+            layeredSurface.clear(BLACK);
+            tiled.draw(tiledSurface, position[0], position[1], 90, 0, true, false);
+            layered.draw(layeredSurface, position[0], position[1], 90, 0, true, false);
+            assertEquals(0, tiledSurface.countDifferentPixels(layeredSurface));
+        }
+        // scales in between are drawn from the next larger level
+        tiledSurface.clear(BLACK);
+        assertTrue(pyramid.draw(tiledSurface, 3, 10, Constants.VIEW_HEIGHT - 10,
+                Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT));
+        assertTrue(tiledSurface.countDifferentPixels(new SoftwareSurface()) > 0);
+        assertFalse(pyramid.draw(tiledSurface, pyramid.getMaxScale() + 1, 0, 0,
+                Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT));
+    }
+
+    @Test
+    public void testPyramidStaysWithinBudget() throws InterruptedException {
+        Maze maze = buildMaze();
+        MapTilePyramid pyramid = new MapTilePyramid(maze, Map.LAYER_MARGIN);
+        pyramid.build(new SoftwareSurface());
+        long pixels = 0;
+        int scale = 1;
+        for (int level = 0; level < pyramid.getLevelCount(); level++, scale *= 2)
+            pixels += levelPixels(maze, scale);
+        assertEquals(scale/2, pyramid.getMaxScale());
+        assertTrue(pixels <= Constants.MAP_PYRAMID_MAX_PIXELS);
+        // the next level would not fit
+        assertTrue(pixels + levelPixels(maze, scale) > Constants.MAP_PYRAMID_MAX_PIXELS);
+    }
+
+    private static long levelPixels(Maze maze, int scale) {
+        return (long) (maze.getWidth()*scale + 1 + 2*Map.LAYER_MARGIN)
+                * (maze.getHeight()*scale + 1 + 2*Map.LAYER_MARGIN);
+    }
+
+    @Test
+    public void testScaledLayerKeepsThinLines() {
+        SoftwareSurface surface = new SoftwareSurface(8, 8);
+        DrawingSurface layer = surface.createLayer(8, 8);
+        layer.setColor(255, 255, 255);
+        // a single pixel wide line on an odd column
+        layer.drawLine(3, 0, 3, 7);
+        surface.drawLayer(layer, 0, 0, 5, 5);
+        int white = 0;
+        for (int y = 0; y < 5; y++)
+            for (int x = 0; x < 5; x++)
+                if (0xffffffff == surface.getPixel(x, y))
+                    white++;
+        assertEquals(5, white);
+        assertEquals(BLACK, surface.getPixel(5, 0));
+    }
+}
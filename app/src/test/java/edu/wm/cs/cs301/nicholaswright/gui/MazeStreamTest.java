@@ -0,0 +1,233 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.kxml2.io.KXmlSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import edu.wm.cs.cs301.nicholaswright.generation.BSPBranch;
+import edu.wm.cs.cs301.nicholaswright.generation.BSPLeaf;
+import edu.wm.cs.cs301.nicholaswright.generation.BSPNode;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.Wall;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that mazes written with the streaming writer are read back unchanged
+ * by the streaming reader and by the document based MazeFileReader.
+ *
+ * @author Nicholas Wright
+ */
+public class MazeStreamTest {
+
+    private static byte[] write(Maze maze) throws IOException {
+        int[] start = maze.getStartingPosition();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MazeStreamWriter(new KXmlSerializer()).store(out, maze.getWidth(), maze.getHeight(), 3, 1200,
+                maze.getRootnode(), maze.getFloorplan(), maze.getMazedists().getAllDistanceValues(),
+                start[0], start[1]);
+        return out.toByteArray();
+    }
+
+    /**
+     * Serves the bytes up to the gate and blocks there until the gate is opened.
+     */
+    private static class GatedInputStream extends InputStream {
+        private final byte[] data;
+        private final int gate;
+        private final CountDownLatch open = new CountDownLatch(1);
+        private int position;
+
+        GatedInputStream(byte[] data, int gate) {
+            this.data = data;
+            this.gate = gate;
+        }
+
+        void open() {
+            open.countDown();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (-1 == read(b, 0, 1)) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position == gate) {
+                try {
+                    open.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            int end = (position < gate) ? gate : data.length;
+            if (position == end)
+                return -1;
+            len = Math.min(len, end - position);
+            System.arraycopy(data, position, b, off, len);
+            position += len;
+            return len;
+        }
+    }
+
+    private static int endOf(byte[] data, String text) {
+        String xml = new String(data);
+        return xml.indexOf(text) + text.length();
+    }
+
+    private static void assertSameTree(BSPNode expected, BSPNode actual) {
+        assertEquals(expected.isIsleaf(), actual.isIsleaf());
+        assertEquals(expected.getLowerBoundX(), actual.getLowerBoundX());
+        assertEquals(expected.getLowerBoundY(), actual.getLowerBoundY());
+        assertEquals(expected.getUpperBoundX(), actual.getUpperBoundX());
+        assertEquals(expected.getUpperBoundY(), actual.getUpperBoundY());
+        if (expected.isIsleaf()) {
+            ArrayList<Wall> walls = ((BSPLeaf) expected).getSlist();
+            ArrayList<Wall> others = ((BSPLeaf) actual).getSlist();
+            assertEquals(walls.size(), others.size());
+            for (int i = 0; i < walls.size(); i++) {
+                assertEquals(walls.get(i), others.get(i));
+                assertEquals(walls.get(i).isPartition(), others.get(i).isPartition());
+                assertEquals(walls.get(i).isSeen(), others.get(i).isSeen());
+            }
+            return;
+        }
+        BSPBranch branch = (BSPBranch) expected;
+        BSPBranch other = (BSPBranch) actual;
+        assertEquals(branch.getX(), other.getX());
+        assertEquals(branch.getY(), other.getY());
+        assertEquals(branch.getDx(), other.getDx());
+        assertEquals(branch.getDy(), other.getDy());
+        assertSameTree(branch.getLeftBranch(), other.getLeftBranch());
+        assertSameTree(branch.getRightBranch(), other.getRightBranch());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Maze maze = MapTest.buildMaze();
+        MazeStreamReader reader = new MazeStreamReader(new KXmlParser(), new ByteArrayInputStream(write(maze)));
+        assertEquals(maze.getWidth(), reader.getWidth());
+        assertEquals(maze.getHeight(), reader.getHeight());
+        assertEquals(3, reader.getRooms());
+        assertEquals(1200, reader.getExpectedPartiters());
+        assertEquals(maze.getStartingPosition()[0], reader.getStartX());
+        assertEquals(maze.getStartingPosition()[1], reader.getStartY());
+        assertEquals(maze.getFloorplan(), reader.getCells());
+        int[][] dists = reader.getDistances();
+        for (int x = 0; x < maze.getWidth(); x++)
+            for (int y = 0; y < maze.getHeight(); y++)
+                assertEquals(maze.getMazedists().getDistanceValue(x, y), dists[x][y]);
+        assertSameTree(maze.getRootnode(), reader.getRootNode());
+    }
+
+    @Test
+    public void testLoadLazily() throws IOException, InterruptedException {
+        Maze maze = MapTest.buildMaze();
+        byte[] data = write(maze);
+        // the rest of the file is held back until the maze is in use
+        GatedInputStream in = new GatedInputStream(data, endOf(data, "</startY>"));
+        Maze lazy = MazeStreamReader.loadLazily(new KXmlParser(), in);
+        assertFalse(lazy.isLoaded());
+        assertEquals(maze.getWidth(), lazy.getWidth());
+        assertEquals(maze.getHeight(), lazy.getHeight());
+        assertEquals(maze.getFloorplan(), lazy.getFloorplan());
+        assertArrayEquals(maze.getStartingPosition(), lazy.getStartingPosition());
+        assertNull(lazy.getMazedists());
+        assertNull(lazy.getCompiledBSPTree());
+        in.open();
+        assertTrue(lazy.waitUntilLoaded());
+        assertTrue(lazy.isLoaded());
+        for (int x = 0; x < maze.getWidth(); x++)
+            for (int y = 0; y < maze.getHeight(); y++)
+                assertEquals(maze.getDistanceToExit(x, y), lazy.getDistanceToExit(x, y));
+        assertSameTree(maze.getRootnode(), lazy.getRootnode());
+        assertNotNull(lazy.getCompiledBSPTree());
+    }
+
+    @Test
+    public void testLoadLazilyFails() throws IOException, InterruptedException {
+        byte[] data = write(MapTest.buildMaze());
+        // the floorplan is complete but the tree is cut off
+        String xml = new String(data, 0, endOf(data, "</startY>")) + "</Maze>";
+        Maze lazy = MazeStreamReader.loadLazily(new KXmlParser(), new ByteArrayInputStream(xml.getBytes()));
+        assertFalse(lazy.waitUntilLoaded());
+        assertFalse(lazy.isLoaded());
+        // without the start position there is nothing to play
+        xml = new String(data, 0, endOf(data, "</startX>")) + "</Maze>";
+        try {
+            MazeStreamReader.loadLazily(new KXmlParser(), new ByteArrayInputStream(xml.getBytes()));
+            fail("accepted a maze without start position");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDocumentReaderReadsStream() throws IOException {
+        Maze maze = MapTest.buildMaze();
+        File file = File.createTempFile("maze", ".xml");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(write(maze));
+            out.close();
+            MazeFileReader reader = new MazeFileReader(file.getPath());
+            assertEquals(maze.getWidth(), reader.getWidth());
+            assertEquals(maze.getFloorplan(), reader.getCells());
+            assertSameTree(maze.getRootnode(), reader.getRootNode());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRejectsBrokenFiles() {
+        String[] broken = {
+                "<Maze><sizeX>2</sizeX></Maze>",
+                "<Maze><cell_0>1</cell_0><sizeX>2</sizeX><sizeY>2</sizeY></Maze>",
+                "<Maze><sizeX>1</sizeX><sizeY>1</sizeY><isleafBSPNode_0>false</isleafBSPNode_0></Maze>",
+                "<Maze><sizeX>1</sizeX><sizeY>1</sizeY><isleafBSPNode_0>true</isleafBSPNode_0>"
+                        + "<numSeg_0>1</numSeg_0></Maze>",
+                "<Maze><sizeX>x</sizeX></Maze>",
+        };
+        for (String xml : broken) {
+            try {
+                new MazeStreamReader(new KXmlParser(), new ByteArrayInputStream(xml.getBytes()));
+                fail("accepted " + xml);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsNumbersBeyondSize() {
+        // numbers that would overflow or exhaust the arrays of nodes and walls
+        String[] broken = {
+                "<Maze><xBSPNode_0>1</xBSPNode_0><sizeX>2</sizeX><sizeY>2</sizeY></Maze>",
+                "<Maze><sizeX>2</sizeX><sizeY>2</sizeY><xBSPNode_400000000>1</xBSPNode_400000000></Maze>",
+                "<Maze><sizeX>2</sizeX><sizeY>2</sizeY><xBSPNode_144>1</xBSPNode_144></Maze>",
+                "<Maze><sizeX>2</sizeX><sizeY>2</sizeY><xSeg_400000000_0>1</xSeg_400000000_0></Maze>",
+                "<Maze><sizeX>2</sizeX><sizeY>2</sizeY><xSeg_0_400000000>1</xSeg_0_400000000></Maze>",
+        };
+        for (String xml : broken) {
+            try {
+                new MazeStreamReader(new KXmlParser(), new ByteArrayInputStream(xml.getBytes()));
+                fail("accepted " + xml);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
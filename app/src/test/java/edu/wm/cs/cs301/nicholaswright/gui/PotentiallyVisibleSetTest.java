@@ -0,0 +1,99 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeBuilder;
+import edu.wm.cs.cs301.nicholaswright.generation.TestOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the first person view draws the same frames with and
+ * without a precomputed potentially visible set.
+ *
+ * @author Nicholas Wright
+ */
+public class PotentiallyVisibleSetTest {
+
+    private static Maze buildMaze(int skill) {
+        return TestOrder.buildMaze(new MazeBuilder(true), skill, false, 7);
+    }
+
+    private static FirstPersonView newView(Maze maze) {
+        return new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE,
+                new Floorplan(maze.getWidth()+1, maze.getHeight()+1), maze.getRootnode());
+    }
+
+    @Test
+    public void testSameFramesWithAndWithoutSet() throws InterruptedException {
+        Maze maze = buildMaze(2);
+        PotentiallyVisibleSet pvs = PotentiallyVisibleSet.compute(maze);
+
+        FirstPersonView plain = newView(maze);
+        FirstPersonView culled = newView(maze);
+        culled.setPotentiallyVisibleSet(pvs);
+        SoftwareSurface expected = new SoftwareSurface();
+        SoftwareSurface actual = new SoftwareSurface();
+        int[] angles = {0, 22, 45, 67, 90, 158, 180, 203, 270, 338};
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                for (int angle : angles) {
+                    plain.draw(expected, x, y, 0, angle);
+                    culled.draw(actual, x, y, 0, angle);
+                    assertEquals("Frame differs at " + x + "," + y + " angle " + angle,
+                            0, expected.countDifferentPixels(actual));
+                }
+                for (int walkStep = -3; walkStep <= 3; walkStep++) {
+                    plain.draw(expected, x, y, walkStep, 90);
+                    culled.draw(actual, x, y, walkStep, 90);
+                    assertEquals("Frame differs at " + x + "," + y + " walk step " + walkStep,
+                            0, expected.countDifferentPixels(actual));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameFramesBetweenWalkSteps() throws InterruptedException {
+        Maze maze = buildMaze(2);
+        PotentiallyVisibleSet pvs = PotentiallyVisibleSet.compute(maze);
+        FirstPersonView plain = newView(maze);
+        FirstPersonView culled = newView(maze);
+        culled.setPotentiallyVisibleSet(pvs);
+        SoftwareSurface expected = new SoftwareSurface();
+        SoftwareSurface actual = new SoftwareSurface();
+        // distances an animated move passes, most of them between two walk steps
+        for (int x = 0; x < maze.getWidth(); x++) {
+            for (int y = 0; y < maze.getHeight(); y++) {
+                for (int angle = 0; angle < 360; angle += 90) {
+                    for (int distance = -Constants.MAP_UNIT + 5; distance < Constants.MAP_UNIT; distance += 15) {
+                        plain.drawWithOffset(expected, x, y, distance, angle);
+                        culled.drawWithOffset(actual, x, y, distance, angle);
+                        assertEquals("Frame differs at " + x + "," + y + " angle " + angle + " distance " + distance,
+                                0, expected.countDifferentPixels(actual));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSetsAreProperSubsets() throws InterruptedException {
+        Maze maze = buildMaze(2);
+        PotentiallyVisibleSet pvs = PotentiallyVisibleSet.compute(maze);
+        int[] start = maze.getStartingPosition();
+        BitSet leaves = pvs.getVisibleLeaves(start[0], start[1], 0, 0);
+        assertNotNull(leaves);
+        assertTrue(leaves.cardinality() > 0);
+        assertTrue(leaves.cardinality() < pvs.getLeafCount());
+        // views that are not precomputed are not covered
+        assertNull(pvs.getVisibleLeaves(start[0], start[1], 0, 10));
+        assertNull(pvs.getVisibleLeaves(start[0], start[1], 1, 45));
+        assertNull(pvs.getVisibleLeaves(-1, 0, 0, 0));
+    }
+}
@@ -0,0 +1,103 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the percentiles of the render statistics over their window
+ * and that the first person view records its frames.
+ *
+ * @author Nicholas Wright
+ */
+public class RenderStatsTest {
+
+    private static RenderStats.Frame frame(long totalNanos) {
+        RenderStats.Frame frame = new RenderStats.Frame();
+        frame.totalNanos = totalNanos;
+        frame.rasterizationNanos = totalNanos/2;
+        return frame;
+    }
+
+    @Test
+    public void testPercentilesOverWindow() {
+        RenderStats stats = new RenderStats(100);
+        assertEquals(0, stats.getPercentileNanos(RenderStats.Phase.TOTAL, 50));
+        // recorded out of order
+        for (int i = 100; i >= 1; i--)
+            stats.record(frame(i));
+        assertEquals(50, stats.getPercentileNanos(RenderStats.Phase.TOTAL, 50));
+        assertEquals(99, stats.getPercentileNanos(RenderStats.Phase.TOTAL, 99));
+        assertEquals(100, stats.getPercentileNanos(RenderStats.Phase.TOTAL, 100));
+        assertEquals(25, stats.getPercentileNanos(RenderStats.Phase.RASTERIZATION, 50));
+        assertEquals(1, stats.getLastFrame().totalNanos);
+        // the window drops the oldest frames
+        for (int i = 0; i < 50; i++)
+            stats.record(frame(1000));
+        assertEquals(1000, stats.getPercentileNanos(RenderStats.Phase.TOTAL, 99));
+        assertEquals(50, stats.getPercentileNanos(RenderStats.Phase.TOTAL, 50));
+        assertEquals(150, stats.getFrameCount());
+    }
+
+    @Test
+    public void testViewRecordsFrames() {
+        Maze maze = MapTest.buildMaze();
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE,
+                new Floorplan(maze.getWidth()+1, maze.getHeight()+1), maze.getCompiledBSPTree());
+        RenderStats stats = new RenderStats(10);
+        view.setRenderStats(stats);
+        SoftwareSurface panel = new SoftwareSurface();
+        int[] position = maze.getStartingPosition();
+        view.draw(panel, position[0], position[1], 0, 0);
+        assertEquals(1, stats.getFrameCount());
+        RenderStats.Frame frame = stats.getLastFrame();
+        assertTrue(frame.nodes > 0);
+        assertTrue(frame.leaves > 0);
+        assertTrue(frame.walls >= frame.projectedWalls);
+        assertTrue(frame.polygons > 0);
+        assertTrue(frame.maxRanges > 0);
+        assertTrue(frame.rasterizationNanos > 0);
+        assertTrue(frame.traversalNanos + frame.projectionNanos + frame.rasterizationNanos <= frame.totalNanos);
+        // strips add up their counters
+        view.setStrips(2);
+        view.draw(panel, position[0], position[1], 0, 90);
+        view.setStrips(1);
+        frame = stats.getLastFrame();
+        assertTrue(frame.nodes > 0);
+        assertTrue(frame.polygons > 0);
+        // without statistics, nothing is recorded
+        view.setRenderStats(null);
+        view.draw(panel, position[0], position[1], 0, 0);
+        assertEquals(2, stats.getFrameCount());
+    }
+
+    @Test
+    public void testViewSamplesWindows() {
+        Maze maze = MapTest.buildMaze();
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE,
+                new Floorplan(maze.getWidth()+1, maze.getHeight()+1), maze.getCompiledBSPTree());
+        SoftwareSurface panel = new SoftwareSurface();
+        int[] position = maze.getStartingPosition();
+        // windows of 4 frames, the first of every 3 windows is measured
+        RenderStats stats = new RenderStats(4);
+        view.setRenderStats(stats, 3);
+        long[] expected = { 1, 2, 3, 4, 4, 4, 4, 4, 4, 4, 4, 4, 5, 6, 7, 8, 8 };
+        for (int i = 0; i < expected.length; i++) {
+            view.draw(panel, position[0], position[1], 0, (i*90) % 360);
+            assertEquals("frame " + i, expected[i], stats.getFrameCount());
+        }
+        // the strips of a view follow the sampling
+        view.setStrips(2);
+        view.setRenderStats(stats, 2);
+        for (int i = 0; i < 8; i++)
+            view.draw(panel, position[0], position[1], 0, (i*90) % 360);
+        view.setStrips(1);
+        assertEquals(12, stats.getFrameCount());
+        assertTrue(stats.getLastFrame().polygons > 0);
+    }
+}
@@ -0,0 +1,84 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the resolution scaler drops to lower resolutions when frames
+ * miss the budget, goes back up with headroom without switching back and forth,
+ * and that the first person view fills an image of a lower resolution.
+ *
+ * @author Nicholas Wright
+ */
+public class ResolutionScalerTest {
+    private static final long MILLIS = 1000000L;
+
+    private static void record(ResolutionScaler scaler, int frames, long nanos) {
+        for (int i = 0; i < frames; i++)
+            scaler.recordFrame(nanos);
+    }
+
+    @Test
+    public void testDropsAndRestores() {
+        ResolutionScaler scaler = new ResolutionScaler(16, 70, 4, new int[] {100, 75, 50});
+        assertTrue(scaler.isFullResolution());
+        // a single slow frame is not enough
+        scaler.recordFrame(40*MILLIS);
+        assertEquals(100, scaler.getPercent());
+        record(scaler, 3, 40*MILLIS);
+        assertEquals(75, scaler.getPercent());
+        record(scaler, 4, 30*MILLIS);
+        assertEquals(50, scaler.getPercent());
+        // there is no lower resolution
+        record(scaler, 4, 30*MILLIS);
+        assertEquals(50, scaler.getPercent());
+        assertEquals(600, scaler.scale(1200));
+        // fast frames bring back the full resolution step by step
+        record(scaler, 4, 2*MILLIS);
+        assertEquals(75, scaler.getPercent());
+        record(scaler, 4, 2*MILLIS);
+        assertTrue(scaler.isFullResolution());
+        assertEquals(1200, scaler.scale(1200));
+    }
+
+    @Test
+    public void testKeepsResolutionWithoutHeadroom() {
+        ResolutionScaler scaler = new ResolutionScaler(16, 70, 4, new int[] {100, 50});
+        record(scaler, 4, 20*MILLIS);
+        assertEquals(50, scaler.getPercent());
+        // 6 ms at half the size are about 24 ms at full size, which would miss the budget again
+        for (int i = 0; i < 10; i++) {
+            record(scaler, 4, 6*MILLIS);
+            assertEquals(50, scaler.getPercent());
+        }
+        // 2 ms are about 8 ms at full size
+        record(scaler, 4, 2*MILLIS);
+        assertEquals(100, scaler.getPercent());
+    }
+
+    @Test
+    public void testViewFillsLowerResolution() {
+        Maze maze = MapTest.buildMaze();
+        Floorplan seenWalls = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenWalls, maze.getCompiledBSPTree());
+        SoftwareSurface panel = new SoftwareSurface();
+        SoftwareSurface frame = (SoftwareSurface) panel.createLayer(Constants.VIEW_WIDTH/2, Constants.VIEW_HEIGHT/2);
+        view.setResolution(Constants.VIEW_WIDTH/2, Constants.VIEW_HEIGHT/2);
+        int[] position = maze.getStartingPosition();
+        view.draw(frame, position[0], position[1], 0, 0);
+        // every pixel of the smaller image is drawn, none is left transparent
+        for (int y = 0; y < Constants.VIEW_HEIGHT/2; y++)
+            for (int x = 0; x < Constants.VIEW_WIDTH/2; x++)
+                assertTrue(0 != (frame.getPixel(x, y) >>> 24));
+        // scaled up, the image covers the whole panel
+        panel.clear(0);
+        panel.drawLayer(frame, 0, 0, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+        assertTrue(0 != (panel.getPixel(Constants.VIEW_WIDTH-1, Constants.VIEW_HEIGHT-1) >>> 24));
+        assertTrue(0 != (panel.getPixel(0, 0) >>> 24));
+    }
+}
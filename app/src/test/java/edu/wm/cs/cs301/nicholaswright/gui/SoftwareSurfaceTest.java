@@ -0,0 +1,113 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import edu.wm.cs.cs301.nicholaswright.generation.Floorplan;
+import edu.wm.cs.cs301.nicholaswright.generation.Maze;
+import edu.wm.cs.cs301.nicholaswright.generation.MazeBuilder;
+import edu.wm.cs.cs301.nicholaswright.generation.TestOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the headless software rasterizer and renders of the
+ * first person view and the map on it, runs on a plain JVM.
+ *
+ * @author Nicholas Wright
+ */
+public class SoftwareSurfaceTest {
+    private static final int WHITE = 0xffffffff;
+    private static final int BLACK = 0xff000000;
+
+    private static Maze buildMaze() {
+        return TestOrder.buildMaze(new MazeBuilder(true), 3, true, 13);
+    }
+
+    /**
+     * Renders a first person view and the map at the starting position.
+     */
+    private static SoftwareSurface render(Maze maze) {
+        SoftwareSurface surface = new SoftwareSurface();
+        Floorplan seenCells = new Floorplan(maze.getWidth()+1, maze.getHeight()+1);
+        FirstPersonView view = new FirstPersonView(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT,
+                Constants.MAP_UNIT, Constants.STEP_SIZE, seenCells, maze.getRootnode());
+        Map map = new Map(seenCells, 15, maze);
+        int[] start = maze.getStartingPosition();
+        view.draw(surface, start[0], start[1], 0, 0);
+        map.draw(surface, start[0], start[1], 0, 0, true, true);
+        surface.update();
+        return surface;
+    }
+
+    private static int countPixels(SoftwareSurface surface, int argb) {
+        int count = 0;
+        for (int p : surface.getPixels()) {
+            if (p == argb)
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testFillRectCoversExactPixels() {
+        SoftwareSurface surface = new SoftwareSurface(10, 10);
+        surface.setColor(255, 255, 255);
+        surface.fillRect(2, 3, 4, 5);
+        assertEquals(20, countPixels(surface, WHITE));
+        assertEquals(WHITE, surface.getPixel(2, 3));
+        assertEquals(WHITE, surface.getPixel(5, 7));
+        assertEquals(BLACK, surface.getPixel(6, 7));
+        assertEquals(BLACK, surface.getPixel(5, 8));
+    }
+
+    @Test
+    public void testDrawingIsClipped() {
+        SoftwareSurface surface = new SoftwareSurface(10, 10);
+        surface.setColor(255, 255, 255);
+        surface.fillRect(-5, -5, 100, 100);
+        surface.drawLine(-20, 5, 30, 5);
+        int[] xs = {-10, 20, 20};
+        int[] ys = {-10, -10, 20};
+        surface.fillPolygon(xs, ys, 3);
+        surface.fillOval(-10, -10, 40, 40);
+        assertEquals(100, countPixels(surface, WHITE));
+    }
+
+    @Test
+    public void testFillPolygonMatchesRectangle() {
+        SoftwareSurface polygon = new SoftwareSurface(20, 20);
+        SoftwareSurface rect = new SoftwareSurface(20, 20);
+        polygon.setColor(10, 20, 30);
+        rect.setColor(10, 20, 30);
+        int[] xs = {3, 3, 12, 12};
+        int[] ys = {4, 15, 15, 4};
+        polygon.fillPolygonTexture(xs, ys, 4);
+        rect.fillRect(3, 4, 9, 11);
+        assertEquals(0, polygon.countDifferentPixels(rect));
+    }
+
+    @Test
+    public void testDrawLineEndpoints() {
+        SoftwareSurface surface = new SoftwareSurface(10, 10);
+        surface.setColor(255, 255, 255);
+        surface.drawLines(new float[] {0, 0, 9, 9, 9, 0, 0, 9}, 8);
+        assertEquals(WHITE, surface.getPixel(0, 0));
+        assertEquals(WHITE, surface.getPixel(9, 9));
+        assertEquals(WHITE, surface.getPixel(9, 0));
+        assertEquals(WHITE, surface.getPixel(0, 9));
+        assertEquals(20, countPixels(surface, WHITE));
+    }
+
+    /**
+     * Rendering is deterministic: the same maze and position give the same frame.
+     */
+    @Test
+    public void testRenderIsReproducible() {
+        SoftwareSurface first = render(buildMaze());
+        SoftwareSurface second = render(buildMaze());
+        assertEquals(1, first.getFrameCount());
+        assertEquals(0, first.countDifferentPixels(second));
+        // the frame shows more than the background
+        assertTrue(countPixels(first, BLACK) < first.getPixels().length);
+    }
+}
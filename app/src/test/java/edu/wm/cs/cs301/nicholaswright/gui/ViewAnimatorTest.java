@@ -0,0 +1,152 @@
+package edu.wm.cs.cs301.nicholaswright.gui;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the view animator interpolates moves and rotations by frame time,
+ * independent of the number of frames, catches up with queued transitions
+ * and lets callers wait for the animation.
+ *
+ * @author Nicholas Wright
+ */
+public class ViewAnimatorTest {
+    private static final long MILLIS = 1000000L;
+    private static final int UNIT = 128;
+
+    @Test
+    public void testWalkIsInterpolatedByTime() {
+        ViewAnimator animator = new ViewAnimator(100, UNIT);
+        ViewAnimator.Pose pose = new ViewAnimator.Pose();
+        animator.setPose(2, 3, 0);
+        animator.walk(2, 3, 3, 3, 0, 1);
+        // the first frame starts the transition
+        assertTrue(animator.sample(1000*MILLIS, pose));
+        assertEquals(2, pose.x);
+        assertEquals(0, pose.walkDistance);
+        assertTrue(animator.sample(1050*MILLIS, pose));
+        assertEquals(UNIT/2, pose.walkDistance);
+        assertEquals(2, pose.x);
+        // at the end, the view rests in the new cell
+        assertFalse(animator.sample(1100*MILLIS, pose));
+        assertEquals(3, pose.x);
+        assertEquals(3, pose.y);
+        assertEquals(0, pose.walkDistance);
+        assertFalse(animator.isAnimating());
+    }
+
+    @Test
+    public void testRotationTakesTheShortWay() {
+        ViewAnimator animator = new ViewAnimator(100, UNIT);
+        ViewAnimator.Pose pose = new ViewAnimator.Pose();
+        animator.setPose(0, 0, 0);
+        animator.rotate(0, 0, 0, -90);
+        animator.sample(0, pose);
+        animator.sample(50*MILLIS, pose);
+        assertEquals(315, pose.angle);
+        animator.sample(200*MILLIS, pose);
+        assertEquals(270, pose.angle);
+    }
+
+    @Test
+    public void testPoseDoesNotDependOnFrameRate() {
+        ViewAnimator slow = new ViewAnimator(120, UNIT);
+        ViewAnimator fast = new ViewAnimator(120, UNIT);
+        ViewAnimator.Pose slowPose = new ViewAnimator.Pose();
+        ViewAnimator.Pose fastPose = new ViewAnimator.Pose();
+        slow.walk(0, 0, 1, 0, 0, 1);
+        fast.walk(0, 0, 1, 0, 0, 1);
+        slow.sample(0, slowPose);
+        // 60 frames per second against a frame that took 70 ms
+        for (long t = 0; t <= 70*MILLIS; t += 16*MILLIS)
+            fast.sample(t, fastPose);
+        fast.sample(70*MILLIS, fastPose);
+        slow.sample(70*MILLIS, slowPose);
+        assertEquals(slowPose.walkDistance, fastPose.walkDistance);
+        assertEquals(Math.round(UNIT*70/120.0), slowPose.walkDistance);
+    }
+
+    @Test
+    public void testQueuedTransitionsCatchUp() {
+        ViewAnimator animator = new ViewAnimator(100, UNIT);
+        ViewAnimator.Pose pose = new ViewAnimator.Pose();
+        animator.setPose(0, 0, 0);
+        animator.walk(0, 0, 1, 0, 0, 1);
+        animator.walk(1, 0, 2, 0, 0, 1);
+        // with two transitions queued, the first one takes half the time
+        animator.sample(0, pose);
+        animator.sample(25*MILLIS, pose);
+        assertEquals(0, pose.x);
+        assertEquals(UNIT/2, pose.walkDistance);
+        // the second one starts where the first one ended and takes the full time
+        assertTrue(animator.sample(100*MILLIS, pose));
+        assertEquals(1, pose.x);
+        assertEquals(UNIT/2, pose.walkDistance);
+        assertFalse(animator.sample(150*MILLIS, pose));
+        assertEquals(2, pose.x);
+    }
+
+    @Test
+    public void testWaitsForTheAnimation() throws InterruptedException {
+        final ViewAnimator animator = new ViewAnimator(100, UNIT);
+        animator.walk(0, 0, 1, 0, 0, 1);
+        final long[] finished = new long[1];
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    animator.awaitQueued(0);
+                    finished[0] = System.nanoTime();
+                } catch (InterruptedException e) {
+                    fail("interrupted");
+                }
+            }
+        });
+        waiting.start();
+        ViewAnimator.Pose pose = new ViewAnimator.Pose();
+        animator.sample(0, pose);
+        Thread.sleep(20);
+        assertTrue(waiting.isAlive());
+        final long end = System.nanoTime();
+        animator.sample(200*MILLIS, pose);
+        waiting.join(1000);
+        assertFalse(waiting.isAlive());
+        assertTrue(finished[0] >= end);
+    }
+
+    @Test
+    public void testIdleCallbackRunsAfterTheLastTransition() {
+        ViewAnimator animator = new ViewAnimator(100, UNIT);
+        ViewAnimator.Pose pose = new ViewAnimator.Pose();
+        final int[] calls = new int[1];
+        Runnable callback = new Runnable() {
+            @Override
+            public void run() {
+                calls[0]++;
+            }
+        };
+        // nothing to animate, runs right away
+        animator.whenIdle(callback);
+        assertEquals(1, calls[0]);
+        animator.walk(0, 0, 1, 0, 0, 1);
+        animator.walk(1, 0, 2, 0, 0, 1);
+        animator.whenIdle(callback);
+        // the first move is shortened to catch up, the second one ends at 150 ms
+        assertTrue(animator.sample(0, pose));
+        assertTrue(animator.sample(140*MILLIS, pose));
+        assertEquals(1, calls[0]);
+        // the frame that shows the view in the last cell runs it once
+        assertFalse(animator.sample(150*MILLIS, pose));
+        assertEquals(2, pose.x);
+        assertEquals(2, calls[0]);
+        assertFalse(animator.sample(170*MILLIS, pose));
+        assertEquals(2, calls[0]);
+        // a cancelled animation drops the callback
+        animator.walk(2, 0, 3, 0, 0, 1);
+        animator.whenIdle(callback);
+        animator.cancel();
+        animator.sample(300*MILLIS, pose);
+        assertEquals(2, calls[0]);
+    }
+}